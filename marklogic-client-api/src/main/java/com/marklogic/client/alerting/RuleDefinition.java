@@ -35,9 +35,7 @@ import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -56,6 +54,7 @@ import com.marklogic.client.impl.DOMWriter;
 import com.marklogic.client.impl.HandleAccessor;
 import com.marklogic.client.impl.Utilities;
 import com.marklogic.client.impl.ValueConverter;
+import com.marklogic.client.impl.XmlFactories;
 import com.marklogic.client.io.BaseHandle;
 import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.DOMHandle;
@@ -322,8 +321,7 @@ public class RuleDefinition extends BaseHandle<InputStream, OutputStreamSender>
 
     try {
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      TransformerFactory transfac = TransformerFactory.newInstance();
-      Transformer trans = transfac.newTransformer();
+      Transformer trans = XmlFactories.getTransformer();
       trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
       trans.setOutputProperty(OutputKeys.VERSION, "1.0");
       trans.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
@@ -333,9 +331,6 @@ public class RuleDefinition extends BaseHandle<InputStream, OutputStreamSender>
         new StreamResult(baos));
       importQueryDefinition(new BytesHandle(baos.toByteArray())
         .withFormat(Format.XML));
-    } catch (TransformerConfigurationException e) {
-      throw new MarkLogicIOException(
-        "Could not get query from rule payload");
     } catch (TransformerException e) {
       throw new MarkLogicIOException(
         "Could not get query from rule payload");
@@ -16,11 +16,13 @@
 package com.marklogic.client.datamovement;
 
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.query.RawCtsQueryDefinition;
 import com.marklogic.client.query.StringQueryDefinition;
 import com.marklogic.client.query.StructuredQueryDefinition;
 import com.marklogic.client.query.RawCombinedQueryDefinition;
 import com.marklogic.client.query.RawStructuredQueryDefinition;
+import com.marklogic.client.query.ValuesDefinition;
 
 import java.util.Iterator;
 
@@ -71,6 +73,20 @@ public interface DataMovementManager {
    */
   public JobTicket startJob(QueryBatcher batcher);
 
+  /**
+   * Starts the RowBatcher job.
+   * @param batcher the RowBatcher instance which has to be started
+   * @return a JobTicket which can be used to track the job
+   */
+  public JobTicket startJob(RowBatcher<?> batcher);
+
+  /**
+   * Starts the ValuesBatcher job.
+   * @param batcher the ValuesBatcher instance which has to be started
+   * @return a JobTicket which can be used to track the job
+   */
+  public JobTicket startJob(ValuesBatcher batcher);
+
   /**
    * Get a snapshot report of the state of the job when the call is made.
    * Depends on some pre-installed listeners attached to the job to collect the
@@ -187,6 +203,28 @@ public interface DataMovementManager {
    */
   public QueryBatcher newQueryBatcher(Iterator<String> iterator);
 
+  /**
+   * Create a new RowBatcher instance to export the rows of a view in
+   * batches.  Each batch is read into a new instance of the class of
+   * the row handle with the same format and mimetype.
+   *
+   * @param rowsHandle the JSON, XML, or CSV handle for the rows of each batch
+   * @param <T> the type of the content of the handle
+   *
+   * @return the new RowBatcher instance
+   */
+  public <T> RowBatcher<T> newRowBatcher(ContentHandle<T> rowsHandle);
+
+  /**
+   * Create a new ValuesBatcher instance to read the values of a lexicon
+   * from every forest in parallel.
+   *
+   * @param valdef the definition of the values to read from each forest
+   *
+   * @return the new ValuesBatcher instance
+   */
+  public ValuesBatcher newValuesBatcher(ValuesDefinition valdef);
+
   /**
    * Update the ForestConfiguration with the latest from the server.
    *
@@ -28,7 +28,7 @@ public interface JobTicket {
   String getJobId();
   /**
    * @return the type of job which the ticket is identifying. It might be a
-   * {@link WriteBatcher} or {@link QueryBatcher}
+   * {@link WriteBatcher}, {@link QueryBatcher}, {@link RowBatcher}, or {@link ValuesBatcher}
    */
   JobType getJobType();
 
@@ -38,5 +38,5 @@ public interface JobTicket {
    */
   Batcher getBatcher();
 
-  enum JobType { WRITE_BATCHER, QUERY_BATCHER; };
+  enum JobType { WRITE_BATCHER, QUERY_BATCHER, ROW_BATCHER, VALUES_BATCHER; };
 }
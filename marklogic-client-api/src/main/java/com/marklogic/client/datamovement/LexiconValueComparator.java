@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+
+import javax.xml.datatype.DatatypeConstants;
+
+import com.marklogic.client.impl.Utilities;
+import com.marklogic.client.impl.ValueConverter;
+
+/**
+ * Orders the serialized values of a lexicon by their XSD type so values
+ * from different forests can be merged.  Values that can't be ordered by
+ * type (such as dates with and without a timezone) fall back to codepoint
+ * order, which is also the order for strings.
+ */
+public final class LexiconValueComparator implements Comparator<String> {
+  private enum Kind { DECIMAL, FLOAT, CALENDAR, DURATION, STRING }
+
+  private final Kind kind;
+
+  private LexiconValueComparator(Kind kind) {
+    this.kind = kind;
+  }
+
+  /**
+   * Returns the comparator for the values of a lexicon.
+   * @param type the XSD type of the values such as xs:int or null for strings
+   * @return the comparator for the type
+   */
+  public static LexiconValueComparator forType(String type) {
+    if ( type == null ) return new LexiconValueComparator(Kind.STRING);
+    switch (type) {
+      case "xs:decimal":
+      case "xs:integer":
+      case "xs:long":
+      case "xs:int":
+      case "xs:short":
+      case "xs:byte":
+      case "xs:unsignedLong":
+      case "xs:unsignedInt":
+      case "xs:unsignedShort":
+      case "xs:unsignedByte":
+      case "xs:nonNegativeInteger":
+      case "xs:nonPositiveInteger":
+      case "xs:positiveInteger":
+      case "xs:negativeInteger":
+        return new LexiconValueComparator(Kind.DECIMAL);
+      case "xs:double":
+      case "xs:float":
+        return new LexiconValueComparator(Kind.FLOAT);
+      case "xs:dateTime":
+      case "xs:date":
+      case "xs:time":
+      case "xs:gYearMonth":
+      case "xs:gYear":
+      case "xs:gMonthDay":
+      case "xs:gMonth":
+      case "xs:gDay":
+        return new LexiconValueComparator(Kind.CALENDAR);
+      case "xs:duration":
+      case "xs:dayTimeDuration":
+      case "xs:yearMonthDuration":
+        return new LexiconValueComparator(Kind.DURATION);
+      default:
+        return new LexiconValueComparator(Kind.STRING);
+    }
+  }
+
+  /**
+   * Whether the values are numbers, which can be added.
+   * @return true for the decimal, integer, double, and float types
+   */
+  public boolean isNumeric() {
+    return kind == Kind.DECIMAL || kind == Kind.FLOAT;
+  }
+
+  /**
+   * Converts a serialized numeric value to a double.
+   * @param value the serialized value
+   * @return the value as a double
+   */
+  public double toDouble(String value) {
+    return ValueConverter.StringToDoublePrimitive(value);
+  }
+
+  @Override
+  public int compare(String value1, String value2) {
+    switch (kind) {
+      case DECIMAL:
+        return new BigDecimal(value1.trim()).compareTo(new BigDecimal(value2.trim()));
+      case FLOAT:
+        return Double.compare(toDouble(value1), toDouble(value2));
+      case CALENDAR:
+        return orderOrCodepoints(
+          Utilities.getDatatypeFactory().newXMLGregorianCalendar(value1).compare(
+            Utilities.getDatatypeFactory().newXMLGregorianCalendar(value2)),
+          value1, value2);
+      case DURATION:
+        return orderOrCodepoints(
+          Utilities.getDatatypeFactory().newDuration(value1).compare(
+            Utilities.getDatatypeFactory().newDuration(value2)),
+          value1, value2);
+      default:
+        return compareCodepoints(value1, value2);
+    }
+  }
+
+  private int orderOrCodepoints(int order, String value1, String value2) {
+    switch (order) {
+      case DatatypeConstants.LESSER:  return -1;
+      case DatatypeConstants.EQUAL:   return 0;
+      case DatatypeConstants.GREATER: return 1;
+      default:                        return compareCodepoints(value1, value2);
+    }
+  }
+
+  private int compareCodepoints(String value1, String value2) {
+    int i = 0;
+    int j = 0;
+    while ( i < value1.length() && j < value2.length() ) {
+      int codepoint1 = value1.codePointAt(i);
+      int codepoint2 = value2.codePointAt(j);
+      if ( codepoint1 != codepoint2 ) return Integer.compare(codepoint1, codepoint2);
+      i += Character.charCount(codepoint1);
+      j += Character.charCount(codepoint2);
+    }
+    return Boolean.compare(i < value1.length(), j < value2.length());
+  }
+}
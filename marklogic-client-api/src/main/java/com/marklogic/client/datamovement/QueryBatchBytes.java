@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.nio.ByteBuffer;
+
+/** A page of uris matching the QueryDefinition for this QueryBatcher job
+ * as the raw text/uri-list bytes returned by the server, with one uri on
+ * each line.  The uris aren't decoded as strings, so a job that only copies
+ * the uris somewhere doesn't make an object for each uri.
+ */
+public interface QueryBatchBytes extends QueryEvent, BatchEvent {
+  /** The text/uri-list content of this batch in UTF-8 as a read-only buffer
+   * that starts at the first uri.  Each listener gets its own view of the
+   * content, so consuming the buffer doesn't affect other listeners.
+   *
+   * @return the uris of this batch separated by newlines
+   */
+  ByteBuffer getUriBytes();
+
+  /** The number of uris in this batch.
+   *
+   * @return the count of uris
+   */
+  int getUriCount();
+
+  /** The server timestamp at which this query was run (if this job is running
+   * withConsistentSnapshot()).
+   *
+   * @return the numeric timestamp at which this query was run
+   */
+  long getServerTimestamp();
+}
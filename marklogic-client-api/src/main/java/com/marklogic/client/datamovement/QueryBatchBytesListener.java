@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Runs processEvent on the raw bytes of each batch of uris as it is ready
+ * during a QueryBatcher job based on a query.
+ *
+ * @see #processEvent processEvent
+ */
+public interface QueryBatchBytesListener extends BatchListener<QueryBatchBytes> {
+  /**
+   * <p>The method called by QueryBatcher to run your custom code on the
+   * bytes of this batch.  You usually implement this as a lambda expression.</p>
+   *
+   * For example, to count the uris without decoding them:
+   *
+   * <pre>{@code
+   *     AtomicLong count = new AtomicLong();
+   *     QueryBatcher qhb = dataMovementManager.newQueryBatcher(query)
+   *         .withBatchSize(10000)
+   *         .onUrisBytesReady(batch -> count.addAndGet(batch.getUriCount()))
+   *         .onQueryFailure(queryBatchException -> queryBatchException.printStackTrace());
+   *     JobTicket ticket = dataMovementManager.startJob(qhb);
+   *     qhb.awaitCompletion();
+   *     dataMovementManager.stopJob(ticket);
+   *}</pre>
+   *
+   * @param batch the bytes of the uris and some metadata about the current status of the job
+   */
+  void processEvent(QueryBatchBytes batch);
+
+  /**
+   * This default method should be implemented by custom listeners that should
+   * be retried in case of failover.
+   *
+   * @param queryBatcher the QueryBatcher which will call this Listener
+   */
+  default void initializeListener(QueryBatcher queryBatcher) {}
+}
@@ -128,6 +128,21 @@ public interface QueryBatcher extends Batcher {
    */
   QueryBatcher onUrisReady(QueryBatchListener listener);
 
+  /**
+   * <p>Add a listener to run each time a batch of uris is ready, receiving the
+   * raw text/uri-list bytes from the server instead of strings.  The uris are
+   * decoded as strings only if listeners are also registered with onUrisReady,
+   * so a job with only these listeners copies each page of uris without an
+   * object for each uri.</p>
+   *
+   * <p>These listeners apply only to jobs based on a query.</p>
+   *
+   * @param listener the action which has to be done when the bytes of the uris are ready
+   * @return this instance for method chaining
+   * @see UrisToChannelListener
+   */
+  QueryBatcher onUrisBytesReady(QueryBatchBytesListener listener);
+
   /**
    * <p>Add a listener to run each time there is an exception retrieving a batch
    * of uris.</p>
@@ -178,6 +193,15 @@ public interface QueryBatcher extends Batcher {
    */
   QueryBatchListener[] getUrisReadyListeners();
 
+  /**
+   * Get the array of QueryBatchBytesListener instances registered via
+   * onUrisBytesReady.
+   *
+   * @return the QueryBatchBytesListener instances this batcher
+   *   is using
+   */
+  QueryBatchBytesListener[] getUrisBytesReadyListeners();
+
   /**
    * Get the array of QueryBatcherListener instances registered via
    * onJobCompletion.
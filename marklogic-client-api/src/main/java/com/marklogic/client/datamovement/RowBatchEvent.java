@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * The context for a batch of rows passed to a RowBatchSuccessListener or
+ * for an exception passed to a RowBatchFailureListener.
+ */
+public interface RowBatchEvent extends BatchEvent {
+  /**
+   * A reference to the batcher--useful for calling
+   * {@link DataMovementManager#stopJob(Batcher)} if needed.
+   * @return the batcher for the job
+   */
+  RowBatcher<?> getBatcher();
+
+  /**
+   * Whether the batch has the rows with a null value for the partition
+   * column instead of a range of values.  The bounds of a null key batch
+   * are zero.
+   * @return true for the batch of rows with a null partition key
+   */
+  boolean isNullKey();
+
+  /**
+   * The lowest value of the partition column in the range for the batch.
+   * @return the inclusive lower bound of the range
+   */
+  long getLowerBound();
+  /**
+   * The highest value of the partition column in the range for the batch.
+   * @return the inclusive upper bound of the range
+   */
+  long getUpperBound();
+
+  /**
+   * The server timestamp at which the rows were read if the batcher
+   * was configured for a consistent snapshot.
+   * @return the server timestamp or -1 if not known
+   */
+  long getServerTimestamp();
+}
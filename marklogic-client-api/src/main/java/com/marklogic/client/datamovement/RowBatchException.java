@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.Calendar;
+
+import com.marklogic.client.DatabaseClient;
+
+/**
+ * An exception which occurred when attempting to retrieve a batch of rows.
+ */
+public class RowBatchException extends Exception implements RowBatchEvent {
+  private static final long serialVersionUID = 1L;
+
+  private RowBatchEvent rowBatchEvent;
+
+  public RowBatchException(RowBatchEvent rowBatchEvent, Throwable cause) {
+    super(cause);
+    this.rowBatchEvent = rowBatchEvent;
+  }
+
+  @Override
+  public RowBatcher<?> getBatcher() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getBatcher();
+  }
+
+  /** The DatabaseClient for the last host tried for the batch. */
+  @Override
+  public DatabaseClient getClient() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getClient();
+  }
+
+  @Override
+  public Calendar getTimestamp() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getTimestamp();
+  }
+
+  @Override
+  public long getJobBatchNumber() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getJobBatchNumber();
+  }
+
+  @Override
+  public JobTicket getJobTicket() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getJobTicket();
+  }
+
+  @Override
+  public boolean isNullKey() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.isNullKey();
+  }
+
+  @Override
+  public long getLowerBound() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getLowerBound();
+  }
+
+  @Override
+  public long getUpperBound() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getUpperBound();
+  }
+
+  @Override
+  public long getServerTimestamp() {
+    if ( rowBatchEvent == null ) throw new IllegalStateException("RowBatchEvent is null");
+    return rowBatchEvent.getServerTimestamp();
+  }
+}
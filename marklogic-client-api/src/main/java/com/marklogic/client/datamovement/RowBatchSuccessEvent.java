@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * A batch of rows retrieved by a RowBatcher.
+ *
+ * @param <T> the type of the content of the row handle
+ */
+public interface RowBatchSuccessEvent<T> extends RowBatchEvent {
+  /**
+   * The rows in the range of the batch as one document in the
+   * format of the row handle.
+   * @return the rows of the batch
+   */
+  T getRowsDoc();
+}
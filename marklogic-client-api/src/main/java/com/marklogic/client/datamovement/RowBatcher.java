@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.concurrent.TimeUnit;
+
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.row.RowManager;
+
+/**
+ * <p>Coordinates threads to export the rows of a view in parallel.  The rows
+ * produced by the view plan are partitioned into ranges of the values of an
+ * integer partition column (typically a unique key of the view).  Each range is
+ * retrieved by a separate request, round-robin across the hosts of the
+ * {@link ForestConfiguration}, and delivered as one document in the format
+ * of the row handle to the onSuccess listeners.  If the request for a range
+ * fails, the range is tried on the other hosts before the onFailure listeners
+ * are called.</p>
+ *
+ * <p>Before starting, the batcher runs an aggregate over the view plan to
+ * get the minimum, maximum, and count of the partition column.  The number of
+ * ranges is the row count divided by the batch size (but at least the
+ * thread count), so the number of rows in each batch is close to the batch
+ * size if the partition column has an even distribution.  Rows with a null
+ * for the partition column are exported together in one last batch for which
+ * {@link RowBatchEvent#isNullKey()} is true.  Each thread takes the next range
+ * only when it finishes its batch.</p>
+ *
+ * <pre>{@code
+ *     RowBatcher<JsonNode> rowBatcher = dataMovementManager.newRowBatcher(new JacksonHandle());
+ *     PlanBuilder p = rowBatcher.getRowManager().newPlanBuilder();
+ *     rowBatcher.withBatchView(p.fromView("mySchema", "myView"))
+ *         .withPartitionColumn("id")
+ *         .withBatchSize(10000)
+ *         .withThreadCount(8)
+ *         .withConsistentSnapshot()
+ *         .onSuccess(event -> process(event.getRowsDoc()))
+ *         .onFailure(failure -> failure.printStackTrace());
+ *     JobTicket ticket = dataMovementManager.startJob(rowBatcher);
+ *     rowBatcher.awaitCompletion();
+ *     dataMovementManager.stopJob(ticket);
+ *}</pre>
+ *
+ * @param <T> the type of the content of the row handle for each batch
+ */
+public interface RowBatcher<T> extends Batcher {
+  /**
+   * The RowManager for building the view plan and configuring the
+   * datatype and row structure styles of the batches.
+   * @return the row manager for the batcher
+   */
+  RowManager getRowManager();
+
+  /**
+   * Specifies the plan for the rows to export.  The plan typically starts
+   * with fromView() and may select, filter, or join but shouldn't limit
+   * or order the rows.
+   * @param viewPlan the plan for the rows
+   * @return this instance for method chaining
+   */
+  RowBatcher<T> withBatchView(PlanBuilder.ModifyPlan viewPlan);
+
+  /**
+   * Specifies the integer column of the view plan with the values for
+   * partitioning the rows into batches.
+   * @param column the name of the partition column
+   * @return this instance for method chaining
+   */
+  RowBatcher<T> withPartitionColumn(String column);
+
+  /**
+   * Reads every batch at the server timestamp of the first request so
+   * the export reflects a consistent snapshot of the database.
+   * @return this instance for method chaining
+   */
+  RowBatcher<T> withConsistentSnapshot();
+
+  /**
+   * Adds a listener to process each batch of rows.
+   * @param listener the listener for the batches
+   * @return this instance for method chaining
+   */
+  RowBatcher<T> onSuccess(RowBatchSuccessListener<T> listener);
+  /**
+   * Adds a listener to process each batch that failed on every host.
+   * @param listener the listener for the failures
+   * @return this instance for method chaining
+   */
+  RowBatcher<T> onFailure(RowBatchFailureListener listener);
+
+  RowBatchSuccessListener<T>[] getSuccessListeners();
+  RowBatchFailureListener[]    getFailureListeners();
+
+  @Override
+  RowBatcher<T> withJobName(String jobName);
+  @Override
+  RowBatcher<T> withJobId(String jobId);
+  @Override
+  RowBatcher<T> withBatchSize(int batchSize);
+  @Override
+  RowBatcher<T> withThreadCount(int threadCount);
+  @Override
+  RowBatcher<T> withForestConfig(ForestConfiguration forestConfig);
+
+  /**
+   * The number of rows with a value for the partition column
+   * as counted before the export started.
+   * @return the estimated row count or -1 if the job hasn't started
+   */
+  long getRowEstimate();
+  /**
+   * The server timestamp for the batches if the batcher was
+   * configured for a consistent snapshot.
+   * @return the server timestamp or -1 if not known
+   */
+  long getServerTimestamp();
+
+  /**
+   * Blocks until the job is complete.
+   *
+   * @return true if the job completed, false if the thread was interrupted
+   */
+  boolean awaitCompletion();
+  /**
+   * Blocks until the job is complete or the timeout elapses.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the time unit of the timeout argument
+   * @return true if the job completed, false if the timeout elapsed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException;
+}
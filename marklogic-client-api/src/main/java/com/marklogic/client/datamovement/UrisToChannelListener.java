@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Copies the uris of a QueryBatcher job to a channel as the raw
+ * text/uri-list bytes of each batch, one uri per line.  A newline is
+ * written after any batch whose bytes don't end with one, so the uris of
+ * consecutive batches never run together.  Unlike
+ * {@link UrisToWriterListener}, the uris are never decoded as strings, and
+ * each batch is written with a single write under the lock on the channel,
+ * so inventories of very large databases stay cheap.</p>
+ *
+ * Example writing uris to disk:
+ *
+ * <pre>{@code
+ *     try (FileChannel channel = FileChannel.open(Paths.get("uriCache.txt"),
+ *             StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+ *       QueryBatcher getUris = dataMovementManager.newQueryBatcher(query)
+ *         .withBatchSize(10000)
+ *         .onUrisBytesReady( new UrisToChannelListener(channel) )
+ *         .onQueryFailure(exception -> exception.printStackTrace());
+ *       JobTicket getUrisTicket = dataMovementManager.startJob(getUris);
+ *       getUris.awaitCompletion();
+ *       dataMovementManager.stopJob(getUrisTicket);
+ *     }
+ *}</pre>
+ */
+public class UrisToChannelListener implements QueryBatchBytesListener {
+  private static Logger logger = LoggerFactory.getLogger(UrisToChannelListener.class);
+  private static final byte[] NEWLINE = {'\n'};
+  private WritableByteChannel channel;
+  private List<BatchFailureListener<QueryBatchBytes>> failureListeners = new ArrayList<>();
+
+  public UrisToChannelListener(WritableByteChannel channel) {
+    if ( channel == null ) throw new IllegalArgumentException("channel must not be null");
+    this.channel = channel;
+  }
+
+  @Override
+  public void processEvent(QueryBatchBytes batch) {
+    try {
+      ByteBuffer bytes = batch.getUriBytes();
+      // the server may omit the newline after the last uri of a page
+      ByteBuffer newline = ( bytes.hasRemaining() && bytes.get(bytes.limit() - 1) != '\n' ) ?
+        ByteBuffer.wrap(NEWLINE) : null;
+      synchronized(channel) {
+        while ( bytes.hasRemaining() ) {
+          channel.write(bytes);
+        }
+        while ( newline != null && newline.hasRemaining() ) {
+          channel.write(newline);
+        }
+      }
+    } catch (Throwable t) {
+      Throwable failure = (t instanceof IOException) ?
+        new DataMovementException("Failed to write uris for batch " + batch.getJobBatchNumber(), t) : t;
+      for ( BatchFailureListener<QueryBatchBytes> listener : failureListeners ) {
+        try {
+          listener.processFailure(batch, failure);
+        } catch (Throwable t2) {
+          logger.error("Exception thrown by an onFailure listener", t2);
+        }
+      }
+    }
+  }
+
+  /**
+   * When writing a batch fails, run this listener code.  Multiple listeners
+   * can be registered with this method.
+   *
+   * @param listener the code to run when a failure occurs
+   *
+   * @return this instance for method chaining
+   */
+  public UrisToChannelListener onFailure(BatchFailureListener<QueryBatchBytes> listener) {
+    failureListeners.add(listener);
+    return this;
+  }
+}
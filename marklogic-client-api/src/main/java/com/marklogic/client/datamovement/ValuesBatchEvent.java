@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * The context for a batch of values passed to a ValuesBatchSuccessListener
+ * or for an exception passed to a ValuesBatchFailureListener.
+ */
+public interface ValuesBatchEvent extends BatchEvent {
+  /**
+   * A reference to the batcher--useful for calling
+   * {@link DataMovementManager#stopJob(Batcher)} if needed.
+   * @return the batcher for the job
+   */
+  ValuesBatcher getBatcher();
+  /**
+   * The forest with the values of the batch.
+   * @return the forest or null for a batch of sorted distinct values merged from every forest
+   */
+  Forest getForest();
+  /**
+   * The position of the first value of the batch in the values of the
+   * forest or in the merged values (where 1 is the first value).
+   * @return the position of the first value
+   */
+  long getStart();
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.Calendar;
+
+import com.marklogic.client.DatabaseClient;
+
+/**
+ * An exception which occurred when attempting to retrieve a batch of values.
+ */
+public class ValuesBatchException extends Exception implements ValuesBatchEvent {
+  private static final long serialVersionUID = 1L;
+
+  private ValuesBatchEvent valuesBatchEvent;
+
+  public ValuesBatchException(ValuesBatchEvent valuesBatchEvent, Throwable cause) {
+    super(cause);
+    this.valuesBatchEvent = valuesBatchEvent;
+  }
+
+  @Override
+  public ValuesBatcher getBatcher() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getBatcher();
+  }
+
+  @Override
+  public DatabaseClient getClient() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getClient();
+  }
+
+  @Override
+  public Calendar getTimestamp() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getTimestamp();
+  }
+
+  @Override
+  public long getJobBatchNumber() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getJobBatchNumber();
+  }
+
+  @Override
+  public JobTicket getJobTicket() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getJobTicket();
+  }
+
+  @Override
+  public Forest getForest() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getForest();
+  }
+
+  @Override
+  public long getStart() {
+    if ( valuesBatchEvent == null ) throw new IllegalStateException("ValuesBatchEvent is null");
+    return valuesBatchEvent.getStart();
+  }
+}
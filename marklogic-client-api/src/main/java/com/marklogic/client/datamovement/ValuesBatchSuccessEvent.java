@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * A batch of values retrieved by a ValuesBatcher.  The values are in
+ * lexicon order and have the same length as the frequencies.
+ */
+public interface ValuesBatchSuccessEvent extends ValuesBatchEvent {
+  /**
+   * The name of the values in the query options.
+   * @return the name of the values
+   */
+  String getName();
+  /**
+   * The XSD type of the values, for example "xs:string" or "xs:int".
+   * @return the type of the values
+   */
+  String getType();
+  /**
+   * The values of the batch as serialized by the server.
+   * @return the values
+   */
+  String[] getValues();
+  /**
+   * The frequency of each value of the batch.  For the merged batches,
+   * the frequency is the sum of the frequencies in every forest.
+   * @return the frequencies
+   */
+  long[] getFrequencies();
+}
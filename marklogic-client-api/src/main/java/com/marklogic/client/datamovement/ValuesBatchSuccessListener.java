@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * Runs processEvent on each batch of values as it is ready during a
+ * ValuesBatcher job.
+ */
+public interface ValuesBatchSuccessListener extends BatchListener<ValuesBatchSuccessEvent> {
+  /**
+   * The method called by ValuesBatcher to run your custom code on the batch.
+   * @param batch the values of the batch and some metadata about the job
+   */
+  void processEvent(ValuesBatchSuccessEvent batch);
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+import java.util.concurrent.TimeUnit;
+
+import com.marklogic.client.query.ValuesDefinition;
+
+/**
+ * <p>Coordinates threads to read the values of a lexicon from every forest
+ * in parallel.  The values of each forest are read in pages of the batch
+ * size from the host of the forest in the {@link ForestConfiguration} and
+ * delivered to the onSuccess listeners as each page is ready, so the
+ * requests spread across the cluster and the memory held by the job
+ * depends on the batch size and thread count instead of the lexicon size.
+ * If reading the values of a forest fails, the onFailure listeners are
+ * called and the job continues with the other forests.</p>
+ *
+ * <p>Each forest has the values of its own fragments, so the same value can
+ * be in more than one forest.  The onSortedDistinct listeners receive the
+ * values of every forest merged into one sequence of distinct values in
+ * lexicon order with the sum of the frequencies from the forests.  The merge
+ * reads every forest at the same time and holds no more than a few pages for
+ * each forest, so the job uses at least one thread for each forest plus one
+ * thread for the merge.  Strings are merged in codepoint order, so the
+ * onSortedDistinct listeners require a string lexicon to use the codepoint
+ * collation (http://marklogic.com/collation/codepoint).  If a forest returns
+ * its values in another order, the merge stops and the onFailure listeners
+ * receive the failure.</p>
+ *
+ * <p>For aggregates that combine partial results such as counts, sums,
+ * and the minimum and maximum value, see {@link ValuesMergeListener}.</p>
+ *
+ * <pre>{@code
+ *     ValuesDefinition valdef = queryManager.newValuesDefinition("price", "myOptions");
+ *     ValuesMergeListener totals = new ValuesMergeListener();
+ *     ValuesBatcher valuesBatcher = dataMovementManager.newValuesBatcher(valdef)
+ *         .withBatchSize(10000)
+ *         .withThreadCount(8)
+ *         .onSuccess(totals)
+ *         .onFailure(failure -> failure.printStackTrace());
+ *     JobTicket ticket = dataMovementManager.startJob(valuesBatcher);
+ *     valuesBatcher.awaitCompletion();
+ *     dataMovementManager.stopJob(ticket);
+ *     double sum = totals.getSum();
+ *}</pre>
+ */
+public interface ValuesBatcher extends Batcher {
+  /**
+   * The definition of the values read from each forest.
+   * @return the values definition
+   */
+  ValuesDefinition getValuesDefinition();
+
+  /**
+   * Adds a listener to process each batch of values from a forest.
+   * @param listener the listener for the batches
+   * @return this instance for method chaining
+   */
+  ValuesBatcher onSuccess(ValuesBatchSuccessListener listener);
+  /**
+   * Adds a listener to process each batch of the distinct values merged
+   * from every forest.  The batches are delivered in order by one thread.
+   * @param listener the listener for the merged batches
+   * @return this instance for method chaining
+   */
+  ValuesBatcher onSortedDistinct(ValuesBatchSuccessListener listener);
+  /**
+   * Adds a listener to process the failure to read the values of a forest.
+   * @param listener the listener for the failures
+   * @return this instance for method chaining
+   */
+  ValuesBatcher onFailure(ValuesBatchFailureListener listener);
+
+  ValuesBatchSuccessListener[] getSuccessListeners();
+  ValuesBatchSuccessListener[] getSortedDistinctListeners();
+  ValuesBatchFailureListener[] getFailureListeners();
+
+  @Override
+  ValuesBatcher withJobName(String jobName);
+  @Override
+  ValuesBatcher withJobId(String jobId);
+  @Override
+  ValuesBatcher withBatchSize(int batchSize);
+  @Override
+  ValuesBatcher withThreadCount(int threadCount);
+  @Override
+  ValuesBatcher withForestConfig(ForestConfiguration forestConfig);
+
+  /**
+   * Blocks until the job is complete.
+   *
+   * @return true if the job completed, false if the thread was interrupted
+   */
+  boolean awaitCompletion();
+  /**
+   * Blocks until the job is complete or the timeout elapses.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the time unit of the timeout argument
+   * @return true if the job completed, false if the timeout elapsed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement;
+
+/**
+ * <p>Combines the batches of a ValuesBatcher into the count, sum, minimum,
+ * and maximum of the values as the batches arrive, so the aggregates of a
+ * large lexicon can be computed without holding the values.  The listener
+ * is safe to share between the threads of the job.</p>
+ *
+ * <p>The count and sum weight each value by its frequency, so they are the
+ * same when the listener is passed to {@link ValuesBatcher#onSuccess
+ * onSuccess} or {@link ValuesBatcher#onSortedDistinct onSortedDistinct}.
+ * The value count is the number of distinct values only for the merged
+ * batches of onSortedDistinct because a value can be in more than one
+ * forest.</p>
+ *
+ * <p>The minimum and maximum are in the order of the type of the values,
+ * which is codepoint order for strings whatever the collation of the
+ * lexicon.</p>
+ */
+public class ValuesMergeListener implements ValuesBatchSuccessListener {
+  private String type;
+  private LexiconValueComparator comparator;
+  private long valueCount = 0;
+  private long count = 0;
+  private double sum = 0;
+  private String minimum;
+  private String maximum;
+
+  @Override
+  public synchronized void processEvent(ValuesBatchSuccessEvent batch) {
+    String[] values = batch.getValues();
+    long[] frequencies = batch.getFrequencies();
+    if ( values.length == 0 ) return;
+    if ( comparator == null ) {
+      type = batch.getType();
+      comparator = LexiconValueComparator.forType(type);
+    }
+    for ( int i=0; i < values.length; i++ ) {
+      count += frequencies[i];
+      if ( comparator.isNumeric() ) {
+        sum += comparator.toDouble(values[i]) * frequencies[i];
+      }
+    }
+    valueCount += values.length;
+    // the lexicon order of strings depends on the collation, so every value is compared
+    for ( String value : values ) {
+      if ( minimum == null || comparator.compare(value, minimum) < 0 ) minimum = value;
+      if ( maximum == null || comparator.compare(value, maximum) > 0 ) maximum = value;
+    }
+  }
+
+  /**
+   * The XSD type of the values.
+   * @return the type or null if no batch has been processed
+   */
+  public synchronized String getType() {
+    return type;
+  }
+  /**
+   * The number of values in the batches.
+   * @return the number of values
+   */
+  public synchronized long getValueCount() {
+    return valueCount;
+  }
+  /**
+   * The sum of the frequencies of the values, which is the count
+   * of the values in the documents.
+   * @return the count
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+  /**
+   * The sum of the values multiplied by their frequencies.
+   * @return the sum or 0 if the values aren't numeric
+   */
+  public synchronized double getSum() {
+    return sum;
+  }
+  /**
+   * The average of the values weighted by their frequencies.
+   * @return the average or NaN if there are no values
+   */
+  public synchronized double getAverage() {
+    return (count == 0) ? Double.NaN : sum / count;
+  }
+  /**
+   * The lowest value in the order of the type of the values.
+   * @return the minimum value or null if there are no values
+   */
+  public synchronized String getMinimum() {
+    return minimum;
+  }
+  /**
+   * The highest value in the order of the type of the values.
+   * @return the maximum value or null if there are no values
+   */
+  public synchronized String getMaximum() {
+    return maximum;
+  }
+}
@@ -18,6 +18,7 @@ package com.marklogic.client.datamovement;
 
 import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
+import com.marklogic.client.impl.XmlFactories;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.io.marker.XMLWriteHandle;
@@ -30,7 +31,6 @@ import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.util.StreamReaderDelegate;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.IOException;
@@ -181,9 +181,6 @@ public class XMLSplitter<T extends XMLWriteHandle> implements Splitter<T> {
      * @param <T> The type of the handle used for each split
      */
     static public abstract class Visitor<T extends XMLWriteHandle>   {
-        private TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        private Transformer transformer;
-
         /**
          * Use the methods in StartElementReader to check if the current element is the one to split.
          * @param startElementReader inspects the start element state
@@ -237,9 +234,7 @@ public class XMLSplitter<T extends XMLWriteHandle> implements Splitter<T> {
             }
 
             try {
-                if (transformer == null) {
-                    transformer = transformerFactory.newTransformer();
-                }
+                Transformer transformer = XmlFactories.getTransformer();
 
                 StAXSource stAXSrouce = new StAXSource(reader);
                 StringWriter stringWriter = new StringWriter();
@@ -247,7 +242,6 @@ public class XMLSplitter<T extends XMLWriteHandle> implements Splitter<T> {
                 transformer.transform(stAXSrouce, streamResult);
                 stringWriter.flush();
 
-                transformer.reset();
                 return stringWriter.toString();
             } catch (TransformerException e) {
                 throw new RuntimeException("Could not serialize the document", e);
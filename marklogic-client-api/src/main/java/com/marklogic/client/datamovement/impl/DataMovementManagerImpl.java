@@ -18,13 +18,16 @@ package com.marklogic.client.datamovement.impl;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.impl.DatabaseClientImpl;
+import com.marklogic.client.impl.HostBalancer;
 import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.query.RawCtsQueryDefinition;
 import com.marklogic.client.query.StringQueryDefinition;
 import com.marklogic.client.query.StructuredQueryDefinition;
 import com.marklogic.client.query.RawCombinedQueryDefinition;
 import com.marklogic.client.query.RawStructuredQueryDefinition;
+import com.marklogic.client.query.ValuesDefinition;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.ForestConfiguration;
 import com.marklogic.client.datamovement.Forest;
@@ -33,6 +36,8 @@ import com.marklogic.client.datamovement.Batcher;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.NoResponseListener;
 import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.RowBatcher;
+import com.marklogic.client.datamovement.ValuesBatcher;
 import com.marklogic.client.datamovement.WriteBatcher;
 import com.marklogic.client.datamovement.JobReport;
 
@@ -66,7 +71,12 @@ public class DataMovementManagerImpl implements DataMovementManager {
     } catch(Throwable e) {
     }
 
-    clientMap.put(primaryClient.getHost(), primaryClient);
+    // a job chooses the host of each request, so the primary client is used
+    // for its host only if it doesn't balance requests to other hosts
+    HostBalancer hostBalancer = ((DatabaseClientImpl) client).getServices().getHostBalancer();
+    if (hostBalancer == null || !hostBalancer.isEnabled()) {
+      clientMap.put(primaryClient.getHost(), primaryClient);
+    }
   }
 
   @Override
@@ -92,6 +102,18 @@ public class DataMovementManagerImpl implements DataMovementManager {
     return service.startJob(batcher, activeJobs);
   }
 
+  @Override
+  public JobTicket startJob(RowBatcher<?> batcher) {
+    if ( batcher == null ) throw new IllegalArgumentException("batcher must not be null");
+    return service.startJob(batcher, activeJobs);
+  }
+
+  @Override
+  public JobTicket startJob(ValuesBatcher batcher) {
+    if ( batcher == null ) throw new IllegalArgumentException("batcher must not be null");
+    return service.startJob(batcher, activeJobs);
+  }
+
   @Override
   public JobReport getJobReport(JobTicket ticket) {
     if ( ticket == null ) throw new IllegalArgumentException("ticket must not be null");
@@ -156,6 +178,18 @@ public class DataMovementManagerImpl implements DataMovementManager {
     return newQueryBatcher(new QueryBatcherImpl(iterator, this, getForestConfig()));
   }
 
+  @Override
+  public <T> RowBatcher<T> newRowBatcher(ContentHandle<T> rowsHandle) {
+    if ( rowsHandle == null ) throw new IllegalArgumentException("rowsHandle must not be null");
+    return new RowBatcherImpl<>(this, getForestConfig(), rowsHandle);
+  }
+
+  @Override
+  public ValuesBatcher newValuesBatcher(ValuesDefinition valdef) {
+    if ( valdef == null ) throw new IllegalArgumentException("valdef must not be null");
+    return new ValuesBatcherImpl(this, getForestConfig(), valdef);
+  }
+
   private QueryBatcher newQueryBatcher(QueryBatcherImpl batcher) {
     // add a default listener to handle host failover scenarios
     batcher.onQueryFailure(new HostAvailabilityListener(this));
@@ -202,6 +236,9 @@ public class DataMovementManagerImpl implements DataMovementManager {
               primaryClient.getDatabase(),
               primaryClient.getSecurityContext()
       );
+      // the job has chosen the host, so requests must not be balanced to other hosts
+      HostBalancer hostBalancer = ((DatabaseClientImpl) client).getServices().getHostBalancer();
+      if (hostBalancer != null) hostBalancer.setEnabled(false);
       clientMap.put(hostName, client);
     }
     return client;
@@ -28,6 +28,8 @@ import com.marklogic.client.datamovement.DataMovementException;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.JobTicket.JobType;
 import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.RowBatcher;
+import com.marklogic.client.datamovement.ValuesBatcher;
 import com.marklogic.client.datamovement.WriteBatcher;
 import com.marklogic.client.datamovement.JobReport;
 
@@ -84,6 +86,14 @@ public class DataMovementServices {
     return startJobImpl((QueryBatcherImpl) batcher, JobType.QUERY_BATCHER, activeJobs)
         .withQueryBatcher((QueryBatcherImpl) batcher);
   }
+  public JobTicket startJob(RowBatcher<?> batcher, ConcurrentHashMap<String, JobTicket> activeJobs) {
+    return startJobImpl((RowBatcherImpl<?>) batcher, JobType.ROW_BATCHER, activeJobs)
+        .withRowBatcher((RowBatcherImpl<?>) batcher);
+  }
+  public JobTicket startJob(ValuesBatcher batcher, ConcurrentHashMap<String, JobTicket> activeJobs) {
+    return startJobImpl((ValuesBatcherImpl) batcher, JobType.VALUES_BATCHER, activeJobs)
+        .withValuesBatcher((ValuesBatcherImpl) batcher);
+  }
 
   private JobTicketImpl startJobImpl(
           BatcherImpl batcher, JobTicket.JobType jobType, ConcurrentHashMap<String, JobTicket> activeJobs
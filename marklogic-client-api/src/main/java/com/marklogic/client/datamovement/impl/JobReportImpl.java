@@ -41,6 +41,10 @@ public class JobReportImpl implements JobReport {
         return new JobReportImpl((QueryBatcher) batcher);
       case WRITE_BATCHER:
         return new JobReportImpl((WriteBatcher) batcher);
+      case ROW_BATCHER:
+        return new JobReportImpl((RowBatcherImpl<?>) batcher);
+      case VALUES_BATCHER:
+        return new JobReportImpl((ValuesBatcherImpl) batcher);
       default:
         throw new InternalError("unknown job type: "+jobType.name());
     }
@@ -116,6 +120,28 @@ public class JobReportImpl implements JobReport {
     jobEndTime = batcher.getJobEndTime();
   }
 
+  public JobReportImpl(RowBatcherImpl<?> batcher) {
+    successBatchesCount = batcher.getSuccessBatchesCount();
+    failureBatchesCount = batcher.getFailureBatchesCount();
+    successEventsCount = successBatchesCount;
+    failureEventsCount = failureBatchesCount;
+    isJobComplete = batcher.isStopped();
+    reportTimestamp = Calendar.getInstance();
+    jobStartTime = batcher.getJobStartTime();
+    jobEndTime = batcher.getJobEndTime();
+  }
+
+  public JobReportImpl(ValuesBatcherImpl batcher) {
+    successBatchesCount = batcher.getSuccessBatchesCount();
+    failureBatchesCount = batcher.getFailureBatchesCount();
+    successEventsCount = batcher.getValuesCount();
+    failureEventsCount = failureBatchesCount;
+    isJobComplete = batcher.isStopped();
+    reportTimestamp = Calendar.getInstance();
+    jobStartTime = batcher.getJobStartTime();
+    jobEndTime = batcher.getJobEndTime();
+  }
+
   @Override
   public long getSuccessEventsCount() {
     return successEventsCount;
@@ -22,6 +22,8 @@ public class JobTicketImpl implements JobTicket {
   private JobType jobType;
   private QueryBatcherImpl queryBatcher;
   private WriteBatcherImpl writeBatcher;
+  private RowBatcherImpl<?> rowBatcher;
+  private ValuesBatcherImpl valuesBatcher;
 
   public JobTicketImpl(String jobId, JobType jobType) {
     this.jobId = jobId;
@@ -46,6 +48,8 @@ public class JobTicketImpl implements JobTicket {
     switch(jobType) {
       case QUERY_BATCHER: return getQueryBatcher();
       case WRITE_BATCHER: return getWriteBatcher();
+      case ROW_BATCHER:   return getRowBatcher();
+      case VALUES_BATCHER: return getValuesBatcher();
       default:
         throw new InternalError("unknown job type: "+jobType.name());
     }
@@ -59,6 +63,14 @@ public class JobTicketImpl implements JobTicket {
     return writeBatcher;
   }
 
+  public RowBatcherImpl<?> getRowBatcher() {
+    return rowBatcher;
+  }
+
+  public ValuesBatcherImpl getValuesBatcher() {
+    return valuesBatcher;
+  }
+
   public JobTicketImpl withQueryBatcher(QueryBatcherImpl queryBatcher) {
     this.queryBatcher = queryBatcher;
     return this;
@@ -67,4 +79,12 @@ public class JobTicketImpl implements JobTicket {
     this.writeBatcher = writeBatcher;
     return this;
   }
+  public JobTicketImpl withRowBatcher(RowBatcherImpl<?> rowBatcher) {
+    this.rowBatcher = rowBatcher;
+    return this;
+  }
+  public JobTicketImpl withValuesBatcher(ValuesBatcherImpl valuesBatcher) {
+    this.valuesBatcher = valuesBatcher;
+    return this;
+  }
 }
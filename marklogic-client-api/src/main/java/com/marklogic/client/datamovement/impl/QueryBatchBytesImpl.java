@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Calendar;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.QueryBatchBytes;
+import com.marklogic.client.datamovement.QueryBatcher;
+
+/**
+ * The bytes of a page of uris with the context of the batch, which has
+ * the last uri for the forest but no items unless the uris were decoded
+ * for onUrisReady listeners.
+ */
+public class QueryBatchBytesImpl implements QueryBatchBytes {
+  private final QueryBatchImpl batch;
+  private final byte[]         uriBytes;
+  private final int            uriCount;
+
+  public QueryBatchBytesImpl(QueryBatchImpl batch, byte[] uriBytes, int uriCount) {
+    this.batch    = batch;
+    this.uriBytes = uriBytes;
+    this.uriCount = uriCount;
+  }
+
+  @Override
+  public ByteBuffer getUriBytes() {
+    return ByteBuffer.wrap(uriBytes).asReadOnlyBuffer();
+  }
+  @Override
+  public int getUriCount() {
+    return uriCount;
+  }
+  @Override
+  public long getServerTimestamp() {
+    return batch.getServerTimestamp();
+  }
+
+  @Override
+  public QueryBatcher getBatcher() {
+    return batch.getBatcher();
+  }
+  @Override
+  public DatabaseClient getClient() {
+    return batch.getClient();
+  }
+  @Override
+  public Calendar getTimestamp() {
+    return batch.getTimestamp();
+  }
+  @Override
+  public long getJobBatchNumber() {
+    return batch.getJobBatchNumber();
+  }
+  @Override
+  public long getJobResultsSoFar() {
+    return batch.getJobResultsSoFar();
+  }
+  @Override
+  public long getForestBatchNumber() {
+    return batch.getForestBatchNumber();
+  }
+  @Override
+  public long getForestResultsSoFar() {
+    return batch.getForestResultsSoFar();
+  }
+  @Override
+  public String getLastUriForForest() {
+    return batch.getLastUriForForest();
+  }
+  @Override
+  public Forest getForest() {
+    return batch.getForest();
+  }
+  @Override
+  public JobTicket getJobTicket() {
+    return batch.getJobTicket();
+  }
+}
@@ -32,6 +32,8 @@ public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
   private long forestResultsSoFar;
   private Forest forest;
   private long serverTimestamp;
+  private String lastUriForForest;
+  private int uriCount = -1;
 
   public QueryBatchImpl() {
     super(String.class);
@@ -114,6 +116,9 @@ public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
 
   @Override
   public String getLastUriForForest() {
+    if (lastUriForForest != null) {
+      return lastUriForForest;
+    }
     String[] items = getItems();
     if (items == null || items.length == 0) {
       return null;
@@ -121,6 +126,25 @@ public class QueryBatchImpl extends BatchImpl<String> implements QueryBatch {
     return items[items.length - 1];
   }
 
+  public QueryBatchImpl withLastUriForForest(String lastUriForForest) {
+    this.lastUriForForest = lastUriForForest;
+    return this;
+  }
+
+  // the number of uris in the batch, which may not have been decoded as items
+  public int getUriCount() {
+    if (uriCount >= 0) {
+      return uriCount;
+    }
+    String[] items = getItems();
+    return (items == null) ? 0 : items.length;
+  }
+
+  public QueryBatchImpl withUriCount(int uriCount) {
+    this.uriCount = uriCount;
+    return this;
+  }
+
   public QueryBatchImpl withForestResultsSoFar(long forestResultsSoFar) {
     this.forestResultsSoFar = forestResultsSoFar;
     return this;
@@ -17,6 +17,7 @@ package com.marklogic.client.datamovement.impl;
 
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatchBytesListener;
 import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.DataMovementException;
 import com.marklogic.client.datamovement.QueryFailureListener;
@@ -39,8 +40,11 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.ResourceNotFoundException;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.impl.QueryManagerImpl;
+import com.marklogic.client.impl.SerializedQueryDefinition;
+import com.marklogic.client.impl.UrisBytesHandle;
 import com.marklogic.client.impl.UrisHandle;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -61,6 +65,7 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
   private Iterator<String> iterator;
   private boolean threadCountSet = false;
   private List<QueryBatchListener> urisReadyListeners = new ArrayList<>();
+  private List<QueryBatchBytesListener> urisBytesReadyListeners = new ArrayList<>();
   private List<QueryFailureListener> failureListeners = new ArrayList<>();
   private List<QueryBatcherListener> jobCompletionListeners = new ArrayList<>();
   private QueryThreadPoolExecutor threadPool;
@@ -125,6 +130,13 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     return this;
   }
 
+  @Override
+  public QueryBatcherImpl onUrisBytesReady(QueryBatchBytesListener listener) {
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    urisBytesReadyListeners.add(listener);
+    return this;
+  }
+
   @Override
   public QueryBatcherImpl onQueryFailure(QueryFailureListener listener) {
     if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
@@ -228,6 +240,20 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     return urisReadyListeners.toArray(new QueryBatchListener[urisReadyListeners.size()]);
   }
 
+  // the job report listener only counts the uris, so the uris are decoded
+  // only for the listeners added by the application
+  private boolean hasDecodingListeners() {
+    for ( QueryBatchListener listener : urisReadyListeners ) {
+      if ( !(listener instanceof QueryJobReportListener) ) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public QueryBatchBytesListener[] getUrisBytesReadyListeners() {
+    return urisBytesReadyListeners.toArray(new QueryBatchBytesListener[urisBytesReadyListeners.size()]);
+  }
+
   @Override
   public QueryFailureListener[] getQueryFailureListeners() {
     return failureListeners.toArray(new QueryFailureListener[failureListeners.size()]);
@@ -347,17 +373,28 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       withBatchSize(1);
       logger.warn("batchSize should be 1 or greater--setting batchSize to 1");
     }
+    if ( query == null && urisBytesReadyListeners.size() > 0 ) {
+      throw new IllegalStateException("onUrisBytesReady listeners require a job based on a query");
+    }
     jobTicket = ticket;
     initialize();
     for (QueryBatchListener urisReadyListener : urisReadyListeners) {
       urisReadyListener.initializeListener(this);
     }
+    for (QueryBatchBytesListener urisBytesReadyListener : urisBytesReadyListeners) {
+      urisBytesReadyListener.initializeListener(this);
+    }
     jobStartTime = Calendar.getInstance();
     started.set(true);
     if(this.maxBatches < Long.MAX_VALUE) {
     	setMaxUris(getMaxBatches());
     }
     if ( query != null ) {
+      // serialize the query once for the requests for every page of every forest
+      query = SerializedQueryDefinition.serialize(query);
+      if ( query instanceof SerializedQueryDefinition ) {
+        logger.debug("Querying uris with serialized query {}", query);
+      }
       startQuerying();
     } else {
       startIterating();
@@ -384,8 +421,8 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     if(getThreadCount() == 1) {
       isSingleThreaded = true;
     }
-    logger.info("Starting job batchSize={}, threadCount={}, onUrisReady listeners={}, failure listeners={}",
-      getBatchSize(), getThreadCount(), urisReadyListeners.size(), failureListeners.size());
+    logger.info("Starting job batchSize={}, threadCount={}, onUrisReady listeners={}, onUrisBytesReady listeners={}, failure listeners={}",
+      getBatchSize(), getThreadCount(), urisReadyListeners.size(), urisBytesReadyListeners.size(), failureListeners.size());
     threadPool = new QueryThreadPoolExecutor(getThreadCount(), this);
   }
 
@@ -636,48 +673,33 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
         if ( consistentSnapshot == true && serverTimestamp.get() > -1 ) {
           handle.setPointInTimeQueryTimestamp(serverTimestamp.get());
         }
-        // this try-with-resources block will call results.close() once the block is done
         // here we call the /v1/internal/uris endpoint to get the text/uri-list of documents
         // matching this structured or string query
-        try ( UrisHandle results = queryMgr.uris(query, handle, start, afterUri, null, forest.getForestName()) ) {
-          // if we're doing consistentSnapshot and this is the first result set, let's capture the
-          // serverTimestamp so we can use it for all future queries
-          if ( consistentSnapshot == true && serverTimestamp.get() == -1 ) {
-            serverTimestamp.set(results.getServerTimestamp());
-            logger.info("Consistent snapshot timestamp=[{}]", serverTimestamp);
-          }
-          List<String> uris = new ArrayList<>();
-          for ( String uri : results ) {
-            uris.add( uri );
+        if ( urisBytesReadyListeners.size() > 0 ) {
+          // the bytes of the text/uri-list are passed through, so the uris are
+          // decoded only if there are also onUrisReady listeners
+          UrisBytesHandle bytesHandle = new UrisBytesHandle();
+          if ( consistentSnapshot == true && serverTimestamp.get() > -1 ) {
+            bytesHandle.setPointInTimeQueryTimestamp(serverTimestamp.get());
           }
-          
-          batch = batch
-            .withItems(uris.toArray(new String[uris.size()]))
-            .withServerTimestamp(serverTimestamp.get())
-            .withJobResultsSoFar(resultsSoFar.addAndGet(uris.size()))
-            .withForestResultsSoFar(forestResults.get(forest).addAndGet(uris.size()));
-          
-          if(maxUris <= (resultsSoFar.longValue())) {
-              isDone.set(true);
-          } else if ( uris.size() == getBatchSize() ) {
-              nextAfterUri = uris.get(getBatchSize() - 1);
-              // this is a full batch
-              launchNextTask();
-            }
-
-          logger.trace("batch size={}, jobBatchNumber={}, jobResultsSoFar={}, forest={}", uris.size(),
-            batch.getJobBatchNumber(), batch.getJobResultsSoFar(), forest.getForestName());
-          // now that we have the QueryBatch, let's send it to each onUrisReady listener
-          for (QueryBatchListener listener : urisReadyListeners) {
-            try {
-              listener.processEvent(batch);
-            } catch (Throwable t) {
-              logger.error("Exception thrown by an onUrisReady listener", t);
+          UrisBytesHandle results = queryMgr.uris(query, bytesHandle, start, afterUri, null, forest.getForestName());
+          captureServerTimestamp(results.getServerTimestamp());
+          byte[] uriBytes = results.get();
+          if ( uriBytes == null ) uriBytes = new byte[0];
+          UriLines lines = new UriLines(uriBytes);
+          batch = batch.withLastUriForForest(lines.getLastUri()).withUriCount(lines.getCount());
+          batch = batch.withItems(hasDecodingListeners() ? lines.decode() : new String[0]);
+          processPage(batch, isDone, lines.getCount(), lines.getLastUri(), new QueryBatchBytesImpl(batch, uriBytes, lines.getCount()));
+        } else {
+          // this try-with-resources block will call results.close() once the block is done
+          try ( UrisHandle results = queryMgr.uris(query, handle, start, afterUri, null, forest.getForestName()) ) {
+            captureServerTimestamp(results.getServerTimestamp());
+            List<String> uris = new ArrayList<>();
+            for ( String uri : results ) {
+              uris.add( uri );
             }
-          }
-          if ( uris.size() != getBatchSize() ) {
-            // we're done if we get a partial batch (always the last)
-            isDone.set(true);
+            batch = batch.withItems(uris.toArray(new String[uris.size()]));
+            processPage(batch, isDone, uris.size(), (uris.size() == 0) ? null : uris.get(uris.size() - 1), null);
           }
         }
       } catch (ResourceNotFoundException e) {
@@ -714,6 +736,55 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
       }
     }
 
+    private void captureServerTimestamp(long timestamp) {
+      // if we're doing consistentSnapshot and this is the first result set, let's capture the
+      // serverTimestamp so we can use it for all future queries
+      if ( consistentSnapshot == true && serverTimestamp.get() == -1 ) {
+        serverTimestamp.set(timestamp);
+        logger.info("Consistent snapshot timestamp=[{}]", serverTimestamp);
+      }
+    }
+
+    private void processPage(QueryBatchImpl batch, AtomicBoolean isDone, int uriCount, String lastUri,
+                             QueryBatchBytesImpl bytesBatch) {
+      batch
+        .withServerTimestamp(serverTimestamp.get())
+        .withJobResultsSoFar(resultsSoFar.addAndGet(uriCount))
+        .withForestResultsSoFar(forestResults.get(forest).addAndGet(uriCount));
+
+      if(maxUris <= (resultsSoFar.longValue())) {
+          isDone.set(true);
+      } else if ( uriCount == getBatchSize() ) {
+          nextAfterUri = lastUri;
+          // this is a full batch
+          launchNextTask();
+        }
+
+      logger.trace("batch size={}, jobBatchNumber={}, jobResultsSoFar={}, forest={}", uriCount,
+        batch.getJobBatchNumber(), batch.getJobResultsSoFar(), forest.getForestName());
+      // now that we have the QueryBatch, let's send it to each onUrisReady listener
+      for (QueryBatchListener listener : urisReadyListeners) {
+        try {
+          listener.processEvent(batch);
+        } catch (Throwable t) {
+          logger.error("Exception thrown by an onUrisReady listener", t);
+        }
+      }
+      if ( bytesBatch != null ) {
+        for (QueryBatchBytesListener listener : urisBytesReadyListeners) {
+          try {
+            listener.processEvent(bytesBatch);
+          } catch (Throwable t) {
+            logger.error("Exception thrown by an onUrisBytesReady listener", t);
+          }
+        }
+      }
+      if ( uriCount != getBatchSize() ) {
+        // we're done if we get a partial batch (always the last)
+        isDone.set(true);
+      }
+    }
+
     private void launchNextTask() {
       if ( stopped.get() == true ) {
         // we're stopping, so don't do anything more
@@ -730,6 +801,58 @@ public class QueryBatcherImpl extends BatcherImpl implements QueryBatcher {
     }
   };
 
+  /**
+   * Counts the lines of a text/uri-list page and decodes only the last line
+   * unless all of the uris are needed.
+   */
+  static class UriLines {
+    private final byte[] bytes;
+    private final int    count;
+    private final int    lastStart;
+    private final int    lastEnd;
+
+    UriLines(byte[] bytes) {
+      this.bytes = bytes;
+      int end = bytes.length;
+      while ( end > 0 && (bytes[end - 1] == '\n' || bytes[end - 1] == '\r') ) {
+        end--;
+      }
+      int lines = 0;
+      int start = 0;
+      for ( int i = 0; i < end; i++ ) {
+        if ( bytes[i] == '\n' ) {
+          lines++;
+          start = i + 1;
+        }
+      }
+      this.count     = (end == 0) ? 0 : lines + 1;
+      this.lastStart = start;
+      this.lastEnd   = end;
+    }
+
+    int getCount() {
+      return count;
+    }
+    String getLastUri() {
+      if ( count == 0 ) return null;
+      return new String(bytes, lastStart, lastEnd - lastStart, StandardCharsets.UTF_8);
+    }
+    String[] decode() {
+      String[] uris = new String[count];
+      int start = 0;
+      for ( int i = 0; i < count; i++ ) {
+        int end = start;
+        while ( end < lastEnd && bytes[end] != '\n' ) {
+          end++;
+        }
+        int length = (end > start && bytes[end - 1] == '\r') ? end - start - 1 : end - start;
+        uris[i] = new String(bytes, start, length, StandardCharsets.UTF_8);
+        start = end + 1;
+      }
+      return uris;
+    }
+  }
+
   private void shutdownIfAllForestsAreDone() {
     for ( AtomicBoolean isDone : forestIsDone.values() ) {
       // if even one isn't done, short-circuit out of this method and don't shutdown
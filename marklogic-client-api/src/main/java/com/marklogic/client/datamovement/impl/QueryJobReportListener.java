@@ -34,7 +34,9 @@ public class QueryJobReportListener extends JobReportListener implements  QueryB
     successBatchesCount.incrementAndGet();
 
     // Get the number of documents that have been read successfully
-    successEventsCount.addAndGet(batch.getItems().length);
+    // (the uris of a batch are counted without decoding them)
+    successEventsCount.addAndGet((batch instanceof QueryBatchImpl) ?
+      ((QueryBatchImpl) batch).getUriCount() : batch.getItems().length);
   }
 
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.datamovement.RowBatchSuccessEvent;
+import com.marklogic.client.datamovement.RowBatcher;
+
+public class RowBatchEventImpl<T> extends BatchEventImpl implements RowBatchSuccessEvent<T> {
+  private RowBatcher<T> batcher;
+  private long lowerBound;
+  private long upperBound;
+  private boolean isNullKey = false;
+  private long serverTimestamp = -1;
+  private T rowsDoc;
+
+  public RowBatchEventImpl(RowBatcher<T> batcher, long lowerBound, long upperBound) {
+    super();
+    this.batcher = batcher;
+    this.lowerBound = lowerBound;
+    this.upperBound = upperBound;
+  }
+
+  @Override
+  public RowBatcher<T> getBatcher() {
+    return batcher;
+  }
+
+  @Override
+  public long getLowerBound() {
+    return lowerBound;
+  }
+
+  @Override
+  public long getUpperBound() {
+    return upperBound;
+  }
+
+  @Override
+  public boolean isNullKey() {
+    return isNullKey;
+  }
+
+  public RowBatchEventImpl<T> withNullKey(boolean isNullKey) {
+    this.isNullKey = isNullKey;
+    return this;
+  }
+
+  @Override
+  public long getServerTimestamp() {
+    return serverTimestamp;
+  }
+
+  public RowBatchEventImpl<T> withServerTimestamp(long serverTimestamp) {
+    this.serverTimestamp = serverTimestamp;
+    return this;
+  }
+
+  @Override
+  public T getRowsDoc() {
+    return rowsDoc;
+  }
+
+  public RowBatchEventImpl<T> withRowsDoc(T rowsDoc) {
+    this.rowsDoc = rowsDoc;
+    return this;
+  }
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.lang.reflect.Constructor;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import javax.net.ssl.SSLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementException;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.ForestConfiguration;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.RowBatchException;
+import com.marklogic.client.datamovement.RowBatchFailureListener;
+import com.marklogic.client.datamovement.RowBatchSuccessListener;
+import com.marklogic.client.datamovement.RowBatcher;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.impl.HandleAccessor;
+import com.marklogic.client.impl.HandleImplementation;
+import com.marklogic.client.io.JacksonHandle;
+import com.marklogic.client.io.marker.ContentHandle;
+import com.marklogic.client.io.marker.StructureReadHandle;
+import com.marklogic.client.row.RowManager;
+import com.marklogic.client.type.PlanExprColSeq;
+
+/* The RowBatcher partitions the rows of the view plan into ranges of the
+ * partition column.  The ranges come from the minimum, maximum, and count of
+ * the partition column, which are read (at the snapshot timestamp, if any)
+ * before any batch.  Each range is a task that binds the bounds of the range
+ * as parameters of the same partition plan, so the plan is only built once.
+ * Rows with a null partition value are read by one more batch after the
+ * ranges.  Each thread takes the next range when it finishes a batch.
+ * Tasks rotate through the clients for the hosts of the forest configuration
+ * and fail over to the other hosts if a host is unavailable.
+ */
+public class RowBatcherImpl<T> extends BatcherImpl implements RowBatcher<T> {
+  private static Logger logger = LoggerFactory.getLogger(RowBatcherImpl.class);
+
+  static final private String LOWER_BOUND = "ML_LOWER_BOUND";
+  static final private String UPPER_BOUND = "ML_UPPER_BOUND";
+
+  private ContentHandle<T> rowsHandle;
+  private Constructor<?> handleConstructor;
+  private RowManager rowMgr;
+  private PlanBuilder.ModifyPlan viewPlan;
+  private String partitionColumn;
+  private boolean consistentSnapshot = false;
+  private boolean threadCountSet = false;
+  private List<RowBatchSuccessListener<T>> successListeners = new ArrayList<>();
+  private List<RowBatchFailureListener> failureListeners = new ArrayList<>();
+  private ThreadPoolExecutor threadPool;
+  private final AtomicReference<List<DatabaseClient>> clientList = new AtomicReference<>();
+  private final Map<DatabaseClient,RowManager> hostRowMgrs = new ConcurrentHashMap<>();
+  private final AtomicLong batchNumber = new AtomicLong(0);
+  private final AtomicLong successBatches = new AtomicLong(0);
+  private final AtomicLong failureBatches = new AtomicLong(0);
+  private long serverTimestamp = -1;
+  private long rowEstimate = -1;
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+  private final AtomicBoolean started = new AtomicBoolean(false);
+  private RangeIterator ranges;
+  private JobTicket jobTicket;
+  private Calendar jobStartTime;
+  private Calendar jobEndTime;
+
+  public RowBatcherImpl(DataMovementManager moveMgr, ForestConfiguration forestConfig, ContentHandle<T> rowsHandle) {
+    super(moveMgr);
+    if (!(rowsHandle instanceof StructureReadHandle)) {
+      throw new IllegalArgumentException("rowsHandle must be a StructureReadHandle");
+    }
+    try {
+      handleConstructor = rowsHandle.getClass().getConstructor();
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(
+        "rowsHandle must have a public constructor without arguments: "+rowsHandle.getClass().getName());
+    }
+    this.rowsHandle = rowsHandle;
+    this.rowMgr = getPrimaryClient().newRowManager();
+    withForestConfig(forestConfig);
+    withBatchSize(1000);
+  }
+
+  @Override
+  public RowManager getRowManager() {
+    return rowMgr;
+  }
+
+  @Override
+  public RowBatcher<T> withBatchView(PlanBuilder.ModifyPlan viewPlan) {
+    requireNotStarted();
+    if ( viewPlan == null ) throw new IllegalArgumentException("viewPlan must not be null");
+    this.viewPlan = viewPlan;
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> withPartitionColumn(String column) {
+    requireNotStarted();
+    if ( column == null || column.length() == 0 ) throw new IllegalArgumentException("column must not be empty");
+    this.partitionColumn = column;
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> withConsistentSnapshot() {
+    requireNotStarted();
+    consistentSnapshot = true;
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> onSuccess(RowBatchSuccessListener<T> listener) {
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    successListeners.add(listener);
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> onFailure(RowBatchFailureListener listener) {
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    failureListeners.add(listener);
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public RowBatchSuccessListener<T>[] getSuccessListeners() {
+    return (RowBatchSuccessListener<T>[]) successListeners.toArray(new RowBatchSuccessListener<?>[successListeners.size()]);
+  }
+
+  @Override
+  public RowBatchFailureListener[] getFailureListeners() {
+    return failureListeners.toArray(new RowBatchFailureListener[failureListeners.size()]);
+  }
+
+  @Override
+  public RowBatcher<T> withJobName(String jobName) {
+    requireNotStarted();
+    super.withJobName(jobName);
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> withJobId(String jobId) {
+    requireNotStarted();
+    setJobId(jobId);
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> withBatchSize(int batchSize) {
+    requireNotStarted();
+    super.withBatchSize(batchSize);
+    return this;
+  }
+
+  @Override
+  public RowBatcher<T> withThreadCount(int threadCount) {
+    requireNotStarted();
+    super.withThreadCount(threadCount);
+    threadCountSet = true;
+    return this;
+  }
+
+  /* As with the QueryBatcher, a listener such as HostAvailabilityListener can
+   * provide a new ForestConfiguration mid-job.  Tasks get the list of clients
+   * when they run, so queued tasks switch to the new hosts.
+   */
+  @Override
+  public synchronized RowBatcher<T> withForestConfig(ForestConfiguration forestConfig) {
+    super.withForestConfig(forestConfig);
+    List<DatabaseClient> newClientList = clients(hosts(forests(forestConfig)))
+      .stream()
+      .distinct()
+      .collect(Collectors.toList());
+    logger.info("(withForestConfig) Using {} hosts for rows", newClientList.size());
+    clientList.set(newClientList);
+    return this;
+  }
+
+  @Override
+  public long getRowEstimate() {
+    return rowEstimate;
+  }
+
+  @Override
+  public long getServerTimestamp() {
+    return serverTimestamp;
+  }
+
+  long getSuccessBatchesCount() {
+    return successBatches.get();
+  }
+  long getFailureBatchesCount() {
+    return failureBatches.get();
+  }
+
+  @Override
+  public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    requireJobStarted();
+    return threadPool.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public boolean awaitCompletion() {
+    try {
+      return awaitCompletion(Long.MAX_VALUE, TimeUnit.DAYS);
+    } catch(InterruptedException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean isStopped() {
+    return threadPool != null && threadPool.isTerminated();
+  }
+
+  @Override
+  public boolean isStarted() {
+    return started.get();
+  }
+
+  @Override
+  public JobTicket getJobTicket() {
+    requireJobStarted();
+    return jobTicket;
+  }
+
+  @Override
+  public Calendar getJobStartTime() {
+    return isStarted() ? jobStartTime : null;
+  }
+
+  @Override
+  public Calendar getJobEndTime() {
+    return isStopped() ? jobEndTime : null;
+  }
+
+  private void requireJobStarted() {
+    if ( threadPool == null ) {
+      throw new IllegalStateException("Job not started. First call DataMovementManager.startJob(RowBatcher)");
+    }
+  }
+
+  private void requireNotStarted() {
+    if ( threadPool != null ) {
+      throw new IllegalStateException("Configuration cannot be changed after startJob has been called");
+    }
+  }
+
+  @Override
+  public synchronized void start(JobTicket ticket) {
+    if ( threadPool != null ) {
+      logger.warn("startJob called more than once");
+      return;
+    }
+    if ( viewPlan == null ) {
+      throw new IllegalStateException("Must specify a view plan with withBatchView()");
+    }
+    if ( partitionColumn == null ) {
+      throw new IllegalStateException("Must specify a partition column with withPartitionColumn()");
+    }
+    jobTicket = ticket;
+    if ( threadCountSet == false ) {
+      int hostCount = clientList.get().size();
+      logger.warn("threadCount not set--defaulting to number of hosts ({})", hostCount);
+      super.withThreadCount(hostCount);
+    }
+
+    // read the bounds first so the server timestamp is known before any batch
+    // (with the default styles because the configured styles are for the batches)
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    JacksonHandle statsHandle = getPrimaryClient().newRowManager().resultDoc(
+      viewPlan.groupBy((PlanExprColSeq) null, p.aggregateSeq(
+        p.min("minKey", partitionColumn), p.max("maxKey", partitionColumn),
+        p.count("keyCount", partitionColumn), p.count("rowCount")
+      )),
+      new JacksonHandle()
+    );
+    if ( consistentSnapshot == true ) {
+      serverTimestamp = statsHandle.getServerTimestamp();
+      if ( serverTimestamp == -1 ) {
+        logger.warn("Server did not report a timestamp, so batches are not a consistent snapshot");
+      } else {
+        logger.info("Consistent snapshot timestamp=[{}]", serverTimestamp);
+      }
+    }
+    JsonNode stats = statsHandle.get().path("rows").path(0);
+    rowEstimate = getStat(stats, "keyCount");
+    long nullKeys = getStat(stats, "rowCount") - rowEstimate;
+    if ( nullKeys > 0 ) {
+      logger.info("Exporting {} rows with a null value for partition column {} in one batch", nullKeys, partitionColumn);
+    }
+
+    logger.info("Starting job batchSize={}, threadCount={}, rowEstimate={}, onSuccess listeners={}, failure listeners={}",
+      getBatchSize(), getThreadCount(), rowEstimate, successListeners.size(), failureListeners.size());
+    threadPool = new ThreadPoolExecutor(getThreadCount(), getThreadCount(), 0, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<Runnable>()) {
+      @Override
+      protected void terminated() {
+        super.terminated();
+        if ( jobEndTime == null ) jobEndTime = Calendar.getInstance();
+      }
+    };
+    jobStartTime = Calendar.getInstance();
+    started.set(true);
+
+    PlanBuilder.Plan partitionPlan = null;
+    long minKey = 0;
+    long maxKey = 0;
+    if ( rowEstimate > 0 ) {
+      partitionPlan = viewPlan.where(p.and(
+        p.ge(p.col(partitionColumn), p.param(LOWER_BOUND)),
+        p.le(p.col(partitionColumn), p.param(UPPER_BOUND))
+      ));
+      minKey = getStat(stats, "minKey");
+      maxKey = getStat(stats, "maxKey");
+    }
+    PlanBuilder.Plan nullKeyPlan = (nullKeys > 0) ?
+      viewPlan.where(p.not(p.isDefined(p.col(partitionColumn)))) : null;
+    ranges = new RangeIterator(partitionPlan, minKey, maxKey, nullKeyPlan);
+
+    // each thread takes the next range when it finishes a batch, so ranges
+    // are only created as fast as they are read
+    for ( int i=0; i < getThreadCount(); i++ ) {
+      threadPool.execute(new RangeWorker());
+    }
+    // the executor finishes the workers and then terminates
+    threadPool.shutdown();
+  }
+
+  private long getStat(JsonNode stats, String name) {
+    JsonNode stat = stats.path(name);
+    // the value is a binding object unless the datatype style is header
+    if ( stat.isObject() ) stat = stat.path("value");
+    if ( stat.isIntegralNumber() || stat.isTextual() ) {
+      try {
+        return Long.parseLong(stat.asText());
+      } catch (NumberFormatException e) {
+      }
+    }
+    throw new DataMovementException(
+      "Could not read the "+name+" of partition column "+partitionColumn+" as an integer: "+stat, null);
+  }
+
+  /* Hands out the ranges of the partition column one at a time, followed by
+   * the batch for the rows with a null partition key (if any).
+   */
+  private class RangeIterator {
+    private final PlanBuilder.Plan partitionPlan;
+    private final PlanBuilder.Plan nullKeyPlan;
+    private final long maxKey;
+    private final long span;
+    private long lowerBound;
+    private boolean rangesDone;
+    private boolean nullKeyDone;
+
+    RangeIterator(PlanBuilder.Plan partitionPlan, long minKey, long maxKey, PlanBuilder.Plan nullKeyPlan) {
+      this.partitionPlan = partitionPlan;
+      this.nullKeyPlan = nullKeyPlan;
+      this.maxKey = maxKey;
+      long rangeCount = Math.max(getThreadCount(), (rowEstimate + getBatchSize() - 1) / getBatchSize());
+      this.span = Math.max(1, (long) Math.ceil(((double) maxKey - (double) minKey + 1) / rangeCount));
+      this.lowerBound = minKey;
+      this.rangesDone = (partitionPlan == null);
+      this.nullKeyDone = (nullKeyPlan == null);
+    }
+
+    synchronized boolean hasNext() {
+      return !rangesDone || !nullKeyDone;
+    }
+
+    synchronized RangeTask next() {
+      if ( !rangesDone ) {
+        // unsigned comparison because the difference can exceed the signed range
+        rangesDone = Long.compareUnsigned(maxKey - lowerBound, span) < 0;
+        long upperBound = rangesDone ? maxKey : lowerBound + span - 1;
+        RangeTask task = new RangeTask(partitionPlan, lowerBound, upperBound, false);
+        if ( !rangesDone ) lowerBound = upperBound + 1;
+        return task;
+      }
+      if ( !nullKeyDone ) {
+        nullKeyDone = true;
+        return new RangeTask(nullKeyPlan, 0, 0, true);
+      }
+      return null;
+    }
+  }
+
+  private class RangeWorker implements Runnable {
+    @Override
+    public void run() {
+      for ( RangeTask task = ranges.next(); task != null; task = ranges.next() ) {
+        if ( stopped.get() == true ) {
+          logger.warn("Cancelling task for rows from {} to {} after the job is stopped",
+            task.lowerBound, task.upperBound);
+          return;
+        }
+        task.run();
+      }
+    }
+  }
+
+  private class RangeTask implements Runnable {
+    private PlanBuilder.Plan partitionPlan;
+    private long lowerBound;
+    private long upperBound;
+    private boolean isNullKey;
+
+    RangeTask(PlanBuilder.Plan partitionPlan, long lowerBound, long upperBound, boolean isNullKey) {
+      this.partitionPlan = partitionPlan;
+      this.lowerBound = lowerBound;
+      this.upperBound = upperBound;
+      this.isNullKey = isNullKey;
+    }
+
+    @Override
+    public void run() {
+      long jobBatchNumber = batchNumber.incrementAndGet();
+      PlanBuilder.Plan plan = isNullKey ? partitionPlan : partitionPlan
+        .bindParam(LOWER_BOUND, lowerBound)
+        .bindParam(UPPER_BOUND, upperBound);
+
+      List<DatabaseClient> clients = clientList.get();
+      int firstClient = (int) (jobBatchNumber % clients.size());
+      DatabaseClient client = null;
+      Throwable failure = null;
+      for ( int i=0; i < clients.size(); i++ ) {
+        client = clients.get((firstClient + i) % clients.size());
+        RowBatchEventImpl<T> batch = newBatch(client, jobBatchNumber);
+        ContentHandle<T> handle;
+        try {
+          handle = newRowsHandle();
+          getHostRowManager(client).resultDoc(plan, (StructureReadHandle) handle);
+        } catch (Throwable t) {
+          failure = t;
+          if ( !isHostUnavailable(t) || stopped.get() == true ) break;
+          logger.warn("Failed to read rows from {} to {} on host {}, failing over: {}",
+            lowerBound, upperBound, client.getHost(), t.toString());
+          continue;
+        }
+        successBatches.incrementAndGet();
+        batch.withRowsDoc(handle.get());
+        for ( RowBatchSuccessListener<T> listener : successListeners ) {
+          try {
+            listener.processEvent(batch);
+          } catch (Throwable t) {
+            logger.error("Exception thrown by an onSuccess listener", t);
+          }
+        }
+        return;
+      }
+
+      failureBatches.incrementAndGet();
+      RowBatchException exception = new RowBatchException(newBatch(client, jobBatchNumber), failure);
+      for ( RowBatchFailureListener listener : failureListeners ) {
+        try {
+          listener.processFailure(exception);
+        } catch (Throwable t) {
+          logger.error("Exception thrown by an onFailure listener", t);
+        }
+      }
+    }
+
+    private RowBatchEventImpl<T> newBatch(DatabaseClient client, long jobBatchNumber) {
+      RowBatchEventImpl<T> batch = new RowBatchEventImpl<>(RowBatcherImpl.this, lowerBound, upperBound)
+        .withNullKey(isNullKey)
+        .withServerTimestamp(serverTimestamp);
+      batch.withClient(client)
+        .withJobBatchNumber(jobBatchNumber)
+        .withJobTicket(jobTicket);
+      return batch;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private ContentHandle<T> newRowsHandle() throws ReflectiveOperationException {
+    ContentHandle<T> handle = (ContentHandle<T>) handleConstructor.newInstance();
+    HandleImplementation<?,?> template = HandleAccessor.as(rowsHandle);
+    HandleImplementation<?,?> handleBase = HandleAccessor.as(handle);
+    handleBase.setFormat(template.getFormat());
+    handleBase.setMimetype(template.getMimetype());
+    if ( serverTimestamp != -1 ) {
+      handleBase.setPointInTimeQueryTimestamp(serverTimestamp);
+    }
+    return handle;
+  }
+
+  private RowManager getHostRowManager(DatabaseClient client) {
+    return hostRowMgrs.computeIfAbsent(client, key -> {
+      RowManager hostRowMgr = key.newRowManager();
+      hostRowMgr.setDatatypeStyle(rowMgr.getDatatypeStyle());
+      hostRowMgr.setRowStructureStyle(rowMgr.getRowStructureStyle());
+      return hostRowMgr;
+    });
+  }
+
+  // the same exceptions that HostAvailabilityListener treats as an unavailable host
+  private boolean isHostUnavailable(Throwable throwable) {
+    for ( Throwable cause = throwable; cause != null; cause = cause.getCause() ) {
+      if ( cause instanceof SocketException || cause instanceof SSLException ||
+           cause instanceof UnknownHostException ) {
+        return true;
+      }
+      if ( cause.getCause() == cause ) break;
+    }
+    return false;
+  }
+
+  @Override
+  public void stop() {
+    stopped.set(true);
+    if ( threadPool != null ) threadPool.shutdownNow();
+    if ( jobEndTime == null ) jobEndTime = Calendar.getInstance();
+    if ( ranges != null && ranges.hasNext() ) {
+      logger.warn("RowBatcher instance \"{}\" stopped before all rows were retrieved", getJobName());
+    }
+  }
+}
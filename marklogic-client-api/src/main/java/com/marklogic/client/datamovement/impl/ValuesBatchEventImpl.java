@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.ValuesBatchSuccessEvent;
+import com.marklogic.client.datamovement.ValuesBatcher;
+
+public class ValuesBatchEventImpl extends BatchEventImpl implements ValuesBatchSuccessEvent {
+  private ValuesBatcher batcher;
+  private Forest forest;
+  private long start;
+  private String name;
+  private String type;
+  private String[] values;
+  private long[] frequencies;
+
+  public ValuesBatchEventImpl(ValuesBatcher batcher, Forest forest, long start) {
+    super();
+    this.batcher = batcher;
+    this.forest = forest;
+    this.start = start;
+  }
+
+  @Override
+  public ValuesBatcher getBatcher() {
+    return batcher;
+  }
+
+  @Override
+  public Forest getForest() {
+    return forest;
+  }
+
+  @Override
+  public long getStart() {
+    return start;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String getType() {
+    return type;
+  }
+
+  @Override
+  public String[] getValues() {
+    return values;
+  }
+
+  @Override
+  public long[] getFrequencies() {
+    return frequencies;
+  }
+
+  public ValuesBatchEventImpl withValues(String name, String type, String[] values, long[] frequencies) {
+    this.name = name;
+    this.type = type;
+    this.values = values;
+    this.frequencies = frequencies;
+    return this;
+  }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.datamovement.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementException;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.ForestConfiguration;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.LexiconValueComparator;
+import com.marklogic.client.datamovement.ValuesBatchException;
+import com.marklogic.client.datamovement.ValuesBatchFailureListener;
+import com.marklogic.client.datamovement.ValuesBatchSuccessListener;
+import com.marklogic.client.datamovement.ValuesBatcher;
+import com.marklogic.client.impl.QueryManagerImpl;
+import com.marklogic.client.query.ValuesDefinition;
+import com.marklogic.client.query.ValuesIterator;
+
+/* The ValuesBatcher runs one task for each forest, which reads the values
+ * of the forest in pages of the batch size from the host of the forest and
+ * passes each page to the listeners.  When there are sorted distinct
+ * listeners, each forest task also hands its pages to a merge task through
+ * a small bounded queue, and the merge task combines the heads of the queues
+ * in lexicon order.  A forest task waits while its queue is full, so a fast
+ * forest can't get more than a few pages ahead of the slowest forest.  The
+ * merge checks that each forest returns its values in the merge order, so a
+ * string lexicon with a collation other than codepoint fails the merge instead
+ * of producing duplicate values.
+ */
+public class ValuesBatcherImpl extends BatcherImpl implements ValuesBatcher {
+  private static Logger logger = LoggerFactory.getLogger(ValuesBatcherImpl.class);
+
+  static final private int MERGE_QUEUE_PAGES = 2;
+  static final private ForestPage END_PAGE = new ForestPage(null, null, 0, new String[0], new long[0], null);
+
+  private ValuesDefinition valdef;
+  private boolean threadCountSet = false;
+  private List<ValuesBatchSuccessListener> successListeners = new ArrayList<>();
+  private List<ValuesBatchSuccessListener> sortedDistinctListeners = new ArrayList<>();
+  private List<ValuesBatchFailureListener> failureListeners = new ArrayList<>();
+  private ThreadPoolExecutor threadPool;
+  private final AtomicLong batchNumber = new AtomicLong(0);
+  private final AtomicLong successBatches = new AtomicLong(0);
+  private final AtomicLong failureBatches = new AtomicLong(0);
+  private final AtomicLong valuesCount = new AtomicLong(0);
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+  private final AtomicBoolean started = new AtomicBoolean(false);
+  private final AtomicBoolean mergeDone = new AtomicBoolean(false);
+  private JobTicket jobTicket;
+  private Calendar jobStartTime;
+  private Calendar jobEndTime;
+
+  public ValuesBatcherImpl(DataMovementManager moveMgr, ForestConfiguration forestConfig, ValuesDefinition valdef) {
+    super(moveMgr);
+    if ( valdef == null ) throw new IllegalArgumentException("valdef must not be null");
+    this.valdef = valdef;
+    withForestConfig(forestConfig);
+    withBatchSize(1000);
+  }
+
+  @Override
+  public ValuesDefinition getValuesDefinition() {
+    return valdef;
+  }
+
+  @Override
+  public ValuesBatcher onSuccess(ValuesBatchSuccessListener listener) {
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    successListeners.add(listener);
+    return this;
+  }
+
+  @Override
+  public ValuesBatcher onSortedDistinct(ValuesBatchSuccessListener listener) {
+    requireNotStarted();
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    sortedDistinctListeners.add(listener);
+    return this;
+  }
+
+  @Override
+  public ValuesBatcher onFailure(ValuesBatchFailureListener listener) {
+    if ( listener == null ) throw new IllegalArgumentException("listener must not be null");
+    failureListeners.add(listener);
+    return this;
+  }
+
+  @Override
+  public ValuesBatchSuccessListener[] getSuccessListeners() {
+    return successListeners.toArray(new ValuesBatchSuccessListener[successListeners.size()]);
+  }
+
+  @Override
+  public ValuesBatchSuccessListener[] getSortedDistinctListeners() {
+    return sortedDistinctListeners.toArray(new ValuesBatchSuccessListener[sortedDistinctListeners.size()]);
+  }
+
+  @Override
+  public ValuesBatchFailureListener[] getFailureListeners() {
+    return failureListeners.toArray(new ValuesBatchFailureListener[failureListeners.size()]);
+  }
+
+  @Override
+  public ValuesBatcher withJobName(String jobName) {
+    requireNotStarted();
+    super.withJobName(jobName);
+    return this;
+  }
+
+  @Override
+  public ValuesBatcher withJobId(String jobId) {
+    requireNotStarted();
+    setJobId(jobId);
+    return this;
+  }
+
+  @Override
+  public ValuesBatcher withBatchSize(int batchSize) {
+    requireNotStarted();
+    super.withBatchSize(batchSize);
+    return this;
+  }
+
+  @Override
+  public ValuesBatcher withThreadCount(int threadCount) {
+    requireNotStarted();
+    super.withThreadCount(threadCount);
+    threadCountSet = true;
+    return this;
+  }
+
+  @Override
+  public ValuesBatcher withForestConfig(ForestConfiguration forestConfig) {
+    requireNotStarted();
+    super.withForestConfig(forestConfig);
+    return this;
+  }
+
+  long getSuccessBatchesCount() {
+    return successBatches.get();
+  }
+  long getFailureBatchesCount() {
+    return failureBatches.get();
+  }
+  long getValuesCount() {
+    return valuesCount.get();
+  }
+
+  @Override
+  public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    requireJobStarted();
+    return threadPool.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public boolean awaitCompletion() {
+    try {
+      return awaitCompletion(Long.MAX_VALUE, TimeUnit.DAYS);
+    } catch(InterruptedException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean isStopped() {
+    return threadPool != null && threadPool.isTerminated();
+  }
+
+  @Override
+  public boolean isStarted() {
+    return started.get();
+  }
+
+  @Override
+  public JobTicket getJobTicket() {
+    requireJobStarted();
+    return jobTicket;
+  }
+
+  @Override
+  public Calendar getJobStartTime() {
+    return isStarted() ? jobStartTime : null;
+  }
+
+  @Override
+  public Calendar getJobEndTime() {
+    return isStopped() ? jobEndTime : null;
+  }
+
+  private void requireJobStarted() {
+    if ( threadPool == null ) {
+      throw new IllegalStateException("Job not started. First call DataMovementManager.startJob(ValuesBatcher)");
+    }
+  }
+
+  private void requireNotStarted() {
+    if ( threadPool != null ) {
+      throw new IllegalStateException("Configuration cannot be changed after startJob has been called");
+    }
+  }
+
+  @Override
+  public synchronized void start(JobTicket ticket) {
+    if ( threadPool != null ) {
+      logger.warn("startJob called more than once");
+      return;
+    }
+    jobTicket = ticket;
+    Forest[] forests = forests(getForestConfig());
+    if ( threadCountSet == false ) {
+      logger.warn("threadCount not set--defaulting to number of forests ({})", forests.length);
+      super.withThreadCount(forests.length);
+    }
+    boolean isMerged = sortedDistinctListeners.size() > 0;
+    int poolSize = getThreadCount();
+    if ( isMerged && poolSize < forests.length + 1 ) {
+      // every forest must make progress for the merge to make progress
+      logger.warn("Using {} threads instead of {} to merge the values of {} forests",
+        forests.length + 1, poolSize, forests.length);
+      poolSize = forests.length + 1;
+    }
+
+    logger.info("Starting job batchSize={}, threadCount={}, forests={}, onSuccess listeners={}, " +
+        "onSortedDistinct listeners={}, failure listeners={}",
+      getBatchSize(), poolSize, forests.length, successListeners.size(), sortedDistinctListeners.size(),
+      failureListeners.size());
+    threadPool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<Runnable>()) {
+      @Override
+      protected void terminated() {
+        super.terminated();
+        if ( jobEndTime == null ) jobEndTime = Calendar.getInstance();
+      }
+    };
+    jobStartTime = Calendar.getInstance();
+    started.set(true);
+
+    List<BlockingQueue<ForestPage>> mergeQueues = new ArrayList<>();
+    for ( Forest forest : forests ) {
+      BlockingQueue<ForestPage> mergeQueue = null;
+      if ( isMerged ) {
+        mergeQueue = new ArrayBlockingQueue<>(MERGE_QUEUE_PAGES);
+        mergeQueues.add(mergeQueue);
+      }
+      threadPool.execute(new ForestTask(forest, mergeQueue));
+    }
+    if ( isMerged ) {
+      threadPool.execute(new MergeTask(forests, mergeQueues));
+    }
+    // the executor finishes the queued forests and then terminates
+    threadPool.shutdown();
+  }
+
+  private class ForestTask implements Runnable {
+    private Forest forest;
+    private BlockingQueue<ForestPage> mergeQueue;
+
+    ForestTask(Forest forest, BlockingQueue<ForestPage> mergeQueue) {
+      this.forest = forest;
+      this.mergeQueue = mergeQueue;
+    }
+
+    @Override
+    public void run() {
+      if ( stopped.get() == true ) {
+        logger.warn("Cancelling task for values of forest '{}' after the job is stopped", forest.getForestName());
+        return;
+      }
+      DatabaseClient client = getMoveMgr().getForestClient(forest);
+      int batchSize = getBatchSize();
+      long start = 1;
+      try {
+        QueryManagerImpl queryMgr = (QueryManagerImpl) client.newQueryManager();
+        try (ValuesIterator values = queryMgr.newValuesIterator(valdef, batchSize, 1, forest.getForestName())) {
+          String name = null;
+          String type = null;
+          String[] batchValues = new String[batchSize];
+          long[] batchFrequencies = new long[batchSize];
+          int valueCount = 0;
+          while ( stopped.get() == false && values.next() ) {
+            if ( valueCount == 0 ) {
+              name = values.getName();
+              type = values.getType();
+            }
+            batchValues[valueCount] = values.getString();
+            batchFrequencies[valueCount] = values.getFrequency();
+            valueCount++;
+            if ( valueCount == batchSize ) {
+              if ( !sendPage(client, new ForestPage(name, type, start, batchValues, batchFrequencies, null)) ) return;
+              start += valueCount;
+              valueCount = 0;
+              batchValues = new String[batchSize];
+              batchFrequencies = new long[batchSize];
+            }
+          }
+          if ( valueCount > 0 && stopped.get() == false ) {
+            ForestPage page = new ForestPage(name, type, start,
+              Arrays.copyOf(batchValues, valueCount), Arrays.copyOf(batchFrequencies, valueCount), null);
+            if ( !sendPage(client, page) ) return;
+          }
+        }
+      } catch (Throwable t) {
+        failureBatches.incrementAndGet();
+        ValuesBatchException exception = new ValuesBatchException(newBatch(client, forest, start), t);
+        for ( ValuesBatchFailureListener listener : failureListeners ) {
+          try {
+            listener.processFailure(exception);
+          } catch (Throwable t2) {
+            logger.error("Exception thrown by an onFailure listener", t2);
+          }
+        }
+        mergePage(new ForestPage(null, null, start, null, null, t));
+        return;
+      }
+      mergePage(END_PAGE);
+    }
+
+    private boolean sendPage(DatabaseClient client, ForestPage page) {
+      processPage(client, page);
+      return mergePage(page);
+    }
+
+    private void processPage(DatabaseClient client, ForestPage page) {
+      successBatches.incrementAndGet();
+      valuesCount.addAndGet(page.values.length);
+      ValuesBatchEventImpl batch = newBatch(client, forest, page.start)
+        .withValues(page.name, page.type, page.values, page.frequencies);
+      for ( ValuesBatchSuccessListener listener : successListeners ) {
+        try {
+          listener.processEvent(batch);
+        } catch (Throwable t) {
+          logger.error("Exception thrown by an onSuccess listener", t);
+        }
+      }
+    }
+
+    private boolean mergePage(ForestPage page) {
+      if ( mergeQueue == null ) return true;
+      try {
+        while ( mergeDone.get() == false ) {
+          if ( mergeQueue.offer(page, 100, TimeUnit.MILLISECONDS) ) return true;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+  }
+
+  private class MergeTask implements Runnable {
+    private Forest[] forests;
+    private List<BlockingQueue<ForestPage>> mergeQueues;
+
+    MergeTask(Forest[] forests, List<BlockingQueue<ForestPage>> mergeQueues) {
+      this.forests = forests;
+      this.mergeQueues = mergeQueues;
+    }
+
+    @Override
+    public void run() {
+      try {
+        merge();
+      } catch (InterruptedException e) {
+        logger.warn("Merge of sorted distinct values interrupted after the job is stopped");
+      } catch (Throwable t) {
+        failureBatches.incrementAndGet();
+        ValuesBatchException exception = new ValuesBatchException(newBatch(getPrimaryClient(), null, 0), t);
+        for ( ValuesBatchFailureListener listener : failureListeners ) {
+          try {
+            listener.processFailure(exception);
+          } catch (Throwable t2) {
+            logger.error("Exception thrown by an onFailure listener", t2);
+          }
+        }
+      } finally {
+        mergeDone.set(true);
+        for ( BlockingQueue<ForestPage> mergeQueue : mergeQueues ) {
+          mergeQueue.clear();
+        }
+      }
+    }
+
+    private void merge() throws InterruptedException {
+      List<MergeCursor> cursors = new ArrayList<>();
+      for ( int i=0; i < forests.length; i++ ) {
+        MergeCursor cursor = new MergeCursor(forests[i], mergeQueues.get(i));
+        if ( cursor.nextPage() ) cursors.add(cursor);
+      }
+      if ( cursors.isEmpty() ) return;
+
+      String name = cursors.get(0).page.name;
+      String type = cursors.get(0).page.type;
+      Comparator<String> order = LexiconValueComparator.forType(type);
+      if ( valdef.getDirection() == ValuesDefinition.Direction.DESCENDING ) order = order.reversed();
+      Comparator<String> valueOrder = order;
+      for ( MergeCursor cursor : cursors ) {
+        cursor.order = valueOrder;
+      }
+      PriorityQueue<MergeCursor> heads = new PriorityQueue<>(cursors.size(),
+        (cursor1, cursor2) -> valueOrder.compare(cursor1.value(), cursor2.value()));
+      heads.addAll(cursors);
+
+      int batchSize = getBatchSize();
+      String[] batchValues = new String[batchSize];
+      long[] batchFrequencies = new long[batchSize];
+      int valueCount = 0;
+      long start = 1;
+      while ( !heads.isEmpty() ) {
+        if ( stopped.get() == true ) return;
+        MergeCursor cursor = heads.poll();
+        String value = cursor.value();
+        long frequency = cursor.frequency();
+        if ( cursor.next() ) heads.add(cursor);
+        // the same value from other forests
+        while ( !heads.isEmpty() && valueOrder.compare(heads.peek().value(), value) == 0 ) {
+          cursor = heads.poll();
+          frequency += cursor.frequency();
+          if ( cursor.next() ) heads.add(cursor);
+        }
+        batchValues[valueCount] = value;
+        batchFrequencies[valueCount] = frequency;
+        valueCount++;
+        if ( valueCount == batchSize ) {
+          processMerged(name, type, start, batchValues, batchFrequencies);
+          start += valueCount;
+          valueCount = 0;
+          batchValues = new String[batchSize];
+          batchFrequencies = new long[batchSize];
+        }
+      }
+      if ( valueCount > 0 ) {
+        processMerged(name, type, start,
+          Arrays.copyOf(batchValues, valueCount), Arrays.copyOf(batchFrequencies, valueCount));
+      }
+    }
+
+    private void processMerged(String name, String type, long start, String[] values, long[] frequencies) {
+      ValuesBatchEventImpl batch = newBatch(getPrimaryClient(), null, start)
+        .withValues(name, type, values, frequencies);
+      for ( ValuesBatchSuccessListener listener : sortedDistinctListeners ) {
+        try {
+          listener.processEvent(batch);
+        } catch (Throwable t) {
+          logger.error("Exception thrown by an onSortedDistinct listener", t);
+        }
+      }
+    }
+  }
+
+  private static class MergeCursor {
+    private Forest forest;
+    private BlockingQueue<ForestPage> mergeQueue;
+    private ForestPage page;
+    private int index;
+    private Comparator<String> order;
+
+    MergeCursor(Forest forest, BlockingQueue<ForestPage> mergeQueue) {
+      this.forest = forest;
+      this.mergeQueue = mergeQueue;
+    }
+
+    String value() {
+      return page.values[index];
+    }
+    long frequency() {
+      return page.frequencies[index];
+    }
+    boolean next() throws InterruptedException {
+      String previous = value();
+      index++;
+      if ( !(index < page.values.length) && !nextPage() ) return false;
+      // the merge emits duplicates unless every forest is in the merge order
+      if ( order.compare(previous, value()) >= 0 ) {
+        throw new DataMovementException("Could not merge the sorted distinct values because forest '" +
+          forest.getForestName() + "' returned '" + value() + "' after '" + previous + "', which is not the " +
+          "merge order; string lexicons must use the codepoint collation", null);
+      }
+      return true;
+    }
+    boolean nextPage() throws InterruptedException {
+      page = mergeQueue.take();
+      index = 0;
+      if ( page.failure != null ) {
+        throw new DataMovementException("Could not merge the sorted distinct values because reading the values " +
+          "of forest '" + forest.getForestName() + "' failed", page.failure);
+      }
+      return page.values.length > 0;
+    }
+  }
+
+  private static class ForestPage {
+    final String name;
+    final String type;
+    final long start;
+    final String[] values;
+    final long[] frequencies;
+    final Throwable failure;
+
+    ForestPage(String name, String type, long start, String[] values, long[] frequencies, Throwable failure) {
+      this.name = name;
+      this.type = type;
+      this.start = start;
+      this.values = values;
+      this.frequencies = frequencies;
+      this.failure = failure;
+    }
+  }
+
+  private ValuesBatchEventImpl newBatch(DatabaseClient client, Forest forest, long start) {
+    ValuesBatchEventImpl batch = new ValuesBatchEventImpl(this, forest, start);
+    batch.withClient(client)
+      .withJobBatchNumber(batchNumber.incrementAndGet())
+      .withJobTicket(jobTicket);
+    return batch;
+  }
+
+  @Override
+  public void stop() {
+    stopped.set(true);
+    if ( threadPool != null ) threadPool.shutdownNow();
+    if ( jobEndTime == null ) jobEndTime = Calendar.getInstance();
+    if ( threadPool != null && threadPool.getCompletedTaskCount() < threadPool.getTaskCount() ) {
+      logger.warn("ValuesBatcher instance \"{}\" stopped before all values were retrieved", getJobName());
+    }
+  }
+}
@@ -581,6 +581,32 @@ public interface DocumentManager<R extends AbstractReadHandle, W extends Abstrac
    */
   DocumentPage readMetadata(Transaction transaction, String... uris);
 
+  /**
+   * Iterates over all of the documents matching the query in URI order,
+   * reading each page after the last URI of the previous page and keeping
+   * the following pages in flight.  All pages are read at the server
+   * timestamp of the first page.  If setMetadataCategories has been called,
+   * populates metadata for each document.
+   * @param querydef	the definition of query criteria and query options
+   * @param pageLength	the number of documents to read in each request
+   * @param prefetchPages	the number of pages to request ahead of the page being iterated
+   * @return the cursor over the matching documents
+   */
+  SearchCursor newSearchCursor(QueryDefinition querydef, int pageLength, int prefetchPages);
+  /**
+   * Resumes iterating over the documents matching the query after the URI
+   * from a previous cursor, as with {@link #newSearchCursor(QueryDefinition, int, int)}.
+   * @param querydef	the definition of query criteria and query options
+   * @param afterUri	the URI after which to start or null to start with the first document
+   * @param pageLength	the number of documents to read in each request
+   * @param prefetchPages	the number of pages to request ahead of the page being iterated
+   * @param serverTimestamp	the point in time at which to read the documents
+   *   or -1 to read at the server timestamp of the first page
+   * @return the cursor over the matching documents
+   */
+  SearchCursor newSearchCursor(QueryDefinition querydef, String afterUri, int pageLength, int prefetchPages,
+                               long serverTimestamp);
+
   /**
    * Just like {@link QueryManager#search(QueryDefinition, SearchReadHandle, long) QueryManager.search}
    * but return complete documents via iterable DocumentPage.  Retrieves up to getPageLength()
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.document;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/** Iterates over all of the documents matching a query, requesting the
+ * following pages in the background while the current page is processed.
+ * Pages start after the last URI of the previous page instead of at an
+ * offset, so deep pages are as fast as the first page, and all pages are
+ * read at the same server timestamp.
+ * <pre>{@code
+ *try (SearchCursor cursor = documentManager.newSearchCursor(query, 100, 2)) {
+ *    for (DocumentRecord record : cursor) {
+ *        String uri = record.getUri();
+ *        // ... do something ...
+ *    }
+ *}
+ *}</pre>
+ * <b>NOTICE!</b> When you finish with this instance
+ * you must call close() to free the underlying resources.
+ */
+public interface SearchCursor extends Iterator<DocumentRecord>, Iterable<DocumentRecord>, Closeable {
+  /**
+   * Returns the server timestamp at which the cursor reads the pages.
+   * Passing the timestamp and the after URI to newSearchCursor() resumes
+   * the iteration in a new cursor with the same view of the database.
+   * @return	the server timestamp or -1 if the first page hasn't been read
+   */
+  long getServerTimestamp();
+  /**
+   * Returns the URI of the last document returned by the cursor, which
+   * is the point from which the iteration can be resumed.
+   * @return	the URI of the last document or the initial after URI if none has been returned
+   */
+  String getAfterUri();
+  /** Cancels the requests for prefetched pages and frees the underlying resources. */
+  @Override
+  void close();
+}
@@ -15,18 +15,39 @@
  */
 package com.marklogic.client.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import com.marklogic.client.type.*;
 
 public class BaseTypeImpl {
+  // generators are cheap but the factory is expensive, so the factory is shared
+  final static private JsonFactory astFactory =
+    new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  // keeps the established export format with a space after each comma
+  final static private MinimalPrettyPrinter astPrinter = new MinimalPrettyPrinter() {
+    @Override
+    public void writeObjectEntrySeparator(JsonGenerator generator) throws IOException {
+      generator.writeRaw(", ");
+    }
+    @Override
+    public void writeArrayValueSeparator(JsonGenerator generator) throws IOException {
+      generator.writeRaw(", ");
+    }
+  };
+
   public static interface BaseArgImpl {
-    public StringBuilder exportAst(StringBuilder strb);
+    public void exportAst(JsonGenerator generator) throws IOException;
   }
 
   public static interface ParamBinder {
@@ -36,42 +57,12 @@ public class BaseTypeImpl {
 
   static class BaseMapImpl implements BaseArgImpl {
     private Map<String, ?> arg;
-    private Pattern quote = Pattern.compile("(\"|\\\\)");
     BaseMapImpl(Map<String, ?> arg) {
       this.arg = arg;
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      strb.append("{");
-      boolean isFirst = true;
-      for (Map.Entry<String, ?> entry: arg.entrySet()) {
-        if (isFirst) {
-          isFirst = false;
-        } else {
-          strb.append(", ");
-        }
-        strb.append("\"");
-        strb.append(quote.matcher(entry.getKey()).replaceAll("\\$1"));
-        strb.append("\":");
-        Object value = entry.getValue();
-        if (value == null) {
-          strb.append("null");
-        } else if (value instanceof BaseArgImpl) {
-          ((BaseArgImpl) value).exportAst(strb);
-        } else if (value instanceof Boolean) {
-          strb.append(((Boolean) value).toString());
-// TODO: cases unsupported in JSON as strings
-        } else if (value instanceof Number) {
-          strb.append(((Number) value).toString());
-        } else {
-          String valStr = (value instanceof String) ? (String) value : value.toString();
-          strb.append("\"");
-          strb.append(quote.matcher(valStr).replaceAll("\\$1"));
-          strb.append("\"");
-        }
-      }
-      strb.append("}");
-      return strb;
+    public void exportAst(JsonGenerator generator) throws IOException {
+      astifyMap(generator, arg);
     }
     Map<String, ?> getMap() {
       return arg;
@@ -87,8 +78,8 @@ public class BaseTypeImpl {
       return this.args;
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      return exportASTList(strb, args);
+    public void exportAst(JsonGenerator generator) throws IOException {
+      astifyArray(generator, args);
     }
     @Override
     public String toString() {
@@ -105,9 +96,10 @@ public class BaseTypeImpl {
       this.fnName   = fnName;
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      strb.append("{\"ns\":\"").append(fnPrefix).append("\", \"fn\":\"").append(fnName).append("\", \"args\":");
-      return super.exportAst(strb).append("}");
+    public void exportAst(JsonGenerator generator) throws IOException {
+      startCallAst(generator, fnPrefix, fnName);
+      super.exportAst(generator);
+      generator.writeEndObject();
     }
     @Override
     public String toString() {
@@ -130,9 +122,10 @@ public class BaseTypeImpl {
       }
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      strb.append("{\"ns\":\"op\", \"fn\":\"operators\", \"args\":");
-      return exportASTList(strb, chain).append("}");
+    public void exportAst(JsonGenerator generator) throws IOException {
+      startCallAst(generator, "op", "operators");
+      astifyArray(generator, chain);
+      generator.writeEndObject();
     }
     @Override
     public String toString() {
@@ -310,9 +303,8 @@ public class BaseTypeImpl {
       this.value = value;
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      astifyObject(strb, value);
-      return strb;
+    public void exportAst(JsonGenerator generator) throws IOException {
+      astifyObject(generator, value);
     }
     @Override
     public String toString() {
@@ -326,9 +318,28 @@ public class BaseTypeImpl {
     }
     return "("+stringifyList(items)+")";
   }
-  static private StringBuilder exportASTList(StringBuilder strb, BaseArgImpl[] items) {
-    astifyArray(strb, items);
-    return strb;
+  static JsonGenerator newAstGenerator(OutputStream out) throws IOException {
+    return astFactory.createGenerator(out, JsonEncoding.UTF8).setPrettyPrinter(astPrinter);
+  }
+  static JsonGenerator newAstGenerator(Writer writer) throws IOException {
+    return astFactory.createGenerator(writer).setPrettyPrinter(astPrinter);
+  }
+  // writes the start of a call up to the args, leaving the caller to write the args and end the object
+  static void startCallAst(JsonGenerator generator, String fnPrefix, String fnName) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("ns", fnPrefix);
+    generator.writeStringField("fn", fnName);
+    generator.writeFieldName("args");
+  }
+  static void exportCallAst(JsonGenerator generator, String fnPrefix, String fnName, String... args)
+    throws IOException {
+    startCallAst(generator, fnPrefix, fnName);
+    generator.writeStartArray();
+    for (String arg: args) {
+      generator.writeString(arg);
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
   }
   static private String stringifyList(BaseArgImpl[] items) {
     if (items == null) {
@@ -339,56 +350,42 @@ public class BaseTypeImpl {
       .reduce((priorString,argString) -> priorString+", "+argString)
       .get();
   }
-  static private void astifyArray(StringBuilder strb, Object[] items) {
-    strb.append("[");
-    if (items != null && items.length > 0) {
-      boolean isFirst = true;
+  static private void astifyArray(JsonGenerator generator, Object[] items) throws IOException {
+    generator.writeStartArray();
+    if (items != null) {
       for (Object item: items) {
-        if (isFirst) {
-          isFirst = false;
-        } else {
-          strb.append(", ");
-        }
-        astifyObject(strb, item);
+        astifyObject(generator, item);
       }
     }
-    strb.append("]");
+    generator.writeEndArray();
   }
   // TODO: collection for set, list
-  static private void astifyMap(StringBuilder strb, java.util.Map<?,?> map) {
-    strb.append("{");
-    if (map != null && map.size() > 0) {
-      boolean isFirst = true;
+  static private void astifyMap(JsonGenerator generator, java.util.Map<?,?> map) throws IOException {
+    generator.writeStartObject();
+    if (map != null) {
       for (java.util.Map.Entry<?, ?> entry: map.entrySet()) {
-        if (isFirst) {
-          isFirst = false;
-        } else {
-          strb.append(", ");
-        }
-        strb.append("\"");
-        strb.append(entry.getKey().toString());
-        strb.append("\"");
-        strb.append(":");
-        astifyObject(strb, entry.getValue());
+        generator.writeFieldName(entry.getKey().toString());
+        astifyObject(generator, entry.getValue());
       }
     }
-    strb.append("}");
+    generator.writeEndObject();
   }
-  static private void astifyObject(StringBuilder strb, Object value) {
+  static private void astifyObject(JsonGenerator generator, Object value) throws IOException {
     if (value == null) {
-      strb.append("null");
+      generator.writeNull();
     } else if (value instanceof BaseArgImpl) {
-      ((BaseArgImpl) value).exportAst(strb);
-    } else if (value instanceof Number || value instanceof Boolean) {
-      strb.append(value.toString());
+      ((BaseArgImpl) value).exportAst(generator);
+    } else if (value instanceof Boolean) {
+      generator.writeBoolean((Boolean) value);
+// TODO: cases unsupported in JSON as strings
+    } else if (value instanceof Number) {
+      generator.writeNumber(value.toString());
     } else if (value instanceof Object[]) {
-      astifyArray(strb, (Object[]) value);
+      astifyArray(generator, (Object[]) value);
     } else if (value instanceof java.util.Map<?,?>) {
-      astifyMap(strb, (java.util.Map<?,?>) value);
+      astifyMap(generator, (java.util.Map<?,?>) value);
     } else {
-      strb.append("\"");
-      strb.append(value.toString());
-      strb.append("\"");
+      generator.writeString(value.toString());
     }
   }
 
@@ -40,6 +40,7 @@ import com.marklogic.client.document.DocumentMetadataPatchBuilder;
 import com.marklogic.client.document.DocumentUriTemplate;
 import com.marklogic.client.document.DocumentPage;
 import com.marklogic.client.document.DocumentWriteSet;
+import com.marklogic.client.document.SearchCursor;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.impl.DocumentMetadataPatchBuilderImpl.DocumentPatchHandleImpl;
 import com.marklogic.client.io.Format;
@@ -482,6 +483,28 @@ abstract class DocumentManagerImpl<R extends AbstractReadHandle, W extends Abstr
     return read(-1, null, transaction, withContent, null, uris);
   }
 
+  @Override
+  public SearchCursor newSearchCursor(QueryDefinition querydef, int pageLength, int prefetchPages) {
+    return newSearchCursor(querydef, null, pageLength, prefetchPages, -1);
+  }
+  @Override
+  public SearchCursor newSearchCursor(QueryDefinition querydef, String afterUri, int pageLength, int prefetchPages,
+                                      long serverTimestamp) {
+    if (querydef == null) {
+      throw new IllegalArgumentException("Must specify a query for the search cursor");
+    }
+    if (pageLength < 1) {
+      throw new IllegalArgumentException("Must read at least one document in each page instead of "+pageLength);
+    }
+    if (prefetchPages < 0) {
+      throw new IllegalArgumentException("Cannot prefetch a negative number of pages: "+prefetchPages);
+    }
+    SearchCursorImpl cursor = new SearchCursorImpl(
+      this, SerializedQueryDefinition.serialize(querydef), afterUri, pageLength, prefetchPages, serverTimestamp);
+    cursor.init();
+    return cursor;
+  }
+
   @Override
   public DocumentPage search(QueryDefinition querydef, long start) {
     return search(querydef, start, -1, null, null, null);
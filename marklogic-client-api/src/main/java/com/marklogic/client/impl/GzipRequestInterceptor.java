@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * An HTTP Request interceptor that compresses request bodies with gzip and
+ * sets the 'Content-Encoding' request header. Bodies with a known length
+ * below the threshold are sent as is.  Bodies with an unknown length (such
+ * as streaming handles and multipart bodies with a streaming part) are
+ * always compressed.
+ *
+ * Bodies with a known length up to the buffered limit are compressed into
+ * memory before sending, so the compressed request still reports its
+ * Content-Length and can be replayed or hedged.  Larger bodies and bodies
+ * with an unknown length are compressed while the body is written to the
+ * connection and report an unknown length, so those requests are not
+ * hedged.  Either way, the compression runs on the thread that executes the
+ * request -- for a WriteBatcher or QueryBatcher, that is the batcher's
+ * worker thread.
+ *
+ * Responses need no handling here because OkHttp sends 'Accept-Encoding: gzip'
+ * and decompresses gzipped responses transparently.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+  static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  static final long   BUFFERED_LIMIT          = 4 * 1024 * 1024;
+
+  private long threshold;
+
+  public GzipRequestInterceptor(long threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("gzip threshold cannot be negative: " + threshold);
+    }
+    this.threshold = threshold;
+  }
+
+  public long getThreshold() {
+    return threshold;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    RequestBody body = request.body();
+    if (body == null || request.header(HEADER_CONTENT_ENCODING) != null) {
+      return chain.proceed(request);
+    }
+    long length = body.contentLength();
+    if (length == 0 || (length > 0 && length < threshold)) {
+      return chain.proceed(request);
+    }
+    RequestBody compressedBody = (length > 0 && length <= BUFFERED_LIMIT) ?
+        compress(body) : new GzipRequestBody(body);
+    Request compressedRequest = request.newBuilder()
+        .header(HEADER_CONTENT_ENCODING, "gzip")
+        .method(request.method(), compressedBody)
+        .build();
+    return chain.proceed(compressedRequest);
+  }
+
+  static RequestBody compress(RequestBody body) throws IOException {
+    Buffer buffer = new Buffer();
+    try (BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer))) {
+      body.writeTo(gzipSink);
+    }
+    return RequestBody.create(buffer.readByteString(), body.contentType());
+  }
+
+  static class GzipRequestBody extends RequestBody {
+    private RequestBody body;
+
+    GzipRequestBody(RequestBody body) {
+      super();
+      this.body = body;
+    }
+
+    RequestBody getBody() {
+      return body;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return body.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+      return -1;
+    }
+
+    @Override
+    public boolean isOneShot() {
+      return body.isOneShot();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+        body.writeTo(gzipSink);
+      }
+    }
+  }
+}
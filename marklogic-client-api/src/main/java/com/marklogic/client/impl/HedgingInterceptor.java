@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+
+/**
+ * An HTTP Request interceptor that hedges idempotent reads.  If the
+ * response for a read hasn't arrived after the hedge delay, a duplicate
+ * request goes to another host of the cluster.  The first response wins
+ * and the other request is cancelled.
+ *
+ * The hedge delay is either fixed or the configured percentile of the
+ * latency of recent reads (after enough reads have been observed).  The
+ * number of hedged requests is capped at the budget percentage of the
+ * reads so a slow cluster isn't overloaded with duplicates.
+ *
+ * Only reads are hedged: GET requests for documents, search, rows, values,
+ * and suggestions and POST requests to the same read-only endpoints (other
+ * than documents) with a body that can be sent twice.  Other GET requests
+ * (such as resource extensions, which may have side effects) aren't hedged.
+ * A body can be sent twice if it isn't one-shot and has a known length
+ * (or is the gzip compression of such a body).  A body streamed from a
+ * resendable handle (such as a built plan) is also hedged, but only after
+ * buffering it so both requests can send it.  Any other body with an
+ * unknown length may be a stream that can only be read once, so such
+ * requests (for instance, a search with an InputStreamHandle query) aren't
+ * hedged.
+ * Requests in a multi-statement transaction or a session aren't hedged.
+ *
+ * Cancelling the call of the application (including by its call timeout)
+ * cancels both requests, so the client must be built with the listener
+ * from makeCancelListener().  At most MAX_HEDGE_THREADS hedges are in
+ * flight at once; while all are busy, reads aren't hedged.
+ */
+public class HedgingInterceptor implements Interceptor {
+  static final private Logger logger = LoggerFactory.getLogger(HedgingInterceptor.class);
+
+  static final int DEFAULT_HEDGE_DELAY    = 50;
+  static final int DEFAULT_BUDGET_PERCENT = 5;
+
+  static final private int LATENCY_SAMPLES   = 1024;
+  static final private int MIN_SAMPLES       =  100;
+  static final private int PERCENTILE_PERIOD =   64;
+  static final         int MAX_HEDGE_THREADS =   16;
+
+  // the endpoints (after the version in the path) that only read
+  static final private List<String> READ_ONLY_ENDPOINTS = Arrays.asList(
+    "search", "qbe", "rows", "values", "suggest"
+  );
+
+  private HostBalancer hosts;
+  private long         hedgeDelay;
+  private int          percentile     = 0;
+  private int          budgetPercent  = DEFAULT_BUDGET_PERCENT;
+  private OkHttpClient client;
+
+  private final AtomicLong    eligibleCount = new AtomicLong();
+  private final AtomicLong    hedgeCount    = new AtomicLong();
+  private final AtomicLongArray latencies   = new AtomicLongArray(LATENCY_SAMPLES);
+  private final AtomicInteger latencyCount  = new AtomicInteger();
+  private volatile long       percentileDelay = -1;
+
+  // the exchanges in progress by the call of the application
+  private final ConcurrentHashMap<Call, Exchange> exchanges = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService timer;
+  private volatile ExecutorService hedgeExecutor;
+
+  public HedgingInterceptor(HostBalancer hosts, long hedgeDelay) {
+    if (hosts == null) throw new IllegalArgumentException("cannot hedge without hosts");
+    if (hedgeDelay <= 0) {
+      throw new IllegalArgumentException("hedge delay must be positive: " + hedgeDelay);
+    }
+    this.hosts      = hosts;
+    this.hedgeDelay = hedgeDelay;
+  }
+
+  public synchronized void setClient(OkHttpClient client) {
+    this.client = client;
+    if (timer == null) {
+      timer         = Executors.newSingleThreadScheduledExecutor(daemonThreads("marklogic-hedge-timer"));
+      hedgeExecutor = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, 60, TimeUnit.SECONDS,
+          new SynchronousQueue<>(), daemonThreads("marklogic-hedge"));
+    }
+  }
+
+  /**
+   * Makes the listener that cancels the requests of an exchange when the
+   * call of the application is cancelled.
+   * @return	the listener for the client
+   */
+  public EventListener makeCancelListener() {
+    return new EventListener() {
+      @Override
+      public void canceled(Call call) {
+        Exchange exchange = exchanges.get(call);
+        if (exchange != null) exchange.cancel();
+      }
+    };
+  }
+
+  public long getHedgeDelay() {
+    return hedgeDelay;
+  }
+
+  public int getPercentile() {
+    return percentile;
+  }
+  /**
+   * Derives the hedge delay from the latency of recent reads instead of
+   * using the fixed delay (which still applies until enough reads have
+   * been observed).
+   * @param percentile	the percentile of the latency between 1 and 99 or 0 for a fixed delay
+   */
+  public void setPercentile(int percentile) {
+    if (percentile < 0 || percentile > 99) {
+      throw new IllegalArgumentException("hedge percentile must be between 0 and 99: " + percentile);
+    }
+    this.percentile = percentile;
+  }
+
+  public int getBudgetPercent() {
+    return budgetPercent;
+  }
+  /**
+   * Caps the hedged requests as a percentage of the reads.
+   * @param budgetPercent	the maximum percentage of reads that are hedged
+   */
+  public void setBudgetPercent(int budgetPercent) {
+    if (budgetPercent <= 0 || budgetPercent > 100) {
+      throw new IllegalArgumentException("hedge budget must be between 1 and 100: " + budgetPercent);
+    }
+    this.budgetPercent = budgetPercent;
+  }
+
+  /**
+   * The number of hedged requests sent so far.
+   * @return	the count of hedged requests
+   */
+  public long getHedgeCount() {
+    return hedgeCount.get();
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    OkHttpClient hedgeClient = client;
+    if (hedgeClient == null || !isHedgeable(request)) {
+      return chain.proceed(request);
+    }
+    eligibleCount.incrementAndGet();
+    request = withBufferedBody(request);
+
+    // both requests run as separate calls so either one can be cancelled
+    Request tagged = request.newBuilder().tag(HedgingInterceptor.class, this).build();
+    Exchange exchange = new Exchange(withTimeouts(hedgeClient, chain), tagged);
+    ScheduledFuture<?> hedgeTimer;
+    try {
+      hedgeTimer = timer.schedule(exchange::startHedge, getDelay(), TimeUnit.MILLISECONDS);
+    } catch (RuntimeException e) {
+      // the client is being released
+      return chain.proceed(request);
+    }
+
+    Call call = chain.call();
+    exchanges.put(call, exchange);
+    try {
+      // the call may have been cancelled before the exchange was registered
+      if (call.isCanceled()) exchange.cancel();
+
+      long start = System.nanoTime();
+      Response response = null;
+      try {
+        response = exchange.primary.execute();
+      } catch (IOException e) {
+        hedgeTimer.cancel(false);
+        Response hedgeResponse = exchange.awaitHedge();
+        if (hedgeResponse == null) throw e;
+        recordLatency(start);
+        return hedgeResponse;
+      }
+      if (exchange.primaryWon()) {
+        hedgeTimer.cancel(false);
+        recordLatency(start);
+        return response;
+      }
+      response.close();
+      Response hedgeResponse = exchange.awaitHedge();
+      if (hedgeResponse == null) {
+        throw new IOException("hedged request failed for " + request.url());
+      }
+      recordLatency(start);
+      return hedgeResponse;
+    } finally {
+      exchanges.remove(call);
+    }
+  }
+
+  private boolean isHedgeable(Request request) {
+    if (request.tag(HedgingInterceptor.class) != null || request.tag(HostBalancer.class) != null ||
+        request.header("Cookie") != null || request.url().queryParameter("txid") != null) {
+      return false;
+    }
+    String endpoint = getEndpoint(request.url());
+    switch (request.method()) {
+      case "GET":
+        return "documents".equals(endpoint) || READ_ONLY_ENDPOINTS.contains(endpoint);
+      case "POST":
+        if (!READ_ONLY_ENDPOINTS.contains(endpoint)) return false;
+        try {
+          if (isRepeatable(request.body())) return true;
+        } catch (IOException e) {
+          // not repeatable
+        }
+        logger.debug("Not hedging request for {} because its body cannot be sent twice",
+            request.url().encodedPath());
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  private String getEndpoint(HttpUrl url) {
+    List<String> segments = url.pathSegments();
+    int version = segments.indexOf("v1");
+    if (version < 0 || version + 1 >= segments.size()) return null;
+    String endpoint = segments.get(version + 1);
+    // only values takes a name after the endpoint
+    int maxNames = "values".equals(endpoint) ? 1 : 0;
+    return (segments.size() - version - 2 <= maxNames) ? endpoint : null;
+  }
+
+  private boolean isRepeatable(RequestBody body) throws IOException {
+    if (body == null) return true;
+    if (body.isOneShot()) return false;
+    if (body instanceof GzipRequestInterceptor.GzipRequestBody) {
+      return isRepeatable(((GzipRequestInterceptor.GzipRequestBody) body).getBody());
+    }
+    // a replayable body can't be sent again until the first send completes
+    if (body instanceof ReplayableRequestBody) return false;
+    if (body instanceof StreamingOutputImpl) return ((StreamingOutputImpl) body).isResendable();
+    return body.contentLength() >= 0;
+  }
+
+  private Request withBufferedBody(Request request) throws IOException {
+    RequestBody body = request.body();
+    if (body == null || body.contentLength() >= 0) return request;
+    Buffer buffer = new Buffer();
+    body.writeTo(buffer);
+    return request.newBuilder()
+        .method(request.method(), RequestBody.create(buffer.readByteString(), body.contentType()))
+        .build();
+  }
+
+  private OkHttpClient withTimeouts(OkHttpClient hedgeClient, Chain chain) {
+    if (chain.connectTimeoutMillis() == hedgeClient.connectTimeoutMillis() &&
+        chain.readTimeoutMillis()    == hedgeClient.readTimeoutMillis() &&
+        chain.writeTimeoutMillis()   == hedgeClient.writeTimeoutMillis()) {
+      return hedgeClient;
+    }
+    // an earlier interceptor changed the timeouts for the call
+    return hedgeClient.newBuilder()
+        .connectTimeout(chain.connectTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .readTimeout(chain.readTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .writeTimeout(chain.writeTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  private long getDelay() {
+    long delay = percentileDelay;
+    return (delay > 0) ? delay : hedgeDelay;
+  }
+
+  // when the hedge wins, the latency of the read is at least the time until the hedge response
+  private void recordLatency(long start) {
+    if (percentile == 0) return;
+    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    int count = latencyCount.getAndIncrement() & Integer.MAX_VALUE;
+    latencies.set(count % LATENCY_SAMPLES, latency);
+    if (count >= MIN_SAMPLES && count % PERCENTILE_PERIOD == 0) {
+      long[] sorted = new long[Math.min(count + 1, LATENCY_SAMPLES)];
+      for (int i=0; i < sorted.length; i++) {
+        sorted[i] = latencies.get(i);
+      }
+      Arrays.sort(sorted);
+      percentileDelay = Math.max(1, sorted[(sorted.length * percentile) / 100]);
+    }
+  }
+
+  private boolean withinBudget() {
+    return (hedgeCount.get() + 1) * 100 <= budgetPercent * eligibleCount.get();
+  }
+
+  private String chooseAlternateHost(String primaryHost) {
+    String[] candidates = hosts.getHosts();
+    int alternates = 0;
+    for (String candidate: candidates) {
+      if (!candidate.equals(primaryHost)) alternates++;
+    }
+    if (alternates == 0) return null;
+    int pick = ThreadLocalRandom.current().nextInt(alternates);
+    for (String candidate: candidates) {
+      if (candidate.equals(primaryHost)) continue;
+      if (pick-- == 0) return candidate;
+    }
+    return null;
+  }
+
+  /**
+   * Stops the threads that send hedged requests.
+   */
+  public synchronized void shutdown() {
+    client = null;
+    if (timer == null) return;
+    timer.shutdownNow();
+    // a hedge that was already scheduled is rejected by the stopped executor
+    hedgeExecutor.shutdownNow();
+    timer = null;
+  }
+
+  private ThreadFactory daemonThreads(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * The race between the primary request and its hedge.
+   */
+  private class Exchange {
+    private final OkHttpClient exchangeClient;
+    private final Request      request;
+    private final Call         primary;
+    private Call               hedge;
+    private boolean            isDecided = false;
+    private boolean            isHedgeWinner = false;
+    private final CompletableFuture<Response> hedgeResult = new CompletableFuture<>();
+
+    Exchange(OkHttpClient exchangeClient, Request request) {
+      this.exchangeClient = exchangeClient;
+      this.request        = request;
+      this.primary        = exchangeClient.newCall(request);
+    }
+
+    void startHedge() {
+      try {
+        hedgeExecutor.execute(this::sendHedge);
+      } catch (RejectedExecutionException e) {
+        // all hedge threads are busy or the client is being released
+        logger.debug("Not hedging request for {}", request.url().encodedPath());
+      }
+    }
+
+    void sendHedge() {
+      Call hedgeCall = null;
+      synchronized (this) {
+        if (!isDecided && withinBudget()) {
+          String alternateHost = chooseAlternateHost(request.url().host());
+          if (alternateHost != null) {
+            HttpUrl hedgeUrl = request.url().newBuilder().host(alternateHost).build();
+            hedgeCall = exchangeClient.newCall(request.newBuilder().url(hedgeUrl).build());
+            hedge = hedgeCall;
+            hedgeCount.incrementAndGet();
+          }
+        }
+      }
+      if (hedgeCall == null) {
+        hedgeResult.complete(null);
+        return;
+      }
+      logger.debug("Hedging request for {} to {}", request.url().encodedPath(), hedgeCall.request().url().host());
+      try {
+        Response response = hedgeCall.execute();
+        // a hedge that fails with a server error doesn't win over the primary
+        if (response.code() < RESTServices.STATUS_BAD_GATEWAY && decide(true)) {
+          primary.cancel();
+          hedgeResult.complete(response);
+        } else {
+          response.close();
+          hedgeResult.complete(null);
+        }
+      } catch (IOException | RuntimeException e) {
+        hedgeResult.complete(null);
+      }
+    }
+
+    boolean primaryWon() {
+      if (!decide(false)) return false;
+      Call hedgeCall;
+      synchronized (this) {
+        hedgeCall = hedge;
+      }
+      if (hedgeCall != null) hedgeCall.cancel();
+      hedgeResult.complete(null);
+      return true;
+    }
+
+    void cancel() {
+      Call hedgeCall;
+      synchronized (this) {
+        // no hedge is sent after the cancel
+        isDecided = true;
+        hedgeCall = hedge;
+      }
+      primary.cancel();
+      if (hedgeCall != null) hedgeCall.cancel();
+    }
+
+    private synchronized boolean decide(boolean byHedge) {
+      if (isDecided) return isHedgeWinner == byHedge;
+      isDecided     = true;
+      isHedgeWinner = byHedge;
+      return true;
+    }
+
+    Response awaitHedge() {
+      boolean isStarted;
+      synchronized (this) {
+        isStarted = (hedge != null) || isHedgeWinner;
+        if (!isStarted) isDecided = true;
+      }
+      if (!isStarted) return null;
+      try {
+        return hedgeResult.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException e) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * An HTTP Request interceptor that spreads the requests of a client across
+ * the e-nodes of the cluster.  The hosts are discovered from the forest
+ * configuration of the database (the same hosts a data movement job uses)
+ * on the first request and again after each discovery interval, and the
+ * configured host is always one of them.
+ *
+ * Each request goes to the healthy host with the fewest outstanding
+ * requests (LEAST_OUTSTANDING) or to the less busy of two random healthy
+ * hosts (POWER_OF_TWO).  A request is outstanding until its response
+ * headers arrive.  After the threshold of consecutive connection failures
+ * or retryable statuses, a host is ejected, and a background probe
+ * re-admits the host when it responds again.
+ *
+ * A multi-statement transaction must stay on the host that created it.
+ * The request that opens a transaction is balanced like any other request,
+ * and the balancer remembers the host for the transaction id in the
+ * Location header and for the HostId cookie of the response.  Later
+ * requests with that transaction id or HostId cookie go to the same host.
+ * The balancer forgets a transaction when it is committed or rolled back or,
+ * if it is neither, after the longest time limit of a transaction.  Other
+ * requests with cookies or a transaction id that the balancer didn't
+ * see created stay on the host of the request.
+ */
+public class HostBalancer implements Interceptor {
+  static final private Logger logger = LoggerFactory.getLogger(HostBalancer.class);
+
+  static final int DEFAULT_EJECT_THRESHOLD = 2;
+  static final int DEFAULT_PROBE_DELAY     = 10000;
+  static final int DEFAULT_DISCOVERY_INTERVAL = 60000;
+  static final int MAX_TRANSACTIONS        = 10000;
+  // the maximum time limit of a request (including a transaction) on the server
+  static final long MAX_TRANSACTION_AGE    = TimeUnit.HOURS.toMillis(1);
+
+  static final private String HOST_ID_COOKIE    = "HostId";
+  static final private String TRANSACTIONS_PATH = "transactions";
+
+  public enum Strategy {
+    LEAST_OUTSTANDING, POWER_OF_TWO;
+
+    static Strategy fromProperty(String value) {
+      if (value == null || value.length() == 0) return null;
+      switch (value.toLowerCase().replace("_", "")) {
+        case "leastoutstanding": return LEAST_OUTSTANDING;
+        case "poweroftwo":       return POWER_OF_TWO;
+        default:
+          throw new IllegalArgumentException("unknown load balancing strategy: "+value);
+      }
+    }
+  }
+
+  private HttpUrl      baseUri;
+  private String       database;
+  private Strategy     strategy;
+  private int          ejectThreshold = DEFAULT_EJECT_THRESHOLD;
+  private int          probeDelay     = DEFAULT_PROBE_DELAY;
+  private int          discoveryInterval = DEFAULT_DISCOVERY_INTERVAL;
+  private OkHttpClient client;
+
+  private volatile boolean     enabled   = true;
+  private volatile HostState[] hosts;
+  private volatile long        nextDiscovery = 0;
+  private ScheduledExecutorService prober;
+
+  // the hosts that own open transactions by transaction id and by HostId cookie
+  private final ConcurrentHashMap<String, TransactionHost> transactionHosts = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, HostState> hostIdHosts      = new ConcurrentHashMap<>();
+
+  public HostBalancer(HttpUrl baseUri, String database, Strategy strategy) {
+    if (baseUri == null) throw new IllegalArgumentException("cannot balance without base uri");
+    if (strategy == null) throw new IllegalArgumentException("cannot balance without strategy");
+    this.baseUri  = baseUri;
+    this.database = database;
+    this.strategy = strategy;
+    this.hosts    = new HostState[]{new HostState(baseUri.host())};
+  }
+
+  public void setClient(OkHttpClient client) {
+    this.client = client;
+  }
+
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  public int getEjectThreshold() {
+    return ejectThreshold;
+  }
+  public void setEjectThreshold(int ejectThreshold) {
+    if (ejectThreshold <= 0) {
+      throw new IllegalArgumentException("eject threshold must be positive: " + ejectThreshold);
+    }
+    this.ejectThreshold = ejectThreshold;
+  }
+
+  public int getProbeDelay() {
+    return probeDelay;
+  }
+  public void setProbeDelay(int probeDelay) {
+    if (probeDelay <= 0) {
+      throw new IllegalArgumentException("probe delay must be positive: " + probeDelay);
+    }
+    this.probeDelay = probeDelay;
+  }
+
+  public int getDiscoveryInterval() {
+    return discoveryInterval;
+  }
+  /**
+   * Sets how long to wait before discovering the hosts again, so hosts
+   * added to or removed from the cluster are picked up.
+   * @param discoveryInterval	the interval in milliseconds
+   */
+  public void setDiscoveryInterval(int discoveryInterval) {
+    if (discoveryInterval <= 0) {
+      throw new IllegalArgumentException("discovery interval must be positive: " + discoveryInterval);
+    }
+    this.discoveryInterval = discoveryInterval;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+  /**
+   * Enables or disables balancing.  While disabled, requests go to the
+   * host of the request URL (as for a client created by a data movement
+   * job for a specific host).
+   * @param enabled	whether to balance requests
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) shutdown();
+  }
+
+  /**
+   * Discovers the hosts (if not yet discovered) and returns the healthy
+   * hosts, whether or not requests are balanced across them.
+   * @return	the names of the hosts that haven't been ejected
+   */
+  String[] getHosts() {
+    discoverHosts();
+    return getHealthyHosts();
+  }
+
+  /**
+   * The hosts that currently receive requests.
+   * @return	the names of the hosts that haven't been ejected
+   */
+  public String[] getHealthyHosts() {
+    List<String> names = new ArrayList<>();
+    for (HostState host: hosts) {
+      if (!host.ejected) names.add(host.name);
+    }
+    return names.toArray(new String[names.size()]);
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (!enabled || request.tag(HostBalancer.class) != null ||
+        !baseUri.host().equals(request.url().host())) {
+      return chain.proceed(request);
+    }
+
+    String transactionId = getTransactionId(request);
+    String hostId        = getCookie(request, HOST_ID_COOKIE);
+    boolean isPinned     = transactionId != null || request.header("Cookie") != null;
+
+    HostState host = null;
+    if (isPinned) {
+      // requests in a transaction go to the host that created the transaction
+      if (transactionId != null) {
+        TransactionHost transactionHost = transactionHosts.get(transactionId);
+        if (transactionHost != null) host = transactionHost.host;
+      }
+      if (host == null && hostId != null) host = hostIdHosts.get(hostId);
+      if (host == null) {
+        return chain.proceed(request);
+      }
+    } else {
+      discoverHosts();
+      host = chooseHost();
+      if (host == null) {
+        // with every host ejected, fall back to the host of the request
+        return chain.proceed(request);
+      }
+    }
+
+    HttpUrl url = request.url();
+    if (!host.name.equals(url.host())) {
+      request = request.newBuilder()
+          .url(url.newBuilder().host(host.name).build())
+          .build();
+    }
+
+    host.outstanding.incrementAndGet();
+    try {
+      Response response = chain.proceed(request);
+      switch (response.code()) {
+        case RESTServices.STATUS_BAD_GATEWAY:
+        case RESTServices.STATUS_SERVICE_UNAVAILABLE:
+        case RESTServices.STATUS_GATEWAY_TIMEOUT:
+          recordFailure(host);
+          break;
+        default:
+          host.failures.set(0);
+          break;
+      }
+      trackTransaction(request, response, host, transactionId);
+      return response;
+    } catch (IOException e) {
+      recordFailure(host);
+      throw e;
+    } finally {
+      host.outstanding.decrementAndGet();
+    }
+  }
+
+  private void trackTransaction(Request request, Response response, HostState host, String transactionId) {
+    if (!"POST".equals(request.method()) || !isTransactionsPath(request.url())) return;
+    if (transactionId == null) {
+      // opening a transaction
+      if (response.code() != RESTServices.STATUS_SEE_OTHER) return;
+      String location = response.header("Location");
+      if (location == null || !location.contains("/")) return;
+      if (transactionHosts.size() >= MAX_TRANSACTIONS) evictTransactions();
+      transactionHosts.put(location.substring(location.lastIndexOf("/") + 1), new TransactionHost(host));
+      for (String setCookie: response.headers(RESTServices.HEADER_SET_COOKIE)) {
+        int separator = setCookie.indexOf('=');
+        if (separator > 0 && HOST_ID_COOKIE.equals(setCookie.substring(0, separator).trim())) {
+          int end = setCookie.indexOf(';', separator);
+          hostIdHosts.put(setCookie.substring(separator + 1, (end < 0) ? setCookie.length() : end).trim(), host);
+        }
+      }
+    } else if (response.code() < RESTServices.STATUS_BAD_GATEWAY) {
+      // committing or rolling back a transaction
+      transactionHosts.remove(transactionId);
+    }
+  }
+
+  private void evictTransactions() {
+    // transactions older than the maximum time limit have timed out on the server
+    long expired = System.currentTimeMillis() - MAX_TRANSACTION_AGE;
+    transactionHosts.values().removeIf(transactionHost -> transactionHost.opened < expired);
+    if (transactionHosts.size() < MAX_TRANSACTIONS) return;
+    // otherwise, forget only the oldest transaction
+    String oldest = null;
+    long oldestOpened = Long.MAX_VALUE;
+    for (Map.Entry<String, TransactionHost> entry: transactionHosts.entrySet()) {
+      if (entry.getValue().opened < oldestOpened) {
+        oldest       = entry.getKey();
+        oldestOpened = entry.getValue().opened;
+      }
+    }
+    if (oldest != null) transactionHosts.remove(oldest);
+  }
+
+  private boolean isTransactionsPath(HttpUrl url) {
+    List<String> segments = url.pathSegments();
+    int last = segments.size() - 1;
+    if (last >= 0 && segments.get(last).length() == 0) last--;
+    return (last >= 0 && TRANSACTIONS_PATH.equals(segments.get(last))) ||
+        (last >= 1 && TRANSACTIONS_PATH.equals(segments.get(last - 1)));
+  }
+  private String getTransactionId(Request request) {
+    String transactionId = request.url().queryParameter("txid");
+    if (transactionId != null) return transactionId;
+    HttpUrl url = request.url();
+    List<String> segments = url.pathSegments();
+    int last = segments.size() - 1;
+    if (last >= 1 && TRANSACTIONS_PATH.equals(segments.get(last - 1)) && segments.get(last).length() > 0) {
+      return segments.get(last);
+    }
+    return null;
+  }
+  private String getCookie(Request request, String name) {
+    for (String cookieHeader: request.headers("Cookie")) {
+      for (String cookie: cookieHeader.split(";")) {
+        int separator = cookie.indexOf('=');
+        if (separator > 0 && name.equals(cookie.substring(0, separator).trim())) {
+          return cookie.substring(separator + 1).trim();
+        }
+      }
+    }
+    return null;
+  }
+
+  HostState chooseHost() {
+    HostState[] candidates = hosts;
+    int healthy = 0;
+    for (HostState host: candidates) {
+      if (!host.ejected) healthy++;
+    }
+    if (healthy == 0) return null;
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (healthy == 1) return pickHealthy(candidates, 0);
+    if (strategy == Strategy.POWER_OF_TWO) {
+      int firstPick  = random.nextInt(healthy);
+      int secondPick = random.nextInt(healthy - 1);
+      if (secondPick >= firstPick) secondPick++;
+      HostState first  = pickHealthy(candidates, firstPick);
+      HostState second = pickHealthy(candidates, secondPick);
+      return (second.outstanding.get() < first.outstanding.get()) ? second : first;
+    }
+
+    // start at a random host so ties don't always go to the same host
+    HostState chosen = null;
+    int start = random.nextInt(candidates.length);
+    for (int i = 0; i < candidates.length; i++) {
+      HostState host = candidates[(start + i) % candidates.length];
+      if (host.ejected) continue;
+      if (chosen == null || host.outstanding.get() < chosen.outstanding.get()) {
+        chosen = host;
+      }
+    }
+    return chosen;
+  }
+  private HostState pickHealthy(HostState[] candidates, int position) {
+    for (HostState host: candidates) {
+      if (host.ejected) continue;
+      if (position-- == 0) return host;
+    }
+    // a host was ejected concurrently
+    return candidates[0];
+  }
+  private void recordFailure(HostState host) {
+    if (host.failures.incrementAndGet() < ejectThreshold || host.ejected) return;
+    synchronized (this) {
+      if (host.ejected) return;
+      host.ejected = true;
+      logger.warn("Ejecting host {} from load balancing after {} consecutive failures",
+          host.name, host.failures.get());
+      startProber();
+    }
+  }
+
+  private void discoverHosts() {
+    if (System.currentTimeMillis() < nextDiscovery) return;
+    synchronized (this) {
+      discoverHostsImpl();
+    }
+  }
+  private void discoverHostsImpl() {
+    long now = System.currentTimeMillis();
+    if (now < nextDiscovery || client == null) return;
+    // until discovery succeeds, try again after the probe delay
+    nextDiscovery = now + probeDelay;
+
+    HttpUrl.Builder forestInfoUri = baseUri.resolve("internal/forestinfo").newBuilder();
+    if (database != null) forestInfoUri.addQueryParameter("database", database);
+    Request request = new Request.Builder()
+        .url(forestInfoUri.build())
+        .header(RESTServices.HEADER_ACCEPT, RESTServices.MIMETYPE_APPLICATION_JSON)
+        .tag(HostBalancer.class, this)
+        .build();
+    Set<String> names = new LinkedHashSet<>();
+    names.add(baseUri.host());
+    try (Response response = client.newCall(request).execute()) {
+      ResponseBody body = response.body();
+      if (response.code() != RESTServices.STATUS_OK || body == null) {
+        logger.warn("Could not discover hosts for load balancing: status {}", response.code());
+        return;
+      }
+      for (JsonNode forestNode: new ObjectMapper().readTree(body.byteStream())) {
+        names.add(getPreferredHost(forestNode));
+      }
+    } catch (IOException e) {
+      logger.warn("Could not discover hosts for load balancing: {}", e.getMessage());
+      return;
+    }
+
+    nextDiscovery = now + discoveryInterval;
+    List<HostState> discovered = new ArrayList<>();
+    for (HostState host: hosts) {
+      if (names.remove(host.name)) discovered.add(host);
+    }
+    if (names.isEmpty() && discovered.size() == hosts.length) return;
+    for (String name: names) {
+      discovered.add(new HostState(name));
+    }
+    hosts = discovered.toArray(new HostState[discovered.size()]);
+    logger.info("Discovered hosts {}", String.join(", ", getHealthyHosts()));
+  }
+  // the same preference as Forest.getPreferredHost()
+  private String getPreferredHost(JsonNode forestNode) {
+    String requestHost = textOf(forestNode, "requestHost");
+    String alternateHost = (requestHost != null) ? null : textOf(forestNode, "alternateHost");
+    String openReplicaHost = textOf(forestNode, "openReplicaHost");
+    if (alternateHost != null) return alternateHost;
+    if (openReplicaHost != null) return openReplicaHost;
+    if (requestHost != null) return requestHost;
+    return textOf(forestNode, "host");
+  }
+  private String textOf(JsonNode node, String field) {
+    JsonNode value = node.get(field);
+    return (value == null || value.isNull()) ? null : value.asText();
+  }
+
+  private void startProber() {
+    if (prober != null) return;
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "marklogic-host-probe");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::probeHosts, probeDelay, probeDelay, TimeUnit.MILLISECONDS);
+    prober = executor;
+  }
+
+  private void probeHosts() {
+    OkHttpClient probeClient = client;
+    if (probeClient == null) return;
+    for (HostState host: hosts) {
+      if (!host.ejected) continue;
+      Request request = new Request.Builder()
+          .url(baseUri.newBuilder().host(host.name).build())
+          .head()
+          .tag(HostBalancer.class, this)
+          .build();
+      try (Response response = probeClient.newCall(request).execute()) {
+        if (response.code() < RESTServices.STATUS_BAD_GATEWAY) {
+          host.failures.set(0);
+          host.ejected = false;
+          logger.info("Re-admitting host {} to load balancing", host.name);
+        }
+      } catch (IOException e) {
+        logger.debug("Host {} still unavailable: {}", host.name, e.getMessage());
+      } catch (RuntimeException e) {
+        logger.warn("Could not probe host {}", host.name, e);
+      }
+    }
+  }
+
+  /**
+   * Stops probing the ejected hosts.
+   */
+  synchronized void shutdown() {
+    if (prober == null) return;
+    prober.shutdownNow();
+    prober = null;
+  }
+
+  static private class TransactionHost {
+    private final HostState host;
+    private final long      opened = System.currentTimeMillis();
+
+    TransactionHost(HostState host) {
+      this.host = host;
+    }
+  }
+
+  static class HostState {
+    private final String        name;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger failures    = new AtomicInteger();
+    private volatile boolean    ejected     = false;
+
+    HostState(String name) {
+      this.name = name;
+    }
+    String getName() {
+      return name;
+    }
+    int getOutstanding() {
+      return outstanding.get();
+    }
+    boolean isEjected() {
+      return ejected;
+    }
+  }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.query.TuplesIterator;
+import com.marklogic.client.query.ValuesDefinition;
+import com.marklogic.client.query.ValuesIterator;
+
+/**
+ * Reads the pages of a values or tuples lexicon by offset.  Because each
+ * page is independent of the previous page, the requests for the following
+ * pages run in parallel with the iteration.  Each response is read with
+ * StAX into columns of value text, type names, and frequencies, which the
+ * typed accessors convert on demand without an object for each value.
+ */
+class LexiconIteratorImpl implements ValuesIterator, TuplesIterator {
+  static final private String VALUES_NS = "http://marklogic.com/appservices/search";
+
+  private final RESTServices     services;
+  private final ValuesDefinition valdef;
+  private final int              pageLength;
+  private final int              prefetchPages;
+  private final String           forestName;
+  private final ArrayDeque<CompletableFuture<LexiconPage>> pending = new ArrayDeque<>();
+
+  private ExecutorService executor;
+  private LexiconPage     page;
+  private String          name;
+  private long            nextStart = 1;
+  private int             row       = -1;
+  private boolean         isLast    = false;
+  private boolean         isDone    = false;
+
+  LexiconIteratorImpl(RESTServices services, ValuesDefinition valdef, int pageLength, int prefetchPages,
+                      String forestName) {
+    this.services      = services;
+    this.valdef        = valdef;
+    this.pageLength    = pageLength;
+    this.prefetchPages = prefetchPages;
+    this.forestName    = forestName;
+  }
+
+  void init() {
+    executor = Executors.newFixedThreadPool(prefetchPages + 1, RowManagerImpl.daemonThreads("marklogic-lexicon-pages"));
+    // the current page and the prefetched pages
+    for (int i=0; i <= prefetchPages; i++) {
+      requestPage();
+    }
+  }
+
+  private void requestPage() {
+    long start = nextStart;
+    nextStart += pageLength;
+    pending.add(CompletableFuture.supplyAsync(() -> readPage(start), executor));
+  }
+  private LexiconPage readPage(long start) {
+    InputStream content = services.values(
+      InputStream.class, valdef, Format.XML.getDefaultMimetype(), start, pageLength, null, forestName
+    );
+    LexiconPage lexiconPage = new LexiconPage(start, pageLength);
+    if (content == null) {
+      return lexiconPage;
+    }
+    try {
+      XMLStreamReader reader = XmlFactories.getInputFactory().createXMLStreamReader(content, "UTF-8");
+      try {
+        lexiconPage.parse(reader);
+      } finally {
+        reader.close();
+      }
+      return lexiconPage;
+    } catch (XMLStreamException e) {
+      throw new MarkLogicIOException("could not parse a page of lexicon values", e);
+    } finally {
+      try {
+        content.close();
+      } catch (IOException e) {
+        // ignore.
+      }
+    }
+  }
+
+  private boolean nextPage() {
+    page = null;
+    row  = -1;
+    if (isLast) {
+      close();
+      return false;
+    }
+    CompletableFuture<LexiconPage> future = pending.poll();
+    if (future == null) {
+      close();
+      return false;
+    }
+    try {
+      page = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new MarkLogicIOException("interrupted while waiting for a page of lexicon values", e);
+    } catch (CancellationException e) {
+      close();
+      throw new MarkLogicIOException("request cancelled for a page of lexicon values", e);
+    } catch (ExecutionException e) {
+      close();
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new MarkLogicIOException("could not read a page of lexicon values", cause);
+    }
+    if (name == null) {
+      name = page.name;
+    }
+    // a short page is the last page, so the prefetched pages are empty
+    if (page.rows < pageLength) {
+      isLast = true;
+      cancelPending();
+    } else {
+      requestPage();
+    }
+    return page.rows > 0;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+  @Override
+  public boolean next() {
+    if (isDone) {
+      return false;
+    }
+    if (page != null && row + 1 < page.rows) {
+      row++;
+      return true;
+    }
+    if (!nextPage()) {
+      return false;
+    }
+    row = 0;
+    return true;
+  }
+  @Override
+  public long getPosition() {
+    checkRow();
+    return page.start + row;
+  }
+  @Override
+  public long getFrequency() {
+    checkRow();
+    return page.frequencies[row];
+  }
+
+  @Override
+  public String getType() {
+    return getType(0);
+  }
+  @Override
+  public String getString() {
+    return getString(0);
+  }
+  @Override
+  public long getLong() {
+    return getLong(0);
+  }
+  @Override
+  public double getDouble() {
+    return getDouble(0);
+  }
+  @Override
+  public boolean getBoolean() {
+    return getBoolean(0);
+  }
+  @Override
+  public <T> T get(Class<T> as) {
+    return get(0, as);
+  }
+
+  @Override
+  public int size() {
+    checkRow();
+    return page.offsets[row + 1] - page.offsets[row];
+  }
+  @Override
+  public String getType(int index) {
+    int slot = slot(index);
+    return page.types[slot];
+  }
+  @Override
+  public String getString(int index) {
+    int slot = slot(index);
+    return page.values[slot];
+  }
+  @Override
+  public long getLong(int index) {
+    return ValueConverter.StringToLongPrimitive(getString(index));
+  }
+  @Override
+  public double getDouble(int index) {
+    return ValueConverter.StringToDoublePrimitive(getString(index));
+  }
+  @Override
+  public boolean getBoolean(int index) {
+    return ValueConverter.StringToBooleanPrimitive(getString(index));
+  }
+  @Override
+  public <T> T get(int index, Class<T> as) {
+    int slot = slot(index);
+    return ValueConverter.convertToJava(page.types[slot], page.values[slot], as);
+  }
+
+  private void checkRow() {
+    if (page == null || row < 0) {
+      throw new IllegalStateException("no current value, call next() first");
+    }
+  }
+  private int slot(int index) {
+    int size = size();
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index "+index+" for "+size+" values");
+    }
+    return page.offsets[row] + index;
+  }
+
+  private void cancelPending() {
+    for (CompletableFuture<LexiconPage> future: pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+  }
+  @Override
+  public void close() {
+    isDone = true;
+    page   = null;
+    cancelPending();
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The rows of one page as columns.  A values row has one value and a
+   * tuples row has one value for each lexicon, delimited by the offsets.
+   */
+  static final private class LexiconPage {
+    final long start;
+    String   name;
+    int      rows  = 0;
+    int      slots = 0;
+    long[]   frequencies;
+    int[]    offsets;
+    String[] types;
+    String[] values;
+
+    LexiconPage(long start, int pageLength) {
+      this.start  = start;
+      frequencies = new long[pageLength];
+      offsets     = new int[pageLength + 1];
+      types       = new String[pageLength];
+      values      = new String[pageLength];
+    }
+
+    void parse(XMLStreamReader reader) throws XMLStreamException {
+      String defaultType = null;
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        if (!VALUES_NS.equals(reader.getNamespaceURI())) {
+          skipElement(reader);
+          continue;
+        }
+        switch (reader.getLocalName()) {
+          case "values-response":
+            name        = reader.getAttributeValue(null, "name");
+            defaultType = reader.getAttributeValue(null, "type");
+            break;
+          case "distinct-value":
+            startRow(reader);
+            addValue(reader, defaultType);
+            endRow();
+            break;
+          case "tuple":
+            startRow(reader);
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+              if (VALUES_NS.equals(reader.getNamespaceURI()) && "distinct-value".equals(reader.getLocalName())) {
+                addValue(reader, null);
+              } else {
+                skipElement(reader);
+              }
+            }
+            endRow();
+            break;
+          default:
+            // aggregate results and metrics
+            skipElement(reader);
+            break;
+        }
+      }
+    }
+    private void startRow(XMLStreamReader reader) {
+      if (rows == frequencies.length) {
+        frequencies = Arrays.copyOf(frequencies, rows * 2);
+        offsets     = Arrays.copyOf(offsets, rows * 2 + 1);
+      }
+      String frequency = reader.getAttributeValue(null, "frequency");
+      frequencies[rows] = (frequency == null) ? 0 : Long.parseLong(frequency);
+    }
+    private void addValue(XMLStreamReader reader, String defaultType) throws XMLStreamException {
+      if (slots == values.length) {
+        types  = Arrays.copyOf(types, slots * 2);
+        values = Arrays.copyOf(values, slots * 2);
+      }
+      String type = reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type");
+      if (type == null) {
+        type = defaultType;
+      } else {
+        // share the type name with the same value in the previous tuple
+        if (rows > 0) {
+          int previous = offsets[rows - 1] + (slots - offsets[rows]);
+          if (previous < offsets[rows] && type.equals(types[previous])) {
+            type = types[previous];
+          }
+        }
+      }
+      types[slots]  = type;
+      values[slots] = reader.getElementText();
+      slots++;
+    }
+    private void endRow() {
+      rows++;
+      offsets[rows] = slots;
+    }
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            depth++;
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            depth--;
+            break;
+          default:
+            break;
+        }
+      }
+    }
+  }
+}
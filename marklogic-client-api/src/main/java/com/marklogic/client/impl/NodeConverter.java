@@ -26,9 +26,7 @@ import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -45,7 +43,6 @@ import java.util.stream.Stream;
 
 public class NodeConverter {
    static private ObjectMapper           mapper;
-   static private DocumentBuilderFactory documentBuilderFactory;
    static private XMLInputFactory        xmlInputFactory;
 
    private NodeConverter() {
@@ -59,16 +56,6 @@ public class NodeConverter {
       }
       return mapper;
    }
-   static private DocumentBuilderFactory getDocumentBuilderFactory() {
-      // okay if one thread overwrites another during lazy initialization
-      if (documentBuilderFactory == null) {
-         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-         factory.setNamespaceAware(true);
-         factory.setValidating(false);
-         documentBuilderFactory = factory;
-      }
-      return documentBuilderFactory;
-   }
    static private XMLInputFactory getXMLInputFactory() {
       // okay if one thread overwrites another during lazy initialization
       if (xmlInputFactory == null) {
@@ -394,13 +381,11 @@ public class NodeConverter {
 
    static public Document InputStreamToDocument(InputStream inputStream) {
       try {
-         return (inputStream == null) ? null : getDocumentBuilderFactory().newDocumentBuilder().parse(inputStream);
+         return (inputStream == null) ? null : XmlFactories.getDocumentBuilder().parse(inputStream);
       } catch(SAXException e) {
          throw new RuntimeException(e);
       } catch(IOException e) {
          throw new RuntimeException(e);
-      } catch (ParserConfigurationException e) {
-         throw new RuntimeException(e);
       }
    }
    static public Stream<Document> InputStreamToDocument(Stream<? extends InputStream> values) {
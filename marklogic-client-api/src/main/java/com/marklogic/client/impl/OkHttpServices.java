@@ -40,6 +40,7 @@ import com.marklogic.client.eval.EvalResult;
 import com.marklogic.client.eval.EvalResultIterator;
 
 import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.DocumentMetadataHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.io.JacksonHandle;
@@ -150,12 +151,6 @@ public class OkHttpServices implements RESTServices {
 
   static final private String DOCUMENT_URI_PREFIX = "/documents?uri=";
 
-  static final private int DELAY_FLOOR       =    125;
-  static final private int DELAY_CEILING     =   2000;
-  static final private int DELAY_MULTIPLIER  =     20;
-  static final private int DEFAULT_MAX_DELAY = 120000;
-  static final private int DEFAULT_MIN_RETRY =      8;
-
   private final static MediaType URLENCODED_MIME_TYPE = MediaType.parse("application/x-www-form-urlencoded; charset=UTF-8");
   private final static String UTF8_ID = StandardCharsets.UTF_8.toString();
 
@@ -168,15 +163,14 @@ public class OkHttpServices implements RESTServices {
   private boolean released = false;
   private Authentication type = null;
 
-  private Random randRetry    = new Random();
-
-  private int maxDelay = DEFAULT_MAX_DELAY;
-  private int minRetry = DEFAULT_MIN_RETRY;
+  private RetryPolicy retryPolicy = new RetryPolicy();
+  // bytes of captured content held in memory for replay or -1 if content isn't replayed
+  private long replayMemoryLimit = -1;
+  private HostBalancer hostBalancer;
+  private HedgingInterceptor hedgingInterceptor;
 
   private boolean checkFirstRequest = true;
 
-  private Set<Integer> retryStatus = new HashSet<>();
-
   static protected class ThreadState {
     boolean isFirstRequest;
     ThreadState(boolean value) {
@@ -192,23 +186,29 @@ public class OkHttpServices implements RESTServices {
   };
 
   public OkHttpServices() {
-    retryStatus.add(STATUS_BAD_GATEWAY);
-    retryStatus.add(STATUS_SERVICE_UNAVAILABLE);
-    retryStatus.add(STATUS_GATEWAY_TIMEOUT);
   }
 
   @Override
   public Set<Integer> getRetryStatus() {
-    return retryStatus;
+    return retryPolicy.getRetryStatus();
   }
 
   @Override
   public int getMaxDelay() {
-    return maxDelay;
+    return retryPolicy.getMaxDelay();
   }
   @Override
   public void setMaxDelay(int maxDelay) {
-    this.maxDelay = maxDelay;
+    retryPolicy.setMaxDelay(maxDelay);
+  }
+
+  @Override
+  public HostBalancer getHostBalancer() {
+    return hostBalancer;
+  }
+
+  RetryPolicy getRetryPolicy() {
+    return retryPolicy;
   }
 
   private FailedRequest extractErrorFields(Response response) {
@@ -405,7 +405,7 @@ public class OkHttpServices implements RESTServices {
       if (maxDelayStr != null && maxDelayStr.length() > 0) {
         int max = Integer.parseInt(maxDelayStr);
         if (max > 0) {
-          maxDelay = max * 1000;
+          retryPolicy.setMaxDelay(max * 1000);
         }
       }
     }
@@ -414,12 +414,108 @@ public class OkHttpServices implements RESTServices {
       if (minRetryStr != null && minRetryStr.length() > 0) {
         int min = Integer.parseInt(minRetryStr);
         if (min > 0) {
-          minRetry = min;
+          retryPolicy.setMinRetry(min);
+        }
+      }
+    }
+    if (props.containsKey(CIRCUIT_THRESHOLD_PROP)) {
+      String thresholdStr = props.getProperty(CIRCUIT_THRESHOLD_PROP);
+      if (thresholdStr != null && thresholdStr.length() > 0) {
+        int threshold = Integer.parseInt(thresholdStr);
+        if (threshold > 0) {
+          int openDelay = RetryPolicy.DEFAULT_CIRCUIT_OPEN_DELAY;
+          String openDelayStr = props.getProperty(CIRCUIT_OPEN_DELAY_PROP);
+          if (openDelayStr != null && openDelayStr.length() > 0) {
+            int open = Integer.parseInt(openDelayStr);
+            if (open > 0) {
+              openDelay = open * 1000;
+            }
+          }
+          retryPolicy.setCircuitBreaker(threshold, openDelay);
+        }
+      }
+    }
+
+    if (props.containsKey(GZIP_THRESHOLD_PROP)) {
+      String gzipThresholdStr = props.getProperty(GZIP_THRESHOLD_PROP);
+      if (gzipThresholdStr != null && gzipThresholdStr.length() > 0) {
+        long gzipThreshold = Long.parseLong(gzipThresholdStr);
+        if (gzipThreshold >= 0) {
+          clientBldr = clientBldr.addInterceptor(new GzipRequestInterceptor(gzipThreshold));
+        }
+      }
+    }
+
+    if (props.containsKey(REPLAY_BUFFER_PROP)) {
+      String replayBufferStr = props.getProperty(REPLAY_BUFFER_PROP);
+      if (replayBufferStr != null && replayBufferStr.length() > 0) {
+        long replayBuffer = Long.parseLong(replayBufferStr);
+        if (replayBuffer >= 0) {
+          replayMemoryLimit = replayBuffer * 1024 * 1024;
+        }
+      }
+    }
+
+    HostBalancer.Strategy balancing = HostBalancer.Strategy.fromProperty(props.getProperty(LOAD_BALANCING_PROP));
+
+    long hedgeDelay = -1;
+    String hedgeDelayStr = props.getProperty(HEDGE_DELAY_PROP);
+    if (hedgeDelayStr != null && hedgeDelayStr.length() > 0) {
+      hedgeDelay = Long.parseLong(hedgeDelayStr);
+    }
+    int hedgePercentile = 0;
+    String hedgePercentileStr = props.getProperty(HEDGE_PERCENTILE_PROP);
+    if (hedgePercentileStr != null && hedgePercentileStr.length() > 0) {
+      hedgePercentile = Integer.parseInt(hedgePercentileStr);
+    }
+    if (hedgeDelay > 0 || hedgePercentile > 0) {
+      // the hedges go to the hosts discovered by the balancer even if requests aren't balanced
+      hostBalancer = new HostBalancer(baseUri, database,
+          (balancing != null) ? balancing : HostBalancer.Strategy.LEAST_OUTSTANDING);
+      if (balancing == null) hostBalancer.setEnabled(false);
+      hedgingInterceptor = new HedgingInterceptor(hostBalancer,
+          (hedgeDelay > 0) ? hedgeDelay : HedgingInterceptor.DEFAULT_HEDGE_DELAY);
+      if (hedgePercentile > 0) {
+        hedgingInterceptor.setPercentile(hedgePercentile);
+      }
+      String hedgeBudgetStr = props.getProperty(HEDGE_BUDGET_PROP);
+      if (hedgeBudgetStr != null && hedgeBudgetStr.length() > 0) {
+        int hedgeBudget = Integer.parseInt(hedgeBudgetStr);
+        if (hedgeBudget > 0) {
+          hedgingInterceptor.setBudgetPercent(hedgeBudget);
         }
       }
+      clientBldr = clientBldr
+          .addInterceptor(hedgingInterceptor)
+          .eventListener(hedgingInterceptor.makeCancelListener());
+    }
+
+    if (balancing != null) {
+      if (hostBalancer == null) hostBalancer = new HostBalancer(baseUri, database, balancing);
+      String ejectThresholdStr = props.getProperty(HOST_EJECT_THRESHOLD_PROP);
+      if (ejectThresholdStr != null && ejectThresholdStr.length() > 0) {
+        int ejectThreshold = Integer.parseInt(ejectThresholdStr);
+        if (ejectThreshold > 0) {
+          hostBalancer.setEjectThreshold(ejectThreshold);
+        }
+      }
+      String probeDelayStr = props.getProperty(HOST_PROBE_DELAY_PROP);
+      if (probeDelayStr != null && probeDelayStr.length() > 0) {
+        int probeDelay = Integer.parseInt(probeDelayStr);
+        if (probeDelay > 0) {
+          hostBalancer.setProbeDelay(probeDelay * 1000);
+        }
+      }
+      clientBldr = clientBldr.addInterceptor(hostBalancer);
+    }
+    if (retryPolicy.getCircuitThreshold() > 0) {
+      // after the balancer so each circuit is for the host that receives the request
+      clientBldr = clientBldr.addInterceptor(retryPolicy.makeCircuitInterceptor());
     }
 
     this.client = clientBldr.build();
+    if (hostBalancer != null) hostBalancer.setClient(this.client);
+    if (hedgingInterceptor != null) hedgingInterceptor.setClient(this.client);
     // System.setProperty("javax.net.debug", "all"); // all or ssl
     /*
     // long-term alternative to isFirstRequest alive
@@ -528,6 +624,8 @@ public class OkHttpServices implements RESTServices {
     if ( client == null ) return;
     try {
       released = true;
+      if ( hostBalancer != null ) hostBalancer.shutdown();
+      if ( hedgingInterceptor != null ) hedgingInterceptor.shutdown();
       client.dispatcher().executorService().shutdownNow();
     } finally {
       try {
@@ -558,7 +656,7 @@ public class OkHttpServices implements RESTServices {
   private int makeFirstRequest(HttpUrl requestUri, String path, int retry) {
     Response response = sendRequestOnce(setupRequest(requestUri, path, null).head());
     int statusCode = response.code();
-    if (!retryStatus.contains(statusCode)) {
+    if (!retryPolicy.isRetryStatus(statusCode)) {
       closeResponse(response);
       return 0;
     }
@@ -567,7 +665,7 @@ public class OkHttpServices implements RESTServices {
     closeResponse(response);
 
     int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-    return Math.max(retryAfter, calculateDelay(randRetry, retry));
+    return Math.max(retryAfter, retryPolicy.calculateDelay(retry));
   }
 
   private RequestParameters addTemporalProtectionParams(RequestParameters params, String uri, ProtectionLevel level,
@@ -740,11 +838,6 @@ public class OkHttpServices implements RESTServices {
     return false;
   }
 
-  private int getRetryAfterTime(Response response) {
-    String retryAfterRaw = response.header("Retry-After");
-    return (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-  }
-
   private Response sendRequestOnce(Request.Builder requestBldr) {
     return sendRequestOnce(requestBldr.build());
   }
@@ -766,16 +859,12 @@ public class OkHttpServices implements RESTServices {
   ) {
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
     /*
      * This loop is for retrying the request if the service is unavailable
      */
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try { Thread.sleep(nextDelay);} catch (InterruptedException e) {}
-      }
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
 
       /*
        * Execute the function which is passed as an argument
@@ -788,7 +877,7 @@ public class OkHttpServices implements RESTServices {
           );
       }
       status = response.code();
-      if (!isRetryable || !retryStatus.contains(status)) {
+      if (!isRetryable || !retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
         /*
          * If we don't get a service unavailable status or if the request
@@ -813,19 +902,16 @@ public class OkHttpServices implements RESTServices {
       /*
        * Calculate the delay before which we shouldn't retry
        */
-      nextDelay = Math.max(getRetryAfterTime(response), calculateDelay(randRetry, retry));
+      retrier.retryAfter(response.header("Retry-After"));
     }
     /*
      * If the service is still unavailable after all the retries, we throw a
      * FailedRetryException indicating that the service is unavailable.
      */
-    if (retryStatus.contains(status)) {
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
     /*
      * Once we break from the retry loop, we just return the Response
@@ -1448,50 +1534,38 @@ public class OkHttpServices implements RESTServices {
     Response response = null;
     int status = -1;
     Headers responseHeaders = null;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
+    RequestBody sentBody = null;
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
+
+      // content that cannot be resent is captured while sending so it can be replayed
+      if (isResendable || sentBody == null) {
+        Object value = handleBase.sendContent();
+        if (value == null) {
+          throw new IllegalArgumentException(
+            "Document write with null value for " + ((uri != null) ? uri : "new document"));
         }
-      }
 
-      Object value = handleBase.sendContent();
-      if (value == null) {
-        throw new IllegalArgumentException(
-          "Document write with null value for " + ((uri != null) ? uri : "new document"));
-      }
+        if (isFirstRequest() && !isResendable && isStreaming(value)) {
+          int firstDelay = makeFirstRequest(retrier.getRetry());
+          retrier.setNextDelay(firstDelay);
+          if (firstDelay != 0) continue;
+        }
 
-      if (isFirstRequest() && !isResendable && isStreaming(value)) {
-        nextDelay = makeFirstRequest(retry);
-        if (nextDelay != 0) continue;
-      }
-
-      MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
-      if (value instanceof OutputStreamSender) {
-        StreamingOutputImpl sentStream =
-          new StreamingOutputImpl((OutputStreamSender) value, reqlog, mediaType);
-        requestBldr =
-          ("put".equals(method)) ?
-            requestBldr.put(sentStream) :
-            requestBldr.post(sentStream);
-      } else {
-        Object sentObj = (reqlog != null) ?
-          reqlog.copyContent(value) : value;
-        requestBldr =
-          ("put".equals(method)) ?
-            requestBldr.put(new ObjectRequestBody(sentObj, mediaType)) :
-            requestBldr.post(new ObjectRequestBody(sentObj, mediaType));
+        MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
+        sentBody = makeRequestBody(reqlog, value, mediaType, isResendable);
       }
+      requestBldr =
+        ("put".equals(method)) ?
+          requestBldr.put(sentBody) :
+          requestBldr.post(sentBody);
       response = sendRequestOnce(requestBldr);
 
       status = response.code();
 
       responseHeaders = response.headers();
-      if (transaction != null || !retryStatus.contains(status)) {
+      if (transaction != null || !retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
@@ -1500,23 +1574,21 @@ public class OkHttpServices implements RESTServices {
       String retryAfterRaw = response.header("Retry-After");
       closeResponse(response);
 
-      if (!isResendable) {
+      if (!isResendable && !canReplay(sentBody)) {
         checkFirstRequest();
+        releaseReplay(sentBody);
         throw new ResourceNotResendableException(
           "Cannot retry request for " +
             ((uri != null) ? uri : "new document"));
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    releaseReplay(sentBody);
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
     if (status == STATUS_NOT_FOUND) {
       throw new ResourceNotFoundException(
@@ -1612,25 +1684,24 @@ public class OkHttpServices implements RESTServices {
     Response response = null;
     int status = -1;
     Headers responseHeaders = null;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
-
-      MultipartBody.Builder multiPart = new MultipartBody.Builder();
-      boolean hasStreamingPart = addParts(multiPart, reqlog,
+    MultipartBody.Builder multiPart = null;
+    boolean hasStreamingPart = false;
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
+
+      // the parts are constructed for each attempt so resendable content is sent again,
+      // while content that cannot be resent is replayed (if enabled) from the previous attempt
+      MultipartBody.Builder replayed = multiPart;
+      multiPart = new MultipartBody.Builder();
+      hasStreamingPart = addParts(multiPart, reqlog,
         new String[] { metadataMimetype, contentMimetype },
-        new AbstractWriteHandle[] { metadataHandle, contentHandle });
+        new AbstractWriteHandle[] { metadataHandle, contentHandle }, replayed);
 
       if (isFirstRequest() && hasStreamingPart) {
-        nextDelay = makeFirstRequest(retry);
-        if (nextDelay != 0) continue;
+        int firstDelay = makeFirstRequest(retrier.getRetry());
+        retrier.setNextDelay(firstDelay);
+        if (firstDelay != 0) continue;
       }
 
       requestBldr = ("put".equals(method)) ?  requestBldr.put(multiPart.build()) : requestBldr.post(multiPart.build());
@@ -1638,7 +1709,7 @@ public class OkHttpServices implements RESTServices {
       status = response.code();
 
       responseHeaders = response.headers();
-      if (transaction != null || !retryStatus.contains(status)) {
+      if (transaction != null || !retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
@@ -1646,22 +1717,20 @@ public class OkHttpServices implements RESTServices {
       String retryAfterRaw = response.header("Retry-After");
       closeResponse(response);
 
-      if (hasStreamingPart) {
+      if (hasStreamingPart && !canReplay(multiPart)) {
+        releaseReplay(multiPart);
         throw new ResourceNotResendableException(
           "Cannot retry request for " +
             ((uri != null) ? uri : "new document"));
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    if (hasStreamingPart) releaseReplay(multiPart);
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
     if (status == STATUS_NOT_FOUND) {
       closeResponse(response);
@@ -2315,16 +2384,9 @@ public class OkHttpServices implements RESTServices {
     Response getResponse() {
       Response response = null;
       int status = -1;
-      long startTime = System.currentTimeMillis();
-      int nextDelay = 0;
-      int retry = 0;
-      for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-        if (nextDelay > 0) {
-          try {
-            Thread.sleep(nextDelay);
-          } catch (InterruptedException e) {
-          }
-        }
+      RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+      for (; retrier.hasNextTry(); retrier.nextTry()) {
+        retrier.pause();
 
         if (queryDef instanceof StructuredQueryDefinition && ! (queryDef instanceof RawQueryDefinition)) {
           response = doPost(reqlog, requestBldr, structure);
@@ -2345,26 +2407,22 @@ public class OkHttpServices implements RESTServices {
 
         status = response.code();
 
-        if (transaction != null || !retryStatus.contains(status)) {
+        if (transaction != null || !retryPolicy.isRetryStatus(status)) {
           if (isFirstRequest()) setFirstRequest(false);
 
           break;
         }
 
         String retryAfterRaw = response.header("Retry-After");
-        int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
 
         closeResponse(response);
 
-        nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+        retrier.retryAfter(retryAfterRaw);
       }
-      if (retryStatus.contains(status)) {
+      if (retryPolicy.isRetryStatus(status)) {
         checkFirstRequest();
         closeResponse(response);
-        throw new FailedRetryException(
-          "Service unavailable and maximum retry period elapsed: "+
-            ((System.currentTimeMillis() - startTime) / 1000)+
-            " seconds after "+retry+" retries");
+        throw retrier.failed();
       }
       if (status == STATUS_NOT_FOUND) {
         closeResponse(response);
@@ -2467,6 +2525,13 @@ public class OkHttpServices implements RESTServices {
   public <T> T values(Class<T> as, ValuesDefinition valDef, String mimetype,
                       long start, long pageLength, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException
+  {
+    return values(as, valDef, mimetype, start, pageLength, transaction, null);
+  }
+  @Override
+  public <T> T values(Class<T> as, ValuesDefinition valDef, String mimetype,
+                      long start, long pageLength, Transaction transaction, String forestName)
+    throws ForbiddenUserException, FailedRequestException
   {
     RequestParameters docParams = new RequestParameters();
 
@@ -2573,6 +2638,9 @@ public class OkHttpServices implements RESTServices {
     if (transaction != null) {
       docParams.add("txid", transaction.getTransactionId());
     }
+    if (forestName != null) {
+      docParams.add("forest-name", forestName);
+    }
 
     String uri = "values";
     if (valDef.getName() != null) {
@@ -2872,16 +2940,9 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
 
       Object nextValue = (handle != null) ? handle.sendContent() : value;
 
@@ -2890,7 +2951,7 @@ public class OkHttpServices implements RESTServices {
         sentValue = new StreamingOutputImpl(
           (OutputStreamSender) nextValue, reqlog, mediaType);
       } else {
-        if (reqlog != null && retry == 0) {
+        if (reqlog != null && retrier.getRetry() == 0) {
           sentValue = new ObjectRequestBody(reqlog.copyContent(nextValue), mediaType);
         } else {
           sentValue = new ObjectRequestBody(nextValue, mediaType);
@@ -2902,8 +2963,9 @@ public class OkHttpServices implements RESTServices {
       boolean isResendable = (handle == null) ? !isStreaming : handle.isResendable();
 
       if (isFirstRequest() && !isResendable && isStreaming) {
-        nextDelay = makeFirstRequest(retry);
-        if (nextDelay != 0) continue;
+        int firstDelay = makeFirstRequest(retrier.getRetry());
+        retrier.setNextDelay(firstDelay);
+        if (firstDelay != 0) continue;
       }
 
       if ("put".equals(method)) {
@@ -2937,7 +2999,7 @@ public class OkHttpServices implements RESTServices {
 
       status = response.code();
 
-      if (!retryStatus.contains(status)) {
+      if (!retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
         break;
       }
@@ -2951,16 +3013,12 @@ public class OkHttpServices implements RESTServices {
           "Cannot retry request for " + connectPath);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
     if (status == STATUS_FORBIDDEN) {
       throw new ForbiddenUserException("User is not allowed to write "
@@ -3075,6 +3133,8 @@ public class OkHttpServices implements RESTServices {
     String text = null;
     if (qdef instanceof StringQueryDefinition) {
       text = ((StringQueryDefinition) qdef).getCriteria();
+    } else if (qdef instanceof SerializedQueryDefinition) {
+      text = ((SerializedQueryDefinition) qdef).getCriteria();
     } else if (qdef instanceof StructuredQueryDefinition) {
       text = ((StructuredQueryDefinition) qdef).getCriteria();
     } else if (qdef instanceof RawStructuredQueryDefinition) {
@@ -3089,7 +3149,12 @@ public class OkHttpServices implements RESTServices {
       qtextMessage = " and string query \"" + text + "\"";
     }
 
-    if (qdef instanceof RawCtsQueryDefinition) {
+    if (qdef instanceof SerializedQueryDefinition) {
+      // the structure was logged when it was serialized, so only its size is logged for each page
+      SerializedQueryDefinition serializedQuery = (SerializedQueryDefinition) qdef;
+      logger.debug("Query uris with serialized query of {} bytes{}", serializedQuery.getLength(), qtextMessage);
+      return postResource(reqlog, "internal/uris", transaction, params, serializedQuery.getHandle(), output);
+    } else if (qdef instanceof RawCtsQueryDefinition) {
       String structure = qdef instanceof RawQueryDefinitionImpl.CtsQuery ?
               ((RawQueryDefinitionImpl.CtsQuery) qdef).serialize() : "";
       logger.debug("Query uris with raw cts query {}{}", structure, qtextMessage);
@@ -3226,8 +3291,10 @@ public class OkHttpServices implements RESTServices {
     requestBldr = addTransactionScopedCookies(requestBldr, transaction);
     requestBldr = addTelemetryAgentId(requestBldr);
 
+    final Object replayValue = isResendable ? null :
+      makeReplayable(reqlog, inputBase.sendContent(), makeType(inputMimetype), isResendable);
     Consumer<Boolean> resendableConsumer = (resendable) -> {
-      if (!isResendable) {
+      if (!isResendable && !canReplay(replayValue)) {
         checkFirstRequest();
         throw new ResourceNotResendableException(
           "Cannot retry request for " + path);
@@ -3236,10 +3303,15 @@ public class OkHttpServices implements RESTServices {
 
     Function<Request.Builder, Response> doPutFunction = new Function<Request.Builder, Response>() {
       public Response apply(Request.Builder funcBuilder) {
-        return doPut(reqlog, funcBuilder, inputBase.sendContent());
+        return doPut(reqlog, funcBuilder, isResendable ? inputBase.sendContent() : replayValue);
       }
     };
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doPutFunction, resendableConsumer);
+    Response response = null;
+    try {
+      response = sendRequestWithRetry(requestBldr, (transaction == null), doPutFunction, resendableConsumer);
+    } finally {
+      releaseReplay(replayValue);
+    }
     int status = response.code();
 
     checkStatus(response, status, "write", "resource", path,
@@ -3275,19 +3347,17 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    MultipartBody.Builder multiPart = null;
+    boolean hasStreamingPart = false;
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
 
-      MultipartBody.Builder multiPart = new MultipartBody.Builder();
-      boolean hasStreamingPart = addParts(multiPart, reqlog, input);
+      // the parts are constructed for each attempt so resendable content is sent again,
+      // while content that cannot be resent is replayed (if enabled) from the previous attempt
+      MultipartBody.Builder replayed = multiPart;
+      multiPart = new MultipartBody.Builder();
+      hasStreamingPart = addParts(multiPart, reqlog, input, replayed);
 
       Request.Builder requestBldr = makePutWebResource(path, params);
       requestBldr = setupRequest(requestBldr, multiPart, outputMimetype);
@@ -3297,7 +3367,7 @@ public class OkHttpServices implements RESTServices {
       response = doPut(requestBldr, multiPart, hasStreamingPart);
       status = response.code();
 
-      if (transaction != null || !retryStatus.contains(status)) {
+      if (transaction != null || !retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
@@ -3306,21 +3376,19 @@ public class OkHttpServices implements RESTServices {
       String retryAfterRaw = response.header("Retry-After");
       closeResponse(response);
 
-      if (hasStreamingPart) {
+      if (hasStreamingPart && !canReplay(multiPart)) {
+        releaseReplay(multiPart);
         throw new ResourceNotResendableException(
           "Cannot retry request for " + path);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    if (hasStreamingPart) releaseReplay(multiPart);
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
 
     checkStatus(response, status, "write", "resource", path,
@@ -3363,6 +3431,7 @@ public class OkHttpServices implements RESTServices {
   {
     if ( params == null ) params = new RequestParameters();
     if ( transaction != null ) params.add("txid", transaction.getTransactionId());
+    addPointInTimeQueryParam(params, output);
 
     HandleImplementation inputBase = HandleAccessor.checkHandle(input,
       "write");
@@ -3388,22 +3457,28 @@ public class OkHttpServices implements RESTServices {
     requestBldr = addTransactionScopedCookies(requestBldr, transaction);
     requestBldr = addTelemetryAgentId(requestBldr);
 
+    final Object value = inputBase == null ? null :
+      makeReplayable(reqlog, inputBase.sendContent(), makeType(inputMimetype), isResendable);
     Consumer<Boolean> resendableConsumer = new Consumer<Boolean>() {
       public void accept(Boolean resendable) {
-        if (!isResendable) {
+        if (!isResendable && !canReplay(value)) {
           checkFirstRequest();
           throw new ResourceNotResendableException("Cannot retry request for " + path);
         }
       }
     };
-    final Object value = inputBase == null ? null :inputBase.sendContent();
     Function<Request.Builder, Response> doPostFunction = new Function<Request.Builder, Response>() {
       public Response apply(Request.Builder funcBuilder) {
         return doPost(reqlog, funcBuilder, value);
       }
     };
 
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doPostFunction, resendableConsumer);
+    Response response = null;
+    try {
+      response = sendRequestWithRetry(requestBldr, (transaction == null), doPostFunction, resendableConsumer);
+    } finally {
+      releaseReplay(value);
+    }
     int status = response.code();
     checkStatus(response, status, operation, "resource", path,
       ResponseStatus.OK_OR_CREATED_OR_NO_CONTENT);
@@ -3412,6 +3487,7 @@ public class OkHttpServices implements RESTServices {
       // add all the headers from the OkHttp Headers object to the caller-provided map
       responseHeaders.putAll( response.headers().toMultimap() );
     }
+    updateServerTimestamp(outputBase, response.headers());
 
     if (as != null) {
       outputBase.receiveContent(makeResult(reqlog, operation, "resource",
@@ -3448,19 +3524,17 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    MultipartBody.Builder multiPart = null;
+    boolean hasStreamingPart = false;
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
 
-      MultipartBody.Builder multiPart = new MultipartBody.Builder();
-      boolean hasStreamingPart = addParts(multiPart, reqlog, null, input, requestHeaders);
+      // the parts are constructed for each attempt so resendable content is sent again,
+      // while content that cannot be resent is replayed (if enabled) from the previous attempt
+      MultipartBody.Builder replayed = multiPart;
+      multiPart = new MultipartBody.Builder();
+      hasStreamingPart = addParts(multiPart, reqlog, null, input, requestHeaders, replayed);
 
       Request.Builder requestBldr = makePostWebResource(path, params);
       requestBldr = setupRequest(requestBldr, multiPart, outputMimetype);
@@ -3470,7 +3544,7 @@ public class OkHttpServices implements RESTServices {
       response = doPost(requestBldr, multiPart, hasStreamingPart);
       status = response.code();
 
-      if (transaction != null || !retryStatus.contains(status)) {
+      if (transaction != null || !retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
@@ -3479,21 +3553,19 @@ public class OkHttpServices implements RESTServices {
       String retryAfterRaw = response.header("Retry-After");
       closeResponse(response);
 
-      if (hasStreamingPart) {
+      if (hasStreamingPart && !canReplay(multiPart)) {
+        releaseReplay(multiPart);
         throw new ResourceNotResendableException(
           "Cannot retry request for " + path);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    if (hasStreamingPart) releaseReplay(multiPart);
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
 
     checkStatus(response, status, "apply", "resource", path,
@@ -3941,9 +4013,11 @@ public class OkHttpServices implements RESTServices {
     requestBldr = addTransactionScopedCookies(requestBldr, transaction);
     requestBldr = addTelemetryAgentId(requestBldr);
 
+    final Object replayValue = isResendable ? null :
+      makeReplayable(reqlog, inputBase.sendContent(), makeType(inputMimetype), isResendable);
     Consumer<Boolean> resendableConsumer = new Consumer<Boolean>() {
       public void accept(Boolean resendable) {
-        if (!isResendable) {
+        if (!isResendable && !canReplay(replayValue)) {
           checkFirstRequest();
           throw new ResourceNotResendableException(
             "Cannot retry request for " + path);
@@ -3953,10 +4027,15 @@ public class OkHttpServices implements RESTServices {
     Function<Request.Builder, Response> doPostFunction = new Function<Request.Builder, Response>() {
       public Response apply(Request.Builder funcBuilder) {
         return doPost(reqlog, funcBuilder.header(HEADER_ACCEPT, multipartMixedWithBoundary()),
-          inputBase.sendContent());
+          isResendable ? inputBase.sendContent() : replayValue);
       }
     };
-    Response response = sendRequestWithRetry(requestBldr, (transaction == null), doPostFunction, resendableConsumer);
+    Response response = null;
+    try {
+      response = sendRequestWithRetry(requestBldr, (transaction == null), doPostFunction, resendableConsumer);
+    } finally {
+      releaseReplay(replayValue);
+    }
     int status = response.code();
 
     checkStatus(response, status, "apply", "resource", path,
@@ -3984,19 +4063,17 @@ public class OkHttpServices implements RESTServices {
     if ( transaction != null ) params.add("txid", transaction.getTransactionId());
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    MultipartBody.Builder multiPart = null;
+    boolean hasStreamingPart = false;
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
 
-      MultipartBody.Builder multiPart = new MultipartBody.Builder();
-      boolean hasStreamingPart = addParts(multiPart, reqlog, input);
+      // the parts are constructed for each attempt so resendable content is sent again,
+      // while content that cannot be resent is replayed (if enabled) from the previous attempt
+      MultipartBody.Builder replayed = multiPart;
+      multiPart = new MultipartBody.Builder();
+      hasStreamingPart = addParts(multiPart, reqlog, input, replayed);
 
       Request.Builder requestBldr = makePostWebResource(path, params);
       requestBldr = setupRequest(
@@ -4009,7 +4086,7 @@ public class OkHttpServices implements RESTServices {
       response = doPost(requestBldr, multiPart, hasStreamingPart);
       status = response.code();
 
-      if (transaction != null || !retryStatus.contains(status)) {
+      if (transaction != null || !retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
@@ -4018,21 +4095,19 @@ public class OkHttpServices implements RESTServices {
       String retryAfterRaw = response.header("Retry-After");
       closeResponse(response);
 
-      if (hasStreamingPart) {
+      if (hasStreamingPart && !canReplay(multiPart)) {
+        releaseReplay(multiPart);
         throw new ResourceNotResendableException(
           "Cannot retry request for " + path);
       }
 
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    if (hasStreamingPart) releaseReplay(multiPart);
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
 
     checkStatus(response, status, "apply", "resource", path,
@@ -4116,7 +4191,9 @@ public class OkHttpServices implements RESTServices {
     if (isFirstRequest() && isStreaming(value)) makeFirstRequest(0);
 
     MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
-    if (value instanceof OutputStreamSender) {
+    if (value instanceof RequestBody) {
+      requestBldr = requestBldr.put((RequestBody) value);
+    } else if (value instanceof OutputStreamSender) {
       requestBldr = requestBldr.put(new StreamingOutputImpl((OutputStreamSender) value, reqlog, mediaType));
     } else {
       if (reqlog != null) {
@@ -4160,6 +4237,8 @@ public class OkHttpServices implements RESTServices {
     MediaType mediaType = makeType(requestBldr.build().header(HEADER_CONTENT_TYPE));
     if(value == null) {
       requestBldr = requestBldr.post(new ObjectRequestBody(null, null));
+    } else if (value instanceof RequestBody) {
+      requestBldr = requestBldr.post((RequestBody) value);
     } else if (value instanceof OutputStreamSender) {
       requestBldr = requestBldr
         .post(new StreamingOutputImpl((OutputStreamSender) value, reqlog, mediaType));
@@ -4276,20 +4355,21 @@ public class OkHttpServices implements RESTServices {
   }
 
   private <W extends AbstractWriteHandle> boolean addParts(
-    MultipartBody.Builder multiPart, RequestLogger reqlog, W[] input)
+    MultipartBody.Builder multiPart, RequestLogger reqlog, W[] input, MultipartBody.Builder replayed)
   {
-    return addParts(multiPart, reqlog, null, input, null);
+    return addParts(multiPart, reqlog, null, input, null, replayed);
   }
 
   private <W extends AbstractWriteHandle> boolean addParts(
-    MultipartBody.Builder multiPart, RequestLogger reqlog, String[] mimetypes, W[] input)
+    MultipartBody.Builder multiPart, RequestLogger reqlog, String[] mimetypes, W[] input,
+    MultipartBody.Builder replayed)
   {
-    return addParts(multiPart, reqlog, null, input, null);
+    return addParts(multiPart, reqlog, null, input, null, replayed);
   }
 
   private <W extends AbstractWriteHandle> boolean addParts(
     MultipartBody.Builder multiPart, RequestLogger reqlog, String[] mimetypes,
-    W[] input, Map<String, List<String>>[] headers)
+    W[] input, Map<String, List<String>>[] headers, MultipartBody.Builder replayed)
   {
     if (mimetypes != null && mimetypes.length != input.length) {
       throw new IllegalArgumentException(
@@ -4303,6 +4383,10 @@ public class OkHttpServices implements RESTServices {
     multiPart.setType(MediaType.parse(MIMETYPE_MULTIPART_MIXED));
 
     boolean hasStreamingPart = false;
+    // the parts from the previous attempt with content that cannot be resent
+    List<Part> replayedParts = (replayed != null && replayMemoryLimit >= 0) ? replayed.build().parts() : null;
+    // a metadata handle shared by many documents in a batch is serialized only once
+    Map<AbstractWriteHandle, byte[]> metadataBytes = null;
     for (int i = 0; i < input.length; i++) {
       AbstractWriteHandle handle = input[i];
       HandleImplementation handleBase = HandleAccessor.checkHandle(
@@ -4311,8 +4395,25 @@ public class OkHttpServices implements RESTServices {
       if (!hasStreamingPart) {
         hasStreamingPart = !handleBase.isResendable();
       }
+      if (replayedParts != null && !handleBase.isResendable()) {
+        multiPart = multiPart.addPart(replayedParts.get(i));
+        continue;
+      }
 
-      Object value = handleBase.sendContent();
+      Object value = null;
+      if (handle instanceof DocumentMetadataHandle) {
+        if (metadataBytes == null) {
+          metadataBytes = new IdentityHashMap<>();
+        }
+        byte[] bytes = metadataBytes.get(handle);
+        if (bytes == null) {
+          bytes = ((DocumentMetadataHandle) handle).toBuffer();
+          metadataBytes.put(handle, bytes);
+        }
+        value = bytes;
+      } else {
+        value = handleBase.sendContent();
+      }
 
       String inputMimetype = null;
       if ( mimetypes != null ) inputMimetype = mimetypes[i];
@@ -4336,17 +4437,8 @@ public class OkHttpServices implements RESTServices {
         }
       }
 
-      Part bodyPart = null;
-      if (value instanceof OutputStreamSender) {
-        bodyPart = Part.create(partHeaders.build(), new StreamingOutputImpl(
-          (OutputStreamSender) value, reqlog, mediaType));
-      } else {
-        if (reqlog != null) {
-          bodyPart = Part.create(partHeaders.build(), new ObjectRequestBody(reqlog.copyContent(value), mediaType));
-        } else {
-          bodyPart = Part.create(partHeaders.build(), new ObjectRequestBody(value, mediaType));
-        }
-      }
+      Part bodyPart = Part.create(partHeaders.build(),
+        makeRequestBody(reqlog, value, mediaType, handleBase.isResendable()));
 
       multiPart = multiPart.addPart(bodyPart);
     }
@@ -4354,6 +4446,56 @@ public class OkHttpServices implements RESTServices {
     return hasStreamingPart;
   }
 
+  private RequestBody makeRequestBody(RequestLogger reqlog, Object value, MediaType mediaType, boolean isResendable) {
+    RequestBody body = null;
+    if (value instanceof OutputStreamSender) {
+      body = new StreamingOutputImpl((OutputStreamSender) value, reqlog, mediaType, isResendable);
+    } else if (reqlog != null) {
+      body = new ObjectRequestBody(reqlog.copyContent(value), mediaType);
+    } else {
+      body = new ObjectRequestBody(value, mediaType);
+    }
+    return (isResendable || replayMemoryLimit < 0) ? body : new ReplayableRequestBody(body, replayMemoryLimit);
+  }
+
+  // prepares content that cannot be resent so it can be replayed (if enabled)
+  private Object makeReplayable(RequestLogger reqlog, Object value, MediaType mediaType, boolean isResendable) {
+    if (isResendable || replayMemoryLimit < 0 || value == null || !isStreaming(value)) return value;
+    return makeRequestBody(reqlog, value, mediaType, false);
+  }
+
+  private boolean canReplay(Object value) {
+    if (replayMemoryLimit < 0) return false;
+    if (value instanceof MultipartBody.Builder) {
+      value = ((MultipartBody.Builder) value).build();
+    }
+    if (value instanceof ReplayableRequestBody) {
+      return ((ReplayableRequestBody) value).isReplayable();
+    } else if (value instanceof MultipartBody) {
+      for (Part part : ((MultipartBody) value).parts()) {
+        RequestBody partBody = part.body();
+        if (partBody instanceof ReplayableRequestBody && !((ReplayableRequestBody) partBody).isReplayable()) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private void releaseReplay(Object value) {
+    if (value instanceof MultipartBody.Builder) {
+      value = ((MultipartBody.Builder) value).build();
+    }
+    if (value instanceof ReplayableRequestBody) {
+      ((ReplayableRequestBody) value).close();
+    } else if (value instanceof MultipartBody) {
+      for (Part part : ((MultipartBody) value).parts()) {
+        releaseReplay(part.body());
+      }
+    }
+  }
+
   private String multipartMixedWithBoundary() {
     return MIMETYPE_MULTIPART_MIXED + "; boundary=" + UUID.randomUUID().toString();
   }
@@ -4493,6 +4635,7 @@ public class OkHttpServices implements RESTServices {
       if (headers.get(HEADER_VND_MARKLOGIC_RESULT_ESTIMATE) != null) {
         result.setTotalSize(Long.parseLong(headers.get(HEADER_VND_MARKLOGIC_RESULT_ESTIMATE)));
       }
+      result.setServerTimestamp(getHeaderServerTimestamp(headers));
       return (U) result;
     } catch (Throwable t) {
       throw new MarkLogicInternalException("Error constructing iterator", t);
@@ -4536,19 +4679,6 @@ public class OkHttpServices implements RESTServices {
     return (builder != null) ? builder.toString() : null;
   }
 
-  private int calculateDelay(Random rand, int i) {
-    int min   =
-      (i  > 6) ? DELAY_CEILING :
-        (i == 0) ? DELAY_FLOOR   :
-          DELAY_FLOOR + (1 << i) * DELAY_MULTIPLIER;
-    int range =
-      (i >  6) ? DELAY_FLOOR          :
-        (i == 0) ? 2 * DELAY_MULTIPLIER :
-          (i == 6) ? DELAY_CEILING - min  :
-            (1 << i) * DELAY_MULTIPLIER;
-    return min + randRetry.nextInt(range);
-  }
-
   static class OkHttpResult {
     private RequestLogger reqlog;
     private BodyPart part;
@@ -4656,6 +4786,7 @@ public class OkHttpServices implements RESTServices {
     private long size = -1;
     private long pageSize = -1;
     private long totalSize = -1;
+    private long serverTimestamp = -1;
     private Closeable closeable;
 
     OkHttpResultIterator(RequestLogger reqlog, List<BodyPart> partList, Closeable closeable) {
@@ -4706,6 +4837,15 @@ public class OkHttpServices implements RESTServices {
       return this;
     }
 
+    public long getServerTimestamp() {
+      return serverTimestamp;
+    }
+
+    public OkHttpResultIterator<T> setServerTimestamp(long serverTimestamp) {
+      this.serverTimestamp = serverTimestamp;
+      return this;
+    }
+
     public boolean hasNext() {
       if (partQueue == null) return false;
       boolean hasNext = partQueue.hasNext();
@@ -5043,16 +5183,9 @@ public class OkHttpServices implements RESTServices {
 
     Response response = null;
     int status = -1;
-    long startTime = System.currentTimeMillis();
-    int nextDelay = 0;
-    int retry = 0;
-    for (; retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay; retry++) {
-      if (nextDelay > 0) {
-        try {
-          Thread.sleep(nextDelay);
-        } catch (InterruptedException e) {
-        }
-      }
+    RetryPolicy.Retrier retrier = retryPolicy.startRetries();
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
 
       if (queryDef instanceof StructuredQueryDefinition) {
         response = doPost(null, requestBldr, structure);
@@ -5066,26 +5199,22 @@ public class OkHttpServices implements RESTServices {
       }
       status = response.code();
 
-      if (!retryStatus.contains(status)) {
+      if (!retryPolicy.isRetryStatus(status)) {
         if (isFirstRequest()) setFirstRequest(false);
 
         break;
       }
 
       String retryAfterRaw = response.header("Retry-After");
-      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
 
       closeResponse(response);
 
-      nextDelay = Math.max(retryAfter, calculateDelay(randRetry, retry));
+      retrier.retryAfter(retryAfterRaw);
     }
-    if (retryStatus.contains(status)) {
+    if (retryPolicy.isRetryStatus(status)) {
       checkFirstRequest();
       closeResponse(response);
-      throw new FailedRetryException(
-        "Service unavailable and maximum retry period elapsed: "+
-          ((System.currentTimeMillis() - startTime) / 1000)+
-          " seconds after "+retry+" retries");
+      throw retrier.failed();
     }
     if (status == STATUS_FORBIDDEN) {
       throw new ForbiddenUserException("User is not allowed to match",
@@ -5521,6 +5650,7 @@ public class OkHttpServices implements RESTServices {
   static private class ObjectRequestBody extends RequestBody {
     private Object obj;
     private MediaType contentType;
+    private byte[] stringBytes;
 
     ObjectRequestBody(Object obj, MediaType contentType) {
       super();
@@ -5533,6 +5663,27 @@ public class OkHttpServices implements RESTServices {
       return contentType;
     }
 
+    @Override
+    public long contentLength() throws IOException {
+      if ( obj instanceof byte[] ) {
+        return ((byte[]) obj).length;
+      } else if ( obj instanceof File ) {
+        return ((File) obj).length();
+      } else if ( obj instanceof String ) {
+        return getStringBytes().length;
+      } else if ( obj == null ) {
+        return 0;
+      }
+      return -1;
+    }
+
+    private byte[] getStringBytes() throws IOException {
+      if ( stringBytes == null ) {
+        stringBytes = ((String) obj).getBytes("UTF-8");
+      }
+      return stringBytes;
+    }
+
     @Override
     public void writeTo(BufferedSink sink) throws IOException {
       if ( obj instanceof InputStream ) {
@@ -5544,7 +5695,7 @@ public class OkHttpServices implements RESTServices {
       } else if ( obj instanceof byte[] ) {
         sink.write((byte[]) obj);
       } else if ( obj instanceof String) {
-        sink.write(((String) obj).getBytes("UTF-8"));
+        sink.write(getStringBytes());
       } else if ( obj == null ) {
       } else {
         throw new IllegalStateException("Cannot write object of type: " + obj.getClass());
@@ -5681,7 +5832,7 @@ public class OkHttpServices implements RESTServices {
 
       boolean hasStreamingPart = hasStreamingPart();
       Consumer<Boolean> resendableConsumer = resendable -> {
-        if (hasStreamingPart) {
+        if (hasStreamingPart && !canReplay(requestBody)) {
           checkFirstRequest();
           throw new ResourceNotResendableException(
               "Cannot retry request for " + getEndpoint());
@@ -5695,7 +5846,12 @@ public class OkHttpServices implements RESTServices {
         return response;
       };
 
-      Response response = sendRequestWithRetry(requestBldr, sendRequestFunction, resendableConsumer);
+      Response response = null;
+      try {
+        response = sendRequestWithRetry(requestBldr, sendRequestFunction, resendableConsumer);
+      } finally {
+        if (hasStreamingPart) releaseReplay(requestBody);
+      }
 
       if(session != null) {
         List<ClientCookie> cookies = new ArrayList<>();
@@ -5841,11 +5997,15 @@ public class OkHttpServices implements RESTServices {
                 .filter(paramValue -> paramValue != null)
                 .forEachOrdered(paramValue -> {
                   HandleImplementation handleBase = HandleAccessor.as(paramValue);
+                  RequestBody partBody = makeRequestBody(paramValue);
                   if(!handleBase.isResendable()) {
                     hasStreamingPartCondition.set();
+                    if (replayMemoryLimit >= 0) {
+                      partBody = new ReplayableRequestBody(partBody, replayMemoryLimit);
+                    }
                   }
                   hasValue.set();
-                  multiBldr.addFormDataPart(paramName, null, makeRequestBody(paramValue));
+                  multiBldr.addFormDataPart(paramName, null, partBody);
                 });
           }
         } else if (param instanceof BufferedMultipleNodeCallField) {
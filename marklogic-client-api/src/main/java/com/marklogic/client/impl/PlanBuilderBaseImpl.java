@@ -15,14 +15,23 @@
  */
 package com.marklogic.client.impl;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
+import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.expression.PlanBuilder;
 import com.marklogic.client.io.Format;
-import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.io.OutputStreamHandle;
 import com.marklogic.client.io.marker.AbstractWriteHandle;
 import com.marklogic.client.type.PlanColumn;
+import com.marklogic.client.type.PlanParamBindingVal;
 import com.marklogic.client.type.PlanParamExpr;
 
 abstract class PlanBuilderBaseImpl extends PlanBuilder {
@@ -72,6 +81,104 @@ abstract class PlanBuilderBaseImpl extends PlanBuilder {
     public AbstractWriteHandle getHandle();
   }
 
+  /**
+   * Binds the parameters of a plan that sends its bindings with the request.
+   * Each binding returns a copy of the plan from withParams() so the plan
+   * itself is never modified.
+   */
+  static interface BindablePlan extends PlanBuilder.Plan, RequestPlan {
+    PlanBuilder.Plan withParams(Map<PlanParamBase,BaseTypeImpl.ParamBinder> params);
+
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, boolean literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.BooleanValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, boolean literal) {
+      return bindParam(param, new XsValueImpl.BooleanValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, byte literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.ByteValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, byte literal) {
+      return bindParam(param, new XsValueImpl.ByteValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, double literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.DoubleValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, double literal) {
+      return bindParam(param, new XsValueImpl.DoubleValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, float literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.FloatValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, float literal) {
+      return bindParam(param, new XsValueImpl.FloatValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, int literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.IntValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, int literal) {
+      return bindParam(param, new XsValueImpl.IntValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, long literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.LongValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, long literal) {
+      return bindParam(param, new XsValueImpl.LongValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, short literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.ShortValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, short literal) {
+      return bindParam(param, new XsValueImpl.ShortValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(String paramName, String literal) {
+      return bindParam(new PlanParamBase(paramName), new XsValueImpl.StringValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, String literal) {
+      return bindParam(param, new XsValueImpl.StringValImpl(literal));
+    }
+    @Override
+    default PlanBuilder.Plan bindParam(PlanParamExpr param, PlanParamBindingVal literal) {
+      if (!(param instanceof PlanParamBase)) {
+        throw new IllegalArgumentException("cannot set parameter that doesn't extend base");
+      }
+
+      Map<PlanParamBase,BaseTypeImpl.ParamBinder> nextParams = new HashMap<>();
+      Map<PlanParamBase,BaseTypeImpl.ParamBinder> params     = getParams();
+      if (params != null) {
+        nextParams.putAll(params);
+      }
+
+      if (literal instanceof XsValueImpl.AnyAtomicTypeValImpl) {
+        nextParams.put((PlanParamBase) param, (XsValueImpl.AnyAtomicTypeValImpl)  literal);
+      } else if (literal instanceof RdfValueImpl.RdfLangStringValImpl) {
+        nextParams.put((PlanParamBase) param, (RdfValueImpl.RdfLangStringValImpl) literal);
+      } else if (literal instanceof SemValueImpl.SemIriValImpl) {
+        nextParams.put((PlanParamBase) param, (SemValueImpl.SemIriValImpl)        literal);
+      } else {
+        throw new IllegalArgumentException("cannot set value with unknown implementation");
+      }
+
+      return withParams(nextParams);
+    }
+  }
+
   static abstract class PlanBaseImpl
     extends BaseTypeImpl.BaseChainImpl<BaseTypeImpl.BaseArgImpl>
     implements PlanBuilder.Plan, RequestPlan, BaseTypeImpl.BaseArgImpl {
@@ -106,16 +213,41 @@ abstract class PlanBuilderBaseImpl extends PlanBuilder {
       this.handleRegistry = handleRegistry;
     }
 
+    // streams the AST into the request body and regenerates it if the request is retried
     @Override
     public AbstractWriteHandle getHandle() {
-// TODO: maybe serialize plan to JSON using JSON writer?
-      return new StringHandle(getAst()).withFormat(Format.JSON);
+      return new OutputStreamHandle(this::writeAst).withFormat(Format.JSON).withResendable(true);
+    }
+
+    void writeAst(OutputStream out) throws IOException {
+      try (JsonGenerator generator = BaseTypeImpl.newAstGenerator(out)) {
+        writeAst(generator);
+      }
+    }
+    private void writeAst(JsonGenerator generator) throws IOException {
+      generator.writeStartObject();
+      generator.writeFieldName("$optic");
+      exportAst(generator);
+      generator.writeEndObject();
     }
 
     String getAst() {
-      StringBuilder strb = new StringBuilder();
-      strb.append("{\"$optic\":");
-      return exportAst(strb).append("}").toString();
+      Writer writer = new StringWriter();
+      try (JsonGenerator generator = BaseTypeImpl.newAstGenerator(writer)) {
+        writeAst(generator);
+      } catch (IOException e) {
+        throw new MarkLogicIOException("could not export plan", e);
+      }
+      return writer.toString();
+    }
+    byte[] getAstBytes() {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        writeAst(out);
+      } catch (IOException e) {
+        throw new MarkLogicIOException("could not export plan", e);
+      }
+      return out.toByteArray();
     }
 
     public PlanColumn col(String column) {
@@ -435,7 +435,7 @@ public class PlanBuilderSubImpl extends PlanBuilderImpl {
   }
 
   static class PlanSubImpl
-    extends PlanBuilderImpl.PlanImpl {
+    extends PlanBuilderImpl.PlanImpl implements PlanBuilderBaseImpl.BindablePlan {
     private PlanBuilderBaseImpl.PlanBaseImpl prior    = null;
     private String                           fnPrefix = null;
     private String                           fnName   = null;
@@ -463,90 +463,7 @@ public class PlanBuilderSubImpl extends PlanBuilderImpl {
     }
 
     @Override
-    public Plan bindParam(String paramName, boolean literal) {
-      return bindParam(new PlanParamBase(paramName), literal);
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, boolean literal) {
-      return bindParam(param, new XsValueImpl.BooleanValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, byte literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.ByteValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, byte literal) {
-      return bindParam(param, new XsValueImpl.ByteValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, double literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.DoubleValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, double literal) {
-      return bindParam(param, new XsValueImpl.DoubleValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, float literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.FloatValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, float literal) {
-      return bindParam(param, new XsValueImpl.FloatValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, int literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.IntValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, int literal) {
-      return bindParam(param, new XsValueImpl.IntValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, long literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.LongValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, long literal) {
-      return bindParam(param, new XsValueImpl.LongValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, short literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.ShortValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, short literal) {
-      return bindParam(param, new XsValueImpl.ShortValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(String paramName, String literal) {
-      return bindParam(new PlanParamBase(paramName), new XsValueImpl.StringValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, String literal) {
-      return bindParam(param, new XsValueImpl.StringValImpl(literal));
-    }
-    @Override
-    public Plan bindParam(PlanParamExpr param, PlanParamBindingVal literal) {
-      if (!(param instanceof PlanParamBase)) {
-        throw new IllegalArgumentException("cannot set parameter that doesn't extend base");
-      }
-
-      Map<PlanParamBase,BaseTypeImpl.ParamBinder> nextParams = new HashMap<>();
-      if (this.params != null) {
-        nextParams.putAll(this.params);
-      }
-
-      if (literal instanceof XsValueImpl.AnyAtomicTypeValImpl) {
-        nextParams.put((PlanParamBase) param, (XsValueImpl.AnyAtomicTypeValImpl)  literal);
-      } else if (literal instanceof RdfValueImpl.RdfLangStringValImpl) {
-        nextParams.put((PlanParamBase) param, (RdfValueImpl.RdfLangStringValImpl) literal);
-      } else if (literal instanceof SemValueImpl.SemIriValImpl) {
-        nextParams.put((PlanParamBase) param, (SemValueImpl.SemIriValImpl)        literal);
-      } else {
-        throw new IllegalArgumentException("cannot set value with unknown implementation");
-      }
-
+    public Plan withParams(Map<PlanParamBase,BaseTypeImpl.ParamBinder> nextParams) {
       return new PlanSubImpl(this.prior, this.fnPrefix, this.fnName, this.fnArgs, nextParams);
     }
 
@@ -564,20 +481,19 @@ public class PlanBuilderSubImpl extends PlanBuilderImpl {
       if (!(handle instanceof BaseHandle)) {
         throw new IllegalArgumentException("cannot export with handle that doesn't extend base");
       }
-      String planAst = getAst();
 // TODO: move to a method of BaseHandle?
       @SuppressWarnings("rawtypes")
       BaseHandle baseHandle = (BaseHandle) handle;
       @SuppressWarnings("rawtypes")
       Class as = baseHandle.receiveAs();
       if (InputStream.class.isAssignableFrom(as)) {
-        baseHandle.receiveContent(new ByteArrayInputStream(planAst.getBytes()));
+        baseHandle.receiveContent(new ByteArrayInputStream(getAstBytes()));
       } else if (Reader.class.isAssignableFrom(as)) {
-        baseHandle.receiveContent(new StringReader(planAst));
+        baseHandle.receiveContent(new StringReader(getAst()));
       } else if (byte[].class.isAssignableFrom(as)) {
-        baseHandle.receiveContent(planAst.getBytes());
+        baseHandle.receiveContent(getAstBytes());
       } else if (String.class.isAssignableFrom(as)) {
-        baseHandle.receiveContent(planAst);
+        baseHandle.receiveContent(getAst());
       } else {
         throw new IllegalArgumentException("cannot export with handle that doesn't accept content as byte[], input stream, reader, or string");
       }
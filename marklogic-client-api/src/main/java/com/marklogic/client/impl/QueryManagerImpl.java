@@ -17,6 +17,7 @@ package com.marklogic.client.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
 
@@ -25,6 +26,7 @@ import org.w3c.dom.NodeList;
 
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
 import com.marklogic.client.Transaction;
+import com.marklogic.client.admin.QueryOptionsManager;
 import com.marklogic.client.io.DOMHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.SearchHandle;
@@ -43,14 +45,18 @@ import com.marklogic.client.query.DeleteQueryDefinition;
 import com.marklogic.client.query.MatchDocumentSummary;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.QueryOptionsCache;
 import com.marklogic.client.query.RawCombinedQueryDefinition;
 import com.marklogic.client.query.RawCtsQueryDefinition;
 import com.marklogic.client.query.RawQueryByExampleDefinition;
 import com.marklogic.client.query.RawStructuredQueryDefinition;
 import com.marklogic.client.query.StringQueryDefinition;
 import com.marklogic.client.query.StructuredQueryBuilder;
+import com.marklogic.client.query.SuggestCache;
 import com.marklogic.client.query.SuggestDefinition;
+import com.marklogic.client.query.TuplesIterator;
 import com.marklogic.client.query.ValuesDefinition;
+import com.marklogic.client.query.ValuesIterator;
 import com.marklogic.client.query.ValuesListDefinition;
 import com.marklogic.client.util.RequestParameters;
 
@@ -62,6 +68,8 @@ public class QueryManagerImpl
   private HandleFactoryRegistry handleRegistry;
   private long pageLen = -1;
   private QueryView view = QueryView.DEFAULT;
+  private SuggestCacheImpl suggestCache = null;
+  private QueryOptionsCacheImpl optionsCache = null;
 
   public QueryManagerImpl(RESTServices services) {
     super();
@@ -172,6 +180,25 @@ public class QueryManagerImpl
       responseHandle.setHandleRegistry(getHandleRegistry());
       responseHandle.setQueryCriteria(querydef);
     }
+
+    QueryOptionsCacheImpl cache = optionsCache;
+    if (cache != null && querydef instanceof RawCombinedQueryDefinition) {
+      RawCombinedQueryDefinition combinedQuery = (RawCombinedQueryDefinition) querydef;
+      QueryOptionsCacheImpl.Rewrite rewrite = cache.rewrite(combinedQuery);
+      if (rewrite != null) {
+        RawCombinedQueryDefinition rewrittenQuery = rewrite.makeQueryDefinition(combinedQuery);
+        if (transaction != null || !QueryOptionsCacheImpl.canCoalesce(searchHandle)) {
+          return services.search(requestLogger, searchHandle, rewrittenQuery, start, pageLen, view, transaction, forestName);
+        }
+        String searchKey = rewrite.makeSearchKey(
+          combinedQuery, start, pageLen, view, forestName, HandleAccessor.as(searchHandle).getFormat()
+        );
+        return cache.coalesce(searchKey, searchHandle, bytesHandle ->
+          services.search(requestLogger, bytesHandle, rewrittenQuery, start, pageLen, view, null, forestName)
+        );
+      }
+    }
+
     return services.search(requestLogger, searchHandle, querydef, start, pageLen, view, transaction, forestName);
   }
 
@@ -280,6 +307,33 @@ public class QueryManagerImpl
     return tupleHandle;
   }
 
+  @Override
+  public ValuesIterator newValuesIterator(ValuesDefinition valdef, int pageLength, int prefetchPages) {
+    return newLexiconIterator(valdef, pageLength, prefetchPages, null);
+  }
+  public ValuesIterator newValuesIterator(ValuesDefinition valdef, int pageLength, int prefetchPages, String forestName) {
+    return newLexiconIterator(valdef, pageLength, prefetchPages, forestName);
+  }
+  @Override
+  public TuplesIterator newTuplesIterator(ValuesDefinition valdef, int pageLength, int prefetchPages) {
+    return newLexiconIterator(valdef, pageLength, prefetchPages, null);
+  }
+  private LexiconIteratorImpl newLexiconIterator(ValuesDefinition valdef, int pageLength, int prefetchPages,
+                                                 String forestName) {
+    if (valdef == null) {
+      throw new IllegalArgumentException("Must specify a values definition for the lexicon iterator");
+    }
+    if (pageLength < 1) {
+      throw new IllegalArgumentException("Must read at least one value in each page instead of "+pageLength);
+    }
+    if (prefetchPages < 0) {
+      throw new IllegalArgumentException("Cannot prefetch a negative number of pages: "+prefetchPages);
+    }
+    LexiconIteratorImpl iterator = new LexiconIteratorImpl(services, valdef, pageLength, prefetchPages, forestName);
+    iterator.init();
+    return iterator;
+  }
+
   @Override
   public <T extends ValuesListReadHandle> T valuesList(ValuesListDefinition valdef, T valueHandle) {
     return valuesList(valdef, valueHandle, null);
@@ -359,9 +413,16 @@ public class QueryManagerImpl
     }
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public String[] suggest(SuggestDefinition suggestDef) {
+    SuggestCacheImpl cache = suggestCache;
+    if (cache == null) {
+      return suggestFromServer(suggestDef);
+    }
+    return cache.suggest(suggestDef, this::suggestFromServer);
+  }
+  @SuppressWarnings("unchecked")
+  private String[] suggestFromServer(SuggestDefinition suggestDef) {
     DOMHandle handle = new DOMHandle();
 
     @SuppressWarnings("rawtypes")
@@ -413,6 +474,46 @@ public class QueryManagerImpl
     return convertedHandle;
   }
 
+  @Override
+  public SuggestCache newSuggestCache(int maxEntries, long timeToLive, TimeUnit unit) {
+    return new SuggestCacheImpl(services, maxEntries, timeToLive, unit);
+  }
+  @Override
+  public SuggestCache getSuggestCache() {
+    return suggestCache;
+  }
+  @Override
+  public void setSuggestCache(SuggestCache cache) {
+    if (cache != null && !(cache instanceof SuggestCacheImpl)) {
+      throw new IllegalArgumentException("Cannot cache suggestions with invalid cache having class "+cache.getClass().getName());
+    }
+    // the suggestions depend on the permissions of the user, so only the client that created the cache can use it
+    if (cache != null && !((SuggestCacheImpl) cache).isFor(services)) {
+      throw new IllegalArgumentException("Cannot cache suggestions with a cache created by a different client");
+    }
+    this.suggestCache = (SuggestCacheImpl) cache;
+  }
+
+  @Override
+  public QueryOptionsCache newQueryOptionsCache(QueryOptionsManager optionsMgr, int maxEntries) {
+    return new QueryOptionsCacheImpl(services, optionsMgr, maxEntries);
+  }
+  @Override
+  public QueryOptionsCache getQueryOptionsCache() {
+    return optionsCache;
+  }
+  @Override
+  public void setQueryOptionsCache(QueryOptionsCache cache) {
+    if (cache != null && !(cache instanceof QueryOptionsCacheImpl)) {
+      throw new IllegalArgumentException("Cannot cache query options with invalid cache having class "+cache.getClass().getName());
+    }
+    // coalesced responses depend on the permissions of the user, so only the client that created the cache can use it
+    if (cache != null && !((QueryOptionsCacheImpl) cache).isFor(services)) {
+      throw new IllegalArgumentException("Cannot cache query options with a cache created by a different client");
+    }
+    this.optionsCache = (QueryOptionsCacheImpl) cache;
+  }
+
   @Override
   public SuggestDefinition newSuggestDefinition() {
     SuggestDefinition def = new SuggestDefinitionImpl();
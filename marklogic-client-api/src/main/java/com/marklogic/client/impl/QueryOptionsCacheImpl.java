@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.admin.QueryOptionsManager;
+import com.marklogic.client.impl.RowResultCacheImpl.CachedPart;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.io.marker.SearchReadHandle;
+import com.marklogic.client.io.marker.StructureWriteHandle;
+import com.marklogic.client.query.QueryManager.QueryView;
+import com.marklogic.client.query.QueryOptionsCache;
+import com.marklogic.client.query.RawCombinedQueryDefinition;
+import com.marklogic.client.query.StructuredQueryBuilder;
+
+/**
+ * Rewrites raw combined queries to refer to content-addressed options
+ * installed on the server.  The rewritten bodies are kept in an LRU map
+ * keyed by a digest of the original body, and in-flight searches are keyed
+ * by a digest of the rewritten body and the request parameters.  The cache
+ * belongs to the client that created it because the response depends on
+ * the permissions of the user.  Installed options are counted by the cached
+ * rewrites that refer to them and deleted when the last one is evicted.
+ */
+class QueryOptionsCacheImpl implements QueryOptionsCache {
+  static final private String OPTIONS_NAME_PREFIX = "client-options-";
+  static final private ObjectMapper mapper = new ObjectMapper();
+
+  private final RESTServices        services;
+  private final QueryOptionsManager optionsMgr;
+  private final int                 maxEntries;
+
+  // guarded by this
+  private final LinkedHashMap<String,Rewrite> rewrites = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String,CompletableFuture<CachedPart>> inFlight = new HashMap<>();
+  // the count of cached rewrites for each installed options name, guarded by installed
+  private final Map<String,Integer> installed = new LinkedHashMap<>();
+
+  private final AtomicLong hitCount       = new AtomicLong();
+  private final AtomicLong missCount      = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  QueryOptionsCacheImpl(RESTServices services, QueryOptionsManager optionsMgr, int maxEntries) {
+    if (optionsMgr == null) {
+      throw new IllegalArgumentException("Must specify a query options manager to install options for the cache");
+    }
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Must have a positive maximum number of entries for the cache instead of "+maxEntries);
+    }
+    this.services   = services;
+    this.optionsMgr = optionsMgr;
+    this.maxEntries = maxEntries;
+  }
+
+  boolean isFor(RESTServices services) {
+    return this.services == services;
+  }
+
+  @Override
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+  @Override
+  public String[] getInstalledOptionsNames() {
+    synchronized (installed) {
+      return installed.keySet().toArray(new String[installed.size()]);
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+  @Override
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+  @Override
+  public synchronized int getEntryCount() {
+    return rewrites.size();
+  }
+
+  @Override
+  public void clear() {
+    synchronized (this) {
+      rewrites.clear();
+    }
+    synchronized (installed) {
+      Iterator<String> itr = installed.keySet().iterator();
+      while (itr.hasNext()) {
+        optionsMgr.deleteOptions(itr.next());
+        itr.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the rewrite for a combined query, which is null if the
+   * query isn't in XML or JSON or can be sent only once.
+   */
+  Rewrite rewrite(RawCombinedQueryDefinition querydef) {
+    StructureWriteHandle handle = querydef.getHandle();
+    HandleImplementation<?,?> handleBase = HandleAccessor.checkHandle(handle, "search");
+    // reading the body of a one-shot handle would leave nothing to send if the rewrite fails
+    if (!handleBase.isResendable()) {
+      return null;
+    }
+    Format format = handleBase.getFormat();
+    if (format == Format.UNKNOWN) {
+      format = Format.XML;
+    } else if (format != Format.XML && format != Format.JSON) {
+      return null;
+    }
+
+    byte[] body = HandleAccessor.contentAsString(handle).getBytes(StandardCharsets.UTF_8);
+    String key  = digest(format.name(), querydef.getOptionsName(), body);
+    synchronized (this) {
+      Rewrite rewrite = rewrites.get(key);
+      if (rewrite != null) {
+        hitCount.incrementAndGet();
+        return rewrite;
+      }
+    }
+    missCount.incrementAndGet();
+
+    // evicts before installing so the options of the evicted rewrite don't take the place of the new options
+    release(evict(maxEntries - 1, null, null));
+    Rewrite rewrite = (querydef.getOptionsName() != null) ?
+      new Rewrite(body, format, handleBase.getMimetype(), querydef.getOptionsName()) :
+      extractOptions(body, format, handleBase.getMimetype());
+    // concurrent misses may have filled the cache again
+    release(evict(maxEntries, key, rewrite));
+    return rewrite;
+  }
+  private synchronized List<Rewrite> evict(int keepEntries, String key, Rewrite added) {
+    List<Rewrite> evicted = new ArrayList<>();
+    if (added != null) {
+      // a concurrent miss for the same query may have cached a rewrite already
+      Rewrite replaced = rewrites.put(key, added);
+      if (replaced != null) evicted.add(replaced);
+    }
+    Iterator<Rewrite> eldest = rewrites.values().iterator();
+    while (rewrites.size() > keepEntries && eldest.hasNext()) {
+      evicted.add(eldest.next());
+      eldest.remove();
+    }
+    return evicted;
+  }
+
+  private Rewrite extractOptions(byte[] body, Format format, String mimetype) {
+    try {
+      String options;
+      byte[]  rewritten;
+      if (format == Format.JSON) {
+        JsonNode root = mapper.readTree(body);
+        JsonNode search = root.get("search");
+        JsonNode optionsNode = (search instanceof ObjectNode) ? ((ObjectNode) search).remove("options") : null;
+        if (optionsNode == null) {
+          return new Rewrite(body, format, mimetype, null);
+        }
+        ObjectNode optionsRoot = mapper.createObjectNode();
+        optionsRoot.set("options", optionsNode);
+        options   = mapper.writeValueAsString(optionsRoot);
+        rewritten = mapper.writeValueAsBytes(root);
+      } else {
+        Document doc = XmlFactories.getDocumentBuilder().parse(new ByteArrayInputStream(body));
+        Element root = doc.getDocumentElement();
+        Element optionsElement = null;
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+          if (child.getNodeType() == Node.ELEMENT_NODE &&
+              StructuredQueryBuilder.SEARCH_API_NS.equals(child.getNamespaceURI()) &&
+              "options".equals(child.getLocalName())) {
+            optionsElement = (Element) child;
+            break;
+          }
+        }
+        if (optionsElement == null) {
+          return new Rewrite(body, format, mimetype, null);
+        }
+        // the options may use prefixes declared on the root in attribute values
+        NamedNodeMap rootAttrs = root.getAttributes();
+        for (int i=0; i < rootAttrs.getLength(); i++) {
+          Attr attr = (Attr) rootAttrs.item(i);
+          if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI()) &&
+              !optionsElement.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attr.getLocalName())) {
+            optionsElement.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attr.getName(), attr.getValue());
+          }
+        }
+        options = serialize(optionsElement);
+        root.removeChild(optionsElement);
+        rewritten = serialize(doc).getBytes(StandardCharsets.UTF_8);
+      }
+
+      String optionsName = OPTIONS_NAME_PREFIX + digestHex(options.getBytes(StandardCharsets.UTF_8));
+      if (!install(optionsName, options, format)) {
+        return new Rewrite(body, format, mimetype, null);
+      }
+      return new Rewrite(rewritten, format, mimetype, optionsName, true);
+    } catch (MarkLogicIOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new MarkLogicIOException("could not extract the options from a combined query", e);
+    }
+  }
+  private String serialize(Node node) throws Exception {
+    Transformer transformer = XmlFactories.getTransformer();
+    transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+    StringWriter writer = new StringWriter();
+    transformer.transform(new DOMSource(node), new StreamResult(writer));
+    return writer.toString();
+  }
+  // counts the new rewrite that refers to the options, installing them if needed
+  private boolean install(String optionsName, String options, Format format) {
+    synchronized (installed) {
+      Integer rewriteCount = installed.get(optionsName);
+      if (rewriteCount != null) {
+        installed.put(optionsName, rewriteCount + 1);
+        return true;
+      }
+      if (installed.size() >= maxEntries) {
+        return false;
+      }
+      optionsMgr.writeOptions(optionsName, new StringHandle(options).withFormat(format));
+      installed.put(optionsName, 1);
+      return true;
+    }
+  }
+  private void release(List<Rewrite> evicted) {
+    for (Rewrite rewrite: evicted) {
+      if (rewrite.isInstalled) release(rewrite.optionsName);
+    }
+  }
+  // deletes the options after the last rewrite that refers to them is evicted
+  private void release(String optionsName) {
+    synchronized (installed) {
+      Integer rewriteCount = installed.get(optionsName);
+      if (rewriteCount == null) {
+        return;
+      }
+      if (rewriteCount > 1) {
+        installed.put(optionsName, rewriteCount - 1);
+        return;
+      }
+      installed.remove(optionsName);
+      optionsMgr.deleteOptions(optionsName);
+    }
+  }
+
+  static boolean canCoalesce(SearchReadHandle searchHandle) {
+    return RowResultCacheImpl.canReceive(searchHandle) &&
+      HandleAccessor.as(searchHandle).getPointInTimeQueryTimestamp() == -1;
+  }
+
+  /**
+   * Sends the search unless an identical search by the same client is in
+   * flight and copies the response to the handle.
+   */
+  <T extends SearchReadHandle> T coalesce(
+    String searchKey, T searchHandle, Function<BytesHandle,BytesHandle> searcher
+  ) {
+    CompletableFuture<CachedPart> future;
+    synchronized (this) {
+      future = inFlight.get(searchKey);
+      if (future == null) {
+        inFlight.put(searchKey, new CompletableFuture<>());
+      }
+    }
+    CachedPart part;
+    if (future != null) {
+      coalescedCount.incrementAndGet();
+      part = await(future);
+    } else {
+      try {
+        Format format = HandleAccessor.as(searchHandle).getFormat();
+        BytesHandle bytesHandle = new BytesHandle().withFormat((format == Format.UNKNOWN) ? Format.XML : format);
+        bytesHandle = searcher.apply(bytesHandle);
+        part = (bytesHandle == null) ? null : new CachedPart(
+          bytesHandle.get(), bytesHandle.getFormat(), bytesHandle.getMimetype(), Collections.emptyMap(),
+          bytesHandle.getServerTimestamp()
+        );
+      } catch (RuntimeException e) {
+        removeInFlight(searchKey).completeExceptionally(e);
+        throw e;
+      }
+      removeInFlight(searchKey).complete(part);
+    }
+    if (part == null) {
+      return null;
+    }
+    return part.getContent(searchHandle);
+  }
+  private synchronized CompletableFuture<CachedPart> removeInFlight(String searchKey) {
+    return inFlight.remove(searchKey);
+  }
+  private CachedPart await(CompletableFuture<CachedPart> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MarkLogicIOException("interrupted while waiting for a concurrent search", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new MarkLogicIOException("could not search", cause);
+    }
+  }
+
+  static private String digest(String format, String optionsName, byte[] body) {
+    MessageDigest digest = newDigest();
+    digest.update(format.getBytes(StandardCharsets.UTF_8));
+    // a separator that can't occur in a string keeps adjacent values distinct
+    digest.update((byte) 0xFF);
+    if (optionsName != null) {
+      digest.update(optionsName.getBytes(StandardCharsets.UTF_8));
+    }
+    digest.update((byte) 0xFF);
+    digest.update(body);
+    return toHex(digest.digest());
+  }
+  static private String digestHex(byte[] content) {
+    return toHex(newDigest().digest(content));
+  }
+  static private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new MarkLogicInternalException("no SHA-256 digest", e);
+    }
+  }
+  static private String toHex(byte[] bytes) {
+    StringBuilder buf = new StringBuilder(bytes.length * 2);
+    for (byte b: bytes) {
+      buf.append(Character.forDigit((b >> 4) & 0xF, 16));
+      buf.append(Character.forDigit(b & 0xF, 16));
+    }
+    return buf.toString();
+  }
+
+  /**
+   * A combined query with its inline options replaced by a reference
+   * to installed options.
+   */
+  static class Rewrite {
+    private final byte[] body;
+    private final Format format;
+    private final String mimetype;
+    private final String optionsName;
+    private final boolean isInstalled;
+    private final String bodyDigest;
+    Rewrite(byte[] body, Format format, String mimetype, String optionsName) {
+      this(body, format, mimetype, optionsName, false);
+    }
+    // isInstalled is true if the options were installed by the cache
+    Rewrite(byte[] body, Format format, String mimetype, String optionsName, boolean isInstalled) {
+      this.body        = body;
+      this.format      = format;
+      this.mimetype    = mimetype;
+      this.optionsName = optionsName;
+      this.isInstalled = isInstalled;
+      this.bodyDigest  = digest(format.name(), optionsName, body);
+    }
+
+    String getOptionsName() {
+      return optionsName;
+    }
+
+    /**
+     * Makes a query definition for the rewritten body with the collections,
+     * directory, and transform of the original query definition.
+     */
+    RawCombinedQueryDefinition makeQueryDefinition(RawCombinedQueryDefinition original) {
+      BytesHandle handle = new BytesHandle(body).withFormat(format);
+      if (mimetype != null) {
+        handle.setMimetype(mimetype);
+      }
+      RawCombinedQueryDefinition querydef = new RawQueryDefinitionImpl.Combined(handle, optionsName);
+      querydef.setCollections(original.getCollections());
+      querydef.setDirectory(original.getDirectory());
+      querydef.setResponseTransform(original.getResponseTransform());
+      return querydef;
+    }
+
+    /**
+     * Makes the key for a search with the rewritten body from everything
+     * else that goes into the request.
+     */
+    String makeSearchKey(RawCombinedQueryDefinition original, long start, long pageLength, QueryView view,
+                         String forestName, Format responseFormat) {
+      StringBuilder buf = new StringBuilder(bodyDigest);
+      append(buf, String.valueOf(start));
+      append(buf, String.valueOf(pageLength));
+      append(buf, String.valueOf(view));
+      append(buf, forestName);
+      append(buf, String.valueOf(responseFormat));
+      append(buf, original.getDirectory());
+      String[] collections = original.getCollections();
+      Arrays.sort(collections);
+      for (String collection: collections) {
+        append(buf, collection);
+      }
+      ServerTransform transform = original.getResponseTransform();
+      if (transform != null) {
+        for (Map.Entry<String,List<String>> param: new TreeMap<>(transform.merge(null)).entrySet()) {
+          append(buf, param.getKey());
+          for (String value: param.getValue()) {
+            append(buf, value);
+          }
+        }
+      }
+      return buf.toString();
+    }
+    private void append(StringBuilder buf, String value) {
+      buf.append('\u0000');
+      if (value != null) {
+        buf.append(value);
+      }
+    }
+  }
+}
@@ -118,10 +118,21 @@ public interface RESTServices {
 
   String MAX_DELAY_PROP = "com.marklogic.client.maximumRetrySeconds";
   String MIN_RETRY_PROP = "com.marklogic.client.minimumRetries";
+  String CIRCUIT_THRESHOLD_PROP = "com.marklogic.client.circuitBreakerThreshold";
+  String CIRCUIT_OPEN_DELAY_PROP = "com.marklogic.client.circuitBreakerOpenSeconds";
+  String GZIP_THRESHOLD_PROP = "com.marklogic.client.gzipRequestThreshold";
+  String REPLAY_BUFFER_PROP = "com.marklogic.client.replayBufferMegabytes";
+  String LOAD_BALANCING_PROP = "com.marklogic.client.loadBalancing";
+  String HOST_EJECT_THRESHOLD_PROP = "com.marklogic.client.hostEjectThreshold";
+  String HOST_PROBE_DELAY_PROP = "com.marklogic.client.hostProbeSeconds";
+  String HEDGE_DELAY_PROP = "com.marklogic.client.hedgeDelayMillis";
+  String HEDGE_PERCENTILE_PROP = "com.marklogic.client.hedgePercentile";
+  String HEDGE_BUDGET_PROP = "com.marklogic.client.hedgeBudgetPercent";
 
   Set<Integer> getRetryStatus();
   int getMaxDelay();
   void setMaxDelay(int maxDelay);
+  HostBalancer getHostBalancer();
 
   public void connect(String host, int port, String database, SecurityContext securityContext);
   public DatabaseClient getDatabaseClient();
@@ -193,6 +204,9 @@ public interface RESTServices {
 
   public <T> T values(Class <T> as, ValuesDefinition valdef, String mimetype, long start, long pageLength, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException;
+  public <T> T values(Class <T> as, ValuesDefinition valdef, String mimetype, long start, long pageLength,
+                      Transaction transaction, String forestName)
+    throws ForbiddenUserException, FailedRequestException;
 
   public <T> T valuesList(Class <T> as, ValuesListDefinition valdef, String mimetype, Transaction transaction)
     throws ForbiddenUserException, FailedRequestException;
@@ -396,6 +410,11 @@ public interface RESTServices {
   public interface RESTServiceResultIterator extends ServiceResultIterator {
     @Override
     public RESTServiceResult next();
+    /**
+     * Returns the effective timestamp of the response, if the server reported one.
+     * @return the server timestamp or -1 if not known
+     */
+    public long getServerTimestamp();
   }
   public interface RESTServiceResult extends ServiceResult {
     public Map<String,List<String>> getHeaders();
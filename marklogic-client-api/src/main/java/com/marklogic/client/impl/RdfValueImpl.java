@@ -15,8 +15,10 @@
  */
 package com.marklogic.client.impl;
 
+import java.io.IOException;
 import java.util.Arrays;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.marklogic.client.expression.RdfValue;
 import com.marklogic.client.type.RdfLangStringSeqVal;
 import com.marklogic.client.type.RdfLangStringVal;
@@ -107,10 +109,8 @@ public class RdfValueImpl implements RdfValue {
       return toString();
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      return strb.append("{\"ns\":\"rdf\", \"fn\":\"langString\", \"args\":[\"")
-        .append(getString()).append("\", \"").append(getLang())
-        .append("\"]}");
+    public void exportAst(JsonGenerator generator) throws IOException {
+      BaseTypeImpl.exportCallAst(generator, "rdf", "langString", getString(), getLang());
     }
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * A request body that captures the content of a streaming body while it
+ * is sent so the content can be sent again if the request must be
+ * retried.  The captured content is kept in memory up to the memory limit
+ * and spilled to a temporary file beyond that, so a large body is never
+ * materialized in the heap.  The temporary file is deleted by close() or,
+ * at the latest, when the body is garbage collected.
+ *
+ * The content can be replayed only after it has been sent completely.
+ */
+public class ReplayableRequestBody extends RequestBody {
+  static final private Cleaner cleaner = Cleaner.create();
+
+  enum State {UNSENT, CAPTURING, CAPTURED, FAILED}
+
+  private RequestBody body;
+  private long        memoryLimit;
+  private State       state = State.UNSENT;
+  private Buffer      memoryBuffer = new Buffer();
+  private SpillFile   spillFile = new SpillFile();
+  private BufferedSink spillSink;
+  private long        spillLength = 0;
+  private Cleaner.Cleanable cleanable;
+
+  public ReplayableRequestBody(RequestBody body, long memoryLimit) {
+    super();
+    if (body == null) throw new IllegalArgumentException("cannot replay null body");
+    this.body        = body;
+    this.memoryLimit = memoryLimit;
+    this.cleanable   = cleaner.register(this, spillFile);
+  }
+
+  @Override
+  public MediaType contentType() {
+    return body.contentType();
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    if (state == State.CAPTURED) {
+      return memoryBuffer.size() + spillLength;
+    }
+    return body.contentLength();
+  }
+
+  /**
+   * The body can be written once and, after the content has been captured
+   * completely, any number of times again.  Only a body that failed while
+   * sending cannot be written again.
+   */
+  @Override
+  public boolean isOneShot() {
+    return state == State.CAPTURING || state == State.FAILED;
+  }
+
+  /**
+   * Whether the content has been sent completely and can be sent again.
+   * @return	true if the content can be replayed
+   */
+  public boolean isReplayable() {
+    return state == State.CAPTURED;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    switch (state) {
+      case UNSENT:
+        capture(sink);
+        break;
+      case CAPTURED:
+        replay(sink);
+        break;
+      default:
+        throw new IOException("Cannot resend content after failure while sending");
+    }
+  }
+
+  private void capture(BufferedSink sink) throws IOException {
+    state = State.CAPTURING;
+    try {
+      BufferedSink teeSink = Okio.buffer(new CapturingSink(sink));
+      body.writeTo(teeSink);
+      teeSink.flush();
+      if (spillSink != null) {
+        spillSink.close();
+        spillSink = null;
+      }
+      state = State.CAPTURED;
+    } catch (IOException|RuntimeException e) {
+      state = State.FAILED;
+      close();
+      throw e;
+    }
+  }
+
+  private void replay(BufferedSink sink) throws IOException {
+    memoryBuffer.copyTo(sink.getBuffer(), 0, memoryBuffer.size());
+    sink.emitCompleteSegments();
+    if (spillLength > 0) {
+      try (Source source = Okio.source(spillFile.file)) {
+        sink.writeAll(source);
+      }
+    }
+  }
+
+  private void captureBytes(Buffer source, long byteCount) throws IOException {
+    long offset = 0;
+    long memoryRemaining = memoryLimit - memoryBuffer.size();
+    if (spillSink == null && memoryRemaining > 0) {
+      long memoryCount = Math.min(memoryRemaining, byteCount);
+      source.copyTo(memoryBuffer, 0, memoryCount);
+      offset = memoryCount;
+    }
+    if (offset < byteCount) {
+      if (spillSink == null) {
+        spillFile.file = Files.createTempFile("ml-replay", ".tmp").toFile();
+        spillSink = Okio.buffer(Okio.sink(spillFile.file));
+      }
+      long spillCount = byteCount - offset;
+      source.copyTo(spillSink.getBuffer(), offset, spillCount);
+      spillSink.emitCompleteSegments();
+      spillLength += spillCount;
+    }
+  }
+
+  /**
+   * Releases the captured content.
+   */
+  public void close() {
+    try {
+      if (spillSink != null) spillSink.close();
+    } catch (IOException e) {
+      // the temporary file is deleted below in any case
+    } finally {
+      spillSink = null;
+      memoryBuffer.clear();
+      if (state == State.CAPTURED) state = State.FAILED;
+      cleanable.clean();
+    }
+  }
+
+  private class CapturingSink extends ForwardingSink {
+    CapturingSink(Sink delegate) {
+      super(delegate);
+    }
+    @Override
+    public void write(Buffer source, long byteCount) throws IOException {
+      captureBytes(source, byteCount);
+      super.write(source, byteCount);
+    }
+  }
+
+  // separate from the body so the cleaner doesn't keep the body reachable
+  static private class SpillFile implements Runnable {
+    private File file;
+    @Override
+    public void run() {
+      if (file != null) {
+        file.delete();
+        file = null;
+      }
+    }
+  }
+}
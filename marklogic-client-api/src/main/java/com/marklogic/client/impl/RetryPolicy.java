@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.marklogic.client.FailedRetryException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The policy for retrying requests that fail with a retryable status
+ * (by default, 502, 503, or 504).  A request is retried at least
+ * minRetry times and until maxDelay milliseconds have elapsed, with an
+ * exponential backoff and random jitter between tries.
+ *
+ * When a circuit breaker threshold is configured, the policy also tracks
+ * the consecutive failures for each host that receives the requests of the
+ * client (which may differ from the configured host when requests are
+ * balanced or hedged).  After the threshold is reached,
+ * the circuit opens and requests to the host fail fast with a
+ * FailedRetryException (caused by a ConnectException, so the
+ * HostAvailabilityListener of a data movement job treats the host as
+ * unavailable and reroutes to the other hosts) instead of parking the
+ * calling thread.  After the open interval, one trial request is let
+ * through; its success closes the circuit again.
+ */
+public class RetryPolicy {
+  static final private Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+  static final private int DELAY_FLOOR       =    125;
+  static final private int DELAY_CEILING     =   2000;
+  static final private int DELAY_MULTIPLIER  =     20;
+  static final int DEFAULT_MAX_DELAY = 120000;
+  static final int DEFAULT_MIN_RETRY =      8;
+  static final int DEFAULT_CIRCUIT_OPEN_DELAY = 30000;
+
+
+  private int maxDelay = DEFAULT_MAX_DELAY;
+  private int minRetry = DEFAULT_MIN_RETRY;
+  private int circuitThreshold = 0;
+  private int circuitOpenDelay = DEFAULT_CIRCUIT_OPEN_DELAY;
+
+  private Set<Integer> retryStatus = new HashSet<>();
+
+  // the circuit breakers for the hosts that received requests, by host and port
+  private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  public RetryPolicy() {
+    retryStatus.add(RESTServices.STATUS_BAD_GATEWAY);
+    retryStatus.add(RESTServices.STATUS_SERVICE_UNAVAILABLE);
+    retryStatus.add(RESTServices.STATUS_GATEWAY_TIMEOUT);
+  }
+
+  public Set<Integer> getRetryStatus() {
+    return retryStatus;
+  }
+  public boolean isRetryStatus(int status) {
+    return retryStatus.contains(status);
+  }
+
+  public int getMaxDelay() {
+    return maxDelay;
+  }
+  public void setMaxDelay(int maxDelay) {
+    this.maxDelay = maxDelay;
+  }
+
+  public int getMinRetry() {
+    return minRetry;
+  }
+  public void setMinRetry(int minRetry) {
+    this.minRetry = minRetry;
+  }
+
+  /**
+   * Enables the circuit breakers for the hosts.
+   * @param threshold	the number of consecutive failures that opens the circuit or 0 to disable
+   * @param openDelay	the milliseconds before an open circuit lets a trial request through
+   */
+  public void setCircuitBreaker(int threshold, int openDelay) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("circuit breaker threshold cannot be negative: " + threshold);
+    }
+    if (openDelay <= 0) {
+      throw new IllegalArgumentException("circuit breaker open delay must be positive: " + openDelay);
+    }
+    this.circuitThreshold = threshold;
+    this.circuitOpenDelay = openDelay;
+  }
+  public int getCircuitThreshold() {
+    return circuitThreshold;
+  }
+  public int getCircuitOpenDelay() {
+    return circuitOpenDelay;
+  }
+  CircuitBreaker getCircuitBreaker(String host) {
+    return circuitBreakers.get(host);
+  }
+  /**
+   * Makes the interceptor that fails fast for hosts with an open circuit
+   * and records the outcome of each request for the host that received it.
+   * The interceptor must come after any interceptor that changes the host.
+   * @return	the interceptor
+   */
+  public Interceptor makeCircuitInterceptor() {
+    return new CircuitInterceptor();
+  }
+
+  /**
+   * Calculates the delay before the next try with an exponential backoff
+   * from the floor to the ceiling and random jitter.
+   * @param retry	the number of tries so far
+   * @return	the delay in milliseconds
+   */
+  public int calculateDelay(int retry) {
+    int min   =
+      (retry  > 6) ? DELAY_CEILING :
+        (retry == 0) ? DELAY_FLOOR   :
+          DELAY_FLOOR + (1 << retry) * DELAY_MULTIPLIER;
+    int range =
+      (retry >  6) ? DELAY_FLOOR          :
+        (retry == 0) ? 2 * DELAY_MULTIPLIER :
+          (retry == 6) ? DELAY_CEILING - min  :
+            (1 << retry) * DELAY_MULTIPLIER;
+    return min + ThreadLocalRandom.current().nextInt(range);
+  }
+
+  /**
+   * Starts tracking the tries for one request.
+   * @return	the tracker for the tries
+   */
+  public Retrier startRetries() {
+    return new Retrier();
+  }
+
+  /**
+   * Records a failure to connect to the host or a retryable status from the host.
+   * @param host	the host and port that received the request
+   */
+  public void recordFailure(String host) {
+    if (circuitThreshold == 0) return;
+    circuitBreakers.computeIfAbsent(host, CircuitBreaker::new).recordFailure(circuitThreshold, circuitOpenDelay);
+  }
+  /**
+   * Records a response from the host with a status that isn't retryable.
+   * @param host	the host and port that received the request
+   */
+  public void recordSuccess(String host) {
+    CircuitBreaker circuitBreaker = circuitBreakers.get(host);
+    if (circuitBreaker != null) circuitBreaker.recordSuccess();
+  }
+
+  /**
+   * Checks whether a request can be sent to the host.
+   * @param host	the host and port that receives the request
+   * @throws FailedRetryException if the circuit for the host is open
+   */
+  public void checkCircuit(String host) {
+    CircuitBreaker circuitBreaker = circuitBreakers.get(host);
+    if (circuitBreaker == null || circuitBreaker.allowRequest(circuitOpenDelay)) return;
+    throw new FailedRetryException(
+        "Circuit open for host "+host+" after "+circuitThreshold+" consecutive failures",
+        new ConnectException("circuit open for host "+host));
+  }
+
+  /**
+   * Tracks the tries for one request.
+   */
+  public class Retrier {
+    private long startTime = System.currentTimeMillis();
+    private int  nextDelay = 0;
+    private int  retry     = 0;
+
+    Retrier() {
+    }
+
+    /**
+     * Whether the request can be tried again.
+     * @return	true while the minimum retries or maximum delay haven't been exhausted
+     */
+    public boolean hasNextTry() {
+      return retry < minRetry || (System.currentTimeMillis() - startTime) < maxDelay;
+    }
+    /**
+     * Advances the count of tries.
+     */
+    public void nextTry() {
+      retry++;
+    }
+    public int getRetry() {
+      return retry;
+    }
+
+    /**
+     * Waits for the delay (if any) before the next try.
+     * @throws FailedRetryException if the thread was interrupted during the wait
+     */
+    public void pause() {
+      if (nextDelay <= 0) return;
+      try {
+        Thread.sleep(nextDelay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new FailedRetryException("Interrupted while waiting to retry after "+retry+" retries", e);
+      }
+    }
+
+    public void setNextDelay(int nextDelay) {
+      this.nextDelay = nextDelay;
+    }
+    /**
+     * Records a retryable response and calculates the delay before the
+     * next try from the Retry-After header and the backoff.
+     * @param retryAfterRaw	the value of the Retry-After header (if any)
+     */
+    public void retryAfter(String retryAfterRaw) {
+      int retryAfter = (retryAfterRaw != null) ? Integer.parseInt(retryAfterRaw) : -1;
+      nextDelay = Math.max(retryAfter, calculateDelay(retry));
+    }
+
+    /**
+     * Makes the exception for a request whose retries have been exhausted.
+     * @return	the exception to throw
+     */
+    public FailedRetryException failed() {
+      return new FailedRetryException(
+        "Service unavailable and maximum retry period elapsed: "+
+          ((System.currentTimeMillis() - startTime) / 1000)+
+          " seconds after "+retry+" retries");
+    }
+  }
+
+  private class CircuitInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      String host = request.url().host() + ":" + request.url().port();
+      // the probes of the host balancer find out whether the host is back
+      if (request.tag(HostBalancer.class) == null) checkCircuit(host);
+      Response response;
+      try {
+        response = chain.proceed(request);
+      } catch (IOException e) {
+        recordFailure(host);
+        throw e;
+      }
+      if (isRetryStatus(response.code())) {
+        recordFailure(host);
+      } else {
+        recordSuccess(host);
+      }
+      return response;
+    }
+  }
+
+  static class CircuitBreaker {
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private String host;
+    private State  state    = State.CLOSED;
+    private int    failures = 0;
+    private long   openUntil;
+
+    CircuitBreaker(String host) {
+      this.host = host;
+    }
+
+    String getHost() {
+      return host;
+    }
+    synchronized State getState() {
+      return state;
+    }
+
+    synchronized boolean allowRequest(int openDelay) {
+      if (state == State.CLOSED) return true;
+      long now = System.currentTimeMillis();
+      // while open or while a trial request is in flight, fail fast
+      if (now < openUntil) return false;
+      // let one trial request through (or another if the previous trial never reported back)
+      state     = State.HALF_OPEN;
+      openUntil = now + openDelay;
+      logger.info("Trying host {} after circuit was open", host);
+      return true;
+    }
+    synchronized void recordFailure(int threshold, int openDelay) {
+      failures++;
+      if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+        if (state == State.CLOSED) {
+          logger.warn("Opening circuit for host {} after {} consecutive failures", host, failures);
+        }
+        state     = State.OPEN;
+        openUntil = System.currentTimeMillis() + openDelay;
+      }
+    }
+    synchronized void recordSuccess() {
+      if (state != State.CLOSED) {
+        logger.info("Closing circuit for host {}", host);
+      }
+      state    = State.CLOSED;
+      failures = 0;
+    }
+  }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.row.RowBatch;
+
+/**
+ * A batch of rows decoded directly from the row stream into one vector
+ * for each column.
+ */
+class RowBatchImpl implements RowBatch {
+  private String[]             columnNames;
+  private String[]             columnTypes;
+  private Map<String, Integer> columnIndexes;
+  private ObjectMapper         mapper;
+
+  private int          capacity;
+  private int          size = 0;
+  private VectorType[] vectorTypes;
+  private Object[]     vectors;
+  private BitSet[]     nulls;
+  private Dictionary[] dictionaries;
+
+  RowBatchImpl(
+    String[] columnNames, String[] columnTypes, VectorType[] headerVectorTypes,
+    Map<String, Integer> columnIndexes, ObjectMapper mapper, int capacity
+  ) {
+    this.columnNames   = columnNames;
+    this.columnTypes   = columnTypes;
+    this.columnIndexes = columnIndexes;
+    this.mapper        = mapper;
+    this.capacity      = capacity;
+
+    int columnCount = columnNames.length;
+    vectorTypes  = Arrays.copyOf(headerVectorTypes, columnCount);
+    vectors      = new Object[columnCount];
+    nulls        = new BitSet[columnCount];
+    dictionaries = new Dictionary[columnCount];
+    for (int i=0; i < columnCount; i++) {
+      nulls[i] = new BitSet();
+      switch(vectorTypes[i]) {
+        case LONG:
+          vectors[i] = new long[capacity];
+          break;
+        case DOUBLE:
+          vectors[i] = new double[capacity];
+          break;
+        case BOOLEAN:
+          vectors[i] = new boolean[capacity];
+          break;
+        case STRING:
+          vectors[i] = new int[capacity];
+          dictionaries[i] = new Dictionary();
+          break;
+        default:
+          vectors[i] = new Object[capacity];
+          break;
+      }
+    }
+  }
+
+  /**
+   * Maps the header data type of a column to the representation
+   * of its values.
+   */
+  static VectorType getVectorType(String datatype) {
+    if (datatype == null || !datatype.startsWith("xs:")) {
+      return (datatype != null && datatype.contains(":")) ? VectorType.STRING : VectorType.OBJECT;
+    }
+    switch(datatype) {
+      case "xs:integer":
+      case "xs:long":
+      case "xs:int":
+      case "xs:short":
+      case "xs:byte":
+      case "xs:nonNegativeInteger":
+      case "xs:nonPositiveInteger":
+      case "xs:positiveInteger":
+      case "xs:negativeInteger":
+      case "xs:unsignedInt":
+      case "xs:unsignedShort":
+      case "xs:unsignedByte":
+        return VectorType.LONG;
+      case "xs:double":
+      case "xs:float":
+        return VectorType.DOUBLE;
+      case "xs:boolean":
+        return VectorType.BOOLEAN;
+      default:
+        return VectorType.STRING;
+    }
+  }
+
+  boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Reads a row in the array structure with the parser positioned
+   * on the start of the array.
+   */
+  void readRow(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      throw new MarkLogicIOException("row record is not a JSON array");
+    }
+    int row = size;
+    int column = 0;
+    for (; parser.nextToken() != JsonToken.END_ARRAY; column++) {
+      if (column >= columnNames.length) {
+        parser.skipChildren();
+        continue;
+      }
+      readValue(parser, column, row);
+    }
+    for (; column < columnNames.length; column++) {
+      setNull(column, row);
+    }
+    size++;
+  }
+  private void readValue(JsonParser parser, int column, int row) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.VALUE_NULL) {
+      setNull(column, row);
+      return;
+    }
+    switch(vectorTypes[column]) {
+      case LONG:
+        if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+          ((long[]) vectors[column])[row] = parser.getLongValue();
+          return;
+        }
+        break;
+      case DOUBLE:
+        if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+          ((double[]) vectors[column])[row] = parser.getDoubleValue();
+          return;
+        }
+        break;
+      case BOOLEAN:
+        if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+          ((boolean[]) vectors[column])[row] = (token == JsonToken.VALUE_TRUE);
+          return;
+        }
+        break;
+      case STRING:
+        if (token.isScalarValue()) {
+          ((int[]) vectors[column])[row] = dictionaries[column].encode(parser.getText());
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    if (vectorTypes[column] != VectorType.OBJECT) {
+      widen(column);
+    }
+    ((Object[]) vectors[column])[row] = readObject(parser);
+  }
+  private Object readObject(JsonParser parser) throws IOException {
+    switch(parser.currentToken()) {
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NUMBER_INT:
+        return (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) ?
+          parser.getBigIntegerValue() : parser.getLongValue();
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_STRING:
+        return parser.getText();
+      default:
+        return mapper.readValue(parser, Object.class);
+    }
+  }
+  private void setNull(int column, int row) {
+    nulls[column].set(row);
+    if (vectorTypes[column] == VectorType.STRING) {
+      ((int[]) vectors[column])[row] = -1;
+    }
+  }
+  // switches a column with a value inconsistent with the header data type to objects
+  private void widen(int column) {
+    Object[] objects = new Object[capacity];
+    for (int row=0; row < size; row++) {
+      objects[row] = isNull(column, row) ? null : getBoxed(column, row);
+    }
+    vectors[column]      = objects;
+    vectorTypes[column]  = VectorType.OBJECT;
+    dictionaries[column] = null;
+  }
+  private Object getBoxed(int column, int row) {
+    switch(vectorTypes[column]) {
+      case LONG:
+        return ((long[]) vectors[column])[row];
+      case DOUBLE:
+        return ((double[]) vectors[column])[row];
+      case BOOLEAN:
+        return ((boolean[]) vectors[column])[row];
+      case STRING:
+        return getString(column, row);
+      default:
+        return ((Object[]) vectors[column])[row];
+    }
+  }
+
+  /**
+   * Trims the vectors of a partial batch after the last row.
+   */
+  void finish() {
+    if (size == capacity) {
+      return;
+    }
+    for (int i=0; i < vectors.length; i++) {
+      switch(vectorTypes[i]) {
+        case LONG:
+          vectors[i] = Arrays.copyOf((long[]) vectors[i], size);
+          break;
+        case DOUBLE:
+          vectors[i] = Arrays.copyOf((double[]) vectors[i], size);
+          break;
+        case BOOLEAN:
+          vectors[i] = Arrays.copyOf((boolean[]) vectors[i], size);
+          break;
+        case STRING:
+          vectors[i] = Arrays.copyOf((int[]) vectors[i], size);
+          break;
+        default:
+          vectors[i] = Arrays.copyOf((Object[]) vectors[i], size);
+          break;
+      }
+    }
+    capacity = size;
+  }
+
+  @Override
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+  @Override
+  public String[] getColumnTypes() {
+    return columnTypes;
+  }
+  @Override
+  public int getColumnIndex(String columnName) {
+    Integer index = (columnName == null) ? null : columnIndexes.get(columnName);
+    return (index == null) ? -1 : index;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public VectorType getVectorType(int column) {
+    checkColumn(column);
+    return vectorTypes[column];
+  }
+  @Override
+  public BitSet getNulls(int column) {
+    checkColumn(column);
+    return nulls[column];
+  }
+  @Override
+  public boolean isNull(int column, int row) {
+    checkColumn(column);
+    return nulls[column].get(row);
+  }
+
+  @Override
+  public long[] getLongs(int column) {
+    return (long[]) getVector(column, VectorType.LONG);
+  }
+  @Override
+  public double[] getDoubles(int column) {
+    return (double[]) getVector(column, VectorType.DOUBLE);
+  }
+  @Override
+  public boolean[] getBooleans(int column) {
+    return (boolean[]) getVector(column, VectorType.BOOLEAN);
+  }
+  @Override
+  public int[] getStringCodes(int column) {
+    return (int[]) getVector(column, VectorType.STRING);
+  }
+  @Override
+  public String[] getStringDictionary(int column) {
+    getVector(column, VectorType.STRING);
+    return dictionaries[column].toArray();
+  }
+  @Override
+  public String getString(int column, int row) {
+    int code = getStringCodes(column)[row];
+    return (code < 0) ? null : dictionaries[column].values.get(code);
+  }
+  @Override
+  public Object[] getObjects(int column) {
+    return (Object[]) getVector(column, VectorType.OBJECT);
+  }
+
+  private Object getVector(int column, VectorType vectorType) {
+    checkColumn(column);
+    if (vectorTypes[column] != vectorType) {
+      throw new IllegalArgumentException(
+        "Column "+columnNames[column]+" has "+vectorTypes[column].name()+" instead of "+vectorType.name()+" values"
+      );
+    }
+    return vectors[column];
+  }
+  private void checkColumn(int column) {
+    if (column < 0 || column >= columnNames.length) {
+      throw new IllegalArgumentException("No column at position "+column+" in batch with "+columnNames.length+" columns");
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder();
+    buf.append("RowBatch[rows=").append(size);
+    for (int i=0; i < columnNames.length; i++) {
+      buf.append(", ").append(columnNames[i]).append(":").append(vectorTypes[i].name());
+    }
+    return buf.append("]").toString();
+  }
+
+  static private class Dictionary {
+    private Map<String, Integer> codes  = new HashMap<>();
+    private List<String>         values = new ArrayList<>();
+    private String[]             array  = null;
+
+    int encode(String value) {
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = values.size();
+        codes.put(value, code);
+        values.add(value);
+        array = null;
+      }
+      return code;
+    }
+    String[] toArray() {
+      if (array == null) {
+        array = values.toArray(new String[values.size()]);
+      }
+      return array;
+    }
+  }
+}
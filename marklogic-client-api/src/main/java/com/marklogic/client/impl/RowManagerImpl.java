@@ -17,16 +17,29 @@ package com.marklogic.client.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -35,7 +48,11 @@ import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
@@ -48,6 +65,7 @@ import com.marklogic.client.expression.PlanBuilder.Plan;
 import com.marklogic.client.impl.RESTServices.RESTServiceResult;
 import com.marklogic.client.impl.RESTServices.RESTServiceResultIterator;
 import com.marklogic.client.io.BaseHandle;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.io.StringHandle;
@@ -58,8 +76,11 @@ import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.JSONWriteHandle;
 import com.marklogic.client.io.marker.StructureReadHandle;
 import com.marklogic.client.row.RawPlanDefinition;
+import com.marklogic.client.row.RowDocResult;
+import com.marklogic.client.row.RowBatch;
 import com.marklogic.client.row.RowManager;
 import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowResultCache;
 import com.marklogic.client.row.RowSet;
 import com.marklogic.client.type.PlanExprCol;
 import com.marklogic.client.type.PlanParamBindingVal;
@@ -75,6 +96,10 @@ public class RowManagerImpl
   private HandleFactoryRegistry handleRegistry;
   private RowSetPart   datatypeStyle     = null;
   private RowStructure rowStructureStyle = null;
+  private RowResultCacheImpl resultCache = null;
+
+  // the most plans executed at once by a call, each with its own request
+  static final private int MAX_PLAN_THREADS = 8;
 
   public RowManagerImpl(RESTServices services) {
     super();
@@ -120,11 +145,41 @@ public class RowManagerImpl
     this.rowStructureStyle = style;
   }
 
+  @Override
+  public RowResultCache newResultCache(long maxBytes, long timeToLive, TimeUnit unit) {
+    return new RowResultCacheImpl(services, maxBytes, timeToLive, unit);
+  }
+  @Override
+  public RowResultCache getResultCache() {
+    return resultCache;
+  }
+  @Override
+  public void setResultCache(RowResultCache cache) {
+    if (cache != null && !(cache instanceof RowResultCacheImpl)) {
+      throw new IllegalArgumentException("Cannot cache rows with invalid cache having class "+cache.getClass().getName());
+    }
+    // the responses depend on the permissions of the user, so only the client that created the cache can use it
+    if (cache != null && !((RowResultCacheImpl) cache).isFor(services)) {
+      throw new IllegalArgumentException("Cannot cache rows with a cache created by a different client");
+    }
+    this.resultCache = (RowResultCacheImpl) cache;
+  }
+
   @Override
   public RawPlanDefinition newRawPlanDefinition(JSONWriteHandle handle) {
     return new RawPlanDefinitionImpl(handle);
   }
 
+  @Override
+  public Plan prepare(Plan plan) {
+    PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
+    if (requestPlan instanceof PreparedPlanImpl) {
+      return plan;
+    }
+
+    return new PreparedPlanImpl(getAstBytes(requestPlan), requestPlan.getParams());
+  }
+
   @Override
   public <T> T resultDocAs(Plan plan, Class<T> as) {
     return resultDocAs(plan, as, null);
@@ -144,6 +199,12 @@ public class RowManagerImpl
   }
   @Override
   public <T extends StructureReadHandle> T resultDoc(Plan plan, T resultsHandle, Transaction transaction) {
+    return resultDoc(plan, resultsHandle, getDatatypeStyle(), getRowStructureStyle(), transaction, resultCache);
+  }
+  private <T extends StructureReadHandle> T resultDoc(
+    Plan plan, T resultsHandle, RowSetPart datatypeStyle, RowStructure rowStructureStyle, Transaction transaction,
+    RowResultCacheImpl cache
+  ) {
     PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
 
     AbstractWriteHandle astHandle = requestPlan.getHandle();
@@ -153,10 +214,175 @@ public class RowManagerImpl
     }
 
     RequestParameters params = getParamBindings(requestPlan);
-    addDatatypeStyleParam(params,     getDatatypeStyle());
-    addRowStructureStyleParam(params, getRowStructureStyle());
+    addDatatypeStyleParam(params,     datatypeStyle);
+    addRowStructureStyleParam(params, rowStructureStyle);
+
+    HandleImplementation<?,?> resultsBase = HandleAccessor.as(resultsHandle);
+
+    // a point-in-time read has its own timestamp, which isn't part of the cache key
+    if (cache == null || transaction != null || !RowResultCacheImpl.canReceive(resultsHandle) ||
+        resultsBase.getPointInTimeQueryTimestamp() != -1) {
+      return services.postResource(requestLogger, "rows", transaction, params, astHandle, resultsHandle);
+    }
 
-    return services.postResource(requestLogger, "rows", transaction, params, astHandle, resultsHandle);
+    byte[] ast = getAstBytes(requestPlan);
+
+    Format resultsFormat   = resultsBase.getFormat();
+    String resultsMimetype = resultsBase.getMimetype();
+
+    String cacheKey = cache.makeKey(ast, params, "doc", String.valueOf(resultsFormat), resultsMimetype);
+    RowResultCacheImpl.CachedPart[] parts = cache.get(cacheKey);
+    if (parts != null) {
+      return parts[0].getContent(resultsHandle);
+    }
+
+    addPinnedTimestampParam(params, cache);
+
+    InputStreamHandle streamHandle = new InputStreamHandle();
+    streamHandle.setFormat(resultsFormat);
+    streamHandle.setMimetype(resultsMimetype);
+    if (services.postResource(
+          requestLogger, "rows", null, params, new BytesHandle(ast).withFormat(Format.JSON), streamHandle
+        ) == null) {
+      return null;
+    }
+
+    return cache.readThrough(cacheKey, streamHandle).getContent(resultsHandle);
+  }
+
+  @Override
+  public <T> List<RowDocResult<T>> resultDocsAs(List<? extends Plan> plans, Class<T> as) {
+    if (plans == null) {
+      throw new IllegalArgumentException("Must specify a list of plans to produce row results");
+    }
+    for (Plan plan: plans) {
+      checkPlan(plan);
+    }
+    // fail before sending any requests if the class has no handle
+    handleFor(as);
+
+    List<RowDocResult<T>> results = new ArrayList<>(plans.size());
+    if (plans.isEmpty()) {
+      return results;
+    }
+
+    if (plans.size() == 1) {
+      results.add(resultDocFor(plans.get(0), as));
+      return results;
+    }
+
+    // the calling thread executes the first plan instead of waiting idle,
+    // and the threads for the other plans exist only for the call
+    List<Future<RowDocResult<T>>> futures = new ArrayList<>(plans.size() - 1);
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(plans.size() - 1, MAX_PLAN_THREADS), daemonThreads("marklogic-row-plans"));
+    try {
+      for (Plan plan: plans.subList(1, plans.size())) {
+        futures.add(executor.submit(() -> resultDocFor(plan, as)));
+      }
+      results.add(resultDocFor(plans.get(0), as));
+
+      for (Future<RowDocResult<T>> future: futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MarkLogicIOException("interrupted while waiting for the results of the plans", e);
+    } catch (ExecutionException e) {
+      // resultDocFor() keeps runtime exceptions, so only an error gets here
+      throw new MarkLogicInternalException("could not execute plan", e.getCause());
+    } finally {
+      // cancels any plans still executing after a failure
+      executor.shutdownNow();
+    }
+
+    return results;
+  }
+  private <T> RowDocResult<T> resultDocFor(Plan plan, Class<T> as) {
+    try {
+      return new RowDocResultImpl<>(plan, resultDocAs(plan, as), null);
+    } catch (RuntimeException e) {
+      return new RowDocResultImpl<>(plan, null, e);
+    }
+  }
+  static ThreadFactory daemonThreads(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @Override
+  public void resultRowsTo(Plan plan, OutputStream out, RowExportFormat format) {
+    resultRowsTo(plan, out, format, null);
+  }
+  @Override
+  public void resultRowsTo(Plan plan, OutputStream out, RowExportFormat format, Transaction transaction) {
+    if (out == null) {
+      throw new IllegalArgumentException("Must specify an output stream for the exported rows");
+    }
+    if (format == null) {
+      throw new IllegalArgumentException("Must specify the format for the exported rows");
+    }
+
+    InputStreamHandle rowsHandle = new InputStreamHandle();
+    switch (format) {
+      case CSV:
+        rowsHandle.setMimetype("text/csv");
+        break;
+      case JSONL:
+        rowsHandle.setFormat(Format.JSON);
+        break;
+      default:
+        throw new IllegalStateException("unknown export format: "+format);
+    }
+
+    // both formats are produced from the object structure, which names the column of each value,
+    // with the data types in the header so each JSON line has plain values,
+    // and the export bypasses the cache so the rows are streamed instead of buffered
+    if (resultDoc(plan, rowsHandle, RowSetPart.HEADER, RowStructure.OBJECT, transaction, null) == null) {
+      return;
+    }
+
+    try (InputStream rows = rowsHandle.get()) {
+      switch (format) {
+        case CSV:
+          // the server produces the CSV, so the bytes are copied as is
+          byte[] buf = new byte[8192];
+          for (int len = rows.read(buf); len != -1; len = rows.read(buf)) {
+            out.write(buf, 0, len);
+          }
+          break;
+        case JSONL:
+          writeRowLines(rows, out);
+          break;
+      }
+      out.flush();
+    } catch (IOException e) {
+      throw new MarkLogicIOException("could not export rows", e);
+    }
+  }
+  // copies each object in the rows array as a line without materializing the row or its values
+  private void writeRowLines(InputStream rows, OutputStream out) throws IOException {
+    try (JsonParser    parser    = ROW_MAPPER.getFactory().createParser(rows);
+         JsonGenerator generator = ROW_LINES_FACTORY.createGenerator(out)
+    ) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new MarkLogicIOException("row set is not a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.getCurrentName();
+        if (parser.nextToken() != JsonToken.START_ARRAY || !"rows".equals(fieldName)) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          generator.copyCurrentStructure(parser);
+          generator.writeRaw('\n');
+        }
+      }
+    }
   }
 
   @Override
@@ -226,6 +452,66 @@ public class RowManagerImpl
     return rowset;
   }
 
+  @Override
+  public RowSet<RowBatch> resultBatches(Plan plan, int batchRows) {
+    return resultBatches(plan, batchRows, (Transaction) null);
+  }
+  @Override
+  public RowSet<RowBatch> resultBatches(Plan plan, int batchRows, Transaction transaction) {
+    if (batchRows < 1) {
+      throw new IllegalArgumentException("Must have at least one row in each batch instead of "+batchRows);
+    }
+
+    // the vector types come from the header and the array structure is the most compact
+    RESTServiceResultIterator iter = makeRequest(
+      plan, "json", RowSetPart.HEADER, RowStructure.ARRAY, "inline", transaction
+    );
+
+    RowSetBatch rowset = new RowSetBatch(iter, batchRows);
+    rowset.init();
+
+    return rowset;
+  }
+
+  @Override
+  public RowSet<RowRecord> resultRowsPaged(
+    Plan plan, PlanParamExpr offsetParam, PlanParamExpr limitParam, long pageRows, int prefetchPages
+  ) {
+    if (offsetParam == null || limitParam == null) {
+      throw new IllegalArgumentException("Must specify the offset and limit parameters for the pages");
+    }
+    if (pageRows < 1) {
+      throw new IllegalArgumentException("Must have at least one row in each page instead of "+pageRows);
+    }
+    if (prefetchPages < 1) {
+      throw new IllegalArgumentException("Must prefetch at least one page instead of "+prefetchPages);
+    }
+
+    // serialize the plan once for all of the pages
+    Plan preparedPlan = prepare(plan);
+
+    RowSetPart   datatypeStyle     = getDatatypeStyle();
+    RowStructure rowStructureStyle = getRowStructureStyle();
+
+    RowSetPaged rowset = new RowSetPaged(
+      pageRows, prefetchPages,
+      (offset, serverTimestamp) -> RowResultCacheImpl.readParts(makeRequest(
+        preparedPlan.bindParam(offsetParam, offset).bindParam(limitParam, pageRows),
+        "json", datatypeStyle, rowStructureStyle, "reference", null, serverTimestamp
+      )),
+      parts -> {
+        RowSetRecord page = new RowSetRecord(
+          "json", datatypeStyle, rowStructureStyle, RowResultCacheImpl.iterate(parts), handleRegistry
+        );
+        page.init();
+        return page;
+      }
+    );
+    rowset.init();
+
+    return rowset;
+  }
+
   @Override
   public <T extends StructureReadHandle> T explain(Plan plan, T resultsHandle) {
     PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
@@ -306,19 +592,61 @@ public class RowManagerImpl
     Plan plan,
     String rowFormat, RowSetPart datatypeStyle, RowStructure rowStructureStyle, String nodeCols,
     Transaction transaction
+  ) {
+    return makeRequest(plan, rowFormat, datatypeStyle, rowStructureStyle, nodeCols, transaction, -1);
+  }
+  private RESTServiceResultIterator makeRequest(
+    Plan plan,
+    String rowFormat, RowSetPart datatypeStyle, RowStructure rowStructureStyle, String nodeCols,
+    Transaction transaction, long serverTimestamp
   ) {
     PlanBuilderBaseImpl.RequestPlan requestPlan = checkPlan(plan);
 
-    AbstractWriteHandle astHandle = requestPlan.getHandle();
-
     RequestParameters params = getParamBindings(requestPlan);
     params.add("row-format",   rowFormat);
     params.add("node-columns", nodeCols);
     addDatatypeStyleParam(params,     datatypeStyle);
     addRowStructureStyleParam(params, rowStructureStyle);
+    // a request pinned to a timestamp is part of the cache key, so pages read at different times don't mix
+    if (serverTimestamp > 0) {
+      params.add("timestamp", String.valueOf(serverTimestamp));
+    }
 
+    RowResultCacheImpl cache = resultCache;
+    if (cache == null || transaction != null) {
 // QUESTION: outputMimetypes a noop?
-    return services.postIteratedResource(requestLogger, "rows", transaction, params, astHandle);
+      return services.postIteratedResource(requestLogger, "rows", transaction, params, requestPlan.getHandle());
+    }
+
+    byte[] ast = getAstBytes(requestPlan);
+
+    String cacheKey = cache.makeKey(ast, params, "rows");
+    RowResultCacheImpl.CachedPart[] parts = cache.get(cacheKey);
+    if (parts != null) {
+      return RowResultCacheImpl.iterate(parts);
+    }
+
+    if (serverTimestamp <= 0) {
+      addPinnedTimestampParam(params, cache);
+    }
+
+    return cache.readThrough(cacheKey, services.postIteratedResource(
+      requestLogger, "rows", null, params, new BytesHandle(ast).withFormat(Format.JSON)
+    ));
+  }
+  private byte[] getAstBytes(PlanBuilderBaseImpl.RequestPlan requestPlan) {
+    if (requestPlan instanceof PreparedPlanImpl) {
+      return ((PreparedPlanImpl) requestPlan).ast;
+    } else if (requestPlan instanceof PlanBuilderBaseImpl.PlanBaseImpl) {
+      return ((PlanBuilderBaseImpl.PlanBaseImpl) requestPlan).getAstBytes();
+    }
+    return HandleAccessor.contentAsString(requestPlan.getHandle()).getBytes(StandardCharsets.UTF_8);
+  }
+  private void addPinnedTimestampParam(RequestParameters params, RowResultCacheImpl cache) {
+    long pinnedTimestamp = cache.getPinnedTimestamp();
+    if (pinnedTimestamp > 0) {
+      params.add("timestamp", String.valueOf(pinnedTimestamp));
+    }
   }
   private PlanBuilderBaseImpl.RequestPlan checkPlan(Plan plan) {
     if (plan == null) {
@@ -368,6 +696,13 @@ public class RowManagerImpl
     return handle;
   }
 
+  // thread-safe after configuration, so shared by all row sets
+  static final private ObjectMapper ROW_MAPPER = new ObjectMapper();
+  // the output stream belongs to the caller, and each row is followed by a newline instead of a space
+  static final private JsonFactory ROW_LINES_FACTORY = new JsonFactory()
+    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+    .setRootValueSeparator(null);
+
   abstract static class RowSetBase<T> implements RowSet<T>, Iterator<T> {
     String                    rowFormat         = null;
     RESTServiceResultIterator results           = null;
@@ -406,7 +741,7 @@ public class RowManagerImpl
             List<Map<String, String>> cols = null;
             switch (rowStructureStyle) {
               case OBJECT:
-                Map<String, Object> headerObj = (Map<String, Object>) new ObjectMapper().readValue(
+                Map<String, Object> headerObj = (Map<String, Object>) ROW_MAPPER.readValue(
                   headerRow.getContent(new InputStreamHandle()).get(), Map.class
                 );
                 if (headerObj != null) {
@@ -414,7 +749,7 @@ public class RowManagerImpl
                 }
                 break;
               case ARRAY:
-                cols = (List<Map<String, String>>) new ObjectMapper().readValue(
+                cols = (List<Map<String, String>>) ROW_MAPPER.readValue(
                   headerRow.getContent(new InputStreamHandle()).get(), List.class
                 );
                 break;
@@ -488,6 +823,18 @@ public class RowManagerImpl
       return columnTypes;
     }
 
+    @Override
+    public int getColumnIndex(String columnName) {
+      if (columnName != null && columnNames != null) {
+        for (int i=0; i < columnNames.length; i++) {
+          if (columnName.equals(columnNames[i])) {
+            return i;
+          }
+        }
+      }
+      return -1;
+    }
+
     @Override
     public Iterator<T> iterator() {
       return this;
@@ -520,10 +867,10 @@ public class RowManagerImpl
     }
   }
   static class RowSetRecord extends RowSetBase<RowRecord> {
-    private HandleFactoryRegistry             handleRegistry  = null;
-    private Map<String, RowRecord.ColumnKind> headerKinds     = null;
-    private Map<String, String>               headerDatatypes = null;
-    private Map<String, String>               aliases         = null;
+    private HandleFactoryRegistry    handleRegistry  = null;
+    private RowRecord.ColumnKind[]   headerKinds     = null;
+    private Map<String, Integer>     columnIndexes   = null;
+    private Map<String, Integer>     aliases         = null;
     RowSetRecord(
       String rowFormat, RowSetPart datatypeStyle, RowStructure rowStructureStyle,
       RESTServiceResultIterator results, HandleFactoryRegistry handleRegistry
@@ -534,17 +881,17 @@ public class RowManagerImpl
 
     void init() {
       super.init();
+      if (columnNames == null) {
+        columnNames = new String[0];
+      }
+      columnIndexes = new HashMap<>();
+      for (int i=0; i < columnNames.length; i++) {
+        columnIndexes.put(columnNames[i], i);
+      }
       if (datatypeStyle == RowSetPart.HEADER) {
-        headerKinds     = new HashMap<>();
-        headerDatatypes = new HashMap<>();
+        headerKinds = new RowRecord.ColumnKind[columnNames.length];
         for (int i=0; i < columnNames.length; i++) {
-          String columnName = columnNames[i];
-          String columnType = columnTypes[i];
-          headerDatatypes.put(columnName, columnType);
-          RowRecord.ColumnKind columnKind = getColumnKind(
-            columnType,RowRecord.ColumnKind.CONTENT
-          );
-          headerKinds.put(columnName, columnKind);
+          headerKinds[i] = getColumnKind(columnTypes[i], RowRecord.ColumnKind.CONTENT);
         }
       }
     }
@@ -552,17 +899,47 @@ public class RowManagerImpl
     HandleFactoryRegistry getHandleRegistry() {
       return handleRegistry;
     }
+    String[] getColumnNamesArray() {
+      return columnNames;
+    }
+    RowRecord.ColumnKind[] getHeaderKinds() {
+      return headerKinds;
+    }
+    String[] getHeaderDatatypes() {
+      return (datatypeStyle == RowSetPart.HEADER) ? columnTypes : null;
+    }
 
-    void initAliases(Map<String, ?> cols) {
+    @Override
+    public int getColumnIndex(String columnName) {
+      return getColumnIndex((Object) columnName);
+    }
+    /**
+     * Gets the position of a column by its name or by the unique unqualified
+     * alias of its name.
+     * @return	the position or -1 if the row set has no such column
+     */
+    int getColumnIndex(Object colName) {
+      if (colName == null) {
+        return -1;
+      }
+      Integer index = columnIndexes.get(colName);
+      if (index != null) {
+        return index;
+      }
+      initAliases();
+      index = aliases.get(colName);
+      return (index == null) ? -1 : index;
+    }
+    private void initAliases() {
       if (aliases != null) {
         return;
       }
 
-      Map<String,String> candidates = new HashMap<String,String>();
+      Map<String,Integer> candidates = new HashMap<>();
 
-      Set<String> noncandidates = cols.keySet();
-      for (String col: noncandidates.toArray(new String[noncandidates.size()])) {
-        String[] parts = col.split("\\.", 3);
+      Set<String> noncandidates = new HashSet<>(columnIndexes.keySet());
+      for (int col=0; col < columnNames.length; col++) {
+        String[] parts = columnNames[col].split("\\.", 3);
         if (parts.length == 1) {
           continue;
         }
@@ -583,24 +960,6 @@ public class RowManagerImpl
 
       aliases = candidates;
     }
-    <T> boolean hasAlias(Map<String, T> cols, Object colName) {
-      if (colName == null) {
-        return false;
-      }
-
-      initAliases(cols);
-
-      String columnName = (colName instanceof String) ? (String) colName : colName.toString();
-
-      String col = aliases.get(columnName);
-      if (col == null) {
-        return false;
-      }
-
-      cols.put(columnName, cols.get(col));
-
-      return true;
-    }
 
     @Override
     public RowRecord next() {
@@ -611,217 +970,167 @@ public class RowManagerImpl
 
       boolean hasMoreRows = results.hasNext();
 
-      try {
-        Map<String, String>               datatypes = null;
-        Map<String, RowRecord.ColumnKind> kinds     = null;
-        Map<String, Object>               row       = null;
-
-        InputStream  rowStream = currentRow.getContent(new InputStreamHandle()).get();
-
-        // TODO: replace Jackson mapper with binding-sensitive mapper?
-        ObjectMapper rowMapper = new ObjectMapper();
+      RowRecordImpl rowRecord = new RowRecordImpl(this);
 
+      InputStream rowStream = currentRow.getContent(new InputStreamHandle()).get();
+      try (JsonParser parser = ROW_MAPPER.getFactory().createParser(rowStream)) {
         switch(rowStructureStyle) {
           case ARRAY:
-            row = new HashMap<String, Object>();
-
-            int i=0;
-
-            switch(datatypeStyle) {
-              case HEADER:
-                datatypes = headerDatatypes;
-
-                @SuppressWarnings("unchecked")
-                List<Object> valueLister = rowMapper.readValue(rowStream, List.class);
-                int valueListSize = valueLister.size();
-
-                for (; i < valueListSize; i++) {
-                  String columnName = columnNames[i];
-                  Object value = valueLister.get(i);
-
-                  row.put(columnName, value);
-                  if (value != null) {
-                    continue;
-                  }
-
-                  RowRecord.ColumnKind columnKind = headerKinds.get(columnName);
-                  if (columnKind == RowRecord.ColumnKind.NULL) {
-                    continue;
-                  }
-
-                  if (kinds == null) {
-                    kinds = new HashMap<>();
-                    kinds.putAll(headerKinds);
-                  }
-
-                  kinds.put(columnName, RowRecord.ColumnKind.NULL);
-                }
-
-                if (kinds == null) {
-                  kinds = headerKinds;
-                }
-                break;
-              case ROWS:
-                datatypes = new HashMap<>();
-                kinds     = new HashMap<>();
-
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> rowLister = rowMapper.readValue(rowStream, List.class);
-                int rowListSize = rowLister.size();
-
-                for (; i < rowListSize; i++) {
-                  String columnName = columnNames[i];
-                  row.put(columnName, getTypedRowValue(datatypes, kinds, columnName, rowLister.get(i)));
-                }
-                break;
-              default:
-                throw new MarkLogicInternalException("Row record set with unknown datatype style: "+datatypeStyle);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+              throw new MarkLogicIOException("row record is not a JSON array");
             }
-
-            for (; i < columnNames.length; i++) {
-              String columnName = columnNames[i];
-              kinds.put(columnName, RowRecord.ColumnKind.NULL);
-              row.put(columnName, null);
+            for (int i=0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+              readColumn(parser, rowRecord, i, null);
             }
-
             break;
           case OBJECT:
-            @SuppressWarnings("unchecked")
-            Map<String, Object> mapRow = rowMapper.readValue(rowStream, Map.class);
-
-            switch(datatypeStyle) {
-              case HEADER:
-                datatypes = headerDatatypes;
-
-                for (Map.Entry<String, RowRecord.ColumnKind> entry: headerKinds.entrySet()) {
-                  String columnName = entry.getKey();
-
-                  Object value = mapRow.get(columnName);
-                  if (value != null) {
-                    continue;
-                  }
-
-                  RowRecord.ColumnKind columnKind = entry.getValue();
-                  if (columnKind == RowRecord.ColumnKind.NULL) {
-                    continue;
-                  }
-
-                  if (kinds == null) {
-                    kinds = new HashMap<>();
-                    kinds.putAll(headerKinds);
-                  }
-
-                  kinds.put(columnName, RowRecord.ColumnKind.NULL);
-                }
-
-                if (kinds == null) {
-                  kinds = headerKinds;
-                }
-                break;
-              case ROWS:
-                Map<String, String>               rowDatatypes = new HashMap<>();
-                Map<String, RowRecord.ColumnKind> rowKinds     = new HashMap<>();
-
-                mapRow.replaceAll((key, rawBinding) -> {
-                  @SuppressWarnings("unchecked")
-                  Map<String,Object> binding = (Map<String,Object>) rawBinding;
-                  return getTypedRowValue(rowDatatypes, rowKinds, key, binding);
-                });
-
-                datatypes = rowDatatypes;
-                kinds     = rowKinds;
-                break;
-              default:
-                throw new MarkLogicInternalException("Row record set with unknown datatype style: "+datatypeStyle);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+              throw new MarkLogicIOException("row record is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String columnName = parser.getCurrentName();
+              parser.nextToken();
+              Integer index = columnIndexes.get(columnName);
+              readColumn(parser, rowRecord, (index == null) ? -1 : index, columnName);
             }
-
-            row = mapRow;
             break;
           default:
             throw new MarkLogicInternalException(
               "Row record set with unknown row structure style: "+rowStructureStyle
             );
         }
+      } catch (JsonParseException e) {
+        throw new MarkLogicIOException("could not part row record", e);
+      } catch (IOException e) {
+        throw new MarkLogicIOException("could not read row record", e);
+      }
 
-        while (hasMoreRows) {
-          currentRow = results.next();
-
-          Map<String,List<String>> headers = currentRow.getHeaders();
-          List<String> headerList = headers.get("Content-Disposition");
-          if (headerList == null || headerList.isEmpty()) {
-            break;
-          }
-          String headerValue = headerList.get(0);
-          if (headerValue == null || !headerValue.startsWith("inline; kind=row-attachment")) {
-            break;
-          }
-
-          headerList = headers.get("Content-ID");
-          if (headerList == null || headerList.isEmpty()) {
-            break;
-          }
-          headerValue = headerList.get(0);
-          if (headerValue == null || !(headerValue.startsWith("<") && headerValue.endsWith(">"))) {
-            break;
-          }
-          int pos = headerValue.indexOf("[",1);
-          if (pos == -1) {
-            break;
-          }
-          String colName = headerValue.substring(1, pos);
-
-// TODO: check column name
-          row.put(colName, currentRow);
+      while (hasMoreRows) {
+        currentRow = results.next();
 
-          hasMoreRows = results.hasNext();
+        Map<String,List<String>> headers = currentRow.getHeaders();
+        List<String> headerList = headers.get("Content-Disposition");
+        if (headerList == null || headerList.isEmpty()) {
+          break;
+        }
+        String headerValue = headerList.get(0);
+        if (headerValue == null || !headerValue.startsWith("inline; kind=row-attachment")) {
+          break;
         }
 
-        RowRecordImpl rowRecord = new RowRecordImpl(this);
-
-        rowRecord.init(kinds, datatypes, row);
+        headerList = headers.get("Content-ID");
+        if (headerList == null || headerList.isEmpty()) {
+          break;
+        }
+        headerValue = headerList.get(0);
+        if (headerValue == null || !(headerValue.startsWith("<") && headerValue.endsWith(">"))) {
+          break;
+        }
+        int pos = headerValue.indexOf("[",1);
+        if (pos == -1) {
+          break;
+        }
+        String colName = headerValue.substring(1, pos);
 
-        if (hasMoreRows) {
-          nextRow = currentRow;
+// TODO: check column name
+        Integer index = columnIndexes.get(colName);
+        if (index != null) {
+          rowRecord.setObject(index, currentRow);
         } else {
-          close();
+          rowRecord.setExtra(colName, currentRow);
         }
 
-        return rowRecord;
-      } catch (JsonParseException e) {
-        throw new MarkLogicIOException("could not part row record", e);
-      } catch (JsonMappingException e) {
-        throw new MarkLogicIOException("could not map row record", e);
-      } catch (IOException e) {
-        throw new MarkLogicIOException("could not read row record", e);
+        hasMoreRows = results.hasNext();
       }
-    }
 
-    private Object getTypedRowValue(
-      Map<String, String>               datatypes,
-      Map<String, RowRecord.ColumnKind> kinds,
-      String                            columnName,
-      Map<String,Object>                binding
-    ) {
-      RowRecord.ColumnKind columnKind = null;
-      Object value = null;
-      String datatype = (String) binding.get("type");
-      if (datatype != null) {
-        datatypes.put(columnName, datatype);
+      if (hasMoreRows) {
+        nextRow = currentRow;
+      } else {
+        close();
       }
-      columnKind = getColumnKind(datatype, null);
-      kinds.put(columnName, columnKind);
-      value = (columnKind == RowRecord.ColumnKind.ATOMIC_VALUE) ?
-        binding.get("value") : null;
 
+      return rowRecord;
+    }
+
+    // reads the current token of the parser as the value of the column
+    private void readColumn(JsonParser parser, RowRecordImpl rowRecord, int index, String columnName)
+        throws IOException {
+      if (index < 0 || index >= columnNames.length) {
+        Object value = ROW_MAPPER.readValue(parser, Object.class);
+        if (columnName != null) {
+          rowRecord.setExtra(columnName, value);
+        }
+        return;
+      }
+      switch(datatypeStyle) {
+        case HEADER:
+          readValue(parser, rowRecord, index);
+          break;
+        case ROWS:
+          if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new MarkLogicIOException("column binding is not a JSON object: "+columnNames[index]);
+          }
+          String datatype = null;
+          boolean hasValue = false;
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("type".equals(field)) {
+              datatype = parser.getValueAsString();
+            } else if ("value".equals(field)) {
+              readValue(parser, rowRecord, index);
+              hasValue = true;
+            } else {
+              parser.skipChildren();
+            }
+          }
+          RowRecord.ColumnKind columnKind = getColumnKind(datatype, null);
+          rowRecord.setBinding(index, columnKind, datatype);
 // TODO: for RowRecord.ColumnKind.CONTENT, increment the count of expected nodes and list the column names expecting values?
-      return value;
+          if (hasValue && columnKind != RowRecord.ColumnKind.ATOMIC_VALUE) {
+            rowRecord.setNull(index);
+          }
+          break;
+        default:
+          throw new MarkLogicInternalException("Row record set with unknown datatype style: "+datatypeStyle);
+      }
+    }
+    private void readValue(JsonParser parser, RowRecordImpl rowRecord, int index) throws IOException {
+      switch(parser.currentToken()) {
+        case VALUE_NULL:
+          rowRecord.setNull(index);
+          break;
+        case VALUE_TRUE:
+          rowRecord.setBoolean(index, true);
+          break;
+        case VALUE_FALSE:
+          rowRecord.setBoolean(index, false);
+          break;
+        case VALUE_NUMBER_INT:
+          if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+            rowRecord.setObject(index, parser.getBigIntegerValue());
+          } else {
+            rowRecord.setLong(index, parser.getLongValue());
+          }
+          break;
+        case VALUE_NUMBER_FLOAT:
+          rowRecord.setDouble(index, parser.getDoubleValue());
+          break;
+        case VALUE_STRING:
+          rowRecord.setObject(index, parser.getText());
+          break;
+        default:
+          rowRecord.setObject(index, ROW_MAPPER.readValue(parser, Object.class));
+          break;
+      }
     }
+
     private RowRecord.ColumnKind getColumnKind(String datatype, RowRecord.ColumnKind defaultKind) {
       if ("cid".equals(datatype)) {
         return RowRecord.ColumnKind.CONTENT;
       } else if ("null".equals(datatype)) {
         return RowRecord.ColumnKind.NULL;
-      } else if (datatype.contains(":")) {
+      } else if (datatype != null && datatype.contains(":")) {
         return RowRecord.ColumnKind.ATOMIC_VALUE;
       } else if (datatype != null && defaultKind != null) {
         return defaultKind;
@@ -829,6 +1138,249 @@ public class RowManagerImpl
       throw new MarkLogicInternalException("Column value with unsupported datatype: "+datatype);
     }
   }
+  static class RowSetBatch extends RowSetBase<RowBatch> {
+    private int                   batchRows;
+    private RowBatch.VectorType[] vectorTypes   = null;
+    private Map<String, Integer>  columnIndexes = null;
+    RowSetBatch(RESTServiceResultIterator results, int batchRows) {
+      super("json", RowSetPart.HEADER, RowStructure.ARRAY, results);
+      this.batchRows = batchRows;
+    }
+
+    void init() {
+      super.init();
+      if (columnNames == null) {
+        columnNames = new String[0];
+        columnTypes = new String[0];
+      }
+      vectorTypes   = new RowBatch.VectorType[columnNames.length];
+      columnIndexes = new HashMap<>();
+      for (int i=0; i < columnNames.length; i++) {
+        vectorTypes[i] = RowBatchImpl.getVectorType(columnTypes[i]);
+        columnIndexes.put(columnNames[i], i);
+      }
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+      Integer index = (columnIndexes == null || columnName == null) ? null : columnIndexes.get(columnName);
+      return (index == null) ? -1 : index;
+    }
+
+    @Override
+    public RowBatch next() {
+      if (nextRow == null) {
+        throw new NoSuchElementException("no next batch");
+      }
+
+      RowBatchImpl batch = new RowBatchImpl(
+        columnNames, columnTypes, vectorTypes, columnIndexes, ROW_MAPPER, batchRows
+      );
+      while (nextRow != null && !batch.isFull()) {
+        InputStream rowStream = nextRow.getContent(new InputStreamHandle()).get();
+        try (JsonParser parser = ROW_MAPPER.getFactory().createParser(rowStream)) {
+          parser.nextToken();
+          batch.readRow(parser);
+        } catch (JsonParseException e) {
+          throw new MarkLogicIOException("could not parse row record", e);
+        } catch (IOException e) {
+          throw new MarkLogicIOException("could not read row record", e);
+        }
+        nextRow = results.hasNext() ? results.next() : null;
+      }
+      batch.finish();
+
+      if (nextRow == null) {
+        close();
+      }
+
+      return batch;
+    }
+  }
+  /**
+   * Reads the rows of a plan as pages with the requests for the following
+   * pages in flight while the current page is consumed.  Each page is read
+   * into memory in the background, so the connection is released as soon
+   * as the page arrives.  As with a SearchCursor, the first page is read
+   * before any other, and the following pages are read at its server
+   * timestamp so the offsets refer to the same snapshot.
+   */
+  static class RowSetPaged implements RowSet<RowRecord>, Iterator<RowRecord> {
+    interface PageReader {
+      RowResultCacheImpl.CachedPart[] read(long offset, long serverTimestamp);
+    }
+
+    private final long                                    pageRows;
+    private final int                                     prefetchPages;
+    private final PageReader                              pageReader;
+    private final Function<RowResultCacheImpl.CachedPart[], RowSetRecord> pageParser;
+    private final ArrayDeque<Future<RowResultCacheImpl.CachedPart[]>> pending = new ArrayDeque<>();
+    private ExecutorService executor;
+    private long            nextOffset   = 0;
+    private boolean         isLastPage   = false;
+    private RowSetRecord    page         = null;
+    private String[]        columnNames  = null;
+    private String[]        columnTypes  = null;
+    private long            serverTimestamp = -1;
+
+    RowSetPaged(
+      long pageRows, int prefetchPages,
+      PageReader pageReader,
+      Function<RowResultCacheImpl.CachedPart[], RowSetRecord> pageParser
+    ) {
+      this.pageRows      = pageRows;
+      this.prefetchPages = prefetchPages;
+      this.pageReader    = pageReader;
+      this.pageParser    = pageParser;
+    }
+
+    void init() {
+      executor = Executors.newFixedThreadPool(prefetchPages, daemonThreads("marklogic-row-pages"));
+      // the first page alone so the following pages can be pinned to its timestamp
+      requestPage();
+      nextPage();
+      for (int i=0; i < prefetchPages && !isLastPage; i++) {
+        requestPage();
+      }
+      if (page != null) {
+        columnNames = page.getColumnNames();
+        columnTypes = page.getColumnTypes();
+      }
+      if (columnNames == null) {
+        columnNames = new String[0];
+        columnTypes = new String[0];
+      }
+    }
+
+    private void requestPage() {
+      long offset = nextOffset;
+      long timestamp = serverTimestamp;
+      nextOffset += pageRows;
+      pending.add(executor.submit(() -> pageReader.read(offset, timestamp)));
+    }
+    private void nextPage() {
+      Future<RowResultCacheImpl.CachedPart[]> future = pending.poll();
+      if (future == null) {
+        page = null;
+        return;
+      }
+      RowResultCacheImpl.CachedPart[] parts;
+      try {
+        parts = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new MarkLogicIOException("interrupted while waiting for a page of rows", e);
+      } catch (CancellationException e) {
+        close();
+        throw new MarkLogicIOException("request cancelled for a page of rows", e);
+      } catch (ExecutionException e) {
+        close();
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new MarkLogicIOException("could not read a page of rows", cause);
+      }
+
+      if (serverTimestamp <= 0 && parts.length > 0) {
+        serverTimestamp = parts[0].getServerTimestamp();
+      }
+
+      if (countRows(parts) < pageRows) {
+        isLastPage = true;
+        cancelPending();
+      } else {
+        requestPage();
+      }
+
+      page = pageParser.apply(parts);
+    }
+    // the first part is the header, and the following parts are rows or node attachments for a row
+    private long countRows(RowResultCacheImpl.CachedPart[] parts) {
+      long rowCount = 0;
+      for (int i=1; i < parts.length; i++) {
+        Map<String,List<String>> headers = parts[i].getHeaders();
+        List<String> dispositions = (headers == null) ? null : headers.get("Content-Disposition");
+        String disposition = (dispositions == null || dispositions.isEmpty()) ? null : dispositions.get(0);
+        if (disposition == null || !disposition.startsWith("inline; kind=row-attachment")) {
+          rowCount++;
+        }
+      }
+      return rowCount;
+    }
+    private void cancelPending() {
+      for (Future<RowResultCacheImpl.CachedPart[]> future: pending) {
+        future.cancel(true);
+      }
+      pending.clear();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+      return columnNames;
+    }
+    @Override
+    public String[] getColumnTypes() {
+      return columnTypes;
+    }
+    @Override
+    public int getColumnIndex(String columnName) {
+      if (page != null) {
+        return page.getColumnIndex(columnName);
+      }
+      for (int i=0; i < columnNames.length; i++) {
+        if (columnNames[i].equals(columnName)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public Iterator<RowRecord> iterator() {
+      return this;
+    }
+    @Override
+    public Stream<RowRecord> stream() {
+      return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (page != null) {
+        if (page.hasNext()) {
+          return true;
+        }
+        if (isLastPage) {
+          close();
+          return false;
+        }
+        nextPage();
+      }
+      return false;
+    }
+    @Override
+    public RowRecord next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException("no next row");
+      }
+      return page.next();
+    }
+
+    @Override
+    public void close() {
+      cancelPending();
+      if (executor != null) {
+        executor.shutdownNow();
+        executor = null;
+      }
+      if (page != null) {
+        page.close();
+        page = null;
+      }
+    }
+  }
   abstract static class RowSetHandleBase<T, R extends AbstractReadHandle> extends RowSetBase<T> {
     private R rowHandle = null;
     RowSetHandleBase(
@@ -891,23 +1443,129 @@ public class RowManagerImpl
 
     private static final Map<Class<? extends XsAnyAtomicTypeVal>,Constructor<?>> constructors = new HashMap<>();
 
-    private Map<String, ColumnKind> kinds     = null;
-    private Map<String, String>     datatypes = null;
+    static final private byte SLOT_NULL    = 0;
+    static final private byte SLOT_OBJECT  = 1;
+    static final private byte SLOT_LONG    = 2;
+    static final private byte SLOT_DOUBLE  = 3;
+    static final private byte SLOT_BOOLEAN = 4;
 
-    private Map<String, Object> row        = null;
-    private Map<String, Object> aliasedRow = null;
+    // the values are addressed by the position of the column in the header
+    private Object[]     values     = null;
+    private long[]       primitives = null;
+    private byte[]       slots      = null;
+    private ColumnKind[] kinds      = null;
+    private String[]     datatypes  = null;
+
+    // values for columns not in the header (if any)
+    private Map<String, Object> extras = null;
+    // the map view is only materialized if requested
+    private Map<String, Object> row    = null;
 
     private RowSetRecord set = null;
 
     RowRecordImpl(RowSetRecord set) {
       this.set = set;
+      int columnCount = set.getColumnNamesArray().length;
+      this.values     = new Object[columnCount];
+      this.primitives = new long[columnCount];
+      this.slots      = new byte[columnCount];
     }
 
-    // QUESTION:  threading guarantees - multiple handles? precedent?
-    void init(Map<String, ColumnKind> kinds, Map<String, String> datatypes, Map<String, Object> row) {
-      this.kinds     = kinds;
-      this.datatypes = datatypes;
-      this.row       = row;
+    void setNull(int index) {
+      slots[index]  = SLOT_NULL;
+      values[index] = null;
+    }
+    void setObject(int index, Object value) {
+      if (value == null) {
+        setNull(index);
+        return;
+      }
+      slots[index]  = SLOT_OBJECT;
+      values[index] = value;
+    }
+    void setLong(int index, long value) {
+      slots[index]      = SLOT_LONG;
+      primitives[index] = value;
+    }
+    void setDouble(int index, double value) {
+      slots[index]      = SLOT_DOUBLE;
+      primitives[index] = Double.doubleToRawLongBits(value);
+    }
+    void setBoolean(int index, boolean value) {
+      slots[index]      = SLOT_BOOLEAN;
+      primitives[index] = value ? 1 : 0;
+    }
+    // for the rows datatype style, each row has its own kinds and datatypes
+    void setBinding(int index, ColumnKind kind, String datatype) {
+      if (kinds == null) {
+        kinds     = new ColumnKind[values.length];
+        datatypes = new String[values.length];
+      }
+      kinds[index]     = kind;
+      datatypes[index] = datatype;
+    }
+    void setExtra(String columnName, Object value) {
+      if (extras == null) {
+        extras = new HashMap<>();
+      }
+      extras.put(columnName, value);
+    }
+
+    private int getIndex(String columnName) {
+      return set.getColumnIndex(columnName);
+    }
+    private Object getValue(int index) {
+      switch (slots[index]) {
+        case SLOT_NULL:
+          return null;
+        case SLOT_OBJECT:
+          return values[index];
+        case SLOT_LONG:
+          // box the same way as Jackson data binding
+          long longValue = primitives[index];
+          if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+            return (int) longValue;
+          }
+          return longValue;
+        case SLOT_DOUBLE:
+          return Double.longBitsToDouble(primitives[index]);
+        case SLOT_BOOLEAN:
+          return primitives[index] != 0;
+        default:
+          throw new InternalError("unknown value slot: "+slots[index]);
+      }
+    }
+    private ColumnKind getKind(int index) {
+      if (kinds != null) {
+        ColumnKind kind = kinds[index];
+        return (kind == null) ? ColumnKind.NULL : kind;
+      }
+      ColumnKind[] headerKinds = set.getHeaderKinds();
+      if (headerKinds == null) {
+        return ColumnKind.NULL;
+      }
+      return isNull(index) ? ColumnKind.NULL : headerKinds[index];
+    }
+    private String getDatatype(int index) {
+      if (datatypes != null) {
+        return datatypes[index];
+      }
+      String[] headerDatatypes = set.getHeaderDatatypes();
+      return (headerDatatypes == null) ? null : headerDatatypes[index];
+    }
+    private Map<String, Object> getRow() {
+      if (row == null) {
+        String[] columnNames = set.getColumnNamesArray();
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i=0; i < columnNames.length; i++) {
+          map.put(columnNames[i], getValue(i));
+        }
+        if (extras != null) {
+          map.putAll(extras);
+        }
+        row = Collections.unmodifiableMap(map);
+      }
+      return row;
     }
 
     @Override
@@ -919,13 +1577,9 @@ public class RowManagerImpl
       if (columnName == null) {
         throw new IllegalArgumentException("cannot get column kind with null name");
       }
-      ColumnKind kind = kinds.get(columnName);
-      if (kind != null) {
-        return kind;
-      } else if (kinds.containsKey(columnName)) {
-        return ColumnKind.NULL;
-      } else if (set.hasAlias(kinds, columnName)) {
-        return kinds.get(columnName);
+      int index = getIndex(columnName);
+      if (index >= 0) {
+        return getKind(index);
       }
       throw new IllegalArgumentException("no kind for column: "+columnName);
     }
@@ -939,13 +1593,9 @@ public class RowManagerImpl
       if (columnName == null) {
         throw new IllegalArgumentException("cannot get column datatype with null name");
       }
-      String datatype = datatypes.get(columnName);
-      if (datatype != null) {
-        return datatype;
-      } else if (datatypes.containsKey(columnName)) {
-        return null;
-      } else if (set.hasAlias(datatypes, columnName)) {
-        return datatypes.get(columnName);
+      int index = getIndex(columnName);
+      if (index >= 0) {
+        return getDatatype(index);
       }
       throw new IllegalArgumentException("no datatype for column: "+columnName);
     }
@@ -953,24 +1603,18 @@ public class RowManagerImpl
     // supported operations for unmodifiable map
     @Override
     public boolean containsKey(Object key) {
-      if (aliasedRow == null) {
-        boolean isContained = row.containsKey(key);
-        if (isContained) {
-          return isContained;
-        }
-
-        aliasedRow = new HashMap<String, Object>(row);
+      if (key instanceof String && getIndex((String) key) >= 0) {
+        return true;
       }
-
-      return set.hasAlias(aliasedRow, key);
+      return extras != null && extras.containsKey(key);
     }
     @Override
     public boolean containsValue(Object value) {
-      return row.containsValue(value);
+      return getRow().containsValue(value);
     }
     @Override
     public Set<Entry<String, Object>> entrySet() {
-      return row.entrySet();
+      return getRow().entrySet();
     }
     @Override
     public Object get(Object key) {
@@ -978,19 +1622,14 @@ public class RowManagerImpl
         throw new IllegalArgumentException("cannot get column value with null name");
       }
 
-      Map<String, Object> valueRow = (aliasedRow == null) ? row : aliasedRow;
-
-      Object value = valueRow.get(key);
-      if (value != null) {
-        return value;
-      } else if (valueRow.containsKey(key)) {
-        return null;
-      } else if (aliasedRow == null) {
-        aliasedRow = new HashMap<String, Object>(row);
+      if (key instanceof String) {
+        int index = getIndex((String) key);
+        if (index >= 0) {
+          return getValue(index);
+        }
       }
-
-      if (set.hasAlias(aliasedRow, key)) {
-        return aliasedRow.get(key);
+      if (extras != null) {
+        return extras.get(key);
       }
 
 // TODO: get ColumnKind.CONTENT of binary as byte[] - getKind()?
@@ -999,19 +1638,19 @@ public class RowManagerImpl
     }
     @Override
     public boolean isEmpty() {
-      return row.isEmpty();
+      return values.length == 0 && (extras == null || extras.isEmpty());
     }
     @Override
     public Set<String> keySet() {
-      return row.keySet();
+      return getRow().keySet();
     }
     @Override
     public Collection<Object> values() {
-      return row.values();
+      return getRow().values();
     }
     @Override
     public int size() {
-      return row.size();
+      return values.length + ((extras == null) ? 0 : extras.size());
     }
 
     // unsupported operations for unmodifiable map
@@ -1039,7 +1678,16 @@ public class RowManagerImpl
     }
     @Override
     public boolean getBoolean(String columnName) {
-      return asBoolean(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getBoolean(index) : asBoolean(columnName, get(columnName));
+    }
+    @Override
+    public boolean getBoolean(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_BOOLEAN) {
+        return primitives[columnIndex] != 0;
+      }
+      return asBoolean(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public byte getByte(PlanExprCol col) {
@@ -1047,7 +1695,16 @@ public class RowManagerImpl
     }
     @Override
     public byte getByte(String columnName) {
-      return asByte(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getByte(index) : asByte(columnName, get(columnName));
+    }
+    @Override
+    public byte getByte(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_LONG) {
+        return (byte) primitives[columnIndex];
+      }
+      return asByte(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public double getDouble(PlanExprCol col) {
@@ -1055,7 +1712,18 @@ public class RowManagerImpl
     }
     @Override
     public double getDouble(String columnName) {
-      return asDouble(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getDouble(index) : asDouble(columnName, get(columnName));
+    }
+    @Override
+    public double getDouble(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_DOUBLE) {
+        return Double.longBitsToDouble(primitives[columnIndex]);
+      } else if (slots[columnIndex] == SLOT_LONG) {
+        return (double) primitives[columnIndex];
+      }
+      return asDouble(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public float getFloat(PlanExprCol col) {
@@ -1063,7 +1731,18 @@ public class RowManagerImpl
     }
     @Override
     public float getFloat(String columnName) {
-      return asFloat(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getFloat(index) : asFloat(columnName, get(columnName));
+    }
+    @Override
+    public float getFloat(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_DOUBLE) {
+        return (float) Double.longBitsToDouble(primitives[columnIndex]);
+      } else if (slots[columnIndex] == SLOT_LONG) {
+        return (float) primitives[columnIndex];
+      }
+      return asFloat(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public int getInt(PlanExprCol col) {
@@ -1071,7 +1750,16 @@ public class RowManagerImpl
     }
     @Override
     public int getInt(String columnName) {
-      return asInt(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getInt(index) : asInt(columnName, get(columnName));
+    }
+    @Override
+    public int getInt(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_LONG) {
+        return (int) primitives[columnIndex];
+      }
+      return asInt(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public long getLong(PlanExprCol col) {
@@ -1079,7 +1767,16 @@ public class RowManagerImpl
     }
     @Override
     public long getLong(String columnName) {
-      return asLong(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getLong(index) : asLong(columnName, get(columnName));
+    }
+    @Override
+    public long getLong(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_LONG) {
+        return primitives[columnIndex];
+      }
+      return asLong(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public short getShort(PlanExprCol col) {
@@ -1087,7 +1784,16 @@ public class RowManagerImpl
     }
     @Override
     public short getShort(String columnName) {
-      return asShort(columnName, get(columnName));
+      int index = getIndex(columnName);
+      return (index >= 0) ? getShort(index) : asShort(columnName, get(columnName));
+    }
+    @Override
+    public short getShort(int columnIndex) {
+      checkIndex(columnIndex);
+      if (slots[columnIndex] == SLOT_LONG) {
+        return (short) primitives[columnIndex];
+      }
+      return asShort(getColumnName(columnIndex), getValue(columnIndex));
     }
     @Override
     public String getString(PlanExprCol col) {
@@ -1101,6 +1807,28 @@ public class RowManagerImpl
         throw new IllegalArgumentException("value for column \""+columnName+"\" not a string");
       }
     }
+    @Override
+    public String getString(int columnIndex) {
+      checkIndex(columnIndex);
+      try {
+        return asString(getValue(columnIndex));
+      } catch(NodeNotAStringException e) {
+        throw new IllegalArgumentException("value for column \""+getColumnName(columnIndex)+"\" not a string");
+      }
+    }
+    @Override
+    public boolean isNull(int columnIndex) {
+      checkIndex(columnIndex);
+      return slots[columnIndex] == SLOT_NULL;
+    }
+    private void checkIndex(int columnIndex) {
+      if (columnIndex < 0 || columnIndex >= slots.length) {
+        throw new IllegalArgumentException("no column at position "+columnIndex+" of "+slots.length+" columns");
+      }
+    }
+    private String getColumnName(int columnIndex) {
+      return set.getColumnNamesArray()[columnIndex];
+    }
 
     private boolean asBoolean(String columnName, Object value) {
       if (value instanceof Boolean) {
@@ -1373,76 +2101,76 @@ public class RowManagerImpl
       buf.append("{");
 
       boolean isFirst = true;
-      if (row != null) {
-        for (String colName: row.keySet()) {
-          if (isFirst) {
-            buf.append("\n    ");
-            isFirst = false;
-          } else {
-            buf.append(",\n    ");
-          }
+      String[] columnNames = set.getColumnNamesArray();
+      for (int i=0; i < columnNames.length; i++) {
+        String colName = columnNames[i];
+        if (isFirst) {
+          buf.append("\n    ");
+          isFirst = false;
+        } else {
+          buf.append(",\n    ");
+        }
 
-          RowRecord.ColumnKind colKind = kinds.get(colName);
-          String               colType = datatypes.get(colName);
+        RowRecord.ColumnKind colKind = getKind(i);
+        String               colType = getDatatype(i);
 
-          buf.append(colName);
-          buf.append(":{kind: \"");
-          buf.append(colKind.name());
-          if (!"cid".equals(colType)) {
-            buf.append("\", type: \"");
-            buf.append(colType);
-          }
-          buf.append("\", ");
-
-          switch(colKind) {
-            case ATOMIC_VALUE:
-              buf.append("value: ");
-
-              String colVal = getString(colName);
-
-              switch(colType) {
-                case "xs:boolean":
-                case "xs:byte":
-                case "xs:decimal":
-                case "xs:double":
-                case "xs:float":
-                case "xs:int":
-                case "xs:integer":
-                case "xs:long":
-                case "xs:short":
-                case "xs:unsignedByte":
-                case "xs:unsignedInt":
-                case "xs:unsignedLong":
-                case "xs:unsignedShort":
-                  buf.append(colVal);
-                  break;
-                default:
-                  if (colVal == null) {
-                    buf.append("null");
-                  } else {
-                    buf.append("\"");
-                    buf.append(colVal.replace("\"", "\\\""));
-                    buf.append("\"");
-                  }
-                  break;
-              }
-              break;
-            case CONTENT:
-              buf.append("format: \"");
-              buf.append(getContentFormat(colName).name().toLowerCase());
-              buf.append("\", mimetype: \"");
-              buf.append(getContentMimetype(colName));
-              buf.append("\"");
-              break;
-            case NULL:
-              buf.append("value: null");
-              break;
-            default:
-              throw new InternalError("unknown value kind: "+colKind);
-          }
-
-          buf.append("}");
+        buf.append(colName);
+        buf.append(":{kind: \"");
+        buf.append(colKind.name());
+        if (!"cid".equals(colType)) {
+          buf.append("\", type: \"");
+          buf.append(colType);
+        }
+        buf.append("\", ");
+
+        switch(colKind) {
+          case ATOMIC_VALUE:
+            buf.append("value: ");
+
+            String colVal = getString(colName);
+
+            switch(colType) {
+              case "xs:boolean":
+              case "xs:byte":
+              case "xs:decimal":
+              case "xs:double":
+              case "xs:float":
+              case "xs:int":
+              case "xs:integer":
+              case "xs:long":
+              case "xs:short":
+              case "xs:unsignedByte":
+              case "xs:unsignedInt":
+              case "xs:unsignedLong":
+              case "xs:unsignedShort":
+                buf.append(colVal);
+                break;
+              default:
+                if (colVal == null) {
+                  buf.append("null");
+                } else {
+                  buf.append("\"");
+                  buf.append(colVal.replace("\"", "\\\""));
+                  buf.append("\"");
+                }
+                break;
+            }
+            break;
+          case CONTENT:
+            buf.append("format: \"");
+            buf.append(getContentFormat(colName).name().toLowerCase());
+            buf.append("\", mimetype: \"");
+            buf.append(getContentMimetype(colName));
+            buf.append("\"");
+            break;
+          case NULL:
+            buf.append("value: null");
+            break;
+          default:
+            throw new InternalError("unknown value kind: "+colKind);
         }
+
+        buf.append("}");
       }
 
       if (!isFirst) {
@@ -1588,6 +2316,60 @@ public class RowManagerImpl
     }
   }
 
+  static class PreparedPlanImpl implements PlanBuilderBaseImpl.BindablePlan {
+    // shared by every binding of the plan and never modified
+    private final byte[] ast;
+    private final Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> params;
+    PreparedPlanImpl(byte[] ast, Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> params) {
+      this.ast    = ast;
+      this.params = params;
+    }
+
+    @Override
+    public Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> getParams() {
+      return params;
+    }
+    @Override
+    public AbstractWriteHandle getHandle() {
+      return new BytesHandle(ast).withFormat(Format.JSON);
+    }
+
+    @Override
+    public Plan withParams(Map<PlanBuilderBaseImpl.PlanParamBase,BaseTypeImpl.ParamBinder> nextParams) {
+      return new PreparedPlanImpl(ast, nextParams);
+    }
+  }
+
+  static class RowDocResultImpl<T> implements RowDocResult<T> {
+    private final Plan             plan;
+    private final T                doc;
+    private final RuntimeException failure;
+    RowDocResultImpl(Plan plan, T doc, RuntimeException failure) {
+      this.plan    = plan;
+      this.doc     = doc;
+      this.failure = failure;
+    }
+    @Override
+    public Plan getPlan() {
+      return plan;
+    }
+    @Override
+    public boolean isSuccess() {
+      return failure == null;
+    }
+    @Override
+    public T get() {
+      if (failure != null) {
+        throw failure;
+      }
+      return doc;
+    }
+    @Override
+    public RuntimeException getFailure() {
+      return failure;
+    }
+  }
+
   private static class NodeNotAStringException extends Exception {
   }
 }
@@ -0,0 +1,613 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.impl.RESTServices.RESTServiceResult;
+import com.marklogic.client.impl.RESTServices.RESTServiceResultIterator;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.marker.AbstractReadHandle;
+import com.marklogic.client.row.RowResultCache;
+import com.marklogic.client.util.RequestParameters;
+
+/**
+ * An LRU cache of row responses keyed by a digest of the plan AST, the
+ * parameter bindings, and the output styles.  Each entry holds the parts
+ * of the response as bytes.  The cache belongs to the client that
+ * created it, because the responses depend on the permissions of the user.
+ */
+class RowResultCacheImpl implements RowResultCache {
+  // the approximate heap overhead of an entry and a part in addition to the content
+  static final private int ENTRY_OVERHEAD = 128;
+  static final private int PART_OVERHEAD  =  64;
+
+  private final RESTServices services;
+  private final long         maxBytes;
+  private final long         timeToLive;
+
+  // guarded by this
+  private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long byteCount = 0;
+
+  private volatile long pinnedTimestamp = 0;
+
+  private final AtomicLong hitCount      = new AtomicLong();
+  private final AtomicLong missCount     = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  RowResultCacheImpl(RESTServices services, long maxBytes, long timeToLive, TimeUnit unit) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Must have a positive maximum size for the cache instead of "+maxBytes);
+    }
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("Must have a positive time to live for the cache instead of "+timeToLive);
+    }
+    if (unit == null) {
+      throw new IllegalArgumentException("Must specify the unit for the time to live for the cache");
+    }
+    this.services   = services;
+    this.maxBytes   = maxBytes;
+    this.timeToLive = unit.toNanos(timeToLive);
+  }
+
+  boolean isFor(RESTServices services) {
+    return this.services == services;
+  }
+
+  @Override
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+  @Override
+  public long getTimeToLiveMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(timeToLive);
+  }
+
+  @Override
+  public synchronized void pinTimestamp(long serverTimestamp) {
+    if (serverTimestamp <= 0) {
+      throw new IllegalArgumentException("Must pin the cache to a positive server timestamp instead of "+serverTimestamp);
+    }
+    if (serverTimestamp != pinnedTimestamp) {
+      pinnedTimestamp = serverTimestamp;
+      clear();
+    }
+  }
+  @Override
+  public synchronized void unpinTimestamp() {
+    if (pinnedTimestamp != 0) {
+      pinnedTimestamp = 0;
+      clear();
+    }
+  }
+  @Override
+  public long getPinnedTimestamp() {
+    return pinnedTimestamp;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+  @Override
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+  @Override
+  public synchronized long getByteCount() {
+    return byteCount;
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+    byteCount = 0;
+  }
+
+  /**
+   * Makes the key for a request.  Parameters are digested in name order
+   * so the order of binding doesn't matter.
+   */
+  String makeKey(byte[] ast, RequestParameters params, String... styles) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new MarkLogicInternalException("no SHA-256 digest", e);
+    }
+    digest.update(ast);
+    if (params != null) {
+      for (Map.Entry<String,List<String>> param: new TreeMap<>(params).entrySet()) {
+        digestString(digest, param.getKey());
+        for (String value: param.getValue()) {
+          digestString(digest, value);
+        }
+      }
+    }
+    for (String style: styles) {
+      digestString(digest, style);
+    }
+    digestString(digest, String.valueOf(pinnedTimestamp));
+    return Base64.getEncoder().encodeToString(digest.digest());
+  }
+  private void digestString(MessageDigest digest, String value) {
+    // a separator that can't occur in a string keeps adjacent values distinct
+    digest.update((byte) 0xFF);
+    if (value != null) {
+      digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  CachedPart[] get(String key) {
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        if (System.nanoTime() - entry.created < timeToLive) {
+          hitCount.incrementAndGet();
+          return entry.parts;
+        }
+        remove(key, entry);
+      }
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+  void put(String key, CachedPart[] parts) {
+    long size = ENTRY_OVERHEAD;
+    for (CachedPart part: parts) {
+      size += PART_OVERHEAD + part.content.length;
+    }
+    // a response that would fill the cache by itself isn't worth caching
+    if (size > getMaxEntryBytes()) return;
+
+    Entry entry = new Entry(parts, size);
+    synchronized (this) {
+      Entry prior = entries.put(key, entry);
+      if (prior != null) {
+        byteCount -= prior.size;
+      }
+      byteCount += size;
+      evictExpired();
+      Iterator<Map.Entry<String,Entry>> eldest = entries.entrySet().iterator();
+      while (byteCount > maxBytes && eldest.hasNext()) {
+        Entry evicted = eldest.next().getValue();
+        eldest.remove();
+        byteCount -= evicted.size;
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+  // guarded by this
+  private void evictExpired() {
+    long now = System.nanoTime();
+    Iterator<Entry> itr = entries.values().iterator();
+    while (itr.hasNext()) {
+      Entry entry = itr.next();
+      if (now - entry.created >= timeToLive) {
+        itr.remove();
+        byteCount -= entry.size;
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+  // guarded by this
+  private void remove(String key, Entry entry) {
+    entries.remove(key);
+    byteCount -= entry.size;
+    evictionCount.incrementAndGet();
+  }
+
+  private long getMaxEntryBytes() {
+    return maxBytes / 2;
+  }
+
+  static boolean canReceive(AbstractReadHandle handle) {
+    Class<?> as = HandleAccessor.receiveAs(handle);
+    return as == InputStream.class || as == byte[].class || as == Reader.class || as == String.class;
+  }
+
+  /**
+   * Reads all of the parts of a response into memory and closes the response.
+   */
+  static CachedPart[] readParts(RESTServiceResultIterator results) {
+    if (results == null) {
+      return new CachedPart[0];
+    }
+    try {
+      List<CachedPart> parts = new ArrayList<>();
+      while (results.hasNext()) {
+        RESTServiceResult result = results.next();
+        // the headers must be read before the content
+        Map<String,List<String>> headers = result.getHeaders();
+        Format format   = result.getFormat();
+        String mimetype = result.getMimetype();
+        byte[] content  = result.getContent(new BytesHandle()).get();
+        parts.add(new CachedPart(content, format, mimetype, headers, results.getServerTimestamp()));
+      }
+      return parts.toArray(new CachedPart[parts.size()]);
+    } finally {
+      results.close();
+    }
+  }
+  /**
+   * Reads the parts of a response into memory while the response fits
+   * in an entry and caches the parts if the whole response fits.  Otherwise,
+   * the iterator returns the parts read so far and then streams the rest
+   * of the response, so a response that can't be cached isn't buffered.
+   */
+  RESTServiceResultIterator readThrough(String key, RESTServiceResultIterator results) {
+    if (results == null) {
+      CachedPart[] parts = new CachedPart[0];
+      put(key, parts);
+      return iterate(parts);
+    }
+    boolean isStreamed = false;
+    try {
+      List<CachedPart> parts = new ArrayList<>();
+      long size = ENTRY_OVERHEAD;
+      while (results.hasNext()) {
+        RESTServiceResult result = results.next();
+        // the headers must be read before the content
+        Map<String,List<String>> headers = result.getHeaders();
+        Format format   = result.getFormat();
+        String mimetype = result.getMimetype();
+        InputStream content = result.getContent(new InputStreamHandle()).get();
+        size += PART_OVERHEAD;
+        long limit = getMaxEntryBytes() - size;
+        byte[] head = readAtMost(content, limit);
+        if (head.length > limit) {
+          isStreamed = true;
+          return new ReadThroughIterator(
+            parts, new StreamedPart(head, content, format, mimetype, headers, results.getServerTimestamp()), results
+          );
+        }
+        size += head.length;
+        parts.add(new CachedPart(head, format, mimetype, headers, results.getServerTimestamp()));
+      }
+      CachedPart[] cached = parts.toArray(new CachedPart[parts.size()]);
+      put(key, cached);
+      return iterate(cached);
+    } finally {
+      if (!isStreamed) {
+        results.close();
+      }
+    }
+  }
+  /**
+   * Reads the content of a response document into memory if the document
+   * fits in an entry and caches the document.  Otherwise, the result
+   * returns the bytes read so far and then streams the rest of the document.
+   */
+  RESTServiceResult readThrough(String key, InputStreamHandle handle) {
+    Format format   = handle.getFormat();
+    String mimetype = handle.getMimetype();
+    long   serverTimestamp = handle.getServerTimestamp();
+
+    InputStream content = handle.get();
+    long limit = getMaxEntryBytes() - ENTRY_OVERHEAD - PART_OVERHEAD;
+    byte[] head = readAtMost(content, limit);
+    if (head.length > limit) {
+      return new StreamedPart(head, content, format, mimetype, Collections.emptyMap(), serverTimestamp);
+    }
+
+    CachedPart part = new CachedPart(head, format, mimetype, Collections.emptyMap(), serverTimestamp);
+    put(key, new CachedPart[]{part});
+    return part;
+  }
+  /**
+   * Reads the content up to one byte past the limit, closing the content
+   * only if the content was read to the end.
+   */
+  static private byte[] readAtMost(InputStream content, long limit) {
+    if (content == null) {
+      return new byte[0];
+    }
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      long remaining = Math.max(limit, 0) + 1;
+      while (remaining > 0) {
+        int len = content.read(buf, 0, (int) Math.min(buf.length, remaining));
+        if (len == -1) {
+          content.close();
+          break;
+        }
+        buffer.write(buf, 0, len);
+        remaining -= len;
+      }
+      return buffer.toByteArray();
+    } catch (IOException e) {
+      try {
+        content.close();
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      throw new MarkLogicIOException("could not read row response", e);
+    }
+  }
+  static private byte[] readAll(InputStream content) {
+    try (InputStream in = content) {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      for (int len = in.read(buf); len != -1; len = in.read(buf)) {
+        buffer.write(buf, 0, len);
+      }
+      return buffer.toByteArray();
+    } catch (IOException e) {
+      throw new MarkLogicIOException("could not read row response", e);
+    }
+  }
+
+  static RESTServiceResultIterator iterate(CachedPart[] parts) {
+    return new CachedResultIterator(parts);
+  }
+
+  static private class Entry {
+    private final CachedPart[] parts;
+    private final long         size;
+    private final long         created = System.nanoTime();
+    Entry(CachedPart[] parts, long size) {
+      this.parts = parts;
+      this.size  = size;
+    }
+  }
+
+  static class CachedPart implements RESTServiceResult {
+    private final byte[]                   content;
+    private final Format                   format;
+    private final String                   mimetype;
+    private final Map<String,List<String>> headers;
+    private final long                     serverTimestamp;
+    CachedPart(byte[] content, Format format, String mimetype, Map<String,List<String>> headers) {
+      this(content, format, mimetype, headers, -1);
+    }
+    CachedPart(
+      byte[] content, Format format, String mimetype, Map<String,List<String>> headers, long serverTimestamp
+    ) {
+      this.content         = (content == null) ? new byte[0] : content;
+      this.format          = format;
+      this.mimetype        = mimetype;
+      this.headers         = headers;
+      this.serverTimestamp = serverTimestamp;
+    }
+    @Override
+    public Map<String,List<String>> getHeaders() {
+      return headers;
+    }
+    @Override
+    public Format getFormat() {
+      return format;
+    }
+    @Override
+    public String getMimetype() {
+      return mimetype;
+    }
+    @Override
+    public long getLength() {
+      return content.length;
+    }
+    long getServerTimestamp() {
+      return serverTimestamp;
+    }
+    // the content is never modified, so each read gets its own stream over the shared bytes
+    @Override
+    public <R extends AbstractReadHandle> R getContent(R handle) {
+      HandleImplementation<?,?> handleBase = describe(handle, format, mimetype, serverTimestamp);
+      handleBase.setByteLength(content.length);
+
+      Class<?> as = handleBase.receiveAs();
+      if (as == InputStream.class) {
+        HandleAccessor.receiveContent(handle, new ByteArrayInputStream(content));
+      } else if (as == byte[].class) {
+        HandleAccessor.receiveContent(handle, content.clone());
+      } else if (as == Reader.class) {
+        HandleAccessor.receiveContent(handle, new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+      } else if (as == String.class) {
+        HandleAccessor.receiveContent(handle, new String(content, StandardCharsets.UTF_8));
+      } else {
+        throw new IllegalArgumentException(
+          "Cannot read cached rows with handle that receives "+((as == null) ? null : as.getName()));
+      }
+      return handle;
+    }
+  }
+
+  /**
+   * A part that exceeds the size of an entry, which can be read only once.
+   */
+  static private class StreamedPart implements RESTServiceResult {
+    private       InputStream              content;
+    private final Format                   format;
+    private final String                   mimetype;
+    private final Map<String,List<String>> headers;
+    private final long                     serverTimestamp;
+    StreamedPart(
+      byte[] head, InputStream rest, Format format, String mimetype, Map<String,List<String>> headers,
+      long serverTimestamp
+    ) {
+      this.content         = new SequenceInputStream(new ByteArrayInputStream(head), rest);
+      this.format          = format;
+      this.mimetype        = mimetype;
+      this.headers         = headers;
+      this.serverTimestamp = serverTimestamp;
+    }
+    @Override
+    public Map<String,List<String>> getHeaders() {
+      return headers;
+    }
+    @Override
+    public Format getFormat() {
+      return format;
+    }
+    @Override
+    public String getMimetype() {
+      return mimetype;
+    }
+    @Override
+    public long getLength() {
+      return -1;
+    }
+    @Override
+    public <R extends AbstractReadHandle> R getContent(R handle) {
+      if (content == null) throw new IllegalStateException("Content already retrieved");
+
+      HandleImplementation<?,?> handleBase = describe(handle, format, mimetype, serverTimestamp);
+
+      InputStream stream = content;
+      content = null;
+
+      Class<?> as = handleBase.receiveAs();
+      if (as == InputStream.class) {
+        HandleAccessor.receiveContent(handle, stream);
+      } else if (as == byte[].class) {
+        HandleAccessor.receiveContent(handle, readAll(stream));
+      } else if (as == Reader.class) {
+        HandleAccessor.receiveContent(handle, new InputStreamReader(stream, StandardCharsets.UTF_8));
+      } else if (as == String.class) {
+        HandleAccessor.receiveContent(handle, new String(readAll(stream), StandardCharsets.UTF_8));
+      } else {
+        throw new IllegalArgumentException(
+          "Cannot read rows with handle that receives "+((as == null) ? null : as.getName()));
+      }
+      return handle;
+    }
+    void close() {
+      if (content != null) {
+        try {
+          content.close();
+        } catch (IOException e) {
+          // the response is abandoned, so a failure to close is of no interest
+        }
+        content = null;
+      }
+    }
+  }
+  static private HandleImplementation<?,?> describe(
+    AbstractReadHandle handle, Format format, String mimetype, long serverTimestamp
+  ) {
+    HandleImplementation<?,?> handleBase = HandleAccessor.as(handle);
+    if (format != null) {
+      handleBase.setFormat(format);
+    }
+    if (mimetype != null) {
+      handleBase.setMimetype(mimetype);
+    }
+    if (serverTimestamp != -1) {
+      handleBase.setResponseServerTimestamp(serverTimestamp);
+    }
+    return handleBase;
+  }
+
+  static private class CachedResultIterator implements RESTServiceResultIterator {
+    private final CachedPart[] parts;
+    private int next = 0;
+    CachedResultIterator(CachedPart[] parts) {
+      this.parts = parts;
+    }
+    @Override
+    public boolean hasNext() {
+      return next < parts.length;
+    }
+    @Override
+    public RESTServiceResult next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException("no more cached parts");
+      }
+      return parts[next++];
+    }
+    @Override
+    public long getServerTimestamp() {
+      return (parts.length == 0) ? -1 : parts[0].getServerTimestamp();
+    }
+    @Override
+    public void close() {
+      next = parts.length;
+    }
+  }
+
+  // returns the parts read into memory followed by the parts streamed from the response
+  static private class ReadThroughIterator implements RESTServiceResultIterator {
+    private final Iterator<CachedPart>      parts;
+    private       StreamedPart              streamedPart;
+    private final RESTServiceResultIterator results;
+    ReadThroughIterator(List<CachedPart> parts, StreamedPart streamedPart, RESTServiceResultIterator results) {
+      this.parts        = parts.iterator();
+      this.streamedPart = streamedPart;
+      this.results      = results;
+    }
+    @Override
+    public boolean hasNext() {
+      return parts.hasNext() || streamedPart != null || results.hasNext();
+    }
+    @Override
+    public RESTServiceResult next() {
+      if (parts.hasNext()) {
+        return parts.next();
+      }
+      if (streamedPart != null) {
+        RESTServiceResult next = streamedPart;
+        streamedPart = null;
+        return next;
+      }
+      return results.next();
+    }
+    @Override
+    public long getServerTimestamp() {
+      return results.getServerTimestamp();
+    }
+    @Override
+    public void close() {
+      if (streamedPart != null) {
+        streamedPart.close();
+        streamedPart = null;
+      }
+      results.close();
+    }
+  }
+}
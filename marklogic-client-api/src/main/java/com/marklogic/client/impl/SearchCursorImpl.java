@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.ResourceNotFoundException;
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.document.SearchCursor;
+import com.marklogic.client.query.QueryDefinition;
+
+/**
+ * Reads the URIs of each page from the URI lexicon after the last URI of
+ * the previous page and reads the documents for the URIs in bulk.  The URI
+ * requests are chained because each depends on the last URI of the previous
+ * page, but they are small, so the document requests for several pages
+ * overlap with the iteration.
+ */
+class SearchCursorImpl implements SearchCursor {
+  static final private String[] NO_URIS = new String[0];
+
+  private final DocumentManagerImpl<?,?> docMgr;
+  private final RESTServices             services;
+  private final QueryDefinition          querydef;
+  private final int                      pageLength;
+  private final int                      prefetchPages;
+  private final ArrayDeque<CompletableFuture<DocumentPage>> pending = new ArrayDeque<>();
+
+  // written by the request for the first page and read by the requests that follow it
+  private volatile long serverTimestamp;
+
+  private ExecutorService             executor;
+  private CompletableFuture<String[]> lastUris;
+  private DocumentPage                page;
+  private String                      afterUri;
+  private boolean                     isDone = false;
+
+  SearchCursorImpl(DocumentManagerImpl<?,?> docMgr, QueryDefinition querydef, String afterUri,
+                   int pageLength, int prefetchPages, long serverTimestamp) {
+    this.docMgr          = docMgr;
+    this.services        = docMgr.getServices();
+    this.querydef        = querydef;
+    this.afterUri        = afterUri;
+    this.pageLength      = pageLength;
+    this.prefetchPages   = prefetchPages;
+    this.serverTimestamp = (serverTimestamp > 0) ? serverTimestamp : -1;
+  }
+
+  void init() {
+    executor = Executors.newFixedThreadPool(prefetchPages + 1, RowManagerImpl.daemonThreads("marklogic-search-pages"));
+    lastUris = CompletableFuture.completedFuture(null);
+    // the current page and the prefetched pages
+    for (int i=0; i <= prefetchPages; i++) {
+      requestPage();
+    }
+  }
+
+  private void requestPage() {
+    String startAfter = afterUri;
+    CompletableFuture<String[]> uris = lastUris.thenApplyAsync(previous -> {
+      if (previous == null) {
+        return readUris(startAfter);
+      }
+      // a short page is the last page
+      if (previous.length < pageLength) {
+        return NO_URIS;
+      }
+      return readUris(previous[previous.length - 1]);
+    }, executor);
+    lastUris = uris;
+
+    // the page is delivered through a separate future, so a page read after the cursor cancels the future is closed
+    CompletableFuture<DocumentPage> documents = new CompletableFuture<>();
+    uris.whenCompleteAsync((pageUris, failure) -> {
+      if (failure != null) {
+        documents.completeExceptionally(failure);
+        return;
+      }
+      if (documents.isCancelled()) {
+        return;
+      }
+      try {
+        DocumentPage prefetched = readDocuments(pageUris);
+        if (!documents.complete(prefetched) && prefetched != null) {
+          prefetched.close();
+        }
+      } catch (Throwable e) {
+        documents.completeExceptionally(e);
+      }
+    }, executor);
+    pending.add(documents);
+  }
+  private String[] readUris(String after) {
+    UrisHandle handle = new UrisHandle();
+    if (serverTimestamp > 0) {
+      handle.setPointInTimeQueryTimestamp(serverTimestamp);
+    }
+    try (UrisHandle results = services.uris(
+      docMgr.requestLogger, null, querydef, 1, after, pageLength, null, handle)) {
+      if (serverTimestamp <= 0) {
+        serverTimestamp = results.getServerTimestamp();
+      }
+      List<String> uris = new ArrayList<>(pageLength);
+      for (String uri: results) {
+        uris.add(uri);
+      }
+      return uris.toArray(new String[uris.size()]);
+    } catch (ResourceNotFoundException e) {
+      // the server responds with not found when there are no more uris
+      return NO_URIS;
+    }
+  }
+  private DocumentPage readDocuments(String[] uris) {
+    if (uris.length == 0) {
+      return null;
+    }
+    return docMgr.read(serverTimestamp, uris);
+  }
+
+  private boolean nextPage() {
+    if (page != null) {
+      page.close();
+      page = null;
+    }
+    CompletableFuture<DocumentPage> future = pending.poll();
+    if (future == null) {
+      isDone = true;
+      return false;
+    }
+    try {
+      page = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new MarkLogicIOException("interrupted while waiting for a page of documents", e);
+    } catch (CancellationException e) {
+      close();
+      throw new MarkLogicIOException("request cancelled for a page of documents", e);
+    } catch (ExecutionException e) {
+      close();
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new MarkLogicIOException("could not read a page of documents", cause);
+    }
+    if (page == null) {
+      close();
+      return false;
+    }
+    requestPage();
+    return true;
+  }
+
+  @Override
+  public long getServerTimestamp() {
+    return serverTimestamp;
+  }
+  @Override
+  public String getAfterUri() {
+    return afterUri;
+  }
+
+  @Override
+  public Iterator<DocumentRecord> iterator() {
+    return this;
+  }
+  @Override
+  public boolean hasNext() {
+    while (!isDone) {
+      if (page != null && page.hasNext()) {
+        return true;
+      }
+      if (!nextPage()) {
+        return false;
+      }
+    }
+    return false;
+  }
+  @Override
+  public DocumentRecord next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("no more documents");
+    }
+    DocumentRecord record = page.next();
+    afterUri = record.getUri();
+    return record;
+  }
+
+  @Override
+  public void close() {
+    isDone = true;
+    for (CompletableFuture<DocumentPage> future: pending) {
+      future.cancel(false);
+      // a page that was already read is held in memory until it is closed
+      future.whenComplete((prefetched, failure) -> {
+        if (prefetched != null) {
+          prefetched.close();
+        }
+      });
+    }
+    pending.clear();
+    if (page != null) {
+      page.close();
+      page = null;
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
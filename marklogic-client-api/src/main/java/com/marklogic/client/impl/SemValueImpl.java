@@ -15,8 +15,10 @@
  */
 package com.marklogic.client.impl;
 
+import java.io.IOException;
 import java.util.Arrays;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.marklogic.client.expression.SemValue;
 import com.marklogic.client.impl.BaseTypeImpl.BaseArgImpl;
 import com.marklogic.client.type.CtsQueryExpr;
@@ -141,8 +143,8 @@ public class SemValueImpl implements SemValue {
       return toString();
     }
     @Override
-    public StringBuilder exportAst(StringBuilder strb) {
-      return strb.append("{\"ns\":\"sem\", \"fn\":\"iri\", \"args\":[\"").append(getString()).append("\"]}");
+    public void exportAst(JsonGenerator generator) throws IOException {
+      BaseTypeImpl.exportCallAst(generator, "sem", "iri", getString());
     }
   }
 
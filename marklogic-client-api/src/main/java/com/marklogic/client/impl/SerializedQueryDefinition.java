@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.nio.charset.StandardCharsets;
+
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.marker.StructureWriteHandle;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.RawStructuredQueryDefinition;
+import com.marklogic.client.query.StructuredQueryBuilder;
+import com.marklogic.client.query.StructuredQueryDefinition;
+
+/**
+ * A structured or combined query serialized once as the bytes of the
+ * request body, so a query sent for many pages isn't serialized again
+ * for each page.  A structured query is wrapped in a combined query
+ * (a search element or property) because the uris endpoint reads the
+ * body as a combined query.
+ */
+public class SerializedQueryDefinition extends AbstractQueryDefinition {
+  private final byte[] structure;
+  private final Format format;
+  private final String criteria;
+
+  private SerializedQueryDefinition(QueryDefinition qdef, String structure, Format format, String criteria) {
+    this.structure = structure.getBytes(StandardCharsets.UTF_8);
+    this.format    = format;
+    this.criteria  = criteria;
+    setOptionsName(qdef.getOptionsName());
+    setCollections(qdef.getCollections());
+    setDirectory(qdef.getDirectory());
+    setResponseTransform(qdef.getResponseTransform());
+  }
+
+  /**
+   * Serializes a structured, raw structured, or combined query definition.
+   * Other query definitions are already cheap to send and are returned as is.
+   * @param qdef	the query definition
+   * @return	the serialized query definition or the original query definition
+   */
+  static public QueryDefinition serialize(QueryDefinition qdef) {
+    if (qdef instanceof SerializedQueryDefinition) {
+      return qdef;
+    } else if (qdef instanceof StructuredQueryDefinition) {
+      StructuredQueryDefinition structuredQuery = (StructuredQueryDefinition) qdef;
+      String structure = structuredQuery.serialize();
+      if (structure == null) return qdef;
+      return new SerializedQueryDefinition(qdef, wrapStructure(structure, Format.XML), Format.XML,
+        structuredQuery.getCriteria());
+    } else if (qdef instanceof RawStructuredQueryDefinition) {
+      RawStructuredQueryDefinition structuredQuery = (RawStructuredQueryDefinition) qdef;
+      String structure = structuredQuery.serialize();
+      if (structure == null) return qdef;
+      Format format = (HandleAccessor.as(structuredQuery.getHandle()).getFormat() == Format.JSON) ?
+        Format.JSON : Format.XML;
+      return new SerializedQueryDefinition(qdef, wrapStructure(structure, format), format,
+        structuredQuery.getCriteria());
+    } else if (qdef instanceof CombinedQueryDefinition) {
+      CombinedQueryDefinition combinedQuery = (CombinedQueryDefinition) qdef;
+      String structure = combinedQuery.serialize();
+      if (structure == null) return qdef;
+      return new SerializedQueryDefinition(qdef, structure,
+        (combinedQuery.getFormat() == Format.JSON) ? Format.JSON : Format.XML, null);
+    }
+    return qdef;
+  }
+
+  static private String wrapStructure(String structure, Format format) {
+    if (format == Format.JSON) {
+      return "{\"search\":" + structure + "}";
+    }
+    // the search element can't follow an XML declaration
+    String query = structure.trim();
+    if (query.startsWith("<?xml")) {
+      query = query.substring(query.indexOf("?>") + 2);
+    }
+    return "<search xmlns=\"" + StructuredQueryBuilder.SEARCH_API_NS + "\">" + query + "</search>";
+  }
+
+  /**
+   * Returns the string query that accompanies the structure, if any.
+   * @return	the string query criteria
+   */
+  public String getCriteria() {
+    return criteria;
+  }
+  /**
+   * Returns the number of bytes in the serialized structure.
+   * @return	the length of the request body
+   */
+  public int getLength() {
+    return structure.length;
+  }
+  /**
+   * Returns a new handle on the shared bytes of the structure for sending
+   * as the body of a request.
+   * @return	the handle for the request body
+   */
+  public StructureWriteHandle getHandle() {
+    return new BytesHandle(structure).withFormat(format);
+  }
+
+  @Override
+  public String toString() {
+    return new String(structure, StandardCharsets.UTF_8);
+  }
+}
@@ -28,12 +28,22 @@ class StreamingOutputImpl extends RequestBody {
   private OutputStreamSender handle;
   private RequestLogger      logger;
   private MediaType          contentType;
+  private boolean            isResendable;
 
   StreamingOutputImpl(OutputStreamSender handle, RequestLogger logger, MediaType contentType) {
+    this(handle, logger, contentType, false);
+  }
+  StreamingOutputImpl(OutputStreamSender handle, RequestLogger logger, MediaType contentType, boolean isResendable) {
     super();
     this.handle = handle;
     this.logger = logger;
     this.contentType = contentType;
+    this.isResendable = isResendable;
+  }
+
+  // whether the sender writes the same content every time
+  boolean isResendable() {
+    return isResendable;
   }
 
   @Override
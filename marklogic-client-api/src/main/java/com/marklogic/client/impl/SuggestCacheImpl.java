@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.query.SuggestCache;
+import com.marklogic.client.query.SuggestDefinition;
+
+/**
+ * An LRU cache of suggestions.  Each scope (the options name, query strings,
+ * and limit) has a radix tree keyed by the suggest input, so the entries for
+ * the inputs that are prefixes of a new input are found in one walk down
+ * the tree.  An LRU map over all of the entries orders eviction.  The cache
+ * belongs to the client that created it, because the suggestions depend on
+ * the permissions of the user.
+ */
+class SuggestCacheImpl implements SuggestCache {
+  // the limit for the suggest endpoint when the definition doesn't set one
+  static final private int DEFAULT_LIMIT = 10;
+
+  private final RESTServices services;
+  private final int          maxEntries;
+  private final long         timeToLive;
+
+  // guarded by this
+  private final Map<String,PrefixTree>     scopes   = new HashMap<>();
+  private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String,CompletableFuture<String[]>> inFlight = new HashMap<>();
+
+  private final AtomicLong hitCount      = new AtomicLong();
+  private final AtomicLong missCount     = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  SuggestCacheImpl(RESTServices services, int maxEntries, long timeToLive, TimeUnit unit) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Must have a positive maximum number of entries for the cache instead of "+maxEntries);
+    }
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("Must have a positive time to live for the cache instead of "+timeToLive);
+    }
+    if (unit == null) {
+      throw new IllegalArgumentException("Must specify the unit for the time to live for the cache");
+    }
+    this.services   = services;
+    this.maxEntries = maxEntries;
+    this.timeToLive = unit.toNanos(timeToLive);
+  }
+
+  boolean isFor(RESTServices services) {
+    return this.services == services;
+  }
+
+  @Override
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+  @Override
+  public long getTimeToLiveMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(timeToLive);
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+  @Override
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized void clear() {
+    scopes.clear();
+    entries.clear();
+  }
+
+  /**
+   * Answers the suggest definition from the cache or, on a miss, with the
+   * fetcher.  Only one fetch runs at a time for the same scope and input.
+   */
+  String[] suggest(SuggestDefinition suggestDef, Function<SuggestDefinition,String[]> fetcher) {
+    String  input  = suggestDef.getStringCriteria();
+    Integer cursor = suggestDef.getCursorPosition();
+    if (input == null) {
+      input = "";
+    }
+    // the server completes the term at the cursor, which the cache doesn't parse
+    if (cursor != null && cursor != input.length()) {
+      missCount.incrementAndGet();
+      return fetcher.apply(suggestDef);
+    }
+
+    Integer limit = suggestDef.getLimit();
+    int effectiveLimit = (limit == null) ? DEFAULT_LIMIT : limit;
+    String scope = makeScope(suggestDef.getOptionsName(), suggestDef.getQueryStrings(), effectiveLimit);
+    String key   = makeKey(scope, input);
+
+    CompletableFuture<String[]> future;
+    synchronized (this) {
+      String[] suggestions = lookup(scope, input);
+      if (suggestions != null) {
+        hitCount.incrementAndGet();
+        return suggestions;
+      }
+      future = inFlight.get(key);
+      if (future == null) {
+        inFlight.put(key, new CompletableFuture<>());
+      }
+    }
+    if (future != null) {
+      hitCount.incrementAndGet();
+      return await(future).clone();
+    }
+
+    missCount.incrementAndGet();
+    String[] suggestions;
+    try {
+      suggestions = fetcher.apply(suggestDef);
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        future = inFlight.remove(key);
+      }
+      future.completeExceptionally(e);
+      throw e;
+    }
+    if (suggestions == null) {
+      suggestions = new String[0];
+    }
+    synchronized (this) {
+      put(scope, key, input, suggestions.clone(), effectiveLimit);
+      future = inFlight.remove(key);
+    }
+    future.complete(suggestions);
+    return suggestions.clone();
+  }
+  private String[] await(CompletableFuture<String[]> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MarkLogicIOException("interrupted while waiting for suggestions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new MarkLogicIOException("could not get suggestions", cause);
+    }
+  }
+
+  private String makeScope(String optionsName, String[] queryStrings, int limit) {
+    // a separator that can't occur in the values keeps adjacent values distinct
+    StringBuilder buf = new StringBuilder();
+    buf.append(limit).append('\u0000');
+    if (optionsName != null) {
+      buf.append(optionsName);
+    }
+    if (queryStrings != null) {
+      for (String queryString: queryStrings) {
+        buf.append('\u0000');
+        if (queryString != null) {
+          buf.append(queryString);
+        }
+      }
+    }
+    return buf.toString();
+  }
+  private String makeKey(String scope, String input) {
+    return scope + '\u0001' + input;
+  }
+
+  // guarded by this
+  private String[] lookup(String scope, String input) {
+    PrefixTree tree = scopes.get(scope);
+    if (tree == null) {
+      return null;
+    }
+    // a shorter input narrows only if the rest of the input continues the same word
+    int wordStart = input.length();
+    while (wordStart > 0 && Character.isLetterOrDigit(input.charAt(wordStart - 1))) {
+      wordStart--;
+    }
+    long now = System.nanoTime();
+    List<Entry> path = tree.findPrefixes(input);
+    for (int i=path.size() - 1; i >= 0; i--) {
+      Entry entry = path.get(i);
+      if (now - entry.created >= timeToLive) {
+        remove(entry);
+        continue;
+      }
+      if (entry.input.length() == input.length()) {
+        entries.get(entry.key);
+        return entry.suggestions.clone();
+      }
+      if (entry.input.length() < wordStart) {
+        break;
+      }
+      if (entry.isComplete) {
+        entries.get(entry.key);
+        return entry.narrow(input);
+      }
+    }
+    return null;
+  }
+  // guarded by this
+  private void put(String scope, String key, String input, String[] suggestions, int limit) {
+    Entry entry = new Entry(scope, key, input, suggestions, limit);
+    Entry prior = entries.put(key, entry);
+    if (prior != null) {
+      removeFromTree(prior);
+    }
+    scopes.computeIfAbsent(scope, s -> new PrefixTree()).put(input, entry);
+
+    // only the least recently used entries are checked, so a put doesn't scan
+    // the cache; an expired entry further on is removed when a lookup reaches it
+    long now = System.nanoTime();
+    Iterator<Entry> itr = entries.values().iterator();
+    while (itr.hasNext()) {
+      Entry candidate = itr.next();
+      if (entries.size() <= maxEntries && now - candidate.created < timeToLive) {
+        break;
+      }
+      itr.remove();
+      removeFromTree(candidate);
+      evictionCount.incrementAndGet();
+    }
+  }
+  // guarded by this
+  private void remove(Entry entry) {
+    entries.remove(entry.key);
+    removeFromTree(entry);
+    evictionCount.incrementAndGet();
+  }
+  // guarded by this
+  private void removeFromTree(Entry entry) {
+    PrefixTree tree = scopes.get(entry.scope);
+    if (tree != null && tree.remove(entry.input, entry) && tree.isEmpty()) {
+      scopes.remove(entry.scope);
+    }
+  }
+
+  static private class Entry {
+    private final String   scope;
+    private final String   key;
+    private final String   input;
+    private final String[] suggestions;
+    private final boolean  isComplete;
+    private final long     created = System.nanoTime();
+    Entry(String scope, String key, String input, String[] suggestions, int limit) {
+      this.scope       = scope;
+      this.key         = key;
+      this.input       = input;
+      this.suggestions = suggestions;
+      // fewer suggestions than the limit are all of the suggestions, which can
+      // be narrowed if the server completed the input as typed
+      boolean isComplete = suggestions.length < limit;
+      for (int i=0; isComplete && i < suggestions.length; i++) {
+        isComplete = suggestions[i] != null && suggestions[i].startsWith(input);
+      }
+      this.isComplete = isComplete;
+    }
+    String[] narrow(String longerInput) {
+      List<String> narrowed = new ArrayList<>();
+      for (String suggestion: suggestions) {
+        if (suggestion.startsWith(longerInput)) {
+          narrowed.add(suggestion);
+        }
+      }
+      return narrowed.toArray(new String[narrowed.size()]);
+    }
+  }
+
+  /**
+   * A radix tree in which each edge is labeled with a run of characters,
+   * so a chain of inputs that share a prefix takes one node per branch
+   * instead of one node per character.
+   */
+  static private class PrefixTree {
+    private final Node root = new Node("");
+
+    boolean isEmpty() {
+      return root.entry == null && root.children.isEmpty();
+    }
+
+    /**
+     * Returns the entries for the input and for each input that is a prefix
+     * of the input, shortest first.
+     */
+    List<Entry> findPrefixes(String input) {
+      List<Entry> path = new ArrayList<>();
+      Node node = root;
+      int  pos  = 0;
+      while (node != null) {
+        if (node.entry != null) {
+          path.add(node.entry);
+        }
+        if (pos == input.length()) {
+          break;
+        }
+        Node child = node.getChild(input.charAt(pos));
+        if (child == null || !input.startsWith(child.label, pos)) {
+          break;
+        }
+        pos += child.label.length();
+        node = child;
+      }
+      return path;
+    }
+
+    void put(String input, Entry entry) {
+      Node node = root;
+      int  pos  = 0;
+      while (pos < input.length()) {
+        Node child = node.getChild(input.charAt(pos));
+        if (child == null) {
+          child = new Node(input.substring(pos));
+          node.children.put(child.label.charAt(0), child);
+          node = child;
+          break;
+        }
+        int common = commonLength(child.label, input, pos);
+        if (common < child.label.length()) {
+          child = node.split(child, common);
+        }
+        pos += common;
+        node = child;
+      }
+      node.entry = entry;
+    }
+
+    /**
+     * Removes the entry for the input if it is still the current entry,
+     * pruning and merging the nodes that are no longer needed.
+     */
+    boolean remove(String input, Entry entry) {
+      return remove(root, input, 0, entry);
+    }
+    private boolean remove(Node node, String input, int pos, Entry entry) {
+      if (pos == input.length()) {
+        if (node.entry != entry) {
+          return false;
+        }
+        node.entry = null;
+        return true;
+      }
+      Node child = node.getChild(input.charAt(pos));
+      if (child == null || !input.startsWith(child.label, pos)) {
+        return false;
+      }
+      if (!remove(child, input, pos + child.label.length(), entry)) {
+        return false;
+      }
+      if (child.entry == null) {
+        if (child.children.isEmpty()) {
+          node.children.remove(child.label.charAt(0));
+        } else if (child.children.size() == 1) {
+          Node grandchild = child.children.values().iterator().next();
+          Node merged = new Node(child.label + grandchild.label);
+          merged.entry = grandchild.entry;
+          merged.children.putAll(grandchild.children);
+          node.children.put(merged.label.charAt(0), merged);
+        }
+      }
+      return true;
+    }
+
+    static private int commonLength(String label, String input, int pos) {
+      int max = Math.min(label.length(), input.length() - pos);
+      int i = 0;
+      while (i < max && label.charAt(i) == input.charAt(pos + i)) {
+        i++;
+      }
+      return i;
+    }
+  }
+  static private class Node {
+    private final String             label;
+    private final Map<Character,Node> children = new HashMap<>(4);
+    private Entry                    entry;
+    Node(String label) {
+      this.label = label;
+    }
+    Node getChild(char first) {
+      return children.get(first);
+    }
+    // replaces the child with a node for the first part of its label
+    Node split(Node child, int at) {
+      Node head = new Node(child.label.substring(0, at));
+      Node tail = new Node(child.label.substring(at));
+      tail.entry = child.entry;
+      tail.children.putAll(child.children);
+      head.children.put(tail.label.charAt(0), tail);
+      children.put(head.label.charAt(0), head);
+      return head;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.impl;
+
+import com.marklogic.client.io.BaseHandle;
+import com.marklogic.client.io.marker.OperationNotSupported;
+
+/**
+ * A UrisBytesHandle receives the uris of search results returned by the server
+ * as the undecoded text/uri-list bytes, with one uri on each line.
+ */
+public class UrisBytesHandle
+  extends BaseHandle<byte[], OperationNotSupported>
+  implements UrisReadHandle
+{
+  private byte[] content;
+
+  public UrisBytesHandle() {
+    super();
+    super.setMimetype("text/uri-list");
+  }
+
+  public byte[] get() {
+    return content;
+  }
+
+  @Override
+  protected Class<byte[]> receiveAs() {
+    return byte[].class;
+  }
+
+  @Override
+  protected void receiveContent(byte[] content) {
+    this.content = content;
+  }
+}
@@ -34,8 +34,6 @@ import java.util.List;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
@@ -59,26 +57,9 @@ import com.marklogic.client.io.marker.StructureWriteHandle;
 import com.marklogic.client.io.marker.XMLWriteHandle;
 
 public final class Utilities {
-  private static DocumentBuilderFactory factory;
-
   private static DatatypeFactory datatypeFactory;
   static private int BUFFER_SIZE = 8192;
 
-  private static DocumentBuilderFactory getFactory()
-    throws ParserConfigurationException {
-    if (factory == null)
-      factory = makeDocumentBuilderFactory();
-    return factory;
-  }
-
-  private static DocumentBuilderFactory makeDocumentBuilderFactory()
-    throws ParserConfigurationException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setNamespaceAware(true);
-    factory.setValidating(false);
-    return factory;
-  }
-
   /**
    * Construct a dom Element from a string. A utility function for creating
    * DOM elements when needed for other builder functions.
@@ -92,7 +73,7 @@ public final class Utilities {
     try {
       ByteArrayInputStream bais = new ByteArrayInputStream(
         xmlString.getBytes(Charset.forName("UTF-8")));
-      element = getFactory().newDocumentBuilder().parse(bais)
+      element = XmlFactories.getDocumentBuilder().parse(bais)
         .getDocumentElement();
     } catch (SAXException e) {
       throw new MarkLogicIOException(
@@ -100,9 +81,6 @@ public final class Utilities {
     } catch (IOException e) {
       throw new MarkLogicIOException(
         "Could not make Element from xmlString" + xmlString, e);
-    } catch (ParserConfigurationException e) {
-      throw new MarkLogicIOException(
-        "Could not make Element from xmlString" + xmlString, e);
     }
     return element;
   }
@@ -15,10 +15,25 @@
  */
 package com.marklogic.client.impl;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
 import java.lang.ref.SoftReference;
 
+import com.marklogic.client.MarkLogicInternalException;
+
+/**
+ * Makes and shares the XML factories used by the client.  The secure factories
+ * follow the recommendations for conservative security per
+ * https://github.com/OWASP/CheatSheetSeries/blob/master/cheatsheets/XML_External_Entity_Prevention_Cheat_Sheet.md
+ */
 public final class XmlFactories {
 
   private static final CachedInstancePerThreadSupplier<XMLOutputFactory> cachedOutputFactory =
@@ -29,6 +44,54 @@ public final class XmlFactories {
       }
     });
 
+  private static final CachedInstancePerThreadSupplier<XMLInputFactory> cachedInputFactory =
+    new CachedInstancePerThreadSupplier<XMLInputFactory>(new Supplier<XMLInputFactory>() {
+      @Override
+      public XMLInputFactory get() {
+        return makeNewInputFactory();
+      }
+    });
+
+  private static final CachedInstancePerThreadSupplier<DocumentBuilderFactory> cachedDocumentBuilderFactory =
+    new CachedInstancePerThreadSupplier<DocumentBuilderFactory>(new Supplier<DocumentBuilderFactory>() {
+      @Override
+      public DocumentBuilderFactory get() {
+        return makeNewDocumentBuilderFactory();
+      }
+    });
+
+  private static final CachedInstancePerThreadSupplier<DocumentBuilder> cachedDocumentBuilder =
+    new CachedInstancePerThreadSupplier<DocumentBuilder>(new Supplier<DocumentBuilder>() {
+      @Override
+      public DocumentBuilder get() {
+        try {
+          return getDocumentBuilderFactory().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+          throw new MarkLogicInternalException("Could not make a DOM document builder", e);
+        }
+      }
+    });
+
+  private static final CachedInstancePerThreadSupplier<TransformerFactory> cachedTransformerFactory =
+    new CachedInstancePerThreadSupplier<TransformerFactory>(new Supplier<TransformerFactory>() {
+      @Override
+      public TransformerFactory get() {
+        return makeNewTransformerFactory();
+      }
+    });
+
+  private static final CachedInstancePerThreadSupplier<Transformer> cachedTransformer =
+    new CachedInstancePerThreadSupplier<Transformer>(new Supplier<Transformer>() {
+      @Override
+      public Transformer get() {
+        try {
+          return getTransformerFactory().newTransformer();
+        } catch (TransformerConfigurationException e) {
+          throw new MarkLogicInternalException("Could not make an identity transformer", e);
+        }
+      }
+    });
+
   private XmlFactories() {} // preventing instances of utility class
 
   /**
@@ -67,6 +130,174 @@ public final class XmlFactories {
     return cachedOutputFactory.get();
   }
 
+  /**
+   * Returns a new {@link XMLInputFactory}. This factory will be namespace aware, non-validating, and coalescing.
+   * <p>
+   * CAUTION: Creating XML factories is potentially a pretty expensive operation. If possible, consider using a shared
+   * instance ({@link #getInputFactory()}) to amortize this initialization cost via reuse.
+   *
+   * @return  a namespace-aware, non-validating, coalescing {@link XMLInputFactory}
+   *
+   * @throws FactoryConfigurationError  see {@link XMLInputFactory#newFactory()}
+   *
+   * @see #getInputFactory()
+   */
+  public static XMLInputFactory makeNewInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_VALIDATING,      false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING,      true);
+    return factory;
+  }
+
+  /**
+   * Returns a shared {@link XMLInputFactory}. This factory will be namespace aware, non-validating, and coalescing.
+   * <p>
+   * Creating XML factories is potentially a pretty expensive operation. Using a shared instance helps to amortize
+   * this initialization cost via reuse.
+   *
+   * @return  a namespace-aware, non-validating, coalescing {@link XMLInputFactory}
+   *
+   * @throws FactoryConfigurationError  see {@link XMLInputFactory#newFactory()}
+   *
+   * @see #makeNewInputFactory()  if you need a non-shared instance to configure differently
+   */
+  public static XMLInputFactory getInputFactory() {
+    return cachedInputFactory.get();
+  }
+
+  /**
+   * Returns a new {@link DocumentBuilderFactory}. This factory will be namespace aware and non-validating.
+   * <p>
+   * CAUTION: Creating XML factories is potentially a pretty expensive operation. If possible, consider using a shared
+   * instance ({@link #getDocumentBuilderFactory()}) or builder ({@link #getDocumentBuilder()}) to amortize this
+   * initialization cost via reuse.
+   *
+   * @return  a namespace-aware, non-validating {@link DocumentBuilderFactory}
+   *
+   * @see #getDocumentBuilderFactory()
+   * @see #makeNewSecureDocumentBuilderFactory()  for a factory that rejects DOCTYPE declarations
+   */
+  public static DocumentBuilderFactory makeNewDocumentBuilderFactory() {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    factory.setValidating(false);
+    return factory;
+  }
+
+  /**
+   * Returns a new secure {@link DocumentBuilderFactory}. This factory will be namespace aware and non-validating,
+   * and will not load DTDs, external entities, or XIncludes.  Parsing a document with a DOCTYPE declaration fails
+   * with a {@link org.xml.sax.SAXException}.
+   *
+   * @return  a secure, namespace-aware, non-validating {@link DocumentBuilderFactory}
+   */
+  public static DocumentBuilderFactory makeNewSecureDocumentBuilderFactory() {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    } catch (ParserConfigurationException e) {}
+    try {
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    } catch (ParserConfigurationException e) {}
+    try {
+      factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+    } catch (ParserConfigurationException e) {}
+    try {
+      factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+    } catch (ParserConfigurationException e) {}
+    try {
+      factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+    } catch (ParserConfigurationException e) {}
+    factory.setXIncludeAware(false);
+    factory.setExpandEntityReferences(false);
+    factory.setNamespaceAware(true);
+    factory.setValidating(false);
+    return factory;
+  }
+
+  /**
+   * Returns a shared {@link DocumentBuilderFactory} with the settings of {@link #makeNewDocumentBuilderFactory()}.
+   * <p>
+   * The factory is shared only within the calling thread, so it must not be reconfigured.
+   *
+   * @return  a namespace-aware, non-validating {@link DocumentBuilderFactory}
+   *
+   * @see #makeNewDocumentBuilderFactory()  if you need a non-shared instance to configure differently
+   */
+  public static DocumentBuilderFactory getDocumentBuilderFactory() {
+    return cachedDocumentBuilderFactory.get();
+  }
+
+  /**
+   * Returns a {@link DocumentBuilder} from the shared factory that is reused within the calling thread.
+   * The builder is reset before it is returned, so it should be used immediately for a single parse
+   * and not retained.
+   *
+   * @return  a reset, namespace-aware, non-validating {@link DocumentBuilder}
+   *
+   * @throws MarkLogicInternalException  if the platform cannot make a document builder with these settings
+   */
+  public static DocumentBuilder getDocumentBuilder() {
+    DocumentBuilder builder = cachedDocumentBuilder.get();
+    builder.reset();
+    return builder;
+  }
+
+  /**
+   * Returns a new secure {@link TransformerFactory}. This factory will use secure processing and will not access
+   * external DTDs or stylesheets.
+   * <p>
+   * CAUTION: Creating XML factories is potentially a pretty expensive operation. If possible, consider using a shared
+   * instance ({@link #getTransformerFactory()}) or identity transformer ({@link #getTransformer()}) to amortize this
+   * initialization cost via reuse.
+   *
+   * @return  a secure {@link TransformerFactory}
+   *
+   * @see #getTransformerFactory()
+   */
+  public static TransformerFactory makeNewTransformerFactory() {
+    TransformerFactory factory = TransformerFactory.newInstance();
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    } catch (TransformerConfigurationException e) {}
+    try {
+      factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    } catch (IllegalArgumentException e) {}
+    try {
+      factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+    } catch (IllegalArgumentException e) {}
+    return factory;
+  }
+
+  /**
+   * Returns a shared {@link TransformerFactory} with the settings of {@link #makeNewTransformerFactory()}.
+   * <p>
+   * The factory is shared only within the calling thread, so it must not be reconfigured.
+   *
+   * @return  a secure {@link TransformerFactory}
+   *
+   * @see #makeNewTransformerFactory()  if you need a non-shared instance to configure differently
+   */
+  public static TransformerFactory getTransformerFactory() {
+    return cachedTransformerFactory.get();
+  }
+
+  /**
+   * Returns an identity {@link Transformer} from the shared factory that is reused within the calling thread.
+   * The transformer is reset before it is returned, so output properties set by a previous caller don't carry
+   * over.  It should be used immediately for a single transform and not retained.
+   *
+   * @return  a reset identity {@link Transformer}
+   *
+   * @throws MarkLogicInternalException  if the platform cannot make an identity transformer with these settings
+   */
+  public static Transformer getTransformer() {
+    Transformer transformer = cachedTransformer.get();
+    transformer.reset();
+    return transformer;
+  }
+
   /**
    * Represents a supplier of results.
    *
@@ -15,6 +15,7 @@
  */
 package com.marklogic.client.impl;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -27,6 +28,7 @@ import javax.xml.datatype.Duration;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.marklogic.client.expression.XsValue;
 import com.marklogic.client.type.XsAnyAtomicTypeSeqVal;
 import com.marklogic.client.type.XsAnyAtomicTypeVal;
@@ -681,10 +683,8 @@ public class XsValueImpl implements XsValue {
             return new XsAnySimpleTypeVal[]{this};
         }
         @Override
-        public StringBuilder exportAst(StringBuilder strb) {
-            return strb.append("{\"ns\":\"").append(typePrefix)
-                    .append("\", \"fn\":\"").append(typeName)
-                    .append("\", \"args\":[\"").append(toString()).append("\"]}");
+        public void exportAst(JsonGenerator generator) throws IOException {
+            BaseTypeImpl.exportCallAst(generator, typePrefix, typeName, toString());
         }
     }
     static class AnyAtomicTypeSeqValImpl<T extends AnyAtomicTypeValImpl>
@@ -15,12 +15,13 @@
  */
 package com.marklogic.client.io;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -33,11 +34,10 @@ import java.util.Set;
 import javax.xml.XMLConstants;
 import javax.xml.datatype.Duration;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactoryConfigurationError;
@@ -46,11 +46,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.MarkLogicInternalException;
 import com.marklogic.client.impl.ClientPropertiesImpl;
@@ -74,6 +75,9 @@ public class DocumentMetadataHandle
   final static private String REST_API_NS     = "http://marklogic.com/rest-api";
   final static private String PROPERTY_API_NS = "http://marklogic.com/xdmp/property";
 
+  final static private JsonFactory JSON_FACTORY =
+    new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
   /**
    * Represents the collections for a database document.
    */
@@ -490,18 +494,32 @@ public class DocumentMetadataHandle
   }
 
   /**
-   * Restricts the format used parsing and serializing the metadata.
+   * Restricts the format used parsing and serializing the metadata
+   * to XML or JSON.  The format determines how the metadata is sent
+   * to the server and requested from the server.  Metadata received
+   * in either format can be read regardless of the format.
    */
   @Override
   public void setFormat(Format format) {
-    if (format != Format.XML)
-      throw new IllegalArgumentException("DocumentMetadataHandle supports the XML format only");
+    if (format != Format.XML && format != Format.JSON)
+      throw new IllegalArgumentException("DocumentMetadataHandle supports the XML and JSON formats only");
+    super.setFormat(format);
+  }
+  /**
+   * Specifies the format for sending and requesting the metadata
+   * and returns the handle as a fluent convenience.
+   * @param format	the XML or JSON format
+   * @return	this handle
+   */
+  public DocumentMetadataHandle withFormat(Format format) {
+    setFormat(format);
+    return this;
   }
 
   /**
    * fromBuffer() populates DocumentMetadataHandle from a byte array
-   * buffer.  The buffer must store document metadata in XML format
-   * in the UTF-8 encoding.
+   * buffer.  The buffer must store document metadata in XML or JSON
+   * format in the UTF-8 encoding.
    */
   @Override
   public void fromBuffer(byte[] buffer) {
@@ -522,7 +540,7 @@ public class DocumentMetadataHandle
     }
   }
   /**
-   * Returns the document metadata as an XML string.
+   * Returns the document metadata as an XML or JSON string.
    */
   @Override
   public String toString() {
@@ -544,26 +562,26 @@ public class DocumentMetadataHandle
       if (logger.isInfoEnabled())
         logger.info("Parsing metadata structure from input stream");
 
-      Document document = null;
-      if (content != null) {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setValidating(false);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        document = builder.parse(new InputSource(new InputStreamReader(content, "UTF-8")));
-        content.close();
-      }
+      clearMetadataImpl();
+      if (content == null)
+        return;
 
-      receiveMetadataImpl(document);
-    } catch (SAXException e) {
+      BufferedInputStream buffered = new BufferedInputStream(content);
+      try {
+        if (isJSON(buffered)) {
+          receiveJSONMetadataImpl(buffered);
+        } else {
+          receiveXMLMetadataImpl(buffered);
+        }
+      } finally {
+        buffered.close();
+      }
+    } catch (XMLStreamException e) {
       logger.error("Failed to parse metadata structure from input stream",e);
       throw new MarkLogicInternalException(e);
     } catch (IOException e) {
       logger.error("Failed to parse metadata structure from input stream",e);
       throw new MarkLogicInternalException(e);
-    } catch (ParserConfigurationException e) {
-      logger.error("Failed to parse metadata structure from input stream",e);
-      throw new MarkLogicInternalException(e);
     }
   }
   @Override
@@ -572,188 +590,231 @@ public class DocumentMetadataHandle
   }
   @Override
   public void write(OutputStream out) throws IOException {
-    sendMetadataImpl(out);
-  }
-
-  private void receiveMetadataImpl(Document document) {
-    receiveCollectionsImpl(document);
-    receivePermissionsImpl(document);
-    receivePropertiesImpl(document);
-    receiveQualityImpl(document);
-    receiveMetadataValuesImpl(document);
+    if (getFormat() == Format.JSON) {
+      sendJSONMetadataImpl(out);
+    } else {
+      sendMetadataImpl(out);
+    }
   }
 
-  private void receiveMetadataValuesImpl(Document document) {
-    DocumentMetadataValues metadataValues = getMetadataValues();
-    metadataValues.clear();
-
-    if (document == null)
-      return;
-
-    NodeList valuesIn = document.getElementsByTagNameNS(REST_API_NS, "metadata-values");
-    int valuesInLength = valuesIn.getLength();
-    for (int i = 0; i < valuesInLength; i++) {
-      String key = null;
-      String value = null;
-
-      NodeList children = valuesIn.item(i).getChildNodes();
-      for (int j = 0; j < children.getLength(); j++) {
-        Node node = children.item(j);
-        if (node.getNodeType() != Node.ELEMENT_NODE)
-          continue;
-        Element element = (Element) node;
-
-        if ("metadata-value".equals(element.getLocalName())) {
-          key = element.getAttribute("key");
-          value = element.getTextContent();
-        } else if (logger.isWarnEnabled())
-          logger.warn("Skipping unknown value element", element.getTagName());
-        if (key == null || value == null) {
-          if (logger.isWarnEnabled())
-            logger.warn("Could not parse value");
-          continue;
+  // the server sends metadata in the requested format, but a buffer could hold either
+  private boolean isJSON(BufferedInputStream content) throws IOException {
+    content.mark(64);
+    try {
+      for (int i=0; i < 64; i++) {
+        int next = content.read();
+        switch (next) {
+          case ' ': case '\t': case '\r': case '\n':
+            continue;
+          // the UTF-8 byte order mark
+          case 0xEF: case 0xBB: case 0xBF:
+            continue;
+          default:
+            return next == '{';
         }
-
-        metadataValues.put(key, value);
       }
+      return false;
+    } finally {
+      content.reset();
     }
   }
 
-  private void receiveCollectionsImpl(Document document) {
-    DocumentCollections collections = getCollections();
-    collections.clear();
+  private void clearMetadataImpl() {
+    getCollections().clear();
+    getPermissions().clear();
+    getProperties().clear();
+    getMetadataValues().clear();
+    setQuality(0);
+  }
 
-    if (document == null)
-      return;
+  private void receiveXMLMetadataImpl(InputStream content) throws XMLStreamException {
+    XMLStreamReader reader = XmlFactories.getInputFactory().createXMLStreamReader(content, "UTF-8");
+    try {
+      boolean hasQuality = false;
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT)
+          continue;
 
-    NodeList collectionsIn = document.getElementsByTagNameNS(REST_API_NS, "collection");
-    int collectionsInLength = collectionsIn.getLength();
-    for (int i=0; i < collectionsInLength; i++) {
-      collections.add(collectionsIn.item(i).getTextContent());
+        String namespaceURI = reader.getNamespaceURI();
+        String localName    = reader.getLocalName();
+        if (PROPERTY_API_NS.equals(namespaceURI)) {
+          if ("properties".equals(localName))
+            receivePropertiesImpl(reader);
+        } else if (REST_API_NS.equals(namespaceURI)) {
+          switch (localName) {
+            case "collection":
+              getCollections().add(reader.getElementText());
+              break;
+            case "permission":
+              receivePermissionImpl(reader);
+              break;
+            case "quality":
+              String qualityText = reader.getElementText();
+              if (!hasQuality) {
+                receiveQualityImpl(qualityText);
+                hasQuality = true;
+              }
+              break;
+            case "metadata-value":
+              String key = reader.getAttributeValue(null, "key");
+              String value = reader.getElementText();
+              if (key == null) {
+                if (logger.isWarnEnabled())
+                  logger.warn("Could not parse value");
+                continue;
+              }
+              getMetadataValues().put(key, value);
+              break;
+          }
+        }
+      }
+    } finally {
+      reader.close();
     }
   }
-  private void receivePermissionsImpl(Document document) {
-    DocumentPermissions permissions = getPermissions();
-    permissions.clear();
+  private void receivePermissionImpl(XMLStreamReader reader) throws XMLStreamException {
+    String roleName = null;
+    Set<Capability> caps = new HashSet<>();
 
-    if (document == null)
-      return;
-
-    NodeList permissionsIn = document.getElementsByTagNameNS(REST_API_NS, "permission");
-    int permissionsInLength = permissionsIn.getLength();
-    for (int i=0; i < permissionsInLength; i++) {
-      String roleName = null;
-      Set<Capability> caps = new HashSet<>();
-
-      NodeList children = permissionsIn.item(i).getChildNodes();
-      for (int j=0; j < children.getLength(); j++) {
-        Node node = children.item(j);
-        if (node.getNodeType() != Node.ELEMENT_NODE)
-          continue;
-        Element element = (Element) node;
-
-        if ("role-name".equals(element.getLocalName()))
-          roleName = element.getTextContent();
-        else if ("capability".equals(element.getLocalName()))
-          caps.add(Capability.getValueOf(element.getTextContent()));
-        else if (logger.isWarnEnabled())
-          logger.warn("Skipping unknown permission element", element.getTagName());
-      }
+    for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      // comments, processing instructions, and text between the child elements are ignored
+      if (event != XMLStreamConstants.START_ELEMENT)
+        continue;
 
-      if (roleName == null || caps.size() == 0) {
+      String localName = reader.getLocalName();
+      if ("role-name".equals(localName))
+        roleName = reader.getElementText();
+      else if ("capability".equals(localName))
+        caps.add(Capability.getValueOf(reader.getElementText()));
+      else {
         if (logger.isWarnEnabled())
-          logger.warn("Could not parse permission");
-        continue;
+          logger.warn("Skipping unknown permission element", localName);
+        skipElementImpl(reader);
       }
-
-      permissions.put(roleName, caps);
     }
-  }
-  private void receivePropertiesImpl(Document document) {
-    DocumentProperties properties = getProperties();
-    properties.clear();
-
-    if (document == null)
-      return;
 
-    Node propertyContainer = document.getElementsByTagNameNS(PROPERTY_API_NS, "properties").item(0);
-    if (propertyContainer == null)
+    if (roleName == null || caps.size() == 0) {
+      if (logger.isWarnEnabled())
+        logger.warn("Could not parse permission");
       return;
+    }
 
-    NodeList propertiesIn = propertyContainer.getChildNodes();
-    for (int i=0; i < propertiesIn.getLength(); i++) {
-      Node node = propertiesIn.item(i);
-      if (node.getNodeType() != Node.ELEMENT_NODE)
-        continue;
-      Element property = (Element) node;
-
-      QName propertyName = null;
-
-      String namespaceURI = property.getNamespaceURI();
-      if (namespaceURI != null) {
-        String prefix    = property.getPrefix();
-        if (prefix != null) {
-          propertyName = new QName(namespaceURI, property.getLocalName(), prefix);
-        } else {
-          propertyName = new QName(namespaceURI, property.getTagName());
-        }
-      } else {
-        propertyName = new QName(property.getTagName());
-      }
+    getPermissions().put(roleName, caps);
+  }
+  private void receivePropertiesImpl(XMLStreamReader reader) throws XMLStreamException {
+    DocumentProperties properties = getProperties();
 
-      if (!property.hasChildNodes()) {
-        properties.put(propertyName, (String) null);
+    // a DOM is built only for properties with element content, which are exposed as node lists
+    Document document = null;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT)
+        return;
+      if (event != XMLStreamConstants.START_ELEMENT)
         continue;
-      }
 
-      NodeList children = property.getChildNodes();
-      boolean hasChildElements = false;
-      int childCount = children.getLength();
-      for (int j=0; j < childCount; j++) {
-        Node child = children.item(j);
-        if (child.getNodeType() == Node.ELEMENT_NODE) {
-          hasChildElements = true;
-          break;
+      QName  propertyName = reader.getName();
+      String type         = reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type");
+
+      StringBuilder text     = null;
+      Element       property = null;
+      for (event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+        switch (event) {
+          case XMLStreamConstants.START_ELEMENT:
+            if (property == null) {
+              if (document == null)
+                document = XmlFactories.getDocumentBuilder().newDocument();
+              property = document.createElementNS(null, propertyName.getLocalPart());
+              if (text != null)
+                property.appendChild(document.createTextNode(text.toString()));
+            }
+            property.appendChild(receiveElementImpl(reader, document));
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            if (property != null) {
+              property.appendChild(document.createTextNode(reader.getText()));
+            } else if (text == null) {
+              text = new StringBuilder(reader.getText());
+            } else {
+              text.append(reader.getText());
+            }
+            break;
         }
       }
-      if (hasChildElements) {
-        properties.put(propertyName, children);
-        continue;
-      }
 
       // TODO: casting known properties such as prop:last-modified
 
-      String value = property.getTextContent();
-      if (property.hasAttributeNS(
-        XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type")) {
-        String type = property.getAttributeNS(
-          XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "type");
-        properties.put(propertyName, ValueConverter.convertToJava(type, value));
-        continue;
+      if (property != null) {
+        properties.put(propertyName, property.getChildNodes());
+      } else if (text == null) {
+        properties.put(propertyName, (String) null);
+      } else if (type != null) {
+        properties.put(propertyName, ValueConverter.convertToJava(type, text.toString()));
       } else {
-        properties.put(propertyName, value);
+        properties.put(propertyName, text.toString());
       }
-
-      properties.put(propertyName, value);
     }
   }
-  private void receiveQualityImpl(Document document) {
-    if (document == null) {
-      setQuality(0);
-      return;
+  private Element receiveElementImpl(XMLStreamReader reader, Document document) throws XMLStreamException {
+    Element element = document.createElementNS(
+      emptyToNull(reader.getNamespaceURI()), qualifiedName(reader.getPrefix(), reader.getLocalName()));
+    for (int i=0; i < reader.getNamespaceCount(); i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+        (prefix == null || prefix.length() == 0) ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE+":"+prefix,
+        reader.getNamespaceURI(i));
+    }
+    for (int i=0; i < reader.getAttributeCount(); i++) {
+      element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+        qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+        reader.getAttributeValue(i));
     }
 
-    Node quality = document.getElementsByTagNameNS(REST_API_NS, "quality").item(0);
-    if (quality == null) {
-      setQuality(0);
-      return;
+    for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          element.appendChild(receiveElementImpl(reader, document));
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          element.appendChild(document.createTextNode(reader.getText()));
+          break;
+        case XMLStreamConstants.COMMENT:
+          element.appendChild(document.createComment(reader.getText()));
+          break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          element.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+          break;
+      }
     }
 
-    String qualityText = quality.getTextContent();
-    if (qualityText == null) {
-      setQuality(0);
-      return;
+    return element;
+  }
+  private void skipElementImpl(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          depth++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          depth--;
+          break;
+      }
     }
+  }
+  private static String emptyToNull(String value) {
+    return (value == null || value.length() == 0) ? null : value;
+  }
+  private static String qualifiedName(String prefix, String localName) {
+    return (prefix == null || prefix.length() == 0) ? localName : prefix+":"+localName;
+  }
+  private void receiveQualityImpl(String qualityText) {
+    if (qualityText == null)
+      return;
 
     int qualityNum = 0;
     try {
@@ -767,6 +828,113 @@ public class DocumentMetadataHandle
     setQuality(qualityNum);
   }
 
+  private void receiveJSONMetadataImpl(InputStream content) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT)
+        throw new MarkLogicIOException("Metadata must be a JSON object");
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        switch (field) {
+          case "collections":
+            if (token == JsonToken.START_ARRAY) {
+              while (parser.nextToken() != JsonToken.END_ARRAY) {
+                getCollections().add(parser.getText());
+              }
+            }
+            break;
+          case "permissions":
+            if (token == JsonToken.START_ARRAY) {
+              while (parser.nextToken() == JsonToken.START_OBJECT) {
+                receiveJSONPermissionImpl(parser);
+              }
+            }
+            break;
+          case "properties":
+            if (token == JsonToken.START_OBJECT) {
+              DocumentProperties properties = getProperties();
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                QName propertyName = new QName(parser.getCurrentName());
+                parser.nextToken();
+                Object value = receiveJSONValueImpl(parser);
+                if (value == null) {
+                  properties.put(propertyName, (String) null);
+                } else {
+                  properties.put(propertyName, value);
+                }
+              }
+            }
+            break;
+          case "quality":
+            receiveQualityImpl(parser.getText());
+            break;
+          case "metadataValues":
+            if (token == JsonToken.START_OBJECT) {
+              DocumentMetadataValues metadataValues = getMetadataValues();
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                parser.nextToken();
+                metadataValues.put(key, parser.getText());
+                parser.skipChildren();
+              }
+            }
+            break;
+        }
+        parser.skipChildren();
+      }
+    }
+  }
+  private void receiveJSONPermissionImpl(JsonParser parser) throws IOException {
+    String roleName = null;
+    Set<Capability> caps = new HashSet<>();
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("role-name".equals(field)) {
+        roleName = parser.getText();
+      } else if ("capabilities".equals(field) && token == JsonToken.START_ARRAY) {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          caps.add(Capability.getValueOf(parser.getText()));
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    if (roleName == null || caps.size() == 0) {
+      if (logger.isWarnEnabled())
+        logger.warn("Could not parse permission");
+      return;
+    }
+
+    getPermissions().put(roleName, caps);
+  }
+  private Object receiveJSONValueImpl(JsonParser parser) throws IOException {
+    switch (parser.getCurrentToken()) {
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getNumberValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case START_OBJECT:
+      case START_ARRAY:
+        // structured values have no Java equivalent among the property types, so they are kept as JSON text
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+          generator.copyCurrentStructure(parser);
+        }
+        return json.toString();
+      default:
+        return null;
+    }
+  }
+
   // TODO: select the metadata sent
   private void sendMetadataImpl(OutputStream out) {
     try {
@@ -804,6 +972,99 @@ public class DocumentMetadataHandle
     }
   }
 
+  private void sendJSONMetadataImpl(OutputStream out) throws IOException {
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+      generator.writeStartObject();
+
+      if (getCollections().size() > 0) {
+        generator.writeArrayFieldStart("collections");
+        for (String collection: getCollections()) {
+          generator.writeString(collection);
+        }
+        generator.writeEndArray();
+      }
+
+      if (getPermissions().size() > 0) {
+        generator.writeArrayFieldStart("permissions");
+        for (Map.Entry<String, Set<Capability>> permission: getPermissions().entrySet()) {
+          generator.writeStartObject();
+          generator.writeStringField("role-name", permission.getKey());
+          generator.writeArrayFieldStart("capabilities");
+          for (Capability capability: permission.getValue()) {
+            generator.writeString(capability.toString().toLowerCase());
+          }
+          generator.writeEndArray();
+          generator.writeEndObject();
+        }
+        generator.writeEndArray();
+      }
+
+      if (getProperties().size() > 0) {
+        generator.writeObjectFieldStart("properties");
+        for (Map.Entry<QName, Object> property: getProperties().entrySet()) {
+          sendJSONPropertyImpl(generator, property.getKey(), property.getValue());
+        }
+        generator.writeEndObject();
+      }
+
+      if (qualityModified) {
+        generator.writeNumberField("quality", getQuality());
+      }
+
+      if (getMetadataValues().size() > 0) {
+        generator.writeObjectFieldStart("metadataValues");
+        for (Map.Entry<String, String> value : getMetadataValues().entrySet()) {
+          generator.writeStringField(value.getKey(), value.getValue());
+        }
+        generator.writeEndObject();
+      }
+
+      generator.writeEndObject();
+    }
+  }
+  private void sendJSONPropertyImpl(final JsonGenerator generator, QName propertyName, Object value) throws IOException {
+    String namespaceURI = propertyName.getNamespaceURI();
+    if (namespaceURI != null && namespaceURI.length() > 0) {
+      if (PROPERTY_API_NS.equals(namespaceURI))
+        return;
+      throw new MarkLogicIOException(
+        "Cannot send the namespaced property "+propertyName+" as JSON metadata; use the XML format");
+    }
+    if (value instanceof NodeList) {
+      throw new MarkLogicIOException(
+        "Cannot send the property "+propertyName+" with element content as JSON metadata; use the XML format");
+    }
+
+    generator.writeFieldName(propertyName.getLocalPart());
+    if (value == null) {
+      generator.writeNull();
+    } else if (value instanceof String) {
+      generator.writeString((String) value);
+    } else if (value instanceof Boolean) {
+      generator.writeBoolean((Boolean) value);
+    } else if (value instanceof BigDecimal) {
+      generator.writeNumber((BigDecimal) value);
+    } else if (value instanceof BigInteger) {
+      generator.writeNumber((BigInteger) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      generator.writeNumber(((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      generator.writeNumber(((Number) value).longValue());
+    } else {
+      // dates, durations, and binaries have no JSON equivalent, so they are sent as their XML Schema lexical form
+      ValueConverter.convertFromJava(value, new ValueConverter.ValueProcessor() {
+        @Override
+        public void process(Object original, String type, String value) {
+          try {
+            generator.writeString(value);
+          } catch (IOException e) {
+            throw new MarkLogicIOException(e);
+          }
+        }
+      });
+    }
+  }
+
   private void sendMetadataValuesImpl(XMLStreamWriter serializer) throws XMLStreamException {
     if (getMetadataValues() == null || getMetadataValues().size() == 0)
       return;
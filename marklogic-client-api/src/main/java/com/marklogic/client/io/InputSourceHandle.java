@@ -28,9 +28,7 @@ import java.io.UnsupportedEncodingException;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
@@ -41,6 +39,7 @@ import org.xml.sax.*;
 
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.impl.XmlFactories;
 import com.marklogic.client.io.marker.BufferableHandle;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.ContentHandleFactory;
@@ -401,7 +400,7 @@ public class InputSourceHandle
   @Override
   public void write(OutputStream out) throws IOException {
     try {
-      makeTransformer().newTransformer().transform(
+      XmlFactories.getTransformer().transform(
         new SAXSource(makeReader(true), content),
         new StreamResult(new OutputStreamWriter(out, "UTF-8"))
       );
@@ -410,22 +409,6 @@ public class InputSourceHandle
       throw new MarkLogicIOException(e);
     }
   }
-  private TransformerFactory makeTransformer() {
-    TransformerFactory factory = TransformerFactory.newInstance();
-    // default to best practices for conservative security including recommendations per
-    // https://github.com/OWASP/CheatSheetSeries/blob/master/cheatsheets/XML_External_Entity_Prevention_Cheat_Sheet.md
-    try {
-      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-    } catch (TransformerConfigurationException e) {}
-    try {
-      factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-    } catch (IllegalArgumentException e) {}
-    try {
-      factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
-    } catch (IllegalArgumentException e) {}
-    return factory;
-  }
-
   /**
    * DraconianErrorHandler treats SAX parse errors as exceptions
    * but ignores warnings (based on the JavaDoc for the
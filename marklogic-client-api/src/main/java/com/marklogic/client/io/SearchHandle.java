@@ -15,6 +15,7 @@
  */
 package com.marklogic.client.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -30,9 +31,9 @@ import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
@@ -48,7 +49,9 @@ import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.DatabaseClientFactory.HandleFactoryRegistry;
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.impl.HandleAccessor;
+import com.marklogic.client.impl.NodeConverter;
 import com.marklogic.client.impl.Utilities;
+import com.marklogic.client.impl.XmlFactories;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.OperationNotSupported;
 import com.marklogic.client.io.marker.SearchReadHandle;
@@ -109,6 +112,9 @@ public class SearchHandle
   private String[]   qtext;
   private EventRange queryEvents;
 
+  // the response as received until the first request for more than the result summaries
+  private byte[]     content;
+
   public SearchHandle() {
     super();
     super.setFormat(Format.XML);
@@ -145,28 +151,108 @@ public class SearchHandle
     return InputStream.class;
   }
 
+  /**
+   * Reads the attributes of the response and the results when the search
+   * response is received.  The snippets, facets, metrics, and other parts of
+   * the response are parsed on the first request for any of them, so callers
+   * that only need the URIs and totals don't pay for the rest.  The summary
+   * pass still reads through the whole response (without building events for
+   * the rest of it) so a malformed response fails when it is received.
+   */
   @Override
   protected void receiveContent(InputStream content) {
+    byte[] bytes = NodeConverter.InputStreamToBytes(content);
     try {
-      XMLInputFactory factory = XMLInputFactory.newFactory();
-      factory.setProperty("javax.xml.stream.isNamespaceAware", true);
-      factory.setProperty("javax.xml.stream.isValidating",     false);
-      factory.setProperty("javax.xml.stream.isCoalescing",     true);
+      content.close();
+    } catch (IOException e) {
+      // ignore.
+    }
 
-      XMLEventReader reader = factory.createXMLEventReader(content, "UTF-8");
+    setQueryCriteria(querydef);
+    if (bytes == null) {
+      summary = new MatchDocumentSummary[0];
+      return;
+    }
+
+    try {
+      XMLStreamReader reader = XmlFactories.getInputFactory().createXMLStreamReader(
+        new ByteArrayInputStream(bytes), "UTF-8");
+      try {
+        indexResponse(reader);
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new MarkLogicIOException("Could not construct search results: parser error", e);
+    }
+
+    this.content = bytes;
+  }
+  private void indexResponse(XMLStreamReader reader) throws XMLStreamException {
+    List<MatchDocumentSummary> tempSummary = new ArrayList<>();
+    String extractSelected = null;
+
+    // only the response and its result children are kept, but the reader goes to the end
+    // of the document so well-formedness errors surface here rather than on first access
+    int depth = 0;
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          depth++;
+          if (depth > 2 || !SEARCH_NS.equals(reader.getNamespaceURI())) {
+            break;
+          }
+          String localName = reader.getLocalName();
+          if (depth == 1 && "response".equals(localName)) {
+            snippetType = reader.getAttributeValue(null, "snippet-format");
+            String total = reader.getAttributeValue(null, "total");
+            if (total != null) {
+              totalResults = Long.parseLong(total);
+            }
+            pageLength      = Integer.parseInt(reader.getAttributeValue(null, "page-length"));
+            start           = Long.parseLong(reader.getAttributeValue(null, "start"));
+            extractSelected = reader.getAttributeValue(null, "selected");
+          } else if (depth == 2 && "result".equals(localName)) {
+            String formatString = reader.getAttributeValue(null, "format");
+            Format format = Format.UNKNOWN;
+            if (formatString != null && !formatString.equals("")) {
+              format = Format.valueOf(formatString.toUpperCase());
+            }
+            tempSummary.add(new MatchDocumentSummaryImpl(
+              reader.getAttributeValue(null, "uri"),
+              Integer.parseInt(reader.getAttributeValue(null, "score")),
+              Double.parseDouble(reader.getAttributeValue(null, "confidence")),
+              Double.parseDouble(reader.getAttributeValue(null, "fitness")),
+              reader.getAttributeValue(null, "path"),
+              reader.getAttributeValue(null, "mimetype"),
+              format,
+              extractSelected
+            ));
+          }
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          depth--;
+          break;
+      }
+    }
+
+    summary = tempSummary.toArray(new MatchDocumentSummary[tempSummary.size()]);
+  }
+  /**
+   * Parses the rest of the response the first time any part other than
+   * the result summaries is requested.
+   */
+  private synchronized void parseContent() {
+    if (content == null) {
+      return;
+    }
+    try {
+      XMLEventReader reader = XmlFactories.getInputFactory().createXMLEventReader(
+        new ByteArrayInputStream(content), "UTF-8");
       SearchResponseImpl response = new SearchResponseImpl();
       response.parse(reader);
       reader.close();
-      try {
-        content.close();
-      } catch (IOException e) {
-        // ignore.
-      }
 
-      summary          =
-        (response.tempSummary == null || response.tempSummary.size() < 1) ?
-        new MatchDocumentSummary[0]:
-        response.tempSummary.toArray(new MatchDocumentSummary[response.tempSummary.size()]);
       metrics          = response.tempMetrics;
       facets           = response.tempFacets;
       warnings         = response.tempWarnings;
@@ -174,16 +260,13 @@ public class SearchHandle
       planEvents       = response.tempPlanEvents;
       constraints      = response.tempConstraints;
       events           = response.tempEvents;
-      totalResults     = response.tempTotalResults;
-      start            = response.tempStart;
-      pageLength       = response.tempPageLength;
-      snippetType      = response.tempSnippetType;
       qtext            =
         (response.qtextList == null || response.qtextList.size() < 1) ?
         null :
         response.qtextList.toArray(new String[response.qtextList.size()]);
       queryEvents      = response.tempQueryEvents;
 
+      content = null;
     } catch (XMLStreamException e) {
       throw new MarkLogicIOException("Could not construct search results: parser error", e);
     }
@@ -212,6 +295,7 @@ public class SearchHandle
     snippetType  = null;
     qtext        = null;
     queryEvents  = null;
+    content      = null;
   }
   /**
    * Returns the query definition used for the search represented by this handle.
@@ -278,11 +362,13 @@ public class SearchHandle
    */
   @Override
   public String[] getStringQueries() {
+    parseContent();
     return qtext;
   }
 
   @Override
   public <T extends XMLReadHandle> T getQuery(T handle) {
+    parseContent();
     return Utilities.exportToHandle(
       getSlice(events, queryEvents), handle
     );
@@ -294,6 +380,7 @@ public class SearchHandle
    */
   @Override
   public SearchMetrics getMetrics() {
+    parseContent();
     return metrics;
   }
 
@@ -312,6 +399,7 @@ public class SearchHandle
    */
   @Override
   public String[] getFacetNames() {
+    parseContent();
     if (facets == null || facets.isEmpty()) {
       return new String[0];
     }
@@ -325,6 +413,7 @@ public class SearchHandle
    */
   @Override
   public FacetResult getFacetResult(String name) {
+    parseContent();
     if (facets == null || facets.isEmpty()) {
       return null;
     }
@@ -336,6 +425,7 @@ public class SearchHandle
    */
   @Override
   public FacetResult[] getFacetResults() {
+    parseContent();
     if (facets == null || facets.isEmpty()) {
       return new FacetResult[0];
     }
@@ -345,6 +435,7 @@ public class SearchHandle
 
   @Override
   public String[] getConstraintNames() {
+    parseContent();
     if (constraints == null || constraints.isEmpty()) {
       return new String[0];
     }
@@ -353,6 +444,7 @@ public class SearchHandle
   }
   @Override
   public <T extends XMLReadHandle> T getConstraint(String name, T handle) {
+    parseContent();
     if (constraints == null || constraints.isEmpty()) {
       return null;
     }
@@ -368,6 +460,7 @@ public class SearchHandle
   }
   @Override
   public <T extends XMLReadHandle> Iterator<T> getConstraintIterator(T handle) {
+    parseContent();
     if (constraints == null || constraints.isEmpty()) {
       List<T> list = Collections.emptyList();
       return list.iterator();
@@ -392,6 +485,7 @@ public class SearchHandle
   }
   @Override
   public <T extends XMLReadHandle> T getPlan(T handle) {
+    parseContent();
     return Utilities.exportToHandle(
       getSlice(events, planEvents), handle
     );
@@ -403,6 +497,7 @@ public class SearchHandle
    */
   @Override
   public Warning[] getWarnings() {
+    parseContent();
     return (warnings == null) ? new Warning[0] : warnings.toArray(new Warning[0]);
   }
 
@@ -412,6 +507,7 @@ public class SearchHandle
    */
   @Override
   public Report[] getReports() {
+    parseContent();
     return (reports == null) ? new Report[0] : reports.toArray(new Report[0]);
   }
 
@@ -566,6 +662,7 @@ public class SearchHandle
 
     @Override
     public ExtractedResult getExtracted() {
+      parseContent();
       ExtractedResultImpl result = new ExtractedResultImpl();
       populateExtractedResult( result, events, extractedEvents );
       return result;
@@ -674,6 +771,7 @@ public class SearchHandle
     }
     @Override
     public <T extends XMLReadHandle> T getFirstSnippet(T handle) {
+      parseContent();
       if (snippetEvents == null || snippetEvents.size() < 1) {
         return null;
       }
@@ -684,6 +782,7 @@ public class SearchHandle
     }
     @Override
     public String getFirstSnippetText() {
+      parseContent();
       if (snippetEvents == null || snippetEvents.size() < 1) {
         return null;
       }
@@ -695,10 +794,12 @@ public class SearchHandle
 
     @Override
     public Document[] getSnippets() {
+      parseContent();
       return getEventDocuments(events, snippetEvents);
     }
     @Override
     public <T extends XMLReadHandle> Iterator<T> getSnippetIterator(T handle) {
+      parseContent();
       if (snippetEvents == null || snippetEvents.size() < 1) {
         List<T> list = Collections.emptyList();
         return list.iterator();
@@ -709,6 +810,7 @@ public class SearchHandle
 
     @Override
     public MatchLocation[] getMatchLocations() {
+      parseContent();
       if (locations == null) {
         return new MatchLocation[0];
       }
@@ -735,6 +837,7 @@ public class SearchHandle
     }
     @Override
     public <T extends XMLReadHandle> T getMetadata(T handle) {
+      parseContent();
       return Utilities.exportToHandle(
         getSlice(events, metadataEvents), handle
       );
@@ -756,6 +859,7 @@ public class SearchHandle
 
     @Override
     public String[] getSimilarDocumentUris() {
+      parseContent();
       if (similarUris == null || similarUris.size() < 1) {
         return new String[0];
       }
@@ -770,6 +874,7 @@ public class SearchHandle
     }
     @Override
     public <T extends XMLReadHandle> T getRelevanceInfo(T handle) {
+      parseContent();
       return Utilities.exportToHandle(
         getSlice(events, relevanceEvents), handle
       );
@@ -1079,6 +1184,7 @@ public class SearchHandle
     private String tempSnippetType;
     private String tempExtractSelected;
     private List<String>      qtextList;
+    private int               resultCount = 0;
 
     private EventRange tempQueryEvents;
 
@@ -1194,8 +1300,12 @@ public class SearchHandle
       double confidence = Double.parseDouble(getAttribute(element, "confidence"));
       double fitness = Double.parseDouble(getAttribute(element, "fitness"));
 
-      currSummary = new MatchDocumentSummaryImpl(
-        ruri, score, confidence, fitness, path, mimeType, format, tempExtractSelected);
+      // the summaries from indexing the response get the rest of their content
+      currSummary = (summary != null && resultCount < summary.length) ?
+        (MatchDocumentSummaryImpl) summary[resultCount] :
+        new MatchDocumentSummaryImpl(
+          ruri, score, confidence, fitness, path, mimeType, format, tempExtractSelected);
+      resultCount++;
 
       if (tempSummary == null) {
         tempSummary = new ArrayList<>();
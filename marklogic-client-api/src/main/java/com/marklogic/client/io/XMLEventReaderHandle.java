@@ -36,6 +36,7 @@ import org.slf4j.LoggerFactory;
 
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.impl.XmlFactories;
 import com.marklogic.client.io.marker.BufferableHandle;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.ContentHandleFactory;
@@ -296,7 +297,7 @@ public class XMLEventReaderHandle
   @Override
   public void write(OutputStream out) throws IOException {
     try {
-      XMLOutputFactory factory = XMLOutputFactory.newFactory();
+      XMLOutputFactory factory = XmlFactories.getOutputFactory();
       XMLEventWriter   writer  = factory.createXMLEventWriter(out, "UTF-8");
 
       writer.add(content);
@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import com.marklogic.client.MarkLogicIOException;
 import com.marklogic.client.MarkLogicInternalException;
+import com.marklogic.client.impl.XmlFactories;
 import com.marklogic.client.io.marker.BufferableHandle;
 import com.marklogic.client.io.marker.ContentHandle;
 import com.marklogic.client.io.marker.ContentHandleFactory;
@@ -329,7 +330,7 @@ public class XMLStreamReaderHandle
       // TODO: rework to copy straight from stream reader to stream writer
       XMLEventReader reader = inputFactory.createXMLEventReader(content);
 
-      XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+      XMLOutputFactory outputFactory = XmlFactories.getOutputFactory();
       XMLEventWriter   writer        =
         outputFactory.createXMLEventWriter(out, "UTF-8");
 
@@ -15,9 +15,12 @@
  */
 package com.marklogic.client.query;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.xml.namespace.QName;
 
 import com.marklogic.client.Transaction;
+import com.marklogic.client.admin.QueryOptionsManager;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.marker.CtsQueryWriteHandle;
 import com.marklogic.client.io.marker.QueryOptionsListReadHandle;
@@ -295,6 +298,55 @@ public interface QueryManager {
    */
   String[] suggest(SuggestDefinition suggestionDef);
 
+  /**
+   * Creates a cache for suggestions.  Assign the cache to any number
+   * of query managers from the same DatabaseClient with setSuggestCache().
+   * @param maxEntries	the maximum number of inputs with suggestions in the cache
+   * @param timeToLive	how long suggestions stay in the cache
+   * @param unit	the unit for the time to live
+   * @return	a cache for suggestions
+   */
+  SuggestCache newSuggestCache(int maxEntries, long timeToLive, TimeUnit unit);
+  /**
+   * Returns the cache for suggestions.
+   * @return	the suggest cache or null if suggestions aren't cached
+   */
+  SuggestCache getSuggestCache();
+  /**
+   * Specifies a cache for suggestions.  A suggest call is answered from
+   * the cache if the cache has suggestions for the same options name,
+   * query strings, and limit with the same input or with a shorter input
+   * that the cache can narrow.  The cache must be created by a query
+   * manager from the same DatabaseClient.
+   * @param cache	the suggest cache or null to stop caching suggestions
+   */
+  void setSuggestCache(SuggestCache cache);
+
+  /**
+   * Creates a cache that installs the inline options of raw combined
+   * queries on the server and sends later searches with the same options
+   * by reference.  Assign the cache to any number of query managers from
+   * the same DatabaseClient with setQueryOptionsCache().
+   * @param optionsMgr	a query options manager for a client with the rest-admin role
+   * @param maxEntries	the maximum number of rewritten queries and installed options
+   * @return	a cache for query options
+   */
+  QueryOptionsCache newQueryOptionsCache(QueryOptionsManager optionsMgr, int maxEntries);
+  /**
+   * Returns the cache for the options of raw combined queries.
+   * @return	the query options cache or null if options aren't cached
+   */
+  QueryOptionsCache getQueryOptionsCache();
+  /**
+   * Specifies a cache for the options of raw combined queries.  Searches
+   * with a raw combined query send the query without its inline options
+   * and refer to options installed by the cache, and concurrent identical
+   * searches outside of a transaction share a single request.  The cache
+   * must be created by a query manager from the same DatabaseClient.
+   * @param cache	the query options cache or null to send options inline
+   */
+  void setQueryOptionsCache(QueryOptionsCache cache);
+
   /**
    * Deletes documents based on the query criteria.
    * @param querydef	the definition of query criteria
@@ -403,6 +455,28 @@ public interface QueryManager {
    */
   <T extends TuplesReadHandle> T tuples(ValuesDefinition valdef, T tupleHandle, long start, Transaction transaction);
 
+  /**
+   * Iterates over all of the values of a lexicon, reading the values in
+   * pages and keeping the following pages in flight until the lexicon
+   * is exhausted.  Aggregates and metrics in the responses are ignored.
+   * @param valdef	the definition of query criteria and query options
+   * @param pageLength	the number of values to read in each request
+   * @param prefetchPages	the number of pages to request ahead of the page being iterated
+   * @return	the iterator over the values
+   */
+  ValuesIterator newValuesIterator(ValuesDefinition valdef, int pageLength, int prefetchPages);
+
+  /**
+   * Iterates over all of the co-occurring values of a tuples lexicon, reading
+   * the tuples in pages and keeping the following pages in flight until the
+   * lexicon is exhausted.  Aggregates and metrics in the responses are ignored.
+   * @param valdef	the definition of query criteria and query options
+   * @param pageLength	the number of tuples to read in each request
+   * @param prefetchPages	the number of pages to request ahead of the page being iterated
+   * @return	the iterator over the tuples
+   */
+  TuplesIterator newTuplesIterator(ValuesDefinition valdef, int pageLength, int prefetchPages);
+
   /**
    * Retrieves the list of available named lexicon configurations from the
    * values list definition and, potentially, previously saved query options.
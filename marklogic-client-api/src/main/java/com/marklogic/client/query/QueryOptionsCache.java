@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.query;
+
+/**
+ * A Query Options Cache shortens searches with raw combined queries that
+ * repeat the same inline options.  A cache can be shared by any number of
+ * QueryManager objects from the DatabaseClient that created the cache.
+ *
+ * The first search with a combined query installs its inline options on the
+ * server under a name derived from a digest of the options, and the search and
+ * every later search with the same options send the query without the options
+ * and refer to the installed options by name instead, so the server parses the
+ * options once.  The cache also keeps the rewritten request body for each
+ * combined query it has seen, so a repeated query isn't parsed again.  A combined
+ * query that also names stored options keeps its inline options because the
+ * server merges the two.
+ *
+ * Concurrent searches outside of a transaction with the same rewritten query,
+ * page, view, and response format wait for a single request to the server and
+ * each get a copy of the response.  Because the response depends on the
+ * permissions of the user, the cache is only for the DatabaseClient that created
+ * it.  Combined queries in handles that can be sent only once, such as an
+ * InputStreamHandle, are sent as is.
+ *
+ * Installing options requires a query options manager for a client with
+ * the rest-admin role.  The installed options stay on the server until
+ * every cached query that refers to them has been evicted or the cache is
+ * cleared.
+ */
+public interface QueryOptionsCache {
+  /**
+   * Returns the maximum number of rewritten queries in the cache, which is
+   * also the maximum number of options installed by the cache.  Once the
+   * maximum number of options are installed, queries with other options
+   * are sent with their inline options.  Because the options of an evicted
+   * query are deleted, the maximum should exceed the number of distinct
+   * queries searched at the same time.
+   * @return	the maximum number of entries
+   */
+  int getMaxEntries();
+  /**
+   * Returns the names of the options installed on the server by the cache.
+   * @return	the names of the installed options
+   */
+  String[] getInstalledOptionsNames();
+
+  /**
+   * Returns the number of searches with a query that was already rewritten.
+   * @return	the count of cache hits
+   */
+  long getHitCount();
+  /**
+   * Returns the number of searches with a query that had to be rewritten.
+   * @return	the count of cache misses
+   */
+  long getMissCount();
+  /**
+   * Returns the number of searches answered by waiting for a concurrent
+   * identical search instead of sending a request of their own.
+   * @return	the count of coalesced searches
+   */
+  long getCoalescedCount();
+  /**
+   * Returns the number of rewritten queries in the cache.
+   * @return	the count of cached entries
+   */
+  int getEntryCount();
+
+  /**
+   * Removes the rewritten queries from the cache and deletes the options
+   * installed by the cache from the server.  Clear the cache only when no
+   * searches with the cache are in progress.
+   */
+  void clear();
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.query;
+
+/**
+ * A Suggest Cache keeps the suggestions returned by the server in memory
+ * so type-ahead input can be completed without a request for every keystroke.
+ * A cache can be shared by any number of QueryManager objects from the
+ * DatabaseClient that created the cache.  Because the suggestions depend on
+ * the permissions of the user, a cache can't be used with a different
+ * DatabaseClient.
+ *
+ * The suggestions are kept in a prefix tree for each combination of options
+ * name, query strings, and limit.  When the server returned fewer suggestions
+ * than the limit for some input, the cache has every suggestion for that input,
+ * so a longer input that adds word characters to the end is answered by
+ * filtering the suggestions for the shorter input.  Only suggestions that
+ * begin with the input are narrowed in that way, and input with a cursor
+ * position before the end of the input is always sent to the server.
+ *
+ * Concurrent calls for the same input wait for a single request to the
+ * server.  The least recently used entries are evicted when the cache exceeds
+ * its maximum number of entries.  An entry is never used after its time to
+ * live, but it is evicted only when a lookup reaches it or it becomes the
+ * least recently used entry, so the entry count can include expired entries.
+ */
+public interface SuggestCache {
+  /**
+   * Returns the maximum number of inputs with suggestions in the cache.
+   * @return	the maximum number of entries
+   */
+  int getMaxEntries();
+  /**
+   * Returns the number of milliseconds that suggestions stay in the cache.
+   * @return	the time to live for an entry
+   */
+  long getTimeToLiveMillis();
+
+  /**
+   * Returns the number of suggest calls answered without a request of their
+   * own, whether from an entry for the same input, from an entry for a shorter
+   * input, or by waiting for a concurrent request for the same input.
+   * @return	the count of cache hits
+   */
+  long getHitCount();
+  /**
+   * Returns the number of suggest calls sent to the server.
+   * @return	the count of cache misses
+   */
+  long getMissCount();
+  /**
+   * Returns the number of entries removed from the cache because the
+   * cache was full or the entry was older than the time to live.
+   * @return	the count of evicted entries
+   */
+  long getEvictionCount();
+  /**
+   * Returns the number of inputs with suggestions in the cache.
+   * @return	the count of cached entries
+   */
+  int getEntryCount();
+
+  /**
+   * Removes all suggestions from the cache.
+   */
+  void clear();
+}
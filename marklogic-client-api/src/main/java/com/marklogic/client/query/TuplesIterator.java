@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.query;
+
+import java.io.Closeable;
+
+/**
+ * A TuplesIterator steps through all of the co-occurring values of a tuples
+ * lexicon, requesting the following pages in the background while the current
+ * page is processed.  Each page is parsed as it is read, and the values of
+ * the current tuple are available through typed accessors by their index.
+ * <pre>{@code
+ *try (TuplesIterator tuples = queryManager.newTuplesIterator(valdef, 1000, 2)) {
+ *    while (tuples.next()) {
+ *        String first  = tuples.getString(0);
+ *        long   second = tuples.getLong(1);
+ *        // ... do something ...
+ *    }
+ *}
+ *}</pre>
+ * <b>NOTICE!</b> When you finish with this instance
+ * you must call close() to free the underlying resources.
+ */
+public interface TuplesIterator extends Closeable {
+  /**
+   * Returns the name of the tuples.
+   * @return The name or null if no page has been read.
+   */
+  String getName();
+  /**
+   * Advances to the next tuple, reading the next page if needed.
+   * @return true if there is a current tuple or false if the lexicon is exhausted
+   */
+  boolean next();
+  /**
+   * Returns the position of the current tuple in the lexicon
+   * (where 1 is the first tuple).
+   * @return The position.
+   */
+  long getPosition();
+  /**
+   * Returns the frequency of the current tuple.
+   * @return The frequency.
+   */
+  long getFrequency();
+  /**
+   * Returns the number of values in the current tuple.
+   * @return The number of values.
+   */
+  int size();
+  /**
+   * Returns the XSD type of a value in the current tuple.
+   * @param index The index of the value (where 0 is the first value).
+   * @return The type.
+   */
+  String getType(int index);
+  /**
+   * Returns a value in the current tuple as it was serialized by the server.
+   * @param index The index of the value (where 0 is the first value).
+   * @return The value.
+   */
+  String getString(int index);
+  /**
+   * Returns a value in the current tuple as a long.
+   * @param index The index of the value (where 0 is the first value).
+   * @return The value.
+   */
+  long getLong(int index);
+  /**
+   * Returns a value in the current tuple as a double.
+   * @param index The index of the value (where 0 is the first value).
+   * @return The value.
+   */
+  double getDouble(int index);
+  /**
+   * Returns a value in the current tuple as a boolean.
+   * @param index The index of the value (where 0 is the first value).
+   * @return The value.
+   */
+  boolean getBoolean(int index);
+  /**
+   * Returns a value in the current tuple converted according to its type,
+   * as with {@link TypedDistinctValue#get(Class)}.
+   * @param index The index of the value (where 0 is the first value).
+   * @param as The class parameter
+   * @param <T> The class to cast to
+   * @return The value.
+   */
+  <T> T get(int index, Class<T> as);
+  /** Cancels the requests for prefetched pages and frees the underlying resources. */
+  @Override
+  void close();
+}
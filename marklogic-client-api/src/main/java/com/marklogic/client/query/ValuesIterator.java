@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.query;
+
+import java.io.Closeable;
+
+/**
+ * A ValuesIterator steps through all of the values of a lexicon, requesting
+ * the following pages in the background while the current page is processed.
+ * Each page is parsed as it is read, and the current value is available
+ * through typed accessors, so walking a large range index doesn't build
+ * an object for every value.
+ * <pre>{@code
+ *try (ValuesIterator values = queryManager.newValuesIterator(valdef, 1000, 2)) {
+ *    while (values.next()) {
+ *        long value     = values.getLong();
+ *        long frequency = values.getFrequency();
+ *        // ... do something ...
+ *    }
+ *}
+ *}</pre>
+ * <b>NOTICE!</b> When you finish with this instance
+ * you must call close() to free the underlying resources.
+ */
+public interface ValuesIterator extends Closeable {
+  /**
+   * Returns the name of the values.
+   * @return The name or null if no page has been read.
+   */
+  String getName();
+  /**
+   * Advances to the next value, reading the next page if needed.
+   * @return true if there is a current value or false if the lexicon is exhausted
+   */
+  boolean next();
+  /**
+   * Returns the position of the current value in the lexicon
+   * (where 1 is the first value).
+   * @return The position.
+   */
+  long getPosition();
+  /**
+   * Returns the frequency of the current value.
+   * @return The frequency.
+   */
+  long getFrequency();
+  /**
+   * Returns the type of the current value.
+   *
+   * <p>The type is an XSD type, for example "xs:boolean" or "xs:integer".</p>
+   *
+   * @return The type.
+   */
+  String getType();
+  /**
+   * Returns the current value as it was serialized by the server.
+   * @return The value.
+   */
+  String getString();
+  /**
+   * Returns the current value as a long.
+   * @return The value.
+   */
+  long getLong();
+  /**
+   * Returns the current value as a double.
+   * @return The value.
+   */
+  double getDouble();
+  /**
+   * Returns the current value as a boolean.
+   * @return The value.
+   */
+  boolean getBoolean();
+  /**
+   * Returns the current value converted according to its type, as with
+   * {@link TypedDistinctValue#get(Class)}.
+   * @param as The class parameter
+   * @param <T> The class to cast to
+   * @return The value.
+   */
+  <T> T get(Class<T> as);
+  /** Cancels the requests for prefetched pages and frees the underlying resources. */
+  @Override
+  void close();
+}
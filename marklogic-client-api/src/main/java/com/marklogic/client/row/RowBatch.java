@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.row;
+
+import java.util.BitSet;
+
+/**
+ * A Row Batch provides column-oriented access to a batch of consecutive
+ * rows produced by a plan, so analytics code can process the values of
+ * a column without materializing a map for each row.
+ *
+ * The vector type of each column is derived from the data type
+ * in the header:  integer types are read into a long array, xs:double
+ * and xs:float into a double array, xs:boolean into a boolean array,
+ * other atomic types (including xs:decimal and dates, which keep their
+ * lexical form) into dictionary-encoded strings, and documents or other
+ * content structures into an array of objects.  If the values in the batch
+ * are inconsistent with the header data type, the column of the batch is
+ * read as an array of objects instead.
+ *
+ * The arrays have one element for each row in the batch.  The element
+ * for a null value has the default for the array type and the row
+ * is set in the null bitmap for the column.
+ */
+public interface RowBatch {
+    /**
+     * Identifies the representation of the values of a column.
+     */
+    enum VectorType {
+        LONG, DOUBLE, BOOLEAN, STRING, OBJECT;
+    }
+
+    /**
+     * Identifies the columns in the batch.
+     * @return	The column names
+     */
+    String[] getColumnNames();
+    /**
+     * Identifies the data types of the columns from the header.
+     * @return	The column data types
+     */
+    String[] getColumnTypes();
+    /**
+     * Gets the position of a column in the batch.
+     * @param columnName	the name of the column
+     * @return	the position of the column or -1 if the batch has no such column
+     */
+    int getColumnIndex(String columnName);
+
+    /**
+     * The number of rows in the batch.
+     * @return	the row count
+     */
+    int size();
+
+    /**
+     * Identifies how the values of the column are represented in the batch.
+     * @param column	the position of the column
+     * @return	the vector type of the column
+     */
+    VectorType getVectorType(int column);
+    /**
+     * Gets the rows of the batch that have a null for the column.
+     * @param column	the position of the column
+     * @return	the null bitmap with a set bit for each row with a null value
+     */
+    BitSet getNulls(int column);
+    /**
+     * Identifies whether a row has a null for the column.
+     * @param column	the position of the column
+     * @param row	the position of the row in the batch
+     * @return	true if the value is null
+     */
+    boolean isNull(int column, int row);
+
+    /**
+     * Gets the values of a column with the LONG vector type.
+     * @param column	the position of the column
+     * @return	the values of the column
+     */
+    long[] getLongs(int column);
+    /**
+     * Gets the values of a column with the DOUBLE vector type.
+     * @param column	the position of the column
+     * @return	the values of the column
+     */
+    double[] getDoubles(int column);
+    /**
+     * Gets the values of a column with the BOOLEAN vector type.
+     * @param column	the position of the column
+     * @return	the values of the column
+     */
+    boolean[] getBooleans(int column);
+    /**
+     * Gets the codes of the values of a column with the STRING vector type.
+     * Each code is a position in the dictionary for the column or -1 for a null.
+     * @param column	the position of the column
+     * @return	the dictionary codes of the values of the column
+     */
+    int[] getStringCodes(int column);
+    /**
+     * Gets the distinct values of a column with the STRING vector type
+     * within the batch.
+     * @param column	the position of the column
+     * @return	the dictionary for the column
+     */
+    String[] getStringDictionary(int column);
+    /**
+     * Gets a value of a column with the STRING vector type.
+     * @param column	the position of the column
+     * @param row	the position of the row in the batch
+     * @return	the string value or null
+     */
+    String getString(int column, int row);
+    /**
+     * Gets the values of a column with the OBJECT vector type
+     * as maps, lists, and atomic Java values.
+     * @param column	the position of the column
+     * @return	the values of the column
+     */
+    Object[] getObjects(int column);
+}
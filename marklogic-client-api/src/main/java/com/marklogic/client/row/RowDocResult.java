@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.row;
+
+import com.marklogic.client.expression.PlanBuilder.Plan;
+
+/**
+ * A Row Doc Result holds the outcome of one of the plans executed
+ * together by the resultDocsAs() method of the RowManager, so the
+ * failure of one plan doesn't affect the results of the other plans.
+ * @param <T> the type of object that will be returned by the handle registered for it
+ */
+public interface RowDocResult<T> {
+    /**
+     * Returns the plan that produced the result.
+     * @return	the plan
+     */
+    Plan getPlan();
+    /**
+     * Returns whether the plan produced the set of rows instead of failing.
+     * @return	true if the plan succeeded
+     */
+    boolean isSuccess();
+    /**
+     * Returns the set of rows produced by the plan in the representation
+     * of the IO class or throws the failure if the plan failed.
+     * @return	the set of rows or null if the plan produced no rows
+     */
+    T get();
+    /**
+     * Returns the reason the plan failed.
+     * @return	the failure or null if the plan succeeded
+     */
+    RuntimeException getFailure();
+}
@@ -15,11 +15,16 @@
  */
 package com.marklogic.client.row;
 
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import com.marklogic.client.Transaction;
 import com.marklogic.client.expression.PlanBuilder;
 import com.marklogic.client.expression.PlanBuilder.Plan;
 import com.marklogic.client.io.marker.JSONWriteHandle;
 import com.marklogic.client.io.marker.StructureReadHandle;
+import com.marklogic.client.type.PlanParamExpr;
 
 /**
  * A Row Manager provides database operations on rows projected from documents.
@@ -41,6 +46,12 @@ public interface RowManager {
      */
     public enum RowStructure{ARRAY, OBJECT}
 
+    /**
+     * Distinguishes between rows exported as comma-separated values with a header line
+     * or as JSON lines with one row object on each line.
+     */
+    public enum RowExportFormat{CSV, JSONL}
+
     /**
      * Returns whether data types should be emitted in each row (the default) or in the header
      * in the response for requests made with the row manager.
@@ -77,6 +88,31 @@ public interface RowManager {
      */
     void setRowStructureStyle(RowStructure style);
 
+    /**
+     * Creates a cache for the responses to plans.  Assign the cache to
+     * any number of row managers from the same DatabaseClient with setResultCache().
+     * @param maxBytes	the maximum number of bytes of the responses in the cache
+     * @param timeToLive	how long a response stays in the cache
+     * @param unit	the unit for the time to live
+     * @return	a cache for row responses
+     */
+    RowResultCache newResultCache(long maxBytes, long timeToLive, TimeUnit unit);
+    /**
+     * Returns the cache for the responses to plans executed outside
+     * of a transaction.
+     * @return	the result cache or null if responses aren't cached
+     */
+    RowResultCache getResultCache();
+    /**
+     * Specifies a cache for the responses to plans executed outside
+     * of a transaction.  A plan is answered from the cache if the plan
+     * was executed with the same parameter bindings, output styles, and
+     * output format while the response was still in the cache.  The cache
+     * must be created by a row manager from the same DatabaseClient.
+     * @param cache	the result cache or null to stop caching responses
+     */
+    void setResultCache(RowResultCache cache);
+
     /**
      * Defines a plan from a JSON serialization of the plan AST (Abstract Syntax Tree).
      * @param	handle a handle for a JSON serialization of a PlanAST
@@ -84,6 +120,21 @@ public interface RowManager {
      */
     RawPlanDefinition newRawPlanDefinition(JSONWriteHandle handle);
 
+    /**
+     * Prepares a plan for repeated execution by serializing the plan AST
+     * (Abstract Syntax Tree) once.  Executing the prepared plan sends
+     * the serialized AST as is, so a plan that is executed many times
+     * with different parameter values isn't serialized for each request.
+     * 
+     * Calling bindParam() on the prepared plan returns another prepared
+     * plan that shares the serialized AST, so bind parameters on the
+     * prepared plan instead of preparing each bound plan.  Parameters
+     * bound before preparing the plan are retained.
+     * @param plan	the definition of a plan for the database rows
+     * @return	a plan with the serialized AST
+     */
+    Plan prepare(Plan plan);
+
     /**
      * Constructs and retrieves a set of database rows based on a plan using
      * a map interface for the column values in each row.
@@ -157,6 +208,53 @@ public interface RowManager {
      */
     <T> RowSet<T> resultRowsAs(Plan plan, Class<T> as, Transaction transaction);
 
+    /**
+     * Constructs and retrieves a set of database rows based on a plan
+     * as batches of rows with a column-oriented interface.
+     * 
+     * The values of each column are read into a primitive array or
+     * dictionary-encoded strings based on the data type of the column
+     * in the header, regardless of the datatype style of the RowManager.
+     * 
+     * @param plan	the definition of a plan for the database rows
+     * @param batchRows	the maximum number of rows in each batch
+     * @return	an iterable over the batches of result rows
+     */
+    RowSet<RowBatch> resultBatches(Plan plan, int batchRows);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan
+     * as batches of rows with a column-oriented interface and reflecting
+     * documents written or deleted by an uncommitted transaction.
+     * @param plan	the definition of a plan for the database rows
+     * @param batchRows	the maximum number of rows in each batch
+     * @param transaction	a open transaction for documents from which rows have been projected
+     * @return	an iterable over the batches of result rows
+     */
+    RowSet<RowBatch> resultBatches(Plan plan, int batchRows, Transaction transaction);
+
+    /**
+     * Constructs and retrieves a set of database rows based on a plan
+     * one page of rows at a time, requesting the following pages in the
+     * background while the rows of the current page are consumed.
+     *
+     * The plan must limit its rows with the offset and limit parameters,
+     * as in offsetLimit(p.param("start"), p.param("length")) or
+     * offset(p.param("start")).limit(p.param("length")), and should order
+     * the rows so each page has a stable position in the result.  The
+     * RowManager binds the parameters for each page.  The rows are returned
+     * in page order, and at most the current page and the prefetched
+     * pages are in memory.  Closing the row set cancels the requests for
+     * pages that haven't been consumed.
+     *
+     * @param plan	the definition of a plan for the database rows
+     * @param offsetParam	the parameter for the number of rows to skip before the page
+     * @param limitParam	the parameter for the maximum number of rows in the page
+     * @param pageRows	the number of rows to request for each page
+     * @param prefetchPages	the number of pages to request ahead of the current page
+     * @return	an iterable over the result rows
+     */
+    RowSet<RowRecord> resultRowsPaged(Plan plan, PlanParamExpr offsetParam, PlanParamExpr limitParam, long pageRows, int prefetchPages);
+
     /**
      * Constructs and retrieves a set of database rows based on a plan using
      * a handle to get the set of rows as a single JSON or XML structure.
@@ -213,6 +311,56 @@ public interface RowManager {
      */
     <T> T resultDocAs(Plan plan, Class<T> as, Transaction transaction);
 
+    /**
+     * Constructs and retrieves the set of database rows for each of a list
+     * of independent plans in the representation specified by the IO class.
+     *
+     * The plans are executed concurrently, each with its own request,
+     * so the time to get all of the results is close to the time for the
+     * slowest plan rather than the sum of the times for every plan.  At
+     * most nine plans execute at once (one in the calling thread).  The
+     * results are returned in the order of the plans.  The failure of
+     * a plan is kept in its result and doesn't affect the other plans.
+     *
+     * The IO class must have been registered before creating the database client.
+     * By default, the provided handles that implement
+     * {@link com.marklogic.client.io.marker.ContentHandle ContentHandle} are registered.
+     *
+     * @param plans	the definitions of the plans for the database rows
+     * @param as	the IO class for reading each set of rows
+     * @param <T> the type of the IO object for reading the sets of rows
+     * @return	the result for each plan in the order of the plans
+     */
+    <T> List<RowDocResult<T>> resultDocsAs(List<? extends Plan> plans, Class<T> as);
+
+    /**
+     * Constructs and retrieves a set of database rows based on a plan
+     * and copies the rows to an output stream as CSV or JSON lines.
+     *
+     * The rows are copied from the response as they are read, without
+     * constructing a record or other object for each row or column.  CSV
+     * starts with a header line of the column names.  JSON lines have one
+     * row object on each line with the plain value of each column
+     * regardless of the datatype style.  The output stream is flushed but
+     * not closed.  Exported rows are never read from or kept in the
+     * result cache.
+     *
+     * @param plan	the definition of a plan for the database rows
+     * @param out	the output stream for the rows
+     * @param format	whether to write the rows as CSV or JSON lines
+     */
+    void resultRowsTo(Plan plan, OutputStream out, RowExportFormat format);
+    /**
+     * Constructs and retrieves a set of database rows based on a plan
+     * and copies the rows to an output stream as CSV or JSON lines,
+     * reflecting documents written or deleted by an uncommitted transaction.
+     * @param plan	the definition of a plan for the database rows
+     * @param out	the output stream for the rows
+     * @param format	whether to write the rows as CSV or JSON lines
+     * @param transaction	a open transaction for documents from which rows have been projected
+     */
+    void resultRowsTo(Plan plan, OutputStream out, RowExportFormat format, Transaction transaction);
+
     /**
      * Constructs a plan for retrieving a set of database rows and returns a handle
      * for the explanation of the plan as a JSON or XML structure.
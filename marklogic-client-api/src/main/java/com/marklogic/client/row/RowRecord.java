@@ -204,6 +204,82 @@ public interface RowRecord extends Map<String, Object> {
      */
     String    getString(PlanExprCol col);
 
+    /**
+     * Identifies whether a column has a null value in the row.
+     * 
+     * The accessors that take the position of a column read the value
+     * without looking up the column name, so loops over many rows can
+     * look up the position once with the getColumnIndex() method of the
+     * RowSet and read each row by position.
+     * @param columnIndex	the position of the column in the row set
+     * @return	whether the column value is null
+     */
+    boolean   isNull(int columnIndex);
+
+    /**
+     * Gets the value of a column with a xs:boolean schema data type
+     * as a Java boolean primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the boolean primitive for a xs:boolean column
+     */
+    boolean   getBoolean(int columnIndex);
+
+    /**
+     * Gets the value of a column with a xs:byte schema data type
+     * as a Java byte primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the byte primitive for a xs:byte column
+     */
+    byte      getByte(int columnIndex);
+
+    /**
+     * Gets the value of a column with a xs:double schema data type
+     * as a Java double primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the double primitive for a xs:double column
+     */
+    double    getDouble(int columnIndex);
+
+    /**
+     * Gets the value of a column with a xs:float schema data type
+     * as a Java float primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the float primitive for a xs:float column
+     */
+    float     getFloat(int columnIndex);
+
+    /**
+     * Gets the value of a column with an xs:int schema data type
+     * as a Java int primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the int primitive for an xs:int column
+     */
+    int       getInt(int columnIndex);
+
+    /**
+     * Gets the value of a column with a xs:long schema data type
+     * as a Java long primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the long primitive for a xs:long column
+     */
+    long      getLong(int columnIndex);
+
+    /**
+     * Gets the value of a column with a xs:short schema data type
+     * as a Java short primitive value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the short primitive for a xs:short column
+     */
+    short     getShort(int columnIndex);
+
+    /**
+     * Gets the value of a column with an xs:string schema data type
+     * as a Java String literal value.
+     * @param columnIndex	the position of the column in the row set
+     * @return	the String literal for an xs:string column
+     */
+    String    getString(int columnIndex);
+
     /**
      * Gets the value of a column with an atomic schema data type.
      * <p>
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.row;
+
+/**
+ * A Row Result Cache keeps the responses for plans in memory so a plan
+ * that is executed again with the same parameter bindings and output
+ * styles is answered without a request to the server.  A cache can be
+ * shared by any number of RowManager objects from the DatabaseClient
+ * that created the cache.  Because the rows depend on the permissions of
+ * the user, a cache can't be used with a different DatabaseClient.
+ *
+ * The cache holds the responses as bytes and parses the bytes again
+ * for each execution, so the rows returned from the cache are never
+ * shared between callers.  The least recently used responses are evicted
+ * when the cache exceeds its maximum size, and responses are evicted
+ * after their time to live in any case.  Plans executed in a transaction
+ * or at a point in time set on the handle are never cached.  A response
+ * larger than half of the maximum size of the cache isn't cached; instead,
+ * the rest of the response is streamed once the limit is reached.
+ *
+ * Pinning the cache to a server timestamp executes every plan with the
+ * cache at that point in time, so a cached response is exactly the response
+ * from the server as long as the server retains the timestamp (see the
+ * merge timestamp setting of the database).
+ */
+public interface RowResultCache {
+    /**
+     * Returns the maximum number of bytes of the responses in the cache.
+     * @return	the maximum size of the cache
+     */
+    long getMaxBytes();
+    /**
+     * Returns the number of milliseconds that a response stays in the cache.
+     * @return	the time to live for a response
+     */
+    long getTimeToLiveMillis();
+
+    /**
+     * Pins the cache to the server timestamp so every plan executed with
+     * the cache sees the database as of the timestamp.  Pinning the cache
+     * to a different timestamp clears the cache.
+     * @param serverTimestamp	the server timestamp, for instance from the getServerTimestamp() method of a handle
+     */
+    void pinTimestamp(long serverTimestamp);
+    /**
+     * Stops pinning the cache to a server timestamp and clears the cache
+     * if the cache was pinned.
+     */
+    void unpinTimestamp();
+    /**
+     * Returns the server timestamp to which the cache is pinned.
+     * @return	the pinned timestamp or 0 if the cache isn't pinned
+     */
+    long getPinnedTimestamp();
+
+    /**
+     * Returns the number of executions answered from the cache.
+     * @return	the count of cache hits
+     */
+    long getHitCount();
+    /**
+     * Returns the number of executions sent to the server because the
+     * response wasn't in the cache.
+     * @return	the count of cache misses
+     */
+    long getMissCount();
+    /**
+     * Returns the number of responses removed from the cache because the
+     * cache was full or the response was older than the time to live.
+     * @return	the count of evicted responses
+     */
+    long getEvictionCount();
+    /**
+     * Returns the number of responses in the cache.
+     * @return	the count of cached responses
+     */
+    int getEntryCount();
+    /**
+     * Returns the number of bytes of the responses in the cache.
+     * @return	the current size of the cache
+     */
+    long getByteCount();
+
+    /**
+     * Removes all responses from the cache.
+     */
+    void clear();
+}
@@ -54,6 +54,15 @@ public interface RowSet<T> extends Iterable<T>, Closeable {
      */
     String[] getColumnTypes();
 
+    /**
+     * Gets the position of a column for the accessors of a row that
+     * take the position of the column.  For a row set of RowRecord rows,
+     * the name can also be the unique unqualified name of the column.
+     * @param columnName	the name of the column
+     * @return	the position of the column or -1 if the row set has no such column
+     */
+    int getColumnIndex(String columnName);
+
     /**
      * Streams each row in the set of rows.
      * @return	a stream for the set of rows read from the database
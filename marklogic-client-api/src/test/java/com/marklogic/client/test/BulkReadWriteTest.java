@@ -49,6 +49,7 @@ import com.marklogic.client.document.DocumentManager.Metadata;
 import com.marklogic.client.document.DocumentPage;
 import com.marklogic.client.document.DocumentRecord;
 import com.marklogic.client.document.DocumentWriteSet;
+import com.marklogic.client.document.SearchCursor;
 import com.marklogic.client.document.JSONDocumentManager;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.document.TextDocumentManager;
@@ -252,6 +253,27 @@ public class BulkReadWriteTest {
     }
   }
 
+  @Test
+  public void testC_SearchCursor() {
+    XMLDocumentManager docMgr = Common.client.newXMLDocumentManager();
+
+    int count = 0;
+    String lastUri = null;
+    try (SearchCursor cursor = docMgr.newSearchCursor(new StructuredQueryBuilder().directory(1, DIRECTORY), 100, 2)) {
+      for ( DocumentRecord record : cursor ) {
+        validateRecord(record);
+        if ( lastUri != null ) {
+          assertTrue("Documents out of uri order", lastUri.compareTo(record.getUri()) < 0);
+        }
+        lastUri = record.getUri();
+        count++;
+      }
+      assertTrue("No server timestamp for the cursor", cursor.getServerTimestamp() > 0);
+      assertEquals("Wrong after uri", lastUri, cursor.getAfterUri());
+    }
+    assertEquals("Failed to find number of records expected", RECORDS_EXPECTED, count);
+  }
+
   @Test
   public void testD_JsonLoad() {
     JSONDocumentManager docMgr = Common.client.newJSONDocumentManager();
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import javax.xml.namespace.QName;
@@ -42,6 +43,7 @@ import org.xml.sax.SAXException;
 import com.marklogic.client.Transaction;
 import com.marklogic.client.document.DocumentManager.Metadata;
 import com.marklogic.client.document.BinaryDocumentManager;
+import com.marklogic.client.document.JSONDocumentManager;
 import com.marklogic.client.document.XMLDocumentManager;
 import com.marklogic.client.io.DocumentMetadataHandle;
 import com.marklogic.client.io.DocumentMetadataHandle.Capability;
@@ -50,6 +52,7 @@ import com.marklogic.client.io.DocumentMetadataHandle.DocumentMetadataValues;
 import com.marklogic.client.io.DocumentMetadataHandle.DocumentPermissions;
 import com.marklogic.client.io.DocumentMetadataHandle.DocumentProperties;
 import com.marklogic.client.io.FileHandle;
+import com.marklogic.client.io.Format;
 import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.io.StringHandle;
 import java.util.List;
@@ -185,6 +188,42 @@ public class DocumentMetadataHandleTest {
     }
   }
 
+  @Test
+  public void testReadWriteJSONMetadata() {
+    String docId = "/test/testMetadataJSON1.json";
+
+    JSONDocumentManager docMgr = Common.client.newJSONDocumentManager();
+    docMgr.setMetadataCategories(Metadata.ALL);
+
+    DocumentMetadataHandle metaWriteHandle = new DocumentMetadataHandle()
+      .withFormat(Format.JSON)
+      .withCollections("/document/collection1", "/document/collection2")
+      .withPermission("app-user", Capability.UPDATE, Capability.READ)
+      .withProperty("first", "value one")
+      .withProperty("second", 2)
+      .withQuality(3)
+      .withMetadataValue("key1", "value1");
+    docMgr.write(docId, metaWriteHandle, new StringHandle("{\"a\":1}").withFormat(Format.JSON));
+
+    for (Format format: new Format[]{Format.JSON, Format.XML}) {
+      DocumentMetadataHandle metaReadHandle =
+        docMgr.readMetadata(docId, new DocumentMetadataHandle().withFormat(format));
+      DocumentCollections collections = metaReadHandle.getCollections();
+      assertEquals("Collection with wrong size", 2, collections.size());
+      assertTrue("Collection with wrong values", collections.contains("/document/collection1") && collections.contains("/document/collection2"));
+      DocumentPermissions permissions = metaReadHandle.getPermissions();
+      assertTrue("Permissions without key", permissions.containsKey("app-user"));
+      assertEquals("Permission key with wrong value size", 2, permissions.get("app-user").size());
+      DocumentProperties properties = metaReadHandle.getProperties();
+      assertEquals("First property with wrong value", "value one", properties.get("first"));
+      assertEquals("Second property with wrong value", "2", String.valueOf(properties.get("second")));
+      assertEquals("Wrong quality", 3, metaReadHandle.getQuality());
+      assertEquals("Wrong value for key in the values metadata", "value1", metaReadHandle.getMetadataValues().get("key1"));
+    }
+
+    docMgr.delete(docId);
+  }
+
   @Test
   public void testCapabilityEnum() {
     assertEquals(Capability.EXECUTE, Capability.getValueOf("execute"));
@@ -195,6 +234,34 @@ public class DocumentMetadataHandleTest {
     assertEquals(Capability.NODE_UPDATE, Capability.getValueOf("NODE_UPDATE"));
   }
   
+  @Test
+  public void testPermissionWithCommentsAndInstructions() {
+    String metadataText =
+      "<rapi:metadata xmlns:rapi=\"http://marklogic.com/rest-api\">"+
+        "<rapi:permissions>"+
+          "<rapi:permission>\n"+
+            "<!-- the role -->\n"+
+            "<rapi:role-name>app-user</rapi:role-name>\n"+
+            "<?instruction data?>"+
+            "<rapi:capability>read</rapi:capability>\n"+
+            "<!-- the other capability -->"+
+            "<rapi:capability>update</rapi:capability>\n"+
+          "</rapi:permission>"+
+        "</rapi:permissions>"+
+        "<rapi:quality>3</rapi:quality>"+
+      "</rapi:metadata>";
+
+    DocumentMetadataHandle metadataHandle = new DocumentMetadataHandle();
+    metadataHandle.fromBuffer(metadataText.getBytes(StandardCharsets.UTF_8));
+
+    DocumentPermissions permissions = metadataHandle.getPermissions();
+    assertEquals("Permissions with wrong size", 1, permissions.size());
+    assertEquals("Permission key with wrong value size", 2, permissions.get("app-user").size());
+    assertTrue("Permission key with wrong values",
+      permissions.get("app-user").contains(Capability.READ) && permissions.get("app-user").contains(Capability.UPDATE));
+    assertEquals("Wrong quality after permission", 3, metadataHandle.getQuality());
+  }
+
   @Test
   public void testMetadataPropertiesExtraction() {
 	String docId = "/test.bin";
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.marklogic.client.impl.GzipRequestInterceptor;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSource;
+import okio.Okio;
+
+public class GzipRequestInterceptorTest extends MockWebServerBase {
+  private static final MediaType TEXT = MediaType.parse("text/plain");
+
+  private OkHttpClient client;
+
+  @Before
+  public void setUp() {
+    client = new OkHttpClient.Builder()
+      .addInterceptor(new GzipRequestInterceptor(100))
+      .build();
+  }
+
+  @Test
+  public void testBelowThreshold() throws Exception {
+    RecordedRequest recorded = send(RequestBody.create("small", TEXT));
+    assertNull(recorded.getHeader("Content-Encoding"));
+    assertEquals("small", recorded.getBody().readUtf8());
+  }
+
+  @Test
+  public void testBufferedBody() throws Exception {
+    String content = makeContent();
+    RecordedRequest recorded = send(RequestBody.create(content, TEXT));
+    assertEquals("gzip", recorded.getHeader("Content-Encoding"));
+    // the compressed body is buffered, so its length is known
+    assertEquals(String.valueOf(recorded.getBodySize()), recorded.getHeader("Content-Length"));
+    assertEquals(content, gunzip(recorded.getBody()));
+  }
+
+  @Test
+  public void testStreamedBody() throws Exception {
+    String content = makeContent();
+    RequestBody streamed = new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return TEXT;
+      }
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        sink.writeUtf8(content);
+      }
+    };
+    RecordedRequest recorded = send(streamed);
+    assertEquals("gzip", recorded.getHeader("Content-Encoding"));
+    assertNull(recorded.getHeader("Content-Length"));
+    assertEquals(content, gunzip(recorded.getBody()));
+  }
+
+  private String makeContent() {
+    StringBuilder builder = new StringBuilder();
+    for (int i=0; i < 200; i++) {
+      builder.append("<value>").append(i).append("</value>");
+    }
+    return builder.toString();
+  }
+  private RecordedRequest send(RequestBody body) throws Exception {
+    server.enqueue(new MockResponse().setBody("done"));
+    Request request = new Request.Builder().url(server.url("/v1/documents")).post(body).build();
+    try (Response response = client.newCall(request).execute()) {
+      assertEquals(200, response.code());
+    }
+    return server.takeRequest();
+  }
+  private String gunzip(Buffer body) throws IOException {
+    return Okio.buffer(new GzipSource(body)).readUtf8();
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.marklogic.client.impl.GzipRequestInterceptor;
+import com.marklogic.client.impl.HedgingInterceptor;
+import com.marklogic.client.impl.HostBalancer;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSink;
+
+/**
+ * The server listens on the loopback address, which the requests reach
+ * both as localhost (the primary host) and as 127.0.0.1 (the host for
+ * hedges), so the server can answer each host with a different delay.
+ */
+public class HedgingInterceptorTest extends MockWebServerBase {
+  private static final MediaType TEXT = MediaType.parse("text/plain");
+  private static final String PRIMARY_HOST = "localhost";
+  private static final String HEDGE_HOST   = "127.0.0.1";
+
+  private HttpUrl            baseUri;
+  private HostBalancer       balancer;
+  private HedgingInterceptor hedging;
+  private OkHttpClient       client;
+
+  private volatile long primaryDelay = 0;
+  private volatile long hedgeDelay   = 0;
+
+  @Before
+  public void setUp() {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getPath().contains("internal/forestinfo")) {
+          return new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody("[{\"id\":\"1\",\"name\":\"f1\",\"host\":\"" + PRIMARY_HOST + "\"}," +
+                      "{\"id\":\"2\",\"name\":\"f2\",\"host\":\"" + HEDGE_HOST + "\"}]");
+        }
+        boolean isHedge = request.getHeader("Host").startsWith(HEDGE_HOST);
+        return new MockResponse()
+          .setHeadersDelay(isHedge ? hedgeDelay : primaryDelay, TimeUnit.MILLISECONDS)
+          .setBody(isHedge ? "hedge" : "primary");
+      }
+    });
+    baseUri = new HttpUrl.Builder().scheme("http").host(PRIMARY_HOST).port(server.getPort())
+      .addPathSegment("v1").addPathSegment("").build();
+
+    balancer = new HostBalancer(baseUri, null, HostBalancer.Strategy.LEAST_OUTSTANDING);
+    balancer.setEnabled(false);
+    balancer.setClient(new OkHttpClient());
+  }
+
+  @After
+  public void tearDown() {
+    if (hedging != null) hedging.shutdown();
+  }
+
+  private void buildClient(boolean isGzipped) {
+    buildClient(isGzipped, 50);
+  }
+  private void buildClient(boolean isGzipped, long delay) {
+    hedging = new HedgingInterceptor(balancer, delay);
+    hedging.setBudgetPercent(100);
+    OkHttpClient.Builder builder = new OkHttpClient.Builder();
+    if (isGzipped) builder.addInterceptor(new GzipRequestInterceptor(100));
+    client = builder
+      .addInterceptor(hedging)
+      .eventListener(hedging.makeCancelListener())
+      .build();
+    hedging.setClient(client);
+  }
+
+  @Test
+  public void testHedgeWins() throws IOException {
+    buildClient(false);
+    primaryDelay = 3000;
+    long start = System.currentTimeMillis();
+    assertEquals("hedge", send(get("documents?uri=/doc.json")));
+    // the primary request was cancelled instead of waiting for its response
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals(1, hedging.getHedgeCount());
+  }
+
+  @Test
+  public void testPrimaryWins() throws IOException {
+    buildClient(false);
+    primaryDelay = 300;
+    hedgeDelay   = 3000;
+    long start = System.currentTimeMillis();
+    assertEquals("primary", send(get("documents?uri=/doc.json")));
+    // the hedge was sent and cancelled when the primary response arrived
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals(1, hedging.getHedgeCount());
+  }
+
+  @Test
+  public void testFastResponse() throws IOException {
+    buildClient(false, 2000);
+    assertEquals("primary", send(get("documents?uri=/doc.json")));
+    assertEquals(0, hedging.getHedgeCount());
+  }
+
+  @Test
+  public void testNotHedged() throws IOException {
+    buildClient(false);
+    primaryDelay = 300;
+    hedgeDelay   = 0;
+    // writes and evaluation aren't idempotent
+    assertEquals("primary", send(new Request.Builder()
+      .url(baseUri.resolve("documents?uri=/doc.json"))
+      .put(RequestBody.create("content", TEXT))
+      .build()));
+    assertEquals("primary", send(new Request.Builder()
+      .url(baseUri.resolve("eval"))
+      .post(RequestBody.create("xquery=1", TEXT))
+      .build()));
+    // resource extensions may have side effects
+    assertEquals("primary", send(get("resources/ext?rs:uri=/doc.json")));
+    // a read in a multi-statement transaction
+    assertEquals("primary", send(get("documents?uri=/doc.json&txid=123")));
+    // a read-only POST with a body that can only be sent once
+    assertEquals("primary", send(new Request.Builder()
+      .url(baseUri.resolve("search"))
+      .post(new RequestBody() {
+        @Override
+        public MediaType contentType() {
+          return TEXT;
+        }
+        @Override
+        public boolean isOneShot() {
+          return true;
+        }
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+          sink.writeUtf8("query");
+        }
+      })
+      .build()));
+    assertEquals(0, hedging.getHedgeCount());
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    buildClient(false);
+    primaryDelay = 3000;
+    hedgeDelay   = 3000;
+    Call call = client.newCall(get("documents?uri=/doc.json"));
+    Thread canceller = new Thread(() -> {
+      try {
+        Thread.sleep(300);
+      } catch (InterruptedException e) {
+      }
+      call.cancel();
+    });
+    long start = System.currentTimeMillis();
+    canceller.start();
+    try {
+      call.execute().close();
+      fail("cancelled call returned a response");
+    } catch (IOException e) {
+      // both the primary and the hedge were cancelled with the call
+      assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+    canceller.join();
+    assertEquals(1, hedging.getHedgeCount());
+  }
+
+  @Test
+  public void testReadOnlyPost() throws IOException {
+    buildClient(false);
+    primaryDelay = 3000;
+    assertEquals("hedge", send(new Request.Builder()
+      .url(baseUri.resolve("search"))
+      .post(RequestBody.create("{\"query\":{}}", TEXT))
+      .build()));
+    assertEquals(1, hedging.getHedgeCount());
+  }
+
+  @Test
+  public void testGzippedPost() throws IOException {
+    buildClient(true);
+    primaryDelay = 3000;
+    StringBuilder query = new StringBuilder();
+    for (int i=0; i < 100; i++) {
+      query.append("<term>").append(i).append("</term>");
+    }
+    assertEquals("hedge", send(new Request.Builder()
+      .url(baseUri.resolve("search"))
+      .post(RequestBody.create(query.toString(), TEXT))
+      .build()));
+    assertEquals(1, hedging.getHedgeCount());
+  }
+
+  private Request get(String path) {
+    return new Request.Builder().url(baseUri.resolve(path)).build();
+  }
+  private String send(Request request) throws IOException {
+    try (Response response = client.newCall(request).execute()) {
+      assertEquals(200, response.code());
+      return response.body().string();
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.impl.DataMovementManagerImpl;
+import com.marklogic.client.impl.DatabaseClientImpl;
+import com.marklogic.client.impl.HostBalancer;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class HostBalancerTest extends MockWebServerBase {
+  private HttpUrl       baseUri;
+  private HostBalancer  balancer;
+
+  // the hosts that received requests through the mocked chain
+  private List<String>  sentHosts = new ArrayList<>();
+  private Set<String>   failingHosts = new HashSet<>();
+
+  @Before
+  public void setUp() {
+    // the forest configuration names two more hosts
+    server.enqueue(new MockResponse()
+      .setHeader("Content-Type", "application/json")
+      .setBody("[" +
+        "{\"id\":\"1\",\"name\":\"f1\",\"host\":\"" + server.getHostName() + "\"}," +
+        "{\"id\":\"2\",\"name\":\"f2\",\"host\":\"host-a\"}," +
+        "{\"id\":\"3\",\"name\":\"f3\",\"host\":\"host-b\"}" +
+        "]"));
+    baseUri = server.url("/v1/");
+    balancer = new HostBalancer(baseUri, null, HostBalancer.Strategy.LEAST_OUTSTANDING);
+    balancer.setProbeDelay(60000);
+    balancer.setClient(new OkHttpClient());
+  }
+
+  @After
+  public void tearDown() {
+    balancer.setEnabled(false);
+  }
+
+  @Test
+  public void testBalancing() throws IOException {
+    for (int i=0; i < 300; i++) {
+      send(get("documents?uri=/doc.json"), 200);
+    }
+    assertEquals(3, balancer.getHealthyHosts().length);
+    Set<String> expected = new HashSet<>(Arrays.asList(server.getHostName(), "host-a", "host-b"));
+    assertEquals(expected, new HashSet<>(sentHosts));
+  }
+
+  @Test
+  public void testEjection() throws IOException {
+    failingHosts.add("host-a");
+    int failures = 0;
+    for (int i=0; i < 100; i++) {
+      try {
+        send(get("documents?uri=/doc.json"), 200);
+      } catch (ConnectException e) {
+        failures++;
+      }
+    }
+    // the host is ejected after the threshold of consecutive failures
+    assertEquals(2, failures);
+    assertFalse(Arrays.asList(balancer.getHealthyHosts()).contains("host-a"));
+    assertEquals(2, balancer.getHealthyHosts().length);
+  }
+
+  @Test
+  public void testUnavailableStatus() throws IOException {
+    for (int i=0; i < 100; i++) {
+      send(get("documents?uri=/doc.json"), 503);
+    }
+    // every host is ejected, so requests fall back to the configured host
+    assertEquals(0, balancer.getHealthyHosts().length);
+    sentHosts.clear();
+    send(get("documents?uri=/doc.json"), 200);
+    assertEquals(Arrays.asList(baseUri.host()), sentHosts);
+  }
+
+  @Test
+  public void testRediscovery() throws Exception {
+    balancer.setDiscoveryInterval(1);
+    send(get("documents?uri=/doc.json"), 200);
+    assertEquals(3, balancer.getHealthyHosts().length);
+
+    // a host was removed from the cluster and another host was added
+    server.enqueue(new MockResponse()
+      .setHeader("Content-Type", "application/json")
+      .setBody("[" +
+        "{\"id\":\"1\",\"name\":\"f1\",\"host\":\"" + server.getHostName() + "\"}," +
+        "{\"id\":\"2\",\"name\":\"f2\",\"host\":\"host-a\"}," +
+        "{\"id\":\"3\",\"name\":\"f3\",\"host\":\"host-c\"}" +
+        "]"));
+    Thread.sleep(10);
+    send(get("documents?uri=/doc.json"), 200);
+    Set<String> expected = new HashSet<>(Arrays.asList(server.getHostName(), "host-a", "host-c"));
+    assertEquals(expected, new HashSet<>(Arrays.asList(balancer.getHealthyHosts())));
+  }
+
+  @Test
+  public void testTransactionAffinity() throws IOException {
+    for (int trial=0; trial < 20; trial++) {
+      String transactionId = "tx" + trial;
+      String hostId        = "100" + trial;
+      sentHosts.clear();
+      Request open = new Request.Builder()
+        .url(baseUri.resolve("transactions"))
+        .post(RequestBody.create("", null))
+        .build();
+      Response response = send(open, new Response.Builder()
+        .code(303)
+        .header("Location", "/v1/transactions/" + transactionId)
+        .header("Set-Cookie", "HostId=" + hostId + "; Path=/"));
+      response.close();
+      String transactionHost = sentHosts.get(0);
+
+      for (int i=0; i < 10; i++) {
+        send(get("documents?uri=/doc.json&txid=" + transactionId)
+          .newBuilder().header("Cookie", "HostId=" + hostId).build(), 200);
+        send(get("search?q=x").newBuilder().header("Cookie", "HostId=" + hostId).build(), 200);
+      }
+      Request commit = new Request.Builder()
+        .url(baseUri.resolve("transactions/" + transactionId + "?result=commit"))
+        .header("Cookie", "HostId=" + hostId)
+        .post(RequestBody.create("", null))
+        .build();
+      send(commit, 204);
+      for (String host: sentHosts) {
+        assertEquals(transactionHost, host);
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownTransaction() throws IOException {
+    // a transaction the balancer didn't see created stays on the configured host
+    for (int i=0; i < 20; i++) {
+      send(get("documents?uri=/doc.json&txid=unknown"), 200);
+      send(get("documents?uri=/doc.json").newBuilder().header("Cookie", "SessionID=1").build(), 200);
+    }
+    for (String host: sentHosts) {
+      assertEquals(baseUri.host(), host);
+    }
+  }
+
+  @Test
+  public void testDataMovementHostClients() {
+    // every request gets a forest configuration with only the mock server host
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse()
+          .setHeader("Content-Type", "application/json")
+          .setBody("[{\"id\":\"1\",\"name\":\"f1\",\"host\":\"" + server.getHostName() + "\"}]");
+      }
+    });
+    System.setProperty("com.marklogic.client.loadBalancing", "leastOutstanding");
+    try {
+      DatabaseClient client = newClient();
+      assertTrue(((DatabaseClientImpl) client).getServices().getHostBalancer().isEnabled());
+
+      // forest requests for the host of the primary client must not be balanced to other hosts
+      DataMovementManagerImpl moveMgr = (DataMovementManagerImpl) client.newDataMovementManager();
+      DatabaseClient hostClient = moveMgr.getHostClient(server.getHostName());
+      assertNotSame(client, hostClient);
+      assertFalse(((DatabaseClientImpl) hostClient).getServices().getHostBalancer().isEnabled());
+      assertSame(hostClient, moveMgr.getHostClient(server.getHostName()));
+      moveMgr.release();
+      client.release();
+    } finally {
+      System.clearProperty("com.marklogic.client.loadBalancing");
+    }
+  }
+
+  @Test
+  public void testDisabled() throws IOException {
+    balancer.setEnabled(false);
+    for (int i=0; i < 20; i++) {
+      send(get("documents?uri=/doc.json"), 200);
+    }
+    for (String host: sentHosts) {
+      assertEquals(baseUri.host(), host);
+    }
+  }
+
+  private Request get(String path) {
+    return new Request.Builder().url(baseUri.resolve(path)).build();
+  }
+  private Response send(Request request, int status) throws IOException {
+    Response response = send(request, new Response.Builder().code(status));
+    response.close();
+    return response;
+  }
+  private Response send(Request request, Response.Builder responseBuilder) throws IOException {
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(any(Request.class))).thenAnswer(invocation -> {
+      Request sent = (Request) invocation.getArguments()[0];
+      String host = sent.url().host();
+      sentHosts.add(host);
+      if (failingHosts.contains(host)) {
+        throw new ConnectException("cannot connect to " + host);
+      }
+      return responseBuilder
+        .request(sent)
+        .protocol(Protocol.HTTP_1_1)
+        .message("status")
+        .body(ResponseBody.create("", MediaType.parse("text/plain")))
+        .build();
+    });
+    try {
+      return balancer.intercept(chain);
+    } catch (RuntimeException e) {
+      fail(e.getMessage());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Starts a MockWebServer before each test and shuts it down after each test
+ * for the tests of the client that don't need a MarkLogic server.  The
+ * setUp and tearDown methods of a subclass run after the server starts and
+ * before it shuts down, so a subclass can set a dispatcher or enqueue
+ * responses in its own setUp.
+ */
+public class MockWebServerBase {
+  protected MockWebServer server;
+
+  @Before
+  public void startServer() throws IOException {
+    server = new MockWebServer();
+    server.start();
+  }
+
+  @After
+  public void shutdownServer() throws IOException {
+    server.shutdown();
+  }
+
+  protected DatabaseClient newClient() {
+    return newClient("user");
+  }
+  protected DatabaseClient newClient(String user) {
+    return DatabaseClientFactory.newClient(server.getHostName(), server.getPort(),
+      new DatabaseClientFactory.DigestAuthContext(user, "password"));
+  }
+}
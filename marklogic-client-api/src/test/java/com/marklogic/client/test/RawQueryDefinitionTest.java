@@ -64,6 +64,7 @@ import com.marklogic.client.query.ExtractedResult;
 import com.marklogic.client.query.MatchDocumentSummary;
 import com.marklogic.client.query.MatchLocation;
 import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.QueryOptionsCache;
 import com.marklogic.client.query.RawCombinedQueryDefinition;
 import com.marklogic.client.query.RawQueryByExampleDefinition;
 import com.marklogic.client.query.RawStructuredQueryDefinition;
@@ -230,6 +231,72 @@ public class RawQueryDefinitionTest {
     check(new StringHandle(str));
   }
 
+  @Test
+  public void testOptionsCache() {
+    QueryManager cachingQueryMgr = Common.client.newQueryManager();
+    QueryOptionsCache cache = cachingQueryMgr.newQueryOptionsCache(
+      Common.adminClient.newServerConfigManager().newQueryOptionsManager(), 10
+    );
+    cachingQueryMgr.setQueryOptionsCache(cache);
+    try {
+      String str = head + qtext2 + optionsString + tail;
+      for (int i=0; i < 2; i++) {
+        SearchHandle results = cachingQueryMgr.search(
+          cachingQueryMgr.newRawCombinedQueryDefinition(new StringHandle(str)), new SearchHandle()
+        );
+        checkResults(results);
+        // the relevance trace comes from the installed options
+        assertNotNull(results.getMatchResults()[0].getRelevanceInfo());
+      }
+      assertEquals(1, cache.getMissCount());
+      assertEquals(1, cache.getHitCount());
+      assertEquals(1, cache.getEntryCount());
+      assertEquals(1, cache.getInstalledOptionsNames().length);
+
+      try {
+        Common.adminClient.newQueryManager().setQueryOptionsCache(cache);
+        fail("cache used by a different client");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    } finally {
+      cache.clear();
+      cachingQueryMgr.setQueryOptionsCache(null);
+    }
+    assertEquals(0, cache.getInstalledOptionsNames().length);
+  }
+
+  @Test
+  public void testOptionsCacheEviction() {
+    QueryManager cachingQueryMgr = Common.client.newQueryManager();
+    QueryOptionsCache cache = cachingQueryMgr.newQueryOptionsCache(
+      Common.adminClient.newServerConfigManager().newQueryOptionsManager(), 1
+    );
+    cachingQueryMgr.setQueryOptionsCache(cache);
+    try {
+      cachingQueryMgr.search(
+        cachingQueryMgr.newRawCombinedQueryDefinition(new StringHandle(head + qtext2 + optionsString + tail)),
+        new SearchHandle()
+      );
+      String[] firstNames = cache.getInstalledOptionsNames();
+      assertEquals(1, firstNames.length);
+
+      // the options of the evicted query are deleted to make room for the other options
+      String otherOptions = optionsString.replace("<search:search-option>relevance-trace</search:search-option>", "");
+      checkResults(cachingQueryMgr.search(
+        cachingQueryMgr.newRawCombinedQueryDefinition(new StringHandle(head + qtext2 + otherOptions + tail)),
+        new SearchHandle()
+      ));
+      String[] otherNames = cache.getInstalledOptionsNames();
+      assertEquals(1, cache.getEntryCount());
+      assertEquals(1, otherNames.length);
+      assertFalse(firstNames[0].equals(otherNames[0]));
+    } finally {
+      cache.clear();
+      cachingQueryMgr.setQueryOptionsCache(null);
+    }
+  }
+
   @Test
   public void testFailedSearch() throws IOException {
     StructuredQueryBuilder qb = queryMgr.newStructuredQueryBuilder();
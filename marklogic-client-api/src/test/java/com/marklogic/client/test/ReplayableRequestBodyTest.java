@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.impl.ReplayableRequestBody;
+import com.marklogic.client.io.DocumentMetadataHandle;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.io.marker.TextWriteHandle;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+
+public class ReplayableRequestBodyTest {
+  private static final MediaType TEXT = MediaType.parse("text/plain");
+
+  @Test
+  public void testBufferedReplay() throws IOException {
+    String content = makeContent(100);
+    checkReplay(new ReplayableRequestBody(new StreamingBody(content, -1), 1024 * 1024), content);
+  }
+
+  @Test
+  public void testFileBackedReplay() throws IOException {
+    // most of the content spills past the memory limit into the temporary file
+    String content = makeContent(10000);
+    checkReplay(new ReplayableRequestBody(new StreamingBody(content, -1), 64), content);
+  }
+
+  @Test
+  public void testReplayWithoutMemory() throws IOException {
+    String content = makeContent(500);
+    checkReplay(new ReplayableRequestBody(new StreamingBody(content, -1), 0), content);
+  }
+
+  @Test
+  public void testKnownLength() throws IOException {
+    String content = makeContent(100);
+    ReplayableRequestBody body = new ReplayableRequestBody(new StreamingBody(content, content.length()), 16);
+    assertEquals(content.length(), body.contentLength());
+    checkReplay(body, content);
+  }
+
+  @Test
+  public void testFailedCapture() throws IOException {
+    StreamingBody streamingBody = new StreamingBody(makeContent(100), -1);
+    streamingBody.failAfter = 50;
+    ReplayableRequestBody body = new ReplayableRequestBody(streamingBody, 16);
+    try {
+      body.writeTo(new Buffer());
+      fail("capture did not fail");
+    } catch (IOException e) {
+      // expected
+    }
+    assertTrue(body.isOneShot());
+    assertFalse(body.isReplayable());
+    try {
+      body.writeTo(new Buffer());
+      fail("replayed after failure");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testClose() throws IOException {
+    ReplayableRequestBody body = new ReplayableRequestBody(new StreamingBody(makeContent(1000), -1), 64);
+    body.writeTo(new Buffer());
+    assertTrue(body.isReplayable());
+    body.close();
+    assertFalse(body.isReplayable());
+    try {
+      body.writeTo(new Buffer());
+      fail("replayed after close");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRetriedMultipartWrite() throws IOException {
+    // without replay, the parts are constructed again for the retry
+    List<String> sent = writeWithRetry(null, new StringHandle("retried content"));
+    assertEquals(2, sent.size());
+    for (String body: sent) {
+      assertTrue(body.contains("retried content"));
+    }
+  }
+
+  @Test
+  public void testReplayedMultipartWrite() throws IOException {
+    // with replay, the content that cannot be resent is replayed for the retry
+    List<String> sent = writeWithRetry("1", new InputStreamHandle(
+      new ByteArrayInputStream("replayed content".getBytes(StandardCharsets.UTF_8))));
+    assertEquals(2, sent.size());
+    for (String body: sent) {
+      assertTrue(body.contains("replayed content"));
+    }
+  }
+
+  // writes a document with metadata, which fails once with a retryable status
+  private List<String> writeWithRetry(String replayBuffer, TextWriteHandle content) throws IOException {
+    List<String> sent = new ArrayList<>();
+    MockWebServer server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (!request.getPath().startsWith("/v1/documents")) return new MockResponse();
+        sent.add(request.getBody().readUtf8());
+        return new MockResponse().setResponseCode((sent.size() == 1) ? 503 : 201);
+      }
+    });
+    server.start();
+    if (replayBuffer != null) System.setProperty("com.marklogic.client.replayBufferMegabytes", replayBuffer);
+    DatabaseClient client = null;
+    try {
+      client = DatabaseClientFactory.newClient(server.getHostName(), server.getPort(),
+        new DatabaseClientFactory.DigestAuthContext("user", "password"));
+      client.newTextDocumentManager().write("/retried.txt", new DocumentMetadataHandle().withCollections("retried"), content);
+    } finally {
+      System.clearProperty("com.marklogic.client.replayBufferMegabytes");
+      if (client != null) client.release();
+      server.shutdown();
+    }
+    return sent;
+  }
+
+  private void checkReplay(ReplayableRequestBody body, String content) throws IOException {
+    assertFalse(body.isOneShot());
+    assertFalse(body.isReplayable());
+    for (int i=0; i < 3; i++) {
+      Buffer sent = new Buffer();
+      body.writeTo(sent);
+      assertEquals(content, sent.readUtf8());
+      assertTrue(body.isReplayable());
+      assertFalse(body.isOneShot());
+      assertEquals(content.length(), body.contentLength());
+    }
+    body.close();
+  }
+  private String makeContent(int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i=0; i < count; i++) {
+      builder.append(i).append(',');
+    }
+    return builder.toString();
+  }
+
+  // a body which, like an InputStream, can be written only once
+  static class StreamingBody extends RequestBody {
+    private final String content;
+    private final long   length;
+    private boolean written = false;
+    int failAfter = -1;
+
+    StreamingBody(String content, long length) {
+      this.content = content;
+      this.length  = length;
+    }
+    @Override
+    public MediaType contentType() {
+      return TEXT;
+    }
+    @Override
+    public long contentLength() {
+      return length;
+    }
+    @Override
+    public boolean isOneShot() {
+      return true;
+    }
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      if (written) throw new IOException("content already written");
+      written = true;
+      if (failAfter >= 0) {
+        sink.writeUtf8(content.substring(0, failAfter));
+        throw new IOException("connection reset");
+      }
+      // write in small chunks as a stream would
+      for (int i=0; i < content.length(); i += 37) {
+        sink.writeUtf8(content.substring(i, Math.min(i + 37, content.length())));
+        sink.flush();
+      }
+    }
+  }
+}
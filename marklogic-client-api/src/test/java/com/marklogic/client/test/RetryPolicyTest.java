@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ConnectException;
+
+import org.junit.Test;
+
+import com.marklogic.client.FailedRetryException;
+import com.marklogic.client.impl.RetryPolicy;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class RetryPolicyTest {
+  private static final String HOST = "circuit-test-host:8000";
+
+  @Test
+  public void testBackoff() {
+    RetryPolicy policy = new RetryPolicy();
+    int previousMin = 0;
+    for (int retry = 0; retry < 10; retry++) {
+      int delay = policy.calculateDelay(retry);
+      assertTrue("delay below floor: " + delay, delay >= 125);
+      assertTrue("delay above ceiling: " + delay, delay <= 2125);
+      assertTrue("delay not increasing: " + delay, delay >= previousMin);
+      previousMin = Math.min(delay, 2000) / 2;
+    }
+  }
+
+  @Test
+  public void testRetries() {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setMinRetry(3);
+    policy.setMaxDelay(0);
+    RetryPolicy.Retrier retrier = policy.startRetries();
+    int tries = 0;
+    for (; retrier.hasNextTry(); retrier.nextTry()) {
+      retrier.pause();
+      tries++;
+    }
+    assertEquals(3, tries);
+    assertTrue(retrier.failed().getMessage().contains("after 3 retries"));
+  }
+
+  @Test
+  public void testInterruptedPause() {
+    RetryPolicy policy = new RetryPolicy();
+    RetryPolicy.Retrier retrier = policy.startRetries();
+    retrier.setNextDelay(10000);
+    Thread.currentThread().interrupt();
+    try {
+      retrier.pause();
+      fail("interrupted pause did not fail");
+    } catch (FailedRetryException e) {
+      assertTrue(e.getCause() instanceof InterruptedException);
+    }
+    // clears the interrupt restored by the pause
+    assertTrue(Thread.interrupted());
+  }
+
+  @Test
+  public void testCircuitBreaker() throws InterruptedException {
+    RetryPolicy policy = new RetryPolicy();
+    policy.setCircuitBreaker(2, 100);
+
+    policy.checkCircuit(HOST);
+    policy.recordFailure(HOST);
+    policy.checkCircuit(HOST);
+    policy.recordFailure(HOST);
+    try {
+      policy.checkCircuit(HOST);
+      fail("circuit did not open");
+    } catch (FailedRetryException e) {
+      assertTrue(e.getCause() instanceof ConnectException);
+    }
+    assertTrue("circuit shared by hosts", isAllowed(policy, "other-host:8000"));
+
+    Thread.sleep(150);
+    // one trial request is let through while the others fail fast
+    policy.checkCircuit(HOST);
+    try {
+      policy.checkCircuit(HOST);
+      fail("circuit allowed second trial request");
+    } catch (FailedRetryException e) {
+    }
+    policy.recordSuccess(HOST);
+    policy.checkCircuit(HOST);
+
+    RetryPolicy otherPolicy = new RetryPolicy();
+    otherPolicy.setCircuitBreaker(2, 100);
+    otherPolicy.recordFailure(HOST);
+    otherPolicy.recordFailure(HOST);
+    assertFalse(isAllowed(otherPolicy, HOST));
+    assertTrue("circuit shared by clients", isAllowed(policy, HOST));
+  }
+
+  @Test
+  public void testCircuitInterceptor() throws IOException {
+    MockWebServer server = new MockWebServer();
+    server.start();
+    try {
+      RetryPolicy policy = new RetryPolicy();
+      policy.setCircuitBreaker(2, 60000);
+      OkHttpClient client = new OkHttpClient.Builder()
+        .addInterceptor(policy.makeCircuitInterceptor())
+        .build();
+      Request request = new Request.Builder().url(server.url("/v1/ping")).build();
+      for (int i=0; i < 2; i++) {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        client.newCall(request).execute().close();
+      }
+      // the circuit is for the host and port that received the requests
+      assertFalse(isAllowed(policy, server.getHostName() + ":" + server.getPort()));
+      try {
+        client.newCall(request).execute().close();
+        fail("request to host with open circuit was sent");
+      } catch (FailedRetryException e) {
+        assertTrue(e.getCause() instanceof ConnectException);
+      }
+      assertEquals(2, server.getRequestCount());
+    } finally {
+      server.shutdown();
+    }
+  }
+
+  private boolean isAllowed(RetryPolicy policy, String host) {
+    try {
+      policy.checkCircuit(host);
+      return true;
+    } catch (FailedRetryException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.row.RowManager;
+import com.marklogic.client.row.RowRecord;
+import com.marklogic.client.row.RowSet;
+import com.marklogic.client.type.PlanParamExpr;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class RowManagerPagedTest extends MockWebServerBase {
+  private static final int    ROW_COUNT = 5;
+  private static final String FIRST_TIMESTAMP = "16000000000000001";
+
+  private DatabaseClient client;
+  private int            requestCount = 0;
+
+  @Before
+  public void setUp() {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        long offset = Long.parseLong(bindingFor(url, "offset"));
+        long limit  = Long.parseLong(bindingFor(url, "limit"));
+        // the database changes after each request unless the request is pinned to a timestamp
+        String timestamp = url.queryParameter("timestamp");
+        synchronized (RowManagerPagedTest.this) {
+          requestCount++;
+          if (timestamp == null) {
+            timestamp = String.valueOf(Long.parseLong(FIRST_TIMESTAMP) + requestCount - 1);
+          }
+        }
+        StringBuilder body = new StringBuilder();
+        appendPart(body, "header", "{\"columns\":[{\"name\":\"rowNum\"}]}");
+        for (long rowNum = offset + 1; rowNum <= Math.min(offset + limit, ROW_COUNT); rowNum++) {
+          appendPart(body, "row", "{\"rowNum\":{\"type\":\"xs:integer\",\"value\":" + rowNum + "}}");
+        }
+        body.append("--BOUNDARY--\r\n");
+        return new MockResponse()
+          .setHeader("Content-Type", "multipart/mixed; boundary=BOUNDARY")
+          .setHeader("ML-Effective-Timestamp", timestamp)
+          .setBody(body.toString());
+      }
+    });
+    client = newClient();
+  }
+
+  @After
+  public void tearDown() {
+    client.release();
+  }
+
+  static private String bindingFor(HttpUrl url, String param) {
+    for (String name: url.queryParameterNames()) {
+      if (name.startsWith("bind:" + param)) {
+        return url.queryParameter(name);
+      }
+    }
+    throw new IllegalStateException("no binding for " + param + " in " + url);
+  }
+  static private void appendPart(StringBuilder body, String kind, String content) {
+    body.append("--BOUNDARY\r\n")
+      .append("Content-Type: application/json\r\n")
+      .append("Content-Disposition: inline; kind=").append(kind).append("\r\n")
+      .append("\r\n")
+      .append(content).append("\r\n");
+  }
+
+  @Test
+  public void testPagesPinnedToFirstPage() throws Exception {
+    RowManager rowMgr = client.newRowManager();
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanParamExpr offsetParam = p.param("offset");
+    PlanParamExpr limitParam  = p.param("limit");
+    Map<String,Object>[] litRows = makeRows();
+    PlanBuilder.Plan plan = p.fromLiterals(litRows)
+      .orderBy(p.col("rowNum"))
+      .offset(offsetParam)
+      .limit(limitParam);
+
+    int rowNum = 0;
+    try (RowSet<RowRecord> rowSet = rowMgr.resultRowsPaged(plan, offsetParam, limitParam, 2, 2)) {
+      for (RowRecord row: rowSet) {
+        rowNum++;
+        assertEquals(rowNum, row.getInt("rowNum"));
+      }
+    }
+    assertEquals(ROW_COUNT, rowNum);
+
+    // the first page is read alone, and every other page is read at its timestamp
+    RecordedRequest first = server.takeRequest(1, TimeUnit.SECONDS);
+    assertEquals("0", bindingFor(first.getRequestUrl(), "offset"));
+    assertNull(first.getRequestUrl().queryParameter("timestamp"));
+    for (RecordedRequest next = server.takeRequest(1, TimeUnit.SECONDS); next != null;
+         next = server.takeRequest(100, TimeUnit.MILLISECONDS)) {
+      assertEquals("page at offset " + bindingFor(next.getRequestUrl(), "offset") + " not pinned",
+        FIRST_TIMESTAMP, next.getRequestUrl().queryParameter("timestamp"));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static private Map<String,Object>[] makeRows() {
+    Map<String,Object>[] rows = new Map[ROW_COUNT];
+    for (int i=0; i < ROW_COUNT; i++) {
+      rows[i] = new HashMap<>();
+      rows[i].put("rowNum", i + 1);
+    }
+    return rows;
+  }
+}
@@ -20,16 +20,22 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
 import javax.xml.transform.OutputKeys;
@@ -61,11 +67,15 @@ import com.marklogic.client.io.JacksonHandle;
 import com.marklogic.client.io.ReaderHandle;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.row.RawPlanDefinition;
+import com.marklogic.client.row.RowBatch;
+import com.marklogic.client.row.RowDocResult;
 import com.marklogic.client.row.RowManager;
+import com.marklogic.client.row.RowManager.RowExportFormat;
 import com.marklogic.client.row.RowManager.RowSetPart;
 import com.marklogic.client.row.RowManager.RowStructure;
 import com.marklogic.client.row.RowRecord;
 import com.marklogic.client.row.RowRecord.ColumnKind;
+import com.marklogic.client.row.RowResultCache;
 import com.marklogic.client.row.RowSet;
 import com.marklogic.client.type.CtsReferenceExpr;
 import com.marklogic.client.type.PlanColumn;
@@ -403,6 +413,190 @@ public class RowManagerTest {
     }
   }
   @Test
+  public void testResultBatches() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanBuilder.ExportablePlan builtPlan =
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .select(p.colSeq("rowNum", "city"));
+
+    RowSet<RowBatch> batchSet = rowMgr.resultBatches(builtPlan, 2);
+    checkColumnNames(new String[]{"rowNum", "city"}, batchSet);
+
+    Iterator<RowBatch> batchItr = batchSet.iterator();
+    assertTrue("no batch to iterate", batchItr.hasNext());
+    RowBatch batch = batchItr.next();
+    assertEquals("unexpected first batch size", 2, batch.size());
+    int rowNumCol = batch.getColumnIndex("rowNum");
+    int cityCol   = batch.getColumnIndex("city");
+    assertEquals("unexpected rowNum vector", RowBatch.VectorType.LONG,   batch.getVectorType(rowNumCol));
+    assertEquals("unexpected city vector",   RowBatch.VectorType.STRING, batch.getVectorType(cityCol));
+    assertArrayEquals("unexpected rowNum values", new long[]{1, 2}, batch.getLongs(rowNumCol));
+    assertEquals("unexpected city value", "New York", batch.getString(cityCol, 0));
+    assertEquals("unexpected city value", "Seattle",  batch.getString(cityCol, 1));
+    assertTrue("unexpected null", batch.getNulls(cityCol).isEmpty());
+
+    assertTrue("no second batch to iterate", batchItr.hasNext());
+    batch = batchItr.next();
+    assertEquals("unexpected second batch size", 1, batch.size());
+    assertArrayEquals("unexpected rowNum values", new long[]{3}, batch.getLongs(rowNumCol));
+    assertArrayEquals("unexpected city dictionary", new String[]{"Phoenix"}, batch.getStringDictionary(cityCol));
+    assertFalse("expected two batches", batchItr.hasNext());
+
+    batchSet.close();
+  }
+  @Test
+  public void testColumnIndexAccessors() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanBuilder.ExportablePlan builtPlan =
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .select(p.colSeq("rowNum", "city", "temp"));
+
+    RowSet<RowRecord> rowSet = rowMgr.resultRows(builtPlan);
+    int rowNumCol = rowSet.getColumnIndex("rowNum");
+    int cityCol   = rowSet.getColumnIndex("city");
+    int tempCol   = rowSet.getColumnIndex("temp");
+    assertTrue("missing column index", rowNumCol >= 0 && cityCol >= 0 && tempCol >= 0);
+    assertEquals("unexpected index for unknown column", -1, rowSet.getColumnIndex("nosuchcolumn"));
+
+    int rowNum = 0;
+    for (RowRecord row: rowSet) {
+      rowNum++;
+      assertFalse("unexpected null for rowNum", row.isNull(rowNumCol));
+      assertEquals("unexpected rowNum by index", rowNum, row.getInt(rowNumCol));
+      assertEquals("unexpected rowNum by index", rowNum, row.getLong(rowNumCol));
+      assertEquals("unexpected rowNum by index", rowNum, row.getDouble(rowNumCol), 0);
+      assertEquals("unexpected rowNum by name",  row.getInt("rowNum"), row.getInt(rowNumCol));
+      assertEquals("unexpected city by index",   litRows[rowNum - 1].get("city"), row.getString(cityCol));
+      assertEquals("unexpected temp by index",   litRows[rowNum - 1].get("temp"), row.getString(tempCol));
+    }
+    assertEquals("unexpected row count", 3, rowNum);
+
+    rowSet.close();
+  }
+  @Test
+  public void testResultRowsPaged() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanParamExpr startParam  = p.param("start");
+    PlanParamExpr lengthParam = p.param("length");
+    PlanBuilder.Plan builtPlan =
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .select(p.colSeq("rowNum", "city"))
+        .offset(startParam)
+        .limit(lengthParam);
+
+    for (int pageRows: new int[]{1, 2, 3, 4}) {
+      RowSet<RowRecord> rowSet = rowMgr.resultRowsPaged(builtPlan, startParam, lengthParam, pageRows, 2);
+      checkColumnNames(new String[]{"rowNum", "city"}, rowSet);
+
+      int rowNum = 0;
+      for (RowRecord row: rowSet) {
+        rowNum++;
+        assertEquals("unexpected rowNum with page size "+pageRows, rowNum, row.getInt("rowNum"));
+        assertEquals("unexpected city with page size "+pageRows, litRows[rowNum - 1].get("city"), row.getString("city"));
+      }
+      assertEquals("unexpected row count with page size "+pageRows, 3, rowNum);
+
+      rowSet.close();
+    }
+  }
+  @Test
+  public void testResultDocsAs() {
+    RowManager rowMgr = Common.client.newRowManager();
+    rowMgr.setDatatypeStyle(RowSetPart.HEADER);
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    List<PlanBuilder.Plan> plans = new ArrayList<>();
+    for (Map<String,Object> litRow: litRows) {
+      plans.add(
+        p.fromLiterals(litRows)
+          .where(p.eq(p.col("city"), p.xs.string((String) litRow.get("city"))))
+          .select(p.colSeq("rowNum", "city"))
+      );
+    }
+    plans.add(1, p.fromView("opticUnitTest", "noSuchView"));
+
+    List<RowDocResult<JsonNode>> results = rowMgr.resultDocsAs(plans, JsonNode.class);
+    assertEquals("unexpected result count", plans.size(), results.size());
+
+    RowDocResult<JsonNode> failed = results.get(1);
+    assertSame("unexpected plan for failed result", plans.get(1), failed.getPlan());
+    assertFalse("expected failure for missing view", failed.isSuccess());
+    assertNotNull("missing failure for missing view", failed.getFailure());
+
+    int rowNum = 0;
+    for (RowDocResult<JsonNode> result: results) {
+      if (result == failed) continue;
+      rowNum++;
+      assertTrue("unexpected failure for row "+rowNum, result.isSuccess());
+      JsonNode rows = result.get().get("rows");
+      assertEquals("unexpected row count for row "+rowNum, 1, rows.size());
+      assertEquals("unexpected rowNum in result", rowNum, rows.get(0).get("rowNum").asInt());
+    }
+    assertEquals("unexpected successful result count", litRows.length, rowNum);
+  }
+  @Test
+  public void testResultRowsTo() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanBuilder.ExportablePlan builtPlan =
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .select(p.colSeq("rowNum", "temp"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    rowMgr.resultRowsTo(builtPlan, out, RowExportFormat.CSV);
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\r?\n");
+    assertEquals("unexpected CSV line count", 4, lines.length);
+    assertArrayEquals("unexpected CSV header", new String[]{"rowNum","temp"}, lines[0].split(","));
+    assertArrayEquals("unexpected CSV row",    new String[]{"2","72"},        lines[2].split(","));
+
+    rowMgr.setDatatypeStyle(RowSetPart.HEADER);
+    out = new ByteArrayOutputStream();
+    rowMgr.resultRowsTo(builtPlan, out, RowExportFormat.JSONL);
+    lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals("unexpected JSON line count", 3, lines.length);
+    ObjectMapper mapper = new ObjectMapper();
+    for (int i=0; i < lines.length; i++) {
+      JsonNode row = mapper.readTree(lines[i]);
+      assertEquals("unexpected rowNum in JSON line", i + 1, row.get("rowNum").asInt());
+      assertEquals("unexpected temp in JSON line", litRows[i].get("temp"), row.get("temp").asText());
+    }
+  }
+  @Test
+  public void testResultRowsToDefaultDatatypeStyle() throws IOException {
+    // the export has plain values even with the default ROWS datatype style
+    RowManager rowMgr = Common.client.newRowManager();
+    assertEquals(RowSetPart.ROWS, rowMgr.getDatatypeStyle());
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+    PlanBuilder.ExportablePlan builtPlan =
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .select(p.colSeq("rowNum", "temp"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    rowMgr.resultRowsTo(builtPlan, out, RowExportFormat.JSONL);
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertEquals("unexpected JSON line count", 3, lines.length);
+    ObjectMapper mapper = new ObjectMapper();
+    for (int i=0; i < lines.length; i++) {
+      JsonNode row = mapper.readTree(lines[i]);
+      assertTrue("unexpected type in JSON line", row.get("rowNum").isNumber());
+      assertEquals("unexpected rowNum in JSON line", i + 1, row.get("rowNum").asInt());
+      assertEquals("unexpected temp in JSON line", litRows[i].get("temp"), row.get("temp").asText());
+    }
+  }
+  @Test
   public void testView() {
     RowManager rowMgr = Common.client.newRowManager();
 
@@ -611,6 +805,112 @@ public class RowManagerTest {
     recordRowSet.close();
   }
   @Test
+  public void testPrepare() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+
+    PlanParamExpr cityParam  = p.param("city");
+    PlanParamExpr limitParam = p.param("limit");
+
+    PlanBuilder.Plan preparedPlan = rowMgr.prepare(
+      p.fromLiterals(litRows)
+        .orderBy(p.col("rowNum"))
+        .where(p.eq(p.col("city"), cityParam))
+        .select(p.colSeq("rowNum", "temp"))
+        .limit(limitParam)
+        .bindParam(limitParam, 1)
+    );
+    assertSame("prepared plan prepared again", preparedPlan, rowMgr.prepare(preparedPlan));
+
+    String[] cities = {"Seattle", "New York", "Phoenix"};
+    int[]    rowNums = {2, 1, 3};
+    for (int i=0; i < cities.length; i++) {
+      try (RowSet<RowRecord> recordRowSet = rowMgr.resultRows(preparedPlan.bindParam(cityParam, cities[i]))) {
+        Iterator<RowRecord> recordRowItr = recordRowSet.iterator();
+        assertTrue("no record row to iterate for "+cities[i], recordRowItr.hasNext());
+        assertEquals("unexpected rowNum for "+cities[i], rowNums[i], recordRowItr.next().getInt("rowNum"));
+        assertFalse("expected one record row for "+cities[i], recordRowItr.hasNext());
+      }
+    }
+  }
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testExportEscaping() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+
+    String city = "Quoted \"City\"\\\nwith\ttabs";
+
+    Map<String,Object> row = new HashMap<>();
+    row.put("rowNum", 1);
+    row.put("city",   city);
+
+    PlanBuilder.ExportablePlan builtPlan =
+      p.fromLiterals(new Map[]{row})
+        .where(p.eq(p.col("city"), p.xs.string(city)));
+
+    JsonNode planNode = builtPlan.export(new JacksonHandle()).get();
+    assertEquals("unexpected literal in exported plan", city,
+      planNode.get("$optic").get("args").get(0).get("args").get(0).get(0).get("city").asText());
+
+    try (RowSet<RowRecord> recordRowSet = rowMgr.resultRows(builtPlan)) {
+      Iterator<RowRecord> recordRowItr = recordRowSet.iterator();
+      assertTrue("no record row to iterate", recordRowItr.hasNext());
+      assertEquals("unexpected city value", city, recordRowItr.next().getString("city"));
+      assertFalse("expected one record row", recordRowItr.hasNext());
+    }
+  }
+  @Test
+  public void testResultCache() throws IOException {
+    RowManager rowMgr = Common.client.newRowManager();
+
+    RowResultCache cache = rowMgr.newResultCache(1024 * 1024, 1, TimeUnit.MINUTES);
+    rowMgr.setResultCache(cache);
+
+    PlanBuilder p = rowMgr.newPlanBuilder();
+
+    PlanParamExpr cityParam = p.param("city");
+
+    PlanBuilder.Plan plan =
+      p.fromLiterals(litRows)
+        .where(p.eq(p.col("city"), cityParam))
+        .select(p.colSeq("rowNum", "temp"));
+
+    JsonNode firstDoc  = rowMgr.resultDoc(plan.bindParam(cityParam, "Seattle"), new JacksonHandle()).get();
+    JsonNode secondDoc = rowMgr.resultDoc(plan.bindParam(cityParam, "Seattle"), new JacksonHandle()).get();
+    assertEquals("cached document differs", firstDoc, secondDoc);
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+
+    rowMgr.resultDoc(plan.bindParam(cityParam, "Phoenix"), new JacksonHandle());
+    assertEquals("different binding read from cache", 2, cache.getMissCount());
+
+    for (int i=0; i < 2; i++) {
+      try (RowSet<RowRecord> recordRowSet = rowMgr.resultRows(plan.bindParam(cityParam, "Seattle"))) {
+        Iterator<RowRecord> recordRowItr = recordRowSet.iterator();
+        assertTrue("no record row to iterate", recordRowItr.hasNext());
+        checkSingleRow(recordRowItr.next());
+        assertFalse("expected one record row", recordRowItr.hasNext());
+      }
+    }
+    assertEquals(3, cache.getMissCount());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(3, cache.getEntryCount());
+
+    try {
+      Common.connectAdmin().newRowManager().setResultCache(cache);
+      fail("cache used by a different client");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    cache.clear();
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getByteCount());
+  }
+  @Test
   public void testCaseWhenElse() throws IOException {
     RowManager rowMgr = Common.client.newRowManager();
 
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.marklogic.client.impl.HandleAccessor;
+import com.marklogic.client.io.SearchHandle;
+import com.marklogic.client.query.FacetResult;
+import com.marklogic.client.query.MatchDocumentSummary;
+import com.marklogic.client.query.MatchLocation;
+import com.marklogic.client.query.MatchSnippet;
+import com.marklogic.client.query.SearchMetrics;
+
+public class SearchHandleTest {
+  static private String makeResponse(String queryTime) {
+    return
+      "<search:response xmlns:search=\"http://marklogic.com/appservices/search\"" +
+        " snippet-format=\"snippet\" total=\"2\" start=\"1\" page-length=\"10\">" +
+        "<search:result index=\"1\" uri=\"/lazy/doc1.xml\" path=\"fn:doc('/lazy/doc1.xml')\"" +
+          " score=\"20\" confidence=\"0.5\" fitness=\"0.75\" mimetype=\"application/xml\" format=\"xml\">" +
+          "<search:snippet>" +
+            "<search:match path=\"fn:doc('/lazy/doc1.xml')/doc\">" +
+              "the <search:highlight>lazy</search:highlight> dog" +
+            "</search:match>" +
+          "</search:snippet>" +
+        "</search:result>" +
+        "<search:result index=\"2\" uri=\"/lazy/doc2.xml\" path=\"fn:doc('/lazy/doc2.xml')\"" +
+          " score=\"10\" confidence=\"0.25\" fitness=\"0.5\" mimetype=\"application/xml\" format=\"xml\">" +
+          "<search:snippet/>" +
+        "</search:result>" +
+        "<search:facet name=\"tag\" type=\"xs:string\">" +
+          "<search:facet-value name=\"dog\" count=\"2\">dog</search:facet-value>" +
+          "<search:facet-value name=\"cat\" count=\"1\">cat</search:facet-value>" +
+        "</search:facet>" +
+        "<search:metrics>" +
+          "<search:query-resolution-time>" + queryTime + "</search:query-resolution-time>" +
+          "<search:total-time>PT0.5S</search:total-time>" +
+        "</search:metrics>" +
+      "</search:response>";
+  }
+
+  @Test
+  public void testSummariesOnly() {
+    SearchHandle handle = new SearchHandle();
+    // the metrics can't be parsed, so reading them would throw
+    HandleAccessor.receiveContent(handle, makeResponse("not-a-duration"));
+
+    assertEquals(2, handle.getTotalResults());
+    assertEquals(1, handle.getStart());
+    assertEquals(10, handle.getPageLength());
+    MatchDocumentSummary[] summaries = handle.getMatchResults();
+    assertEquals(2, summaries.length);
+    assertEquals("/lazy/doc1.xml", summaries[0].getUri());
+    assertEquals(20, summaries[0].getScore());
+    assertEquals("/lazy/doc2.xml", summaries[1].getUri());
+    assertEquals(0.5, summaries[1].getFitness(), 0.0);
+
+    try {
+      handle.getMetrics();
+      fail("metrics parsed without an error");
+    } catch (IllegalArgumentException e) {
+      // the rest of the response is parsed only on the first request for it
+    }
+  }
+
+  @Test
+  public void testParseOnFirstAccess() {
+    SearchHandle handle = new SearchHandle();
+    HandleAccessor.receiveContent(handle, makeResponse("PT0.25S"));
+
+    MatchDocumentSummary[] summaries = handle.getMatchResults();
+    assertEquals(2, summaries.length);
+
+    // the first request for a facet parses the rest of the page
+    FacetResult facet = handle.getFacetResult("tag");
+    assertEquals(2, facet.getFacetValues().length);
+    assertEquals("dog", facet.getFacetValues()[0].getName());
+    assertEquals(2, facet.getFacetValues()[0].getCount());
+    assertEquals(1, handle.getFacetResult("tag").getFacetValues()[1].getCount());
+
+    // the summaries are filled in rather than recreated
+    assertSame(summaries, handle.getMatchResults());
+    MatchLocation[] locations = summaries[0].getMatchLocations();
+    assertEquals(1, locations.length);
+    assertEquals("fn:doc('/lazy/doc1.xml')/doc", locations[0].getPath());
+    MatchSnippet[] snippets = locations[0].getSnippets();
+    assertEquals(3, snippets.length);
+    assertEquals("lazy", snippets[1].getText());
+    assertTrue(snippets[1].isHighlighted());
+    assertEquals(0, summaries[1].getMatchLocations().length);
+
+    SearchMetrics metrics = handle.getMetrics();
+    assertEquals(250, metrics.getQueryResolutionTime());
+    assertEquals(500, metrics.getTotalTime());
+  }
+
+  @Test
+  public void testMetricsFirst() {
+    SearchHandle handle = new SearchHandle();
+    HandleAccessor.receiveContent(handle, makeResponse("PT0.25S"));
+
+    assertEquals(250, handle.getMetrics().getQueryResolutionTime());
+    assertEquals("dog", handle.getFacetResult("tag").getFacetValues()[0].getName());
+    assertEquals(3, handle.getMatchResults()[0].getMatchLocations()[0].getSnippets().length);
+  }
+}
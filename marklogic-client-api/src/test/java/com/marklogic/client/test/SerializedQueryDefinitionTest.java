@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marklogic.client.impl.RawQueryDefinitionImpl;
+import com.marklogic.client.impl.SerializedQueryDefinition;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.StructuredQueryBuilder;
+import com.marklogic.client.query.StructuredQueryDefinition;
+
+public class SerializedQueryDefinitionTest {
+  @Test
+  public void testStructuredQuery() throws Exception {
+    StructuredQueryDefinition structuredQuery = new StructuredQueryBuilder()
+      .collection("serialized")
+      .withCriteria("Jane");
+    structuredQuery.setDirectory("/serialized/");
+
+    QueryDefinition qdef = SerializedQueryDefinition.serialize(structuredQuery);
+    assertTrue(qdef instanceof SerializedQueryDefinition);
+    SerializedQueryDefinition serializedQuery = (SerializedQueryDefinition) qdef;
+    assertEquals("Jane", serializedQuery.getCriteria());
+    assertEquals("/serialized/", serializedQuery.getDirectory());
+
+    Element search = parseXML(serializedQuery.toString());
+    assertEquals("search", search.getLocalName());
+    assertEquals(StructuredQueryBuilder.SEARCH_API_NS, search.getNamespaceURI());
+    assertEquals(1, search.getElementsByTagNameNS(StructuredQueryBuilder.SEARCH_API_NS, "query").getLength());
+    assertEquals(1, search.getElementsByTagNameNS(StructuredQueryBuilder.SEARCH_API_NS, "collection-query").getLength());
+  }
+
+  @Test
+  public void testRawStructuredXMLQuery() throws Exception {
+    StringHandle handle = new StringHandle(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+      "<query xmlns=\"http://marklogic.com/appservices/search\">" +
+        "<collection-query><uri>serialized</uri></collection-query>" +
+      "</query>").withFormat(Format.XML);
+    RawQueryDefinitionImpl.Structured rawQuery = new RawQueryDefinitionImpl.Structured(handle);
+    rawQuery.setCriteria("Jane");
+
+    SerializedQueryDefinition serializedQuery =
+      (SerializedQueryDefinition) SerializedQueryDefinition.serialize(rawQuery);
+    assertEquals("Jane", serializedQuery.getCriteria());
+    String body = serializedQuery.toString();
+    assertFalse("XML declaration inside the search element", body.contains("<?xml"));
+
+    Element search = parseXML(body);
+    assertEquals("search", search.getLocalName());
+    assertEquals(StructuredQueryBuilder.SEARCH_API_NS, search.getNamespaceURI());
+    assertEquals(1, search.getElementsByTagNameNS(StructuredQueryBuilder.SEARCH_API_NS, "collection-query").getLength());
+  }
+
+  @Test
+  public void testRawStructuredJSONQuery() throws Exception {
+    StringHandle handle = new StringHandle(
+      "{\"query\": {\"queries\": [{\"collection-query\": {\"uri\": [\"serialized\"]}}]}}"
+      ).withFormat(Format.JSON);
+    RawQueryDefinitionImpl.Structured rawQuery = new RawQueryDefinitionImpl.Structured(handle);
+
+    SerializedQueryDefinition serializedQuery =
+      (SerializedQueryDefinition) SerializedQueryDefinition.serialize(rawQuery);
+    JsonNode search = new ObjectMapper().readTree(serializedQuery.toString());
+    assertEquals(1, search.size());
+    assertEquals("serialized",
+      search.path("search").path("query").path("queries").path(0)
+        .path("collection-query").path("uri").path(0).asText());
+  }
+
+  private Element parseXML(String xml) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml))).getDocumentElement();
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.SuggestCache;
+import com.marklogic.client.query.SuggestDefinition;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class SuggestCacheTest extends MockWebServerBase {
+  // the server suggests the words that start with the input in this order
+  private static final String[] WORDS = {
+    "apple", "apricot", "ban", "banana", "band", "bandana", "bandit", "bank", "cherry"
+  };
+
+  private DatabaseClient client;
+  private QueryManager   queryMgr;
+
+  @Before
+  public void setUp() {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        String input = request.getRequestUrl().queryParameter("partial-q");
+        int    limit = Integer.parseInt(request.getRequestUrl().queryParameter("limit"));
+        StringBuilder body = new StringBuilder(
+          "<search:suggestions xmlns:search=\"http://marklogic.com/appservices/search\">");
+        int count = 0;
+        for (String word: WORDS) {
+          if (count < limit && word.startsWith(input)) {
+            body.append("<search:suggestion>").append(word).append("</search:suggestion>");
+            count++;
+          }
+        }
+        body.append("</search:suggestions>");
+        return new MockResponse()
+          .setHeader("Content-Type", "application/xml")
+          .setBody(body.toString());
+      }
+    });
+    client = newClient();
+    queryMgr = client.newQueryManager();
+  }
+
+  @After
+  public void tearDown() {
+    client.release();
+  }
+
+  @Test
+  public void testNarrowing() {
+    SuggestCache cache = queryMgr.newSuggestCache(100, 1, TimeUnit.MINUTES);
+    queryMgr.setSuggestCache(cache);
+
+    // fewer suggestions than the limit are all of the suggestions for longer input
+    assertArrayEquals(new String[]{"ban", "banana", "band", "bandana", "bandit", "bank"}, suggest("ban", 10));
+    assertArrayEquals(new String[]{"band", "bandana", "bandit"}, suggest("band", 10));
+    assertArrayEquals(new String[]{"bandit"},                    suggest("bandi", 10));
+    assertArrayEquals(new String[0],                             suggest("bandx", 10));
+    assertEquals(1, server.getRequestCount());
+    assertEquals(3, cache.getHitCount());
+
+    // shorter input, different limits, and a cursor before the end go to the server
+    assertArrayEquals(new String[]{"ban", "banana", "band", "bandana", "bandit", "bank"}, suggest("b", 10));
+    assertArrayEquals(new String[]{"band", "bandana"}, suggest("band", 2));
+    SuggestDefinition cursorDef = queryMgr.newSuggestDefinition();
+    cursorDef.setStringCriteria("band");
+    cursorDef.setLimit(10);
+    cursorDef.setCursorPosition(2);
+    queryMgr.suggest(cursorDef);
+    assertEquals(4, server.getRequestCount());
+  }
+
+  @Test
+  public void testNoNarrowingAtLimit() {
+    SuggestCache cache = queryMgr.newSuggestCache(100, 1, TimeUnit.MINUTES);
+    queryMgr.setSuggestCache(cache);
+
+    // as many suggestions as the limit might not be all of the suggestions
+    assertArrayEquals(new String[]{"ban", "banana"}, suggest("ban", 2));
+    assertArrayEquals(new String[]{"band", "bandana"}, suggest("band", 2));
+    assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void testSplitAndMerge() {
+    SuggestCache cache = queryMgr.newSuggestCache(2, 1, TimeUnit.MINUTES);
+    queryMgr.setSuggestCache(cache);
+
+    // a limit of one never narrows, so each input has its own entry
+    suggest("band", 1);
+    // splits the node for band
+    suggest("ban", 1);
+    assertArrayEquals(new String[]{"band"}, suggest("band", 1));
+    assertArrayEquals(new String[]{"ban"},  suggest("ban", 1));
+    assertEquals(2, server.getRequestCount());
+    assertEquals(2, cache.getEntryCount());
+
+    // makes ban the least recently used entry
+    suggest("band", 1);
+    // evicts ban, which merges the node for band back into one node
+    suggest("cherry", 1);
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(2, cache.getEntryCount());
+    assertArrayEquals(new String[]{"band"},   suggest("band", 1));
+    assertArrayEquals(new String[]{"cherry"}, suggest("cherry", 1));
+    assertEquals(3, server.getRequestCount());
+
+    assertArrayEquals(new String[]{"ban"}, suggest("ban", 1));
+    assertEquals(4, server.getRequestCount());
+    assertEquals(2, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testTimeToLive() throws InterruptedException {
+    SuggestCache cache = queryMgr.newSuggestCache(100, 50, TimeUnit.MILLISECONDS);
+    queryMgr.setSuggestCache(cache);
+
+    suggest("ban", 10);
+    suggest("ban", 10);
+    assertEquals(1, server.getRequestCount());
+
+    Thread.sleep(100);
+    suggest("band", 10);
+    assertEquals(2, server.getRequestCount());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(1, cache.getEntryCount());
+
+    cache.clear();
+    assertEquals(0, cache.getEntryCount());
+  }
+
+  @Test
+  public void testDifferentClient() {
+    SuggestCache cache = queryMgr.newSuggestCache(100, 1, TimeUnit.MINUTES);
+    DatabaseClient otherClient = newClient("other");
+    try {
+      otherClient.newQueryManager().setSuggestCache(cache);
+      fail("cache used by a different client");
+    } catch (IllegalArgumentException e) {
+      // expected
+    } finally {
+      otherClient.release();
+    }
+  }
+
+  private String[] suggest(String input, int limit) {
+    SuggestDefinition suggestDef = queryMgr.newSuggestDefinition();
+    suggestDef.setStringCriteria(input);
+    suggestDef.setLimit(limit);
+    return queryMgr.suggest(suggestDef);
+  }
+}
@@ -15,9 +15,11 @@
  */
 package com.marklogic.client.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.FileNotFoundException;
+import java.util.concurrent.TimeUnit;
 
 import org.custommonkey.xmlunit.XMLUnit;
 import org.junit.AfterClass;
@@ -35,6 +37,7 @@ import com.marklogic.client.admin.QueryOptionsManager;
 import com.marklogic.client.document.XMLDocumentManager;
 import com.marklogic.client.io.StringHandle;
 import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.SuggestCache;
 import com.marklogic.client.query.SuggestDefinition;
 
 public class SuggestTest {
@@ -146,6 +149,45 @@ public class SuggestTest {
     assertEquals(suggestions.length, 1);
   }
 
+  @Test
+  public void testSuggestCache() {
+    QueryManager queryMgr = Common.client.newQueryManager();
+    String[] expected = queryMgr.suggest(queryMgr.newSuggestDefinition("li", optionsName));
+
+    SuggestCache cache = queryMgr.newSuggestCache(100, 1, TimeUnit.MINUTES);
+    queryMgr.setSuggestCache(cache);
+    try {
+      String[] suggestions = queryMgr.suggest(queryMgr.newSuggestDefinition("l", optionsName));
+      assertEquals(4, suggestions.length);
+      assertEquals(0, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+
+      // narrowed from the suggestions for the shorter input
+      suggestions = queryMgr.suggest(queryMgr.newSuggestDefinition("li", optionsName));
+      assertArrayEquals(expected, suggestions);
+      assertEquals(1, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+
+      suggestions = queryMgr.suggest(queryMgr.newSuggestDefinition("l", optionsName));
+      assertEquals(4, suggestions.length);
+      assertEquals(2, cache.getHitCount());
+
+      // other query strings are a separate scope
+      SuggestDefinition def = queryMgr.newSuggestDefinition("li", optionsName);
+      def.setQueryStrings("string:FINDME");
+      suggestions = queryMgr.suggest(def);
+      assertEquals(1, suggestions.length);
+      assertEquals("limes", suggestions[0]);
+      assertEquals(2, cache.getMissCount());
+      assertEquals(2, cache.getEntryCount());
+
+      cache.clear();
+      assertEquals(0, cache.getEntryCount());
+    } finally {
+      queryMgr.setSuggestCache(null);
+    }
+  }
+
 
 
 
@@ -52,6 +52,7 @@ import com.marklogic.client.query.StructuredQueryBuilder;
 import com.marklogic.client.query.StructuredQueryDefinition;
 import com.marklogic.client.query.ValueQueryDefinition;
 import com.marklogic.client.query.ValuesDefinition;
+import com.marklogic.client.query.ValuesIterator;
 import com.marklogic.client.query.ValuesListDefinition;
 import java.util.Map;
 
@@ -206,6 +207,34 @@ public class ValuesHandleTest {
     Common.adminClient.newServerConfigManager().newQueryOptionsManager().deleteOptions(optionsName);
   }
 
+  @Test
+  public void testValuesIterator() {
+    String optionsName = makeValuesOptions();
+
+    QueryManager queryMgr = Common.client.newQueryManager();
+
+    ValuesDefinition vdef = queryMgr.newValuesDefinition("double", optionsName);
+
+    CountedDistinctValue dv[] = queryMgr.values(vdef, new ValuesHandle()).getValues();
+    assertTrue("There should be more values than one page", dv.length > 2);
+
+    int i = 0;
+    try (ValuesIterator values = queryMgr.newValuesIterator(vdef, 2, 1)) {
+      while (values.next()) {
+        assertTrue("There should not be more values than in one request", i < dv.length);
+        assertEquals("The values should be named 'double'", "double", values.getName());
+        assertEquals("The position should count the values", i + 1, values.getPosition());
+        assertEquals("The type should be xs:double", "xs:double", values.getType());
+        assertEquals("The value should match", dv[i].get("xs:double", Double.class), values.getDouble(), 0.0);
+        assertEquals("The frequency should match", dv[i].getCount(), values.getFrequency());
+        i++;
+      }
+    }
+    assertEquals("The iterator should return every value", dv.length, i);
+
+    Common.adminClient.newServerConfigManager().newQueryOptionsManager().deleteOptions(optionsName);
+  }
+
   // this test only works if you've loaded the 5min guide @Test
   public void serverValuesList() throws IOException, ParserConfigurationException, SAXException {
     String optionsName = "photos";
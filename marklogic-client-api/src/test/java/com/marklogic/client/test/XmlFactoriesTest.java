@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import com.marklogic.client.impl.XmlFactories;
+
+public class XmlFactoriesTest {
+  @Test
+  public void testSharedWithinThread() {
+    assertSame(XmlFactories.getInputFactory(),           XmlFactories.getInputFactory());
+    assertSame(XmlFactories.getOutputFactory(),          XmlFactories.getOutputFactory());
+    assertSame(XmlFactories.getDocumentBuilderFactory(), XmlFactories.getDocumentBuilderFactory());
+    assertSame(XmlFactories.getDocumentBuilder(),        XmlFactories.getDocumentBuilder());
+    assertSame(XmlFactories.getTransformerFactory(),     XmlFactories.getTransformerFactory());
+    assertSame(XmlFactories.getTransformer(),            XmlFactories.getTransformer());
+  }
+
+  @Test
+  public void testNotSharedBetweenThreads() throws InterruptedException, ExecutionException {
+    assertNotSame(XmlFactories.getInputFactory(),           fromOtherThread(XmlFactories::getInputFactory));
+    assertNotSame(XmlFactories.getOutputFactory(),          fromOtherThread(XmlFactories::getOutputFactory));
+    assertNotSame(XmlFactories.getDocumentBuilderFactory(), fromOtherThread(XmlFactories::getDocumentBuilderFactory));
+    assertNotSame(XmlFactories.getDocumentBuilder(),        fromOtherThread(XmlFactories::getDocumentBuilder));
+    assertNotSame(XmlFactories.getTransformerFactory(),     fromOtherThread(XmlFactories::getTransformerFactory));
+    assertNotSame(XmlFactories.getTransformer(),            fromOtherThread(XmlFactories::getTransformer));
+  }
+
+  @Test
+  public void testDocumentBuilderReuse() throws IOException, SAXException {
+    Document first  = XmlFactories.getDocumentBuilder().parse(toStream("<first/>"));
+    Document second = XmlFactories.getDocumentBuilder().parse(toStream("<second/>"));
+    assertEquals("first",  first.getDocumentElement().getLocalName());
+    assertEquals("second", second.getDocumentElement().getLocalName());
+  }
+
+  @Test
+  public void testTransformerReset() throws TransformerException {
+    Transformer transformer = XmlFactories.getTransformer();
+    transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+    assertEquals("yes", transformer.getOutputProperty(OutputKeys.OMIT_XML_DECLARATION));
+
+    // the next caller on the thread doesn't see the output property
+    Transformer reused = XmlFactories.getTransformer();
+    assertSame(transformer, reused);
+    assertEquals("no", reused.getOutputProperty(OutputKeys.OMIT_XML_DECLARATION));
+
+    StringWriter out = new StringWriter();
+    reused.transform(new StreamSource(new StringReader("<root/>")), new StreamResult(out));
+    assertEquals("<?xml", out.toString().substring(0, 5));
+  }
+
+  @Test
+  public void testDoctype() throws IOException, SAXException, ParserConfigurationException {
+    String xml = "<!DOCTYPE root [<!ENTITY e \"entity\">]><root>&e;</root>";
+
+    // the shared builder accepts the same input as the parsers it replaced
+    Document document = XmlFactories.getDocumentBuilder().parse(toStream(xml));
+    assertEquals("entity", document.getDocumentElement().getTextContent());
+
+    DocumentBuilder builder = XmlFactories.makeNewSecureDocumentBuilderFactory().newDocumentBuilder();
+    try {
+      builder.parse(toStream(xml));
+      fail("parsed a document with a DOCTYPE declaration");
+    } catch (SAXException e) {
+      // expected
+    }
+  }
+
+  private static <T> T fromOtherThread(Supplier<T> supplier) throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      return executor.submit(supplier::get).get();
+    } finally {
+      executor.shutdown();
+    }
+  }
+  private static ByteArrayInputStream toStream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -20,9 +20,11 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -84,6 +86,7 @@ import com.marklogic.client.datamovement.DeleteListener;
 import com.marklogic.client.datamovement.ExportListener;
 import com.marklogic.client.datamovement.ExportToWriterListener;
 import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.UrisToChannelListener;
 import com.marklogic.client.datamovement.UrisToWriterListener;
 import com.marklogic.client.datamovement.JobReport;
 import com.marklogic.client.datamovement.JobTicket;
@@ -92,7 +95,9 @@ import com.marklogic.client.datamovement.QueryBatchException;
 import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.datamovement.QueryFailureListener;
 import com.marklogic.client.datamovement.WriteBatcher;
+import com.marklogic.client.datamovement.impl.QueryBatchBytesImpl;
 import com.marklogic.client.datamovement.impl.QueryBatchImpl;
+import com.marklogic.client.datamovement.impl.QueryJobReportListener;
 
 import com.marklogic.client.test.Common;
 
@@ -250,6 +255,38 @@ public class QueryBatcherTest {
     runQueryBatcher(moveMgr.newQueryBatcher(query), query, matchesByForest, 17, 99);
   }
 
+  @Test
+  public void testStructuredQueryWithCriteria() throws Exception {
+    StructuredQueryDefinition query = new StructuredQueryBuilder()
+      .directory(true, "/QueryBatcherTest/")
+      .withCriteria("Jane");
+    Map<String, String[]> matchesByForest = new HashMap<>();
+    matchesByForest.put("java-unittest-1", new String[] {});
+    matchesByForest.put("java-unittest-2", new String[] {});
+    matchesByForest.put("java-unittest-3", new String[] {uri2});
+    runQueryBatcher(moveMgr.newQueryBatcher(query), query, matchesByForest, 1, 2);
+  }
+
+  @Test
+  public void testRawStructuredXmlQuery() throws Exception {
+    StringHandle structuredQuery = new StringHandle(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+      "<query xmlns=\"http://marklogic.com/appservices/search\">" +
+        "<collection-query><uri>" + qhbTestCollection + "</uri></collection-query>" +
+      "</query>").withFormat(XML);
+    RawStructuredQueryDefinition query = client.newQueryManager().newRawStructuredQueryDefinition(structuredQuery);
+    Map<String, String[]> matchesByForest = new HashMap<>();
+    matchesByForest.put("java-unittest-1", new String[] {uri1, uri3, uri4});
+    matchesByForest.put("java-unittest-2", new String[] {uri5});
+    matchesByForest.put("java-unittest-3", new String[] {uri2});
+    runQueryBatcher(moveMgr.newQueryBatcher(query), query, matchesByForest, 2, 3);
+
+    query.setCriteria("Jane");
+    matchesByForest.put("java-unittest-1", new String[] {});
+    matchesByForest.put("java-unittest-2", new String[] {});
+    runQueryBatcher(moveMgr.newQueryBatcher(query), query, matchesByForest, 1, 2);
+  }
+
   @Test
   public void testIterator() throws Exception {
     Map<String, String[]> matchesByForest = new HashMap<>();
@@ -695,6 +732,79 @@ public class QueryBatcherTest {
     assertEquals(1, failureBatchCount.get());
   }
 
+  @Test
+  public void testUrisToChannelListener() throws Exception {
+    StructuredQueryDefinition query = new StructuredQueryBuilder().collection(qhbTestCollection);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Set<String> decodedUris = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger uriCount = new AtomicInteger();
+    QueryBatcher queryBatcher = moveMgr.newQueryBatcher(query)
+      .withBatchSize(2)
+      .onUrisBytesReady(new UrisToChannelListener(Channels.newChannel(out)))
+      .onUrisBytesReady(batch -> uriCount.addAndGet(batch.getUriCount()))
+      .onUrisReady(batch -> decodedUris.addAll(Arrays.asList(batch.getItems())));
+    assertEquals(2, queryBatcher.getUrisBytesReadyListeners().length);
+    JobTicket ticket = moveMgr.startJob(queryBatcher);
+    queryBatcher.awaitCompletion();
+    moveMgr.stopJob(ticket);
+
+    Set<String> writtenUris = new HashSet<>();
+    for ( String line : new String(out.toByteArray(), "UTF-8").split("\r?\n") ) {
+      if ( line.length() > 0 ) writtenUris.add(line);
+    }
+    Set<String> expected = new HashSet<>(Arrays.asList(uri1, uri2, uri3, uri4, uri5));
+    assertEquals(expected, writtenUris);
+    assertEquals(expected, decodedUris);
+    assertEquals(5, uriCount.get());
+  }
+
+  @Test
+  public void testUrisBytesReadyJobReport() {
+    StructuredQueryDefinition query = new StructuredQueryBuilder().collection(qhbTestCollection);
+    AtomicInteger uriCount = new AtomicInteger();
+    QueryBatcher queryBatcher = moveMgr.newQueryBatcher(query)
+      .withBatchSize(2)
+      .onUrisBytesReady(batch -> uriCount.addAndGet(batch.getUriCount()));
+    JobTicket ticket = moveMgr.startJob(queryBatcher);
+    queryBatcher.awaitCompletion();
+    moveMgr.stopJob(ticket);
+
+    assertEquals(5, uriCount.get());
+    assertEquals(5, moveMgr.getJobReport(ticket).getSuccessEventsCount());
+  }
+
+  @Test
+  public void testJobReportWithoutDecodedUris() {
+    QueryJobReportListener report = new QueryJobReportListener();
+    report.processEvent(new QueryBatchImpl().withItems(new String[0]).withUriCount(3));
+    report.processEvent(new QueryBatchImpl().withItems(new String[]{uri1, uri2}));
+    assertEquals(2, report.getSuccessBatchesCount());
+    assertEquals(5, report.getSuccessEventsCount());
+  }
+
+  @Test
+  public void testUrisToChannelListenerWithoutTrailingNewline() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    UrisToChannelListener listener = new UrisToChannelListener(Channels.newChannel(out));
+    listener.processEvent(new QueryBatchBytesImpl(new QueryBatchImpl(), "/a.xml\n/b.xml".getBytes("UTF-8"), 2));
+    listener.processEvent(new QueryBatchBytesImpl(new QueryBatchImpl(), "/c.xml\n".getBytes("UTF-8"), 1));
+    listener.processEvent(new QueryBatchBytesImpl(new QueryBatchImpl(), new byte[0], 0));
+    listener.processEvent(new QueryBatchBytesImpl(new QueryBatchImpl(), "/d.xml".getBytes("UTF-8"), 1));
+    assertEquals("/a.xml\n/b.xml\n/c.xml\n/d.xml\n", new String(out.toByteArray(), "UTF-8"));
+  }
+
+  @Test
+  public void testUrisBytesReadyWithIterator() {
+    QueryBatcher queryBatcher = moveMgr.newQueryBatcher(Arrays.asList(uri1, uri2).iterator())
+      .onUrisBytesReady(batch -> {});
+    try {
+      moveMgr.startJob(queryBatcher);
+      fail("onUrisBytesReady listeners should require a query");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
   @Test
   public void testDeleteListenerException() {
     final AtomicInteger failureBatchCount = new AtomicInteger();
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test.datamovement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.JobReport;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.RowBatcher;
+import com.marklogic.client.expression.PlanBuilder;
+import com.marklogic.client.io.JacksonHandle;
+
+import com.marklogic.client.test.Common;
+
+public class RowBatcherTest {
+  private static DatabaseClient client = Common.connect();
+  private static DataMovementManager moveMgr = client.newDataMovementManager();
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testPartitionedRows() throws Exception {
+    int rowCount = 95;
+    Map<String,Object>[] litRows = new Map[rowCount];
+    for (int i=0; i < rowCount; i++) {
+      Map<String,Object> row = new HashMap<>();
+      row.put("rowNum", i + 1);
+      row.put("label",  "row" + (i + 1));
+      litRows[i] = row;
+    }
+
+    RowBatcher<JsonNode> rowBatcher = moveMgr.newRowBatcher(new JacksonHandle());
+    PlanBuilder p = rowBatcher.getRowManager().newPlanBuilder();
+
+    Set<Integer> rowNums = ConcurrentHashMap.newKeySet();
+    AtomicInteger failures = new AtomicInteger();
+    rowBatcher.withBatchView(p.fromLiterals(litRows))
+      .withPartitionColumn("rowNum")
+      .withBatchSize(20)
+      .withThreadCount(3)
+      .withConsistentSnapshot()
+      .onSuccess(event -> {
+        assertTrue(event.getServerTimestamp() > 0);
+        for (JsonNode row: event.getRowsDoc().get("rows")) {
+          int rowNum = row.get("rowNum").get("value").asInt();
+          assertTrue("row outside of batch range: " + rowNum,
+            event.getLowerBound() <= rowNum && rowNum <= event.getUpperBound());
+          assertTrue("row in more than one batch: " + rowNum, rowNums.add(rowNum));
+        }
+      })
+      .onFailure(failure -> {
+        failure.printStackTrace();
+        failures.incrementAndGet();
+      });
+
+    JobTicket ticket = moveMgr.startJob(rowBatcher);
+    rowBatcher.awaitCompletion();
+    moveMgr.stopJob(ticket);
+
+    assertEquals(0, failures.get());
+    assertEquals(rowCount, rowBatcher.getRowEstimate());
+    assertEquals(rowCount, rowNums.size());
+
+    JobReport report = moveMgr.getJobReport(ticket);
+    assertEquals(0, report.getFailureBatchesCount());
+    assertTrue(report.getSuccessBatchesCount() >= 3);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testNullPartitionKeys() throws Exception {
+    int rowCount = 30;
+    int nullCount = 5;
+    Map<String,Object>[] litRows = new Map[rowCount + nullCount];
+    for (int i=0; i < rowCount + nullCount; i++) {
+      Map<String,Object> row = new HashMap<>();
+      if (i < rowCount) {
+        row.put("rowNum", i + 1);
+      }
+      row.put("label",  "row" + (i + 1));
+      litRows[i] = row;
+    }
+
+    RowBatcher<JsonNode> rowBatcher = moveMgr.newRowBatcher(new JacksonHandle());
+    PlanBuilder p = rowBatcher.getRowManager().newPlanBuilder();
+
+    Set<String> labels = ConcurrentHashMap.newKeySet();
+    AtomicInteger nullKeyBatches = new AtomicInteger();
+    AtomicInteger failures = new AtomicInteger();
+    rowBatcher.withBatchView(p.fromLiterals(litRows))
+      .withPartitionColumn("rowNum")
+      .withBatchSize(10)
+      .withThreadCount(2)
+      .onSuccess(event -> {
+        if (event.isNullKey()) {
+          nullKeyBatches.incrementAndGet();
+        }
+        for (JsonNode row: event.getRowsDoc().get("rows")) {
+          assertEquals(event.isNullKey(), !row.has("rowNum") || row.get("rowNum").path("value").isNull());
+          assertTrue("row in more than one batch", labels.add(row.get("label").get("value").asText()));
+        }
+      })
+      .onFailure(failure -> {
+        failure.printStackTrace();
+        failures.incrementAndGet();
+      });
+
+    JobTicket ticket = moveMgr.startJob(rowBatcher);
+    rowBatcher.awaitCompletion();
+    moveMgr.stopJob(ticket);
+
+    assertEquals(0, failures.get());
+    assertEquals(1, nullKeyBatches.get());
+    assertEquals(rowCount + nullCount, labels.size());
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2020 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.test.datamovement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.JobReport;
+import com.marklogic.client.datamovement.JobTicket;
+import com.marklogic.client.datamovement.ValuesBatcher;
+import com.marklogic.client.datamovement.ValuesMergeListener;
+import com.marklogic.client.datamovement.impl.ValuesBatchEventImpl;
+import com.marklogic.client.io.ValuesHandle;
+import com.marklogic.client.query.CountedDistinctValue;
+import com.marklogic.client.query.QueryManager;
+import com.marklogic.client.query.ValuesDefinition;
+
+import com.marklogic.client.test.Common;
+import com.marklogic.client.test.ValuesHandleTest;
+
+public class ValuesBatcherTest {
+  private static DatabaseClient client = Common.connect();
+  private static DataMovementManager moveMgr = client.newDataMovementManager();
+
+  @BeforeClass
+  public static void beforeClass() {
+    Common.connectAdmin();
+  }
+
+  @Test
+  public void testForestValues() throws Exception {
+    String optionsName = ValuesHandleTest.makeValuesOptions();
+
+    QueryManager queryMgr = client.newQueryManager();
+    ValuesDefinition vdef = queryMgr.newValuesDefinition("double", optionsName);
+    CountedDistinctValue[] expected = queryMgr.values(vdef, new ValuesHandle()).getValues();
+
+    ValuesMergeListener forestTotals = new ValuesMergeListener();
+    ValuesMergeListener mergedTotals = new ValuesMergeListener();
+    List<String> merged = Collections.synchronizedList(new ArrayList<>());
+    // the listeners only collect, because the batcher catches anything thrown by a listener
+    List<Forest> mergedForests = Collections.synchronizedList(new ArrayList<>());
+    List<long[]> mergedBatches = Collections.synchronizedList(new ArrayList<>());
+    AtomicLong forestValues = new AtomicLong();
+    AtomicInteger failures = new AtomicInteger();
+    ValuesBatcher valuesBatcher = moveMgr.newValuesBatcher(vdef)
+      .withBatchSize(2)
+      .withThreadCount(2)
+      .onSuccess(forestTotals)
+      .onSuccess(batch -> forestValues.addAndGet(batch.getValues().length))
+      .onSortedDistinct(mergedTotals)
+      .onSortedDistinct(batch -> {
+        mergedForests.add(batch.getForest());
+        mergedBatches.add(new long[]{batch.getStart(), batch.getValues().length});
+        merged.addAll(Arrays.asList(batch.getValues()));
+      })
+      .onFailure(failure -> failures.incrementAndGet());
+
+    JobTicket ticket = moveMgr.startJob(valuesBatcher);
+    valuesBatcher.awaitCompletion();
+    moveMgr.stopJob(ticket);
+
+    assertEquals(0, failures.get());
+    for (Forest forest: mergedForests) {
+      assertNull(forest);
+    }
+    long start = 1;
+    for (long[] mergedBatch: mergedBatches) {
+      assertEquals(start, mergedBatch[0]);
+      start += mergedBatch[1];
+    }
+    assertEquals(expected.length, merged.size());
+    long count = 0;
+    double sum = 0;
+    for (int i=0; i < expected.length; i++) {
+      double value = expected[i].get("xs:double", Double.class);
+      assertEquals(value, Double.parseDouble(merged.get(i)), 0.0);
+      count += expected[i].getCount();
+      sum   += value * expected[i].getCount();
+    }
+    assertEquals(expected.length, mergedTotals.getValueCount());
+    assertEquals(count, mergedTotals.getCount());
+    assertEquals(count, forestTotals.getCount());
+    assertEquals(sum, forestTotals.getSum(), 0.001);
+    assertEquals(merged.get(0), mergedTotals.getMinimum());
+    assertEquals(merged.get(merged.size() - 1), mergedTotals.getMaximum());
+
+    JobReport report = moveMgr.getJobReport(ticket);
+    assertEquals(0, report.getFailureBatchesCount());
+    assertEquals(forestValues.get(), report.getSuccessEventsCount());
+
+    Common.adminClient.newServerConfigManager().newQueryOptionsManager().deleteOptions(optionsName);
+  }
+
+  @Test
+  public void testMergeListenerCollationOrder() {
+    // a string lexicon with the default collation doesn't sort values by codepoint
+    ValuesMergeListener totals = new ValuesMergeListener();
+    totals.processEvent(new ValuesBatchEventImpl(null, null, 1)
+      .withValues("name", "xs:string", new String[]{"a", "B", "c"}, new long[]{1, 2, 3}));
+    totals.processEvent(new ValuesBatchEventImpl(null, null, 4)
+      .withValues("name", "xs:string", new String[]{"C", "d"}, new long[]{1, 1}));
+    assertEquals(5, totals.getValueCount());
+    assertEquals(8, totals.getCount());
+    assertEquals("B", totals.getMinimum());
+    assertEquals("d", totals.getMaximum());
+  }
+}